@@ -1,3 +1,8 @@
+import com.example.cards.build.CompileDeckDatabasesTask
+import com.example.cards.build.DeckDatabaseCompiler
+import com.example.cards.build.GenerateDeckCatalogTask
+import com.example.cards.build.SubsetFontTask
+
 plugins {
     id("com.android.application")
 }
@@ -38,6 +43,12 @@ android {
         sourceCompatibility = JavaVersion.VERSION_17
         targetCompatibility = JavaVersion.VERSION_17
     }
+
+    // Deck content (cards_deck_N.bin) is memory-mapped straight from the APK,
+    // which requires the asset to be stored uncompressed.
+    androidResources {
+        noCompress += "bin"
+    }
 }
 
 val roomVersion = "2.5.2"
@@ -61,3 +72,54 @@ dependencies {
 
 }
 
+// Rebuilds the prepackaged deck databases (assets/db, db/eng, db/rus) from
+// their deckN.sql scripts: deterministic bytes, page_size 4096, ANALYZE
+// statistics and VACUUM, with row counts verified; also writes the
+// memory-mapped word content (cards_deck_N.bin) next to each database.
+// Run manually after editing a script:  ./gradlew :app:compileDeckDatabases
+tasks.register<CompileDeckDatabasesTask>("compileDeckDatabases") {
+    group = "decks"
+    description = "Compiles assets/db/**/deckN.sql into cards_deck_N.db"
+    sqlFiles.from(fileTree("src/main/assets/db") {
+        include("deck*.sql", "eng/deck*.sql", "rus/deck*.sql")
+    })
+    createdAtMillis.set(
+        providers.environmentVariable("SOURCE_DATE_EPOCH")
+            .map { it.toLong() * 1000L }
+            .orElse(DeckDatabaseCompiler.DEFAULT_CREATED_AT_MILLIS)
+    )
+    finalizedBy("generateDeckCatalog")
+}
+
+// Rebuilds assets/db/catalog.bin, the deck index read once at startup:
+// titles and descriptions from decks/catalog.tsv, card counts, languages
+// and checksums from the compiled deck assets. Runs after
+// compileDeckDatabases; run manually after editing the .tsv:
+//   ./gradlew :app:generateDeckCatalog
+tasks.register<GenerateDeckCatalogTask>("generateDeckCatalog") {
+    group = "decks"
+    description = "Writes assets/db/catalog.bin from decks/catalog.tsv and the deck assets"
+    source.set(file("decks/catalog.tsv"))
+    assetsDb.set(file("src/main/assets/db"))
+    deckAssets.from(fileTree("src/main/assets/db") {
+        include("eng/cards_deck_*.db", "eng/cards_deck_*.bin", "rus/cards_deck_*.bin")
+    })
+}
+
+// Rebuilds res/font/noto_sans_kr.ttf from the full font in fonts/, keeping
+// only the glyphs for characters used by the deck scripts and UI strings.
+// Run manually after editing a script or strings.xml:  ./gradlew :app:subsetFonts
+tasks.register<SubsetFontTask>("subsetFonts") {
+    group = "decks"
+    description = "Subsets fonts/noto_sans_kr.ttf into res/font to the characters in use"
+    sourceFont.set(file("fonts/noto_sans_kr.ttf"))
+    textFiles.from(
+        fileTree("src/main/assets/db") {
+            include("deck*.sql", "eng/deck*.sql", "rus/deck*.sql")
+        },
+        fileTree("src/main/res") {
+            include("values*/strings.xml")
+        }
+    )
+    outputFont.set(file("src/main/res/font/noto_sans_kr.ttf"))
+}
@@ -0,0 +1,309 @@
+package com.example.cards.data.transfer;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.db.DbProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Imports small Anki packages built on the fly (a collection SQLite in a zip)
+ * and checks the deck rows {@link AnkiPackageImporter} writes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AnkiPackageImportTest {
+
+    // Collection creation time, epoch seconds; review dues count days from it.
+    private static final long CRT = 1_600_000_000L;
+    private static final long DAY = 86_400L;
+
+    // Anki card types and queues.
+    private static final int NEW = 0;
+    private static final int LEARNING = 1;
+    private static final int REVIEW = 2;
+    private static final int RELEARNING = 3;
+    private static final int SUSPENDED = -1;
+    private static final int DAY_LEARN = 3;
+
+    private Context ctx;
+    private final List<Long> decks = new ArrayList<>();
+    private final List<File> files = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    }
+
+    @After
+    public void tearDown() {
+        for (long deckId : decks) DbProvider.deleteDeck(ctx, deckId);
+        for (File f : files) SQLiteDatabase.deleteDatabase(f);
+    }
+
+    @Test
+    public void anki21IsPreferredOverAnki2() throws Exception {
+        File legacy = collection("legacy.anki2", col -> note(col, 1, "옛날", "stale"));
+        File current = collection("current.anki21", col -> note(col, 1, "지금", "fresh"));
+
+        // Either order: the lower-ranked entry never overwrites the newer one.
+        assertEquals("지금", onlyFront(importPackage(
+                "collection.anki2", legacy, "collection.anki21", current)));
+        assertEquals("지금", onlyFront(importPackage(
+                "collection.anki21", current, "collection.anki2", legacy)));
+    }
+
+    @Test
+    public void anki21bOnlyPackageIsRejected() throws Exception {
+        // Anki ships a stub collection.anki2 next to the zstd collection.
+        File stub = collection("stub.anki2", col -> note(col, 1, "Please update", "Anki"));
+        byte[] zstd = { 0x28, (byte) 0xb5, 0x2f, (byte) 0xfd };
+        byte[] pkg = zip("collection.anki2", stub, "collection.anki21b", zstd);
+        try {
+            AnkiPackageImporter.importFrom(ctx, new ByteArrayInputStream(pkg),
+                    "Deck", "new.apkg", true, null, null);
+            fail("anki21b-only package imported");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("older Anki versions"));
+        }
+    }
+
+    @Test
+    public void notesArePagedByIdWithoutGapsOrRepeats() throws Exception {
+        int total = AnkiPackageImporter.PAGE * 2 + 7;
+        File f = collection("paged.anki21", col -> {
+            // Ids far apart and inserted out of order.
+            for (int n = 0; n < total; n++) {
+                long nid = 1_500_000_000_000L + (long) ((n * 7919) % total) * 1_000L;
+                note(col, nid, "단어 " + nid, "word " + nid);
+            }
+        });
+        long[] last = new long[3];
+        AnkiPackageImporter.Result r = AnkiPackageImporter.importFrom(ctx,
+                new ByteArrayInputStream(zip("collection.anki21", f)), "Deck", "paged.apkg", true,
+                (done, all) -> {
+                    last[0] = done;
+                    last[1] = all;
+                    last[2]++;
+                }, null);
+        decks.add(r.deckId);
+
+        assertEquals(total, r.notes);
+        assertEquals(total, r.cards);
+        assertEquals(0, r.duplicates);
+        assertEquals(total, last[0]);
+        assertEquals(total, last[1]);
+        assertEquals(3, last[2]);
+        AppDatabase db = DbProvider.forDeck(ctx, r.deckId);
+        assertEquals(total, count(db, "SELECT COUNT(DISTINCT front) FROM cards"));
+    }
+
+    @Test
+    public void firstCardOfANoteCarriesItsSchedule() throws Exception {
+        File f = collection("cards.anki21", col -> {
+            note(col, 1, "사과", "apple");
+            // The reverse template's card has the lower id but ordinal 1.
+            card(col, 10, 1, 1, REVIEW, REVIEW, 50, 30, 2800);
+            card(col, 11, 1, 0, REVIEW, REVIEW, 100, 12, 2500);
+        });
+        AnkiPackageImporter.Result r = importPackage("collection.anki21", f);
+        assertEquals(1, r.cards);
+        assertEquals(1, r.states);
+
+        AppDatabase db = DbProvider.forDeck(ctx, r.deckId);
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM review_state"));
+        assertEquals(12, count(db, "SELECT intervalDays FROM review_state"));
+    }
+
+    @Test
+    public void schedulingBecomesReviewState() throws Exception {
+        long learnDue = 1_700_000_000L;
+        File f = collection("sched.anki21", col -> {
+            note(col, 1, "새", "new");
+            card(col, 11, 1, 0, NEW, NEW, 1, 0, 0);
+            note(col, 2, "복습", "review");
+            card(col, 21, 2, 0, REVIEW, REVIEW, 100, 12, 2500);
+            note(col, 3, "학습", "learning");
+            card(col, 31, 3, 0, LEARNING, LEARNING, learnDue, 0, 0);
+            note(col, 4, "재학습", "relearning");
+            card(col, 41, 4, 0, RELEARNING, LEARNING, learnDue, 4, 2100);
+            note(col, 5, "하루", "day learning");
+            card(col, 51, 5, 0, RELEARNING, DAY_LEARN, 200, 6, 2100);
+            note(col, 6, "쉬움", "easy");
+            card(col, 61, 6, 0, REVIEW, REVIEW, 100, 40, 5000);
+            note(col, 7, "어려움", "hard");
+            card(col, 71, 7, 0, REVIEW, REVIEW, 100, 2, 1000);
+            note(col, 8, "보류", "suspended");
+            card(col, 81, 8, 0, REVIEW, SUSPENDED, 100, 9, 2500);
+        });
+        AnkiPackageImporter.Result r = importPackage("collection.anki21", f);
+        assertEquals(8, r.cards);
+        assertEquals(7, r.states);
+        AppDatabase db = DbProvider.forDeck(ctx, r.deckId);
+
+        assertFalse(hasState(db, "새"));
+        assertState(db, "복습", 12, 2.5f, 3, (CRT + 100 * DAY) * 1000L);
+        assertState(db, "학습", 0, 2.5f, 0, learnDue * 1000L);
+        assertState(db, "재학습", 4, 2.1f, 0, learnDue * 1000L);
+        assertState(db, "하루", 6, 2.1f, 0, (CRT + 200 * DAY) * 1000L);
+        assertState(db, "쉬움", 40, 3.0f, 3, (CRT + 100 * DAY) * 1000L);
+        assertState(db, "어려움", 2, 1.3f, 3, (CRT + 100 * DAY) * 1000L);
+        assertState(db, "보류", 9, 2.5f, 3, (CRT + 100 * DAY) * 1000L);
+        assertEquals(1, count(db, "SELECT excluded FROM cards WHERE front = '보류'"));
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM cards WHERE excluded = 1"));
+    }
+
+    @Test
+    public void withoutSchedulingEveryCardIsNew() throws Exception {
+        File f = collection("plain.anki21", col -> {
+            note(col, 1, "복습", "review");
+            card(col, 11, 1, 0, REVIEW, REVIEW, 100, 12, 2500);
+            note(col, 2, "보류", "suspended");
+            card(col, 21, 2, 0, REVIEW, SUSPENDED, 100, 9, 2500);
+        });
+        AnkiPackageImporter.Result r = AnkiPackageImporter.importFrom(ctx,
+                new ByteArrayInputStream(zip("collection.anki21", f)), "Deck", "plain.apkg", false,
+                null, null);
+        decks.add(r.deckId);
+
+        AppDatabase db = DbProvider.forDeck(ctx, r.deckId);
+        assertEquals(2, count(db, "SELECT COUNT(*) FROM cards"));
+        assertEquals(0, count(db, "SELECT COUNT(*) FROM review_state"));
+        assertEquals(0, count(db, "SELECT COUNT(*) FROM cards WHERE excluded = 1"));
+    }
+
+    // --- Fixtures -----------------------------------------------------------
+
+    private interface Filler {
+        void fill(SQLiteDatabase col);
+    }
+
+    /** A minimal Anki collection: only the columns the importer reads. */
+    private File collection(String name, Filler filler) {
+        File f = new File(ctx.getCacheDir(), name);
+        SQLiteDatabase.deleteDatabase(f);
+        files.add(f);
+        try (SQLiteDatabase col = SQLiteDatabase.openOrCreateDatabase(f, null)) {
+            // One self-contained file to zip, no -wal sidecar.
+            col.disableWriteAheadLogging();
+            col.execSQL("CREATE TABLE col (id INTEGER PRIMARY KEY, crt INTEGER NOT NULL)");
+            col.execSQL("CREATE TABLE notes (id INTEGER PRIMARY KEY, flds TEXT NOT NULL,"
+                    + " tags TEXT NOT NULL)");
+            col.execSQL("CREATE TABLE cards (id INTEGER PRIMARY KEY, nid INTEGER NOT NULL,"
+                    + " ord INTEGER NOT NULL, type INTEGER NOT NULL, queue INTEGER NOT NULL,"
+                    + " due INTEGER NOT NULL, ivl INTEGER NOT NULL, factor INTEGER NOT NULL)");
+            col.execSQL("INSERT INTO col (id, crt) VALUES (1, ?)", new Object[] { CRT });
+            col.beginTransaction();
+            try {
+                filler.fill(col);
+                col.setTransactionSuccessful();
+            } finally {
+                col.endTransaction();
+            }
+        }
+        return f;
+    }
+
+    private static void note(SQLiteDatabase col, long id, String front, String back) {
+        col.execSQL("INSERT INTO notes (id, flds, tags) VALUES (?, ?, ?)",
+                new Object[] { id, front + "\u001f" + back, " imported " });
+    }
+
+    private static void card(SQLiteDatabase col, long id, long nid, int ord, int type, int queue,
+                             long due, int ivl, int factor) {
+        col.execSQL("INSERT INTO cards (id, nid, ord, type, queue, due, ivl, factor)"
+                + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                new Object[] { id, nid, ord, type, queue, due, ivl, factor });
+    }
+
+    /** Zips entries given as name, then a File or byte[] body. */
+    private static byte[] zip(Object... entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                zip.putNextEntry(new ZipEntry((String) entries[i]));
+                Object body = entries[i + 1];
+                if (body instanceof byte[]) {
+                    zip.write((byte[]) body);
+                } else {
+                    try (InputStream in = new FileInputStream((File) body)) {
+                        byte[] buf = new byte[8192];
+                        int r;
+                        while ((r = in.read(buf)) > 0) zip.write(buf, 0, r);
+                    }
+                }
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private AnkiPackageImporter.Result importPackage(Object... entries) throws IOException {
+        AnkiPackageImporter.Result r = AnkiPackageImporter.importFrom(ctx,
+                new ByteArrayInputStream(zip(entries)), "Deck", "test.apkg", true, null, null);
+        decks.add(r.deckId);
+        return r;
+    }
+
+    // --- Deck rows ----------------------------------------------------------
+
+    private String onlyFront(AnkiPackageImporter.Result r) {
+        assertEquals(1, r.cards);
+        try (Cursor c = DbProvider.forDeck(ctx, r.deckId).query("SELECT front FROM cards", null)) {
+            assertTrue(c.moveToFirst());
+            return c.getString(0);
+        }
+    }
+
+    private static long count(AppDatabase db, String sql) {
+        try (Cursor c = db.query(sql, null)) {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        }
+    }
+
+    private static boolean hasState(AppDatabase db, String front) {
+        try (Cursor c = db.query("SELECT s.id FROM cards c JOIN review_state s ON s.cardId = c.id"
+                + " WHERE c.front = ?", new Object[] { front })) {
+            return c.moveToFirst();
+        }
+    }
+
+    private static void assertState(AppDatabase db, String front, int intervalDays, float ease,
+                                    int step, long dueAt) {
+        try (Cursor c = db.query("SELECT s.intervalDays, s.ease, s.step, s.dueAt, s.direction"
+                + " FROM cards c JOIN review_state s ON s.cardId = c.id WHERE c.front = ?",
+                new Object[] { front })) {
+            assertTrue(front, c.moveToFirst());
+            assertEquals(front, intervalDays, c.getInt(0));
+            assertEquals(front, ease, c.getFloat(1), 0.001f);
+            assertEquals(front, step, c.getInt(2));
+            assertEquals(front, dueAt, c.getLong(3));
+            assertEquals(front, 0, c.getInt(4));
+            assertFalse(front, c.moveToNext());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.cards.data.transfer;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.cards.data.catalog.CustomDecks;
+import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.db.DbProvider;
+import com.example.cards.data.history.ReviewArchive;
+import com.example.cards.data.history.ReviewLogCompactor;
+import com.example.cards.data.model.ReviewLog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Exports progress and imports it back into the same deck after its old
+ * reviews were compacted: nothing may be added twice.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProgressRoundTripTest {
+
+    // A user deck id no real install reaches; Room creates it empty.
+    private static final long DECK = CustomDecks.FIRST_ID + 900_000L;
+    private static final int CARDS = 20;
+    private static final int REVIEWS_PER_CARD = 5;
+
+    private Context ctx;
+    private AppDatabase db;
+
+    @Before
+    public void setUp() {
+        ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        DbProvider.deleteDeck(ctx, DECK);
+        ReviewArchive.forDeck(ctx, DECK).delete();
+        db = DbProvider.forDeck(ctx, DECK);
+    }
+
+    @After
+    public void tearDown() {
+        DbProvider.deleteDeck(ctx, DECK);
+        ReviewArchive.forDeck(ctx, DECK).delete();
+    }
+
+    @Test
+    public void reimportIntoCompactedDeckAddsNothing() throws Exception {
+        long now = System.currentTimeMillis();
+        long old = now - TimeUnit.DAYS.toMillis(ReviewLogCompactor.KEEP_DAYS + 30);
+        SupportSQLiteDatabase w = db.getOpenHelper().getWritableDatabase();
+        for (int c = 1; c <= CARDS; c++) {
+            w.execSQL("INSERT INTO cards (id, deckId, front, back, createdAt, learned, excluded)"
+                    + " VALUES (?, ?, ?, ?, ?, 0, 0)", new Object[] { c, DECK, "단어" + c, "word " + c, old });
+            for (int k = 0; k < REVIEWS_PER_CARD; k++) {
+                ReviewLog log = new ReviewLog();
+                log.cardId = c;
+                // Old reviews get compacted; the last one stays live.
+                log.reviewedAt = (k < REVIEWS_PER_CARD - 1 ? old : now) - TimeUnit.HOURS.toMillis(k * 24 + c);
+                log.grade = 4;
+                log.resultIntervalDays = k + 1;
+                log.resultEase = 2.5;
+                db.reviewDao().insertLog(log);
+            }
+        }
+
+        // Export, then compact the old reviews out of review_log.
+        ByteArrayOutputStream export = new ByteArrayOutputStream();
+        ProgressExporter.export(ctx, export, null);
+        long before = now - TimeUnit.DAYS.toMillis(ReviewLogCompactor.KEEP_DAYS);
+        ReviewLogCompactor.compactBatch(ctx, DECK, db, before);
+        long live = db.reviewDao().countLogs();
+        long monthly = sumMonthlyReviews();
+        assertEquals(CARDS, live);
+        assertEquals(CARDS * (REVIEWS_PER_CARD - 1), monthly);
+
+        // Import the same export twice.
+        for (int round = 0; round < 2; round++) {
+            ProgressImporter.importFrom(ctx, new ByteArrayInputStream(export.toByteArray()), null);
+            assertEquals(live, db.reviewDao().countLogs());
+            assertEquals(monthly, sumMonthlyReviews());
+        }
+        assertEquals(monthly, ReviewArchive.forDeck(ctx, DECK).keys().size());
+    }
+
+    private long sumMonthlyReviews() {
+        try (Cursor c = db.query("SELECT COALESCE(SUM(reviews), 0) FROM review_log_monthly", null)) {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.cards.sim;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.model.Card;
+import com.example.cards.data.model.CardDirection;
+import com.example.cards.diag.LatencyHistogram;
+import com.example.cards.domain.ReviewRepository;
+import com.example.cards.domain.ReviewUseCase;
+import com.example.cards.domain.srs.Sm2;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LearnerSimulator
+ *
+ * Headless year-long learner simulation. Drives the real
+ * {@link ReviewUseCase} → {@link ReviewRepository} → {@link Sm2} → Room path
+ * against an on-disk copy of a shipped deck, with simulated time.
+ *
+ * Behavior:
+ * - Each learner gets a fresh copy of {@code db/eng/cards_deck_N.db}, opened
+ *   by Room like {@code DbProvider} opens decks.
+ * - One session per simulated day at 19:00: up to {@link Config#dailyLimit}
+ *   cards (due reviews, then up to {@link Config#newPerDay} new cards) are
+ *   loaded through {@link ReviewUseCase#loadDueBatch(int)} and each is
+ *   answered once, {@link Config#thinkMillis} of simulated time apart. As
+ *   in StudyActivity, a new card's review state is created by its first
+ *   answer.
+ * - Answers come from a seeded {@link RecallModel}; SM-2 fuzz uses a seeded
+ *   Random too. The due query orders by RANDOM(), so which cards make the
+ *   daily batch is the only non-reproducible part.
+ * - Per day it records wall-clock session time, the latency of loading the
+ *   due batch and of every answer, the due-queue length before and after
+ *   the session, review_log rows and database size (main file + WAL).
+ */
+public final class LearnerSimulator {
+
+    private static final String TAG = "LearnerSimulator";
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    // The use case studies the forward direction only.
+    private static final int[] FORWARD = { CardDirection.FORWARD };
+
+    /** Day 0 of every simulation: 2025-01-06 (a Monday), 00:00 UTC. */
+    public static final long START_MILLIS = 1_736_121_600_000L;
+
+    /**
+     * Simulation parameters.
+     */
+    public static final class Config {
+        public long deckId = 1;
+        public int days = 365;
+        public int learners = 1;
+        public int dailyLimit = 100;
+        public int newPerDay = ReviewRepository.DEFAULT_NEW_PER_DAY;
+        public long thinkMillis = TimeUnit.SECONDS.toMillis(8);
+        public long seed = 42;
+    }
+
+    /**
+     * Measurements of one simulated day of one learner.
+     */
+    public static final class Day {
+        public int learner;
+        public int day;
+        public int answers;
+        public int dueBefore;
+        public int dueAfter;
+        public long sessionMicros;
+        public long loadDueMicros;
+        public long answerP50Micros;
+        public long answerP99Micros;
+        public long answerMaxMicros;
+        public long reviewLogRows;
+        public long dbBytes;
+
+        static String header() {
+            return "learner,day,answers,dueBefore,dueAfter,sessionMs,loadDueMs,"
+                    + "answerP50Ms,answerP99Ms,answerMaxMs,reviewLogRows,dbBytes";
+        }
+
+        String csv() {
+            return String.format(Locale.US, "%d,%d,%d,%d,%d,%.2f,%.2f,%.3f,%.3f,%.3f,%d,%d",
+                    learner, day, answers, dueBefore, dueAfter,
+                    sessionMicros / 1000.0, loadDueMicros / 1000.0,
+                    answerP50Micros / 1000.0, answerP99Micros / 1000.0, answerMaxMicros / 1000.0,
+                    reviewLogRows, dbBytes);
+        }
+    }
+
+    /**
+     * Seeded memory model of one learner.
+     *
+     * Every card has a fixed difficulty and a memory stability in days;
+     * recall probability decays as {@code 0.9^(elapsed / stability)}.
+     * A recalled card's stability grows (less for hard cards), a forgotten
+     * one's shrinks. Grades follow the study screen's three buttons:
+     * forgotten → 3 (Hard), recalled → 4 (Medium), recalled with high
+     * confidence → 5 (Easy).
+     *
+     * Each draw is seeded by (seed, card, review number), so a card's
+     * answers do not depend on the order cards are shown in.
+     */
+    static final class RecallModel {
+        private static final double LN_09 = Math.log(0.9);
+
+        private static final class Memory {
+            final double difficulty;
+            double stabilityDays;
+            long lastReviewAt = -1;
+            int reviews;
+
+            Memory(double difficulty) {
+                this.difficulty = difficulty;
+                this.stabilityDays = 0.5 + 2.0 * (1.0 - difficulty);
+            }
+        }
+
+        private final long seed;
+        private final Map<Long, Memory> memory = new HashMap<>();
+
+        RecallModel(long seed) {
+            this.seed = seed;
+        }
+
+        int grade(long cardId, long now) {
+            Memory m = memory.get(cardId);
+            if (m == null) {
+                m = new Memory(new Random(seed * 1_000_003L + cardId).nextDouble());
+                memory.put(cardId, m);
+            }
+            Random draw = new Random(seed * 1_000_003L + cardId * 7_919L + m.reviews);
+
+            double recall = m.lastReviewAt < 0
+                    ? 0.2 + 0.4 * (1.0 - m.difficulty) // never seen: guess from similar words
+                    : Math.exp(LN_09 * (now - m.lastReviewAt) / (m.stabilityDays * DAY));
+            boolean recalled = draw.nextDouble() < recall;
+
+            m.reviews++;
+            m.lastReviewAt = now;
+            if (!recalled) {
+                m.stabilityDays = Math.max(0.5, m.stabilityDays * 0.4);
+                return 3;
+            }
+            m.stabilityDays *= 1.3 + 1.7 * (1.0 - m.difficulty);
+            return recall > 0.9 ? 5 : 4;
+        }
+    }
+
+    private final Context context;
+    private final Config config;
+
+    // Simulated "now"; read by the use case through its clock.
+    private long now;
+
+    public LearnerSimulator(@NonNull Context context, @NonNull Config config) {
+        this.context = context.getApplicationContext();
+        this.config = config;
+    }
+
+    /**
+     * Runs all learners and writes {@code sim-deck<N>-<timestamp>.csv} into
+     * {@code outDir}.
+     *
+     * @return the measurements of every learner and day
+     */
+    @NonNull
+    public List<Day> run(@NonNull File outDir) throws IOException {
+        List<Day> all = new ArrayList<>();
+        for (int learner = 0; learner < config.learners; learner++) {
+            all.addAll(runLearner(learner));
+        }
+
+        if (!outDir.exists() && !outDir.mkdirs()) throw new IOException("Cannot create " + outDir);
+        File csv = new File(outDir, "sim-deck" + config.deckId + "-" + System.currentTimeMillis() + ".csv");
+        try (PrintWriter w = new PrintWriter(new FileOutputStream(csv))) {
+            w.println(Day.header());
+            for (Day d : all) w.println(d.csv());
+        }
+        Log.i(TAG, "report: " + csv.getAbsolutePath());
+        return all;
+    }
+
+    private List<Day> runLearner(int learner) throws IOException {
+        String name = "sim_" + config.seed + "_" + learner + "_deck_" + config.deckId + ".db";
+        context.deleteDatabase(name);
+        File dbFile = context.getDatabasePath(name);
+        copyDeck(dbFile);
+
+        AppDatabase db = Room.databaseBuilder(context, AppDatabase.class, name)
+                .addMigrations(AppDatabase.MIGRATIONS)
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onOpen(@NonNull SupportSQLiteDatabase sdb) {
+                        sdb.execSQL("PRAGMA foreign_keys = ON");
+                    }
+                })
+                .build();
+
+        long learnerSeed = config.seed * 31 + learner;
+        Sm2.Config sm2 = new Sm2.Config();
+        sm2.random = new Random(learnerSeed);
+        ReviewRepository repo = new ReviewRepository(db.reviewDao(), sm2);
+        ReviewUseCase useCase = new ReviewUseCase(repo, config.deckId, () -> now, config.newPerDay);
+        RecallModel model = new RecallModel(learnerSeed);
+
+        List<Day> days = new ArrayList<>(config.days);
+        try {
+            for (int day = 0; day < config.days; day++) {
+                now = START_MILLIS + day * DAY + TimeUnit.HOURS.toMillis(19);
+                Day d = session(db, useCase, model);
+                d.learner = learner;
+                d.day = day;
+                d.reviewLogRows = count(db, "SELECT COUNT(*) FROM review_log");
+                d.dbBytes = dbFile.length() + new File(dbFile.getPath() + "-wal").length();
+                days.add(d);
+
+                if (day % 30 == 0 || day == config.days - 1) {
+                    Log.i(TAG, String.format(Locale.US,
+                            "learner %d day %d: %d answers, due %d->%d, session %.1f ms, "
+                                    + "answer p99 %.2f ms, %d logs, %d KB",
+                            learner, day, d.answers, d.dueBefore, d.dueAfter,
+                            d.sessionMicros / 1000.0, d.answerP99Micros / 1000.0,
+                            d.reviewLogRows, d.dbBytes >> 10));
+                }
+            }
+        } finally {
+            db.close();
+        }
+        return days;
+    }
+
+    private Day session(AppDatabase db, ReviewUseCase useCase, RecallModel model) {
+        Day d = new Day();
+        LatencyHistogram answers = new LatencyHistogram();
+        long sessionStart = SystemClock.elapsedRealtimeNanos();
+
+        d.dueBefore = db.reviewDao().countDue(config.deckId, FORWARD, now);
+
+        long t = SystemClock.elapsedRealtimeNanos();
+        List<Card> batch = useCase.loadDueBatch(config.dailyLimit);
+        d.loadDueMicros = (SystemClock.elapsedRealtimeNanos() - t) / 1_000L;
+
+        for (Card card : batch) {
+            int grade = model.grade(card.getId(), now);
+            t = SystemClock.elapsedRealtimeNanos();
+            useCase.onAnswer(card.getId(), grade);
+            answers.record((SystemClock.elapsedRealtimeNanos() - t) / 1_000L);
+            now += config.thinkMillis;
+        }
+
+        d.sessionMicros = (SystemClock.elapsedRealtimeNanos() - sessionStart) / 1_000L;
+        d.answers = batch.size();
+        d.dueAfter = db.reviewDao().countDue(config.deckId, FORWARD, now);
+        d.answerP50Micros = answers.percentile(0.50);
+        d.answerP99Micros = answers.percentile(0.99);
+        d.answerMaxMicros = answers.maxMicros();
+        return d;
+    }
+
+    private static long count(AppDatabase db, String sql) {
+        try (Cursor c = db.query(sql, null)) {
+            return c.moveToFirst() ? c.getLong(0) : 0L;
+        }
+    }
+
+    private void copyDeck(File dest) throws IOException {
+        File parent = dest.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        String asset = "db/eng/cards_deck_" + config.deckId + ".db";
+        try (InputStream in = context.getAssets().open(asset);
+             OutputStream out = new FileOutputStream(dest)) {
+            byte[] buf = new byte[8192];
+            int r;
+            while ((r = in.read(buf)) > 0) out.write(buf, 0, r);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.cards.sim;
+
+import android.content.Context;
+import android.os.Bundle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link LearnerSimulator} on a device or emulator.
+ *
+ * <pre>
+ *   ./gradlew :app:connectedDebugAndroidTest \
+ *       -Pandroid.testInstrumentationRunnerArguments.class=com.example.cards.sim.YearSimulationTest \
+ *       -Pandroid.testInstrumentationRunnerArguments.simDeck=22 \
+ *       -Pandroid.testInstrumentationRunnerArguments.simLearners=3
+ * </pre>
+ *
+ * Arguments: simDeck, simDays, simLearners, simDailyLimit, simNewPerDay,
+ * simSeed. The CSV report lands in the app's external files dir under
+ * {@code sim/}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class YearSimulationTest {
+
+    @Test
+    public void simulateYear() throws Exception {
+        Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        Bundle args = InstrumentationRegistry.getArguments();
+
+        LearnerSimulator.Config cfg = new LearnerSimulator.Config();
+        cfg.deckId = Long.parseLong(args.getString("simDeck", "22"));
+        cfg.days = Integer.parseInt(args.getString("simDays", "365"));
+        cfg.learners = Integer.parseInt(args.getString("simLearners", "1"));
+        cfg.dailyLimit = Integer.parseInt(args.getString("simDailyLimit", "100"));
+        cfg.newPerDay = Integer.parseInt(args.getString("simNewPerDay", "20"));
+        cfg.seed = Long.parseLong(args.getString("simSeed", "42"));
+
+        File out = ctx.getExternalFilesDir("sim");
+        if (out == null) out = new File(ctx.getFilesDir(), "sim");
+        List<LearnerSimulator.Day> days = new LearnerSimulator(ctx, cfg).run(out);
+
+        assertEquals(cfg.days * cfg.learners, days.size());
+        // Every answer leaves exactly one review_log row.
+        long answers = 0;
+        for (LearnerSimulator.Day d : days) {
+            if (d.learner == cfg.learners - 1) answers += d.answers;
+        }
+        LearnerSimulator.Day last = days.get(days.size() - 1);
+        assertEquals(answers, last.reviewLogRows);
+        assertTrue(last.answers <= cfg.dailyLimit);
+    }
+}
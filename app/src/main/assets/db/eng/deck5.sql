@@ -427,6 +427,6 @@ INSERT INTO cards (deckId, front, back, createdAt) VALUES
 (5, '희망', 'hope', strftime('%s','now')*1000),
 (5, '흰색', 'white (color)', strftime('%s','now')*1000),
 (5, '힘', 'strength, power', strftime('%s','now')*1000)
-/
+;
 
 
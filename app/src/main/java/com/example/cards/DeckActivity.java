@@ -4,16 +4,25 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.util.Log;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.cards.data.catalog.CustomDecks;
+import com.example.cards.data.catalog.DeckCatalog;
 import com.example.cards.data.db.AppDatabase;
 import com.example.cards.data.db.CardDao;
+import com.example.cards.data.db.DbScheduler;
+import com.example.cards.data.db.DeckReset;
+import com.example.cards.data.history.DailyRollups;
+import com.example.cards.data.history.ReviewLogCompactor;
 import com.example.cards.data.model.Card;
+import com.example.cards.data.quiz.DistractorIndex;
 import com.example.cards.util.ThemeHelper;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.button.MaterialButton;
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 
 import java.io.File;
 import java.util.List;
@@ -27,7 +36,9 @@ import java.util.List;
  * - Open deck-specific database file (cards_deck_{deckId}.db) via AppDatabase.DbFactory.
  * - Provide navigation to:
  *   - {@link WordListActivity}: full list of words in this deck.
- *   - {@link StudyActivity}: study / review session for this deck.
+ *   - {@link StudyActivity}: study / review session for this deck, with
+ *     self-graded cards or as a multiple-choice quiz.
+ * - Reset this deck's progress from the toolbar menu.
  *
  * Behavior:
  * - Receives deckId and deckTitle via Intent extras.
@@ -74,6 +85,7 @@ public class DeckActivity extends AppCompatActivity {
         TextView tvDesc            = findViewById(R.id.tvDeckDescription);
         MaterialButton btnWordList = findViewById(R.id.btnWordList);
         MaterialButton btnStudy    = findViewById(R.id.btnStudy);
+        MaterialButton btnQuiz     = findViewById(R.id.btnQuiz);
 
         // --- Title / toolbar setup ---
         if (deckTitle != null && !deckTitle.isEmpty()) {
@@ -85,9 +97,17 @@ public class DeckActivity extends AppCompatActivity {
             toolbar.setTitle(fallbackTitle);
         }
         toolbar.setNavigationOnClickListener(v -> onBackPressed());
+        toolbar.inflateMenu(R.menu.menu_deck);
+        toolbar.setOnMenuItemClickListener(item -> {
+            if (item.getItemId() == R.id.action_reset_deck) {
+                confirmResetDeck();
+                return true;
+            }
+            return false;
+        });
 
         // Per-deck subtitle and description.
-        setupDeckTexts((int) deckId, tvSubtitle, tvDesc);
+        setupDeckTexts(deckId, tvSubtitle, tvDesc);
 
         // --- Deck-specific database file ---
         String dbFileName = "cards_deck_" + deckId + ".db";
@@ -106,8 +126,15 @@ public class DeckActivity extends AppCompatActivity {
         // Log again after opening (in case DB was just copied).
         Log.d("DeckActivity", "after forDeck: exists=" + expected.exists() + " size=" + expected.length());
 
+        // Move old review history out of the hot database (at most daily).
+        ReviewLogCompactor.scheduleIfDue(this, deckId, db);
+        // Count history from before daily_rollup existed (once per deck).
+        DailyRollups.backfillIfNeeded(this, deckId, db);
+        // Distractors for the quiz, ready before it is opened.
+        DistractorIndex.prefetch(this, deckId, db);
+
         // Optional background diagnostics: print DB path and a small sample of cards.
-        AppDatabase.databaseExecutor.execute(() -> {
+        DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, null, this, () -> {
             try {
                 String dbPath = db.getOpenHelper().getReadableDatabase().getPath();
                 Log.d("DB", "Opened path = " + dbPath);
@@ -141,160 +168,54 @@ public class DeckActivity extends AppCompatActivity {
             i.putExtra(EXTRA_DECK_TITLE, tvTitle.getText().toString());
             startActivity(i);
         });
+
+        // Same session as a multiple-choice quiz.
+        btnQuiz.setOnClickListener(v -> {
+            Intent i = new Intent(this, StudyActivity.class);
+            i.putExtra(EXTRA_DECK_ID, deckId);
+            i.putExtra(EXTRA_DECK_TITLE, tvTitle.getText().toString());
+            i.putExtra(StudyActivity.EXTRA_QUIZ, true);
+            startActivity(i);
+        });
     }
 
     /**
-     * Configures subtitle and description for a deck based on its numeric ID.
-     * Deck IDs are 1..27 and are mapped to TOPIK-like levels (1급..6급).
+     * Asks for confirmation, then clears this deck's study progress in place
+     * ({@link DeckReset}); the words and their translations stay.
+     */
+    private void confirmResetDeck() {
+        new MaterialAlertDialogBuilder(this)
+                .setTitle(R.string.deck_reset_progress)
+                .setMessage("Delete the study progress of this deck?")
+                .setPositiveButton("Yes", (dialog, which) ->
+                        DeckReset.resetDeck(this, deckId, this, ok ->
+                                Toast.makeText(this, ok ? "Deck progress has been reset"
+                                        : "Reset failed", Toast.LENGTH_SHORT).show()))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    /**
+     * Sets subtitle and description from the {@link DeckCatalog}.
      *
      * @param deckId        logical deck ID
      * @param tvSubtitle    TextView for short subtitle (e.g. "for beginners")
      * @param tvDescription TextView for longer per-deck description
      */
-    private void setupDeckTexts(int deckId,
+    private void setupDeckTexts(long deckId,
                                 TextView tvSubtitle,
                                 TextView tvDescription) {
-
-        switch (deckId) {
-            case 1:
-                tvSubtitle.setText("for beginners");
-                tvDescription.setText("Basic vocabulary of level 1급, part 1: the most frequent starter words for daily practice.");
-                break;
-
-            case 2:
-                tvSubtitle.setText("for beginners");
-                tvDescription.setText("Basic vocabulary of level 1급, part 2: additional essential words for initial learning and everyday use.");
-                break;
-
-            case 3:
-                tvSubtitle.setText("keep learning");
-                tvDescription.setText("Level 2급 vocabulary, part 1: expanding your word stock for everyday situations and basic conversations.");
-                break;
-
-            case 4:
-                tvSubtitle.setText("keep learning");
-                tvDescription.setText("Level 2급 vocabulary, part 2: more practical words to improve fluency in daily communication.");
-                break;
-
-            case 5:
-                tvSubtitle.setText("keep learning");
-                tvDescription.setText("Level 2급 vocabulary, part 3: additional useful terms for confident interaction in common scenarios.");
-                break;
-
-            case 6:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 3급 vocabulary, part 1: more advanced words for conversations and reading simple news.");
-                break;
-
-            case 7:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 3급 vocabulary, part 2: expanding your vocabulary for broader topics and written content.");
-                break;
-
-            case 8:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 3급 vocabulary, part 3: additional advanced terms to strengthen reading and speaking skills.");
-                break;
-
-            case 9:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 3급 vocabulary, part 4: further lexical expansion for more detailed discussions.");
-                break;
-
-            case 10:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 3급 vocabulary, part 5: reinforcing advanced usage for daily and academic contexts.");
-                break;
-
-            case 11:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 4급 vocabulary, part 1: advanced words suitable for reading news and extended conversations.");
-                break;
-
-            case 12:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 4급 vocabulary, part 2: additional terminology to support fluent comprehension and expression.");
-                break;
-
-            case 13:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 4급 vocabulary, part 3: more high-level words for understanding various topics.");
-                break;
-
-            case 14:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 4급 vocabulary, part 4: strengthening command of complex vocabulary for nuanced situations.");
-                break;
-
-            case 15:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 4급 vocabulary, part 5: extended word set for advanced reading and structured dialogues.");
-                break;
-
-            case 16:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 4급 vocabulary, part 6: additional complex terms for improved language precision.");
-                break;
-
-            case 17:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 5급 vocabulary, part 1: high-level words for professional, academic, and detailed discussions.");
-                break;
-
-            case 18:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 5급 vocabulary, part 2: expanding advanced lexical resources for complex texts.");
-                break;
-
-            case 19:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 5급 vocabulary, part 3: additional high-level terms for precise communication.");
-                break;
-
-            case 20:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 5급 vocabulary, part 4: vocabulary aimed at deeper comprehension of long, informative texts.");
-                break;
-
-            case 21:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 5급 vocabulary, part 5: strengthening mastery of advanced expressions across various topics.");
-                break;
-
-            case 22:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 5급 vocabulary, part 6: further advanced words for confident reading and speaking at a high level.");
-                break;
-
-            case 23:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 6급 vocabulary, part 1: top-level Korean words used in academic, news, and formal contexts.");
-                break;
-
-            case 24:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 6급 vocabulary, part 2: additional sophisticated terms for nuanced comprehension.");
-                break;
-
-            case 25:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 6급 vocabulary, part 3: vocabulary required for understanding complex articles and discussions.");
-                break;
-
-            case 26:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 6급 vocabulary, part 4: extended academic and professional terminology for expert-level use.");
-                break;
-
-            case 27:
-                tvSubtitle.setText("confident level");
-                tvDescription.setText("Level 6급 vocabulary, part 5: the most advanced words for full proficiency in all communication domains.");
-                break;
-
-            default:
-                tvSubtitle.setText("deck");
-                tvDescription.setText("Deck description will be added soon.");
-                break;
+        DeckCatalog.Entry entry = DeckCatalog.get(this).find(deckId);
+        CustomDecks.Entry custom = CustomDecks.find(this, deckId);
+        if (entry != null) {
+            tvSubtitle.setText(entry.subtitle);
+            tvDescription.setText(entry.description);
+        } else if (custom != null) {
+            tvSubtitle.setText("your deck");
+            tvDescription.setText(custom.cards + " cards imported from " + custom.source);
+        } else {
+            tvSubtitle.setText("deck");
+            tvDescription.setText("Deck description will be added soon.");
         }
     }
 }
@@ -0,0 +1,110 @@
+package com.example.cards;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.example.cards.data.db.DbScheduler;
+import com.example.cards.data.maintenance.DeckMaintenance;
+import com.example.cards.diag.PerfTrace;
+import com.example.cards.diag.QueryMetrics;
+import com.example.cards.ui.text.TextLayoutCache;
+import com.example.cards.util.ThemeHelper;
+import com.google.android.material.appbar.MaterialToolbar;
+import com.google.android.material.button.MaterialButton;
+import com.google.android.material.switchmaterial.SwitchMaterial;
+
+import java.io.File;
+
+/**
+ * DiagnosticsActivity
+ *
+ * Hidden debug screen (long press on the fox in Settings) that shows the
+ * timings collected by {@link PerfTrace} and the query latencies collected
+ * by {@link QueryMetrics}.
+ *
+ * Responsibilities:
+ * - Show the startup sections and milestones from the in-memory ring buffer.
+ * - Show per-query latency percentiles and row counts.
+ * - Show {@link DbScheduler} queue depth and wait times per lane.
+ * - Show the last {@link DeckMaintenance} result of each deck.
+ * - Toggle tracing / query metrics (persisted; take full effect on the next launch).
+ * - Export query stats as JSON next to the timing dumps.
+ * - Write the timings to a text file in the app's external files directory
+ *   ({@code Android/data/<package>/files/diagnostics/}), readable via adb.
+ */
+public class DiagnosticsActivity extends AppCompatActivity {
+
+    private static final String TAG = "Diagnostics";
+
+    private TextView tvTimings;
+
+    @Override
+    protected void onCreate(@Nullable Bundle savedInstanceState) {
+        ThemeHelper.applyThemeFromPrefs(this);
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_diagnostics);
+
+        MaterialToolbar toolbar = findViewById(R.id.toolbar_diagnostics);
+        toolbar.setNavigationOnClickListener(v -> onBackPressed());
+
+        tvTimings = findViewById(R.id.tv_timings);
+
+        SwitchMaterial switchTrace = findViewById(R.id.switch_trace);
+        switchTrace.setChecked(PerfTrace.isEnabled());
+        switchTrace.setOnCheckedChangeListener((buttonView, isChecked) ->
+                PerfTrace.setEnabled(this, isChecked));
+
+        SwitchMaterial switchQueries = findViewById(R.id.switch_queries);
+        switchQueries.setChecked(QueryMetrics.isEnabled());
+        switchQueries.setOnCheckedChangeListener((buttonView, isChecked) ->
+                QueryMetrics.setEnabled(this, isChecked));
+
+        MaterialButton btnDump = findViewById(R.id.btn_dump);
+        btnDump.setOnClickListener(v -> {
+            try {
+                showWritten(PerfTrace.dump(diagnosticsDir()));
+            } catch (Exception e) {
+                showFailed(e);
+            }
+        });
+
+        MaterialButton btnExport = findViewById(R.id.btn_export_queries);
+        btnExport.setOnClickListener(v -> {
+            try {
+                showWritten(QueryMetrics.export(diagnosticsDir()));
+            } catch (Exception e) {
+                showFailed(e);
+            }
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        tvTimings.setText(PerfTrace.format()
+                + "\n" + QueryMetrics.format()
+                + "\n" + DbScheduler.get().format()
+                + "\n" + TextLayoutCache.get().format()
+                + "\n" + DeckMaintenance.format(this));
+    }
+
+    private File diagnosticsDir() {
+        File base = getExternalFilesDir(null);
+        if (base == null) base = getFilesDir();
+        return new File(base, "diagnostics");
+    }
+
+    private void showWritten(File f) {
+        Toast.makeText(this, f.getAbsolutePath(), Toast.LENGTH_LONG).show();
+    }
+
+    private void showFailed(Exception e) {
+        Log.e(TAG, "Failed to write diagnostics", e);
+        Toast.makeText(this, "Write failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+    }
+}
@@ -18,10 +18,19 @@ import androidx.drawerlayout.widget.DrawerLayout;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.cards.data.backup.DeckSnapshots;
+import com.example.cards.data.db.DeckIntegrity;
+import com.example.cards.data.maintenance.DeckMaintenance;
+import com.example.cards.data.catalog.CustomDecks;
+import com.example.cards.data.catalog.DeckCatalog;
 import com.example.cards.data.model.Deck;
+import com.example.cards.diag.PerfTrace;
+import com.example.cards.diag.QueryMetrics;
+import com.example.cards.repo.DeckProgressTracker;
 import com.example.cards.ui.DeckAdapter;
 import com.example.cards.ui.OverlapDecoration;
 import com.example.cards.ui.FoxDecoration;
+import com.example.cards.util.AppFonts;
 import com.example.cards.util.ThemeHelper;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.navigation.NavigationView;
@@ -36,13 +45,21 @@ public class MainMenuActivity extends AppCompatActivity {
     private MaterialToolbar toolbar;
     private RecyclerView rvDecks;
     private DeckAdapter adapter;
+    private DeckProgressTracker progressTracker;
     private final List<Deck> decks = new ArrayList<>();
+    // Версия списка пользовательских колод, по которой собран decks
+    private int customGeneration = -1;
 
     @SuppressLint("NonConstantResourceId")
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
+        long trace = PerfTrace.begin("MainMenu.onCreate");
+
         // Применяем тему (светлая/тёмная) из настроек
         ThemeHelper.applyThemeFromPrefs(this);
+        // Флаги диагностики лежат в том же файле настроек, он уже загружен
+        PerfTrace.init(this);
+        QueryMetrics.init(this);
 
         super.onCreate(savedInstanceState);
         // Разметка с DrawerLayout и RecyclerView @id/decksList
@@ -94,46 +111,24 @@ public class MainMenuActivity extends AppCompatActivity {
         // Лиса, привязанная к первой карточке
         rvDecks.addItemDecoration(new FoxDecoration(this));
 
-        // Данные колод
-        String[] deckNames = {
-                "Words Level 1, Part 1",   // 1
-                "Words Level 1, Part 2",   // 2
-                "Words Level 2, Part 1",   // 3
-                "Words Level 2, Part 2",   // 4
-                "Words Level 2, Part 3",   // 5
-                "Words Level 3, Part 1",   // 6
-                "Words Level 3, Part 2",   // 7
-                "Words Level 3, Part 3",   // 8
-                "Words Level 3, Part 4",   // 9
-                "Words Level 3, Part 5",   // 10
-                "Words Level 4, Part 1",   // 11
-                "Words Level 4, Part 2",   // 12
-                "Words Level 4, Part 3",   // 13
-                "Words Level 4, Part 4",   // 14
-                "Words Level 4, Part 5",   // 15
-                "Words Level 4, Part 6",   // 16
-                "Words Level 5, Part 1",   // 17
-                "Words Level 5, Part 2",   // 18
-                "Words Level 5, Part 3",   // 19
-                "Words Level 5, Part 4",   // 20
-                "Words Level 5, Part 5",   // 21
-                "Words Level 5, Part 6",   // 22
-                "Words Level 6, Part 1",   // 23
-                "Words Level 6, Part 2",   // 24
-                "Words Level 6, Part 3",   // 25
-                "Words Level 6, Part 4",   // 26
-                "Words Level 6, Part 5"    // 27
-        };
+        // Данные колод — из каталога (assets/db/catalog.bin) и списка
+        // импортированных колод, без обращения к SQLite
+        loadDecks();
 
-        decks.clear();
-        for (int i = 0; i < deckNames.length; i++) {
-            int id = i + 1;
-            String title = id + ". " + deckNames[i];
-            decks.add(new Deck(id, title));
-        }
+        // Прогресс колод: пересчитывается только при изменении таблиц
+        progressTracker = DeckProgressTracker.get(this);
+
+        // Фоновые снимки изменившихся колод (раз в 15 минут)
+        DeckSnapshots.start(this);
+        // Обслуживание баз (ANALYZE, VACUUM) — в простое и на зарядке
+        DeckMaintenance.schedule(this);
+        // Периодический quick_check колод и восстановление повреждённых
+        DeckIntegrity.start(this);
+        // Шрифт карточек грузим заранее, в фоне — к экрану изучения он уже готов
+        AppFonts.preload(this);
 
         // Адаптер: при нажатии открываем экран колоды (DeckActivity)
-        adapter = new DeckAdapter(decks, deck -> {
+        adapter = new DeckAdapter(decks, progressTracker, deck -> {
             Intent intent = new Intent(MainMenuActivity.this, DeckActivity.class);
             intent.putExtra(DeckActivity.EXTRA_DECK_ID, deck.id);
             intent.putExtra(DeckActivity.EXTRA_DECK_TITLE, deck.title);
@@ -141,15 +136,48 @@ public class MainMenuActivity extends AppCompatActivity {
         });
 
         rvDecks.setAdapter(adapter);
+
+        PerfTrace.end(trace);
+        PerfTrace.markOnce("main_menu_created");
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Колода, импортированная в настройках, появляется по возвращении
+        // или сразу, как только импорт закончится
+        reloadDecksIfChanged();
+        CustomDecks.setListener(this::reloadDecksIfChanged);
+        // Получаем только изменившиеся проценты; если ничего не менялось — ноль запросов
+        progressTracker.setListener((deckId, percent) -> adapter.onProgressChanged(deckId));
     }
 
     @Override
-    protected void onResume() {
-        super.onResume();
-        // Обновляем элементы — адаптер пересчитает прогресс для каждой колоды
-        if (rvDecks != null && rvDecks.getAdapter() != null) {
-            rvDecks.getAdapter().notifyDataSetChanged();
+    protected void onStop() {
+        progressTracker.setListener(null);
+        CustomDecks.setListener(null);
+        super.onStop();
+    }
+
+    /**
+     * Собирает список: колоды из каталога, затем импортированные пользователем.
+     */
+    private void loadDecks() {
+        customGeneration = CustomDecks.generation();
+        decks.clear();
+        for (DeckCatalog.Entry e : DeckCatalog.get(this).all()) {
+            decks.add(new Deck(e.deckId, e.deckId + ". " + e.title));
         }
+        for (CustomDecks.Entry e : CustomDecks.all(this)) {
+            decks.add(new Deck(e.deckId, e.title));
+        }
+    }
+
+    @SuppressLint("NotifyDataSetChanged")
+    private void reloadDecksIfChanged() {
+        if (customGeneration == CustomDecks.generation()) return;
+        loadDecks();
+        adapter.notifyDataSetChanged();
     }
 
     private void showExitDialog() {
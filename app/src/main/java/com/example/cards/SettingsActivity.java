@@ -1,32 +1,73 @@
 package com.example.cards;
 
 import android.content.Context;
+import android.content.Intent;
 import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.provider.OpenableColumns;
+import android.view.View;
+import android.widget.ProgressBar;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.backup.DeckSnapshots;
+import com.example.cards.data.db.DbProvider;
+import com.example.cards.data.db.DeckReset;
+import com.example.cards.data.db.DbScheduler;
+import com.example.cards.data.db.LanguagePacks;
+import com.example.cards.data.model.CardDirection;
+import com.example.cards.data.summary.DueSummary;
+import com.example.cards.data.transfer.AnkiPackageImporter;
+import com.example.cards.data.transfer.DeckFileImporter;
+import com.example.cards.data.transfer.ProgressExporter;
+import com.example.cards.data.transfer.ProgressFormat;
+import com.example.cards.data.transfer.ProgressImporter;
 import com.example.cards.util.ThemeHelper;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.switchmaterial.SwitchMaterial;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
 /**
  * SettingsActivity
  *
  * Screen that allows the user to:
  * - Toggle the application theme (light / dark).
- * - Reset all application data (clear main and per-deck databases).
+ * - Choose the translation language of the decks (English / Russian).
+ * - Turn reverse study (translation → Korean) on or off ({@link CardDirection}).
+ * - Export study progress to a file and import it again (any device).
+ * - Create a deck from a CSV / TSV file ({@link DeckFileImporter}) or an
+ *   Anki package ({@link AnkiPackageImporter}); it shows up in the main
+ *   menu as soon as the import finishes.
+ * - Restore a deck from one of its automatic snapshots ({@link DeckSnapshots}).
+ * - Reset the study progress of all decks (words and translations stay).
+ * - Open the hidden diagnostics screen (long press on the fox).
  *
  * Responsibilities:
  * - Read and apply the saved theme mode from SharedPreferences.
  * - Persist theme changes through ThemeHelper.
- * - Provide a confirmation dialog before deleting all data.
- * - Clear all Room databases and show a confirmation message.
+ * - Run export / import in the background with a progress bar; files are
+ *   picked through the system document picker. A deck import can be
+ *   cancelled with a second tap on its button.
+ * - Provide a confirmation dialog before deleting all progress.
+ * - Reset progress in place ({@link DeckReset}) and show a confirmation message.
  */
 public class SettingsActivity extends AppCompatActivity {
 
@@ -35,6 +76,24 @@ public class SettingsActivity extends AppCompatActivity {
     // Key used for storing the current theme mode.
     private static final String KEY_THEME  = "theme_mode";
 
+    // Progress bar shown while an export / import runs.
+    private ProgressBar progressTransfer;
+
+    // "Import deck" button; doubles as "Cancel import" while one runs.
+    private MaterialButton btnImportDeck;
+    // Cancels the running deck import; null when none runs.
+    @Nullable
+    private CancellationSignal deckImport;
+
+    // System document pickers for the progress file.
+    private final ActivityResultLauncher<String> exportLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("application/octet-stream"), this::exportTo);
+    private final ActivityResultLauncher<String[]> importLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), this::importFrom);
+    // System document picker for a CSV / TSV / Anki deck file.
+    private final ActivityResultLauncher<String[]> deckLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), this::importDeckFrom);
+
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         // Apply theme (light/dark) from preferences before inflating layout.
@@ -48,7 +107,17 @@ public class SettingsActivity extends AppCompatActivity {
 
         // Theme switch: toggles between light and dark mode.
         SwitchMaterial switchTheme = findViewById(R.id.switch_theme);
-        // "Reset DB" button: clears all app data.
+        // Translation switch: checked = Russian, unchecked = English.
+        SwitchMaterial switchTranslation = findViewById(R.id.switch_translation);
+        // Reverse study switch: checked = cards are also asked back → front.
+        SwitchMaterial switchReverse = findViewById(R.id.switch_reverse);
+        // Progress export / import buttons.
+        MaterialButton btnExport = findViewById(R.id.btn_export_progress);
+        MaterialButton btnImport = findViewById(R.id.btn_import_progress);
+        btnImportDeck = findViewById(R.id.btn_import_deck);
+        MaterialButton btnRestore = findViewById(R.id.btn_restore_snapshot);
+        progressTransfer = findViewById(R.id.progress_transfer);
+        // "Reset DB" button: clears the study progress of all decks.
         MaterialButton btnResetDb = findViewById(R.id.btn_reset_db);
 
         // Initial switch state based on stored theme preference.
@@ -65,64 +134,271 @@ public class SettingsActivity extends AppCompatActivity {
             recreate();
         });
 
-        // Click listener for "Reset all data" button.
+        // Translation language: open decks switch their translations in the
+        // background, the others when next opened; study progress is kept.
+        switchTranslation.setChecked(LanguagePacks.RUS.equals(LanguagePacks.current(this)));
+        switchTranslation.setOnCheckedChangeListener((buttonView, isChecked) ->
+                LanguagePacks.setCurrent(this, isChecked ? LanguagePacks.RUS : LanguagePacks.ENG));
+
+        // Reverse study: due counts change with it, so the widget summary is
+        // recomputed.
+        switchReverse.setChecked(CardDirection.isReverseEnabled(this));
+        switchReverse.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            CardDirection.setReverseEnabled(this, isChecked);
+            refreshDueSummaries();
+        });
+
+        // Export: suggest a dated file name; import: any file.
+        btnExport.setOnClickListener(v -> exportLauncher.launch("cards-progress-"
+                + new SimpleDateFormat("yyyyMMdd", Locale.US).format(new Date())
+                + ProgressFormat.EXTENSION));
+        btnImport.setOnClickListener(v -> importLauncher.launch(new String[] { "*/*" }));
+        btnImportDeck.setOnClickListener(v -> {
+            if (deckImport != null) {
+                deckImport.cancel();
+            } else {
+                deckLauncher.launch(new String[] { "text/*", "application/*" });
+            }
+        });
+        btnRestore.setOnClickListener(v -> showSnapshots());
+
+        // Click listener for "Reset all progress" button.
         btnResetDb.setOnClickListener(v -> {
-            // Show confirmation dialog before deleting all databases.
+            // Show confirmation dialog before clearing all progress.
             new MaterialAlertDialogBuilder(this)
                     .setTitle("Data reset")
-                    .setMessage("Delete progress and clear all databases?")
-                    .setPositiveButton("Yes", (dialog, which) -> resetAllDatabases())
+                    .setMessage("Delete the study progress of all decks?")
+                    .setPositiveButton("Yes", (dialog, which) -> resetAllProgress())
                     .setNegativeButton("Cancel", null)
                     .show();
         });
+
+        // Hidden entry: long press on the fox opens the diagnostics screen.
+        findViewById(R.id.ivFox).setOnLongClickListener(v -> {
+            startActivity(new Intent(this, DiagnosticsActivity.class));
+            return true;
+        });
     }
 
     /**
-     * Performs a full reset of all application data:
-     * 1. Clears all tables in the main Room database (cards.db).
-     * 2. Deletes the main database file if it exists.
-     * 3. Deletes all per-deck databases whose names start with "cards_deck_".
+     * Writes all progress to the chosen document on the BACKGROUND lane.
      *
-     * This work is done in a background thread and a confirmation Toast is
-     * shown on the main thread when the reset completes.
+     * @param uri document created by the picker, or null if cancelled
      */
-    private void resetAllDatabases() {
-        new Thread(() -> {
-            Context ctx = getApplicationContext();
+    private void exportTo(@Nullable Uri uri) {
+        if (uri == null) return;
+        Context ctx = getApplicationContext();
+        showTransferProgress(0, 1);
+        DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, null, this, () -> {
+            try (OutputStream out = ctx.getContentResolver().openOutputStream(uri)) {
+                if (out == null) return "Export failed: cannot open file";
+                ProgressExporter.Result r = ProgressExporter.export(ctx, out, this::postTransferProgress);
+                return "Exported " + r.decks + " decks (" + r.records + " records)";
+            } catch (IOException e) {
+                return "Export failed: " + e.getMessage();
+            }
+        }, this::onTransferDone);
+    }
 
-            // 1. Clear main Room database (cards.db) tables.
-            try {
-                AppDatabase db = AppDatabase.getInstance(ctx);
-                db.clearAllTables();
-            } catch (Exception e) {
-                e.printStackTrace();
+    /**
+     * Merges progress from the chosen document on the BACKGROUND lane.
+     *
+     * @param uri document picked by the user, or null if cancelled
+     */
+    private void importFrom(@Nullable Uri uri) {
+        if (uri == null) return;
+        Context ctx = getApplicationContext();
+        showTransferProgress(0, 1);
+        DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, null, this, () -> {
+            try (InputStream in = ctx.getContentResolver().openInputStream(uri)) {
+                if (in == null) return "Import failed: cannot open file";
+                ProgressImporter.Result r = ProgressImporter.importFrom(ctx, in, this::postTransferProgress);
+                return "Imported " + r.decks + " decks: " + r.reviews + " reviews"
+                        + (r.skipped > 0 ? ", " + r.skipped + " skipped" : "");
+            } catch (IOException e) {
+                return "Import failed: " + e.getMessage();
             }
+        }, this::onTransferDone);
+    }
 
-            // 2. Optionally delete the main database file itself.
-            try {
-                ctx.deleteDatabase("cards.db");
-            } catch (Exception e) {
-                e.printStackTrace();
+    /**
+     * Creates a deck from the chosen document on the BACKGROUND lane: an
+     * Anki package (after asking whether to keep its scheduling) or a
+     * CSV / TSV file. The deck is titled after the file name.
+     *
+     * @param uri document picked by the user, or null if cancelled
+     */
+    private void importDeckFrom(@Nullable Uri uri) {
+        if (uri == null || deckImport != null) return;
+        String name = "deck";
+        long size = -1;
+        try (Cursor c = getContentResolver().query(uri,
+                new String[] { OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE }, null, null, null)) {
+            if (c != null && c.moveToFirst()) {
+                if (!c.isNull(0)) name = c.getString(0);
+                if (!c.isNull(1)) size = c.getLong(1);
+            }
+        }
+        String fileName = name;
+        long totalBytes = size;
+        int dot = fileName.lastIndexOf('.');
+        String title = dot > 0 ? fileName.substring(0, dot) : fileName;
+
+        if (AnkiPackageImporter.isPackage(fileName)) {
+            new MaterialAlertDialogBuilder(this)
+                    .setTitle("Keep Anki scheduling?")
+                    .setMessage("Cards you already studied in Anki keep their intervals and due dates. "
+                            + "Otherwise every card starts as new.")
+                    .setPositiveButton("Keep", (d, w) -> importAnki(uri, title, fileName, true))
+                    .setNegativeButton("Start fresh", (d, w) -> importAnki(uri, title, fileName, false))
+                    .show();
+            return;
+        }
+
+        Context ctx = getApplicationContext();
+        CancellationSignal signal = new CancellationSignal();
+        deckImport = signal;
+        btnImportDeck.setText(R.string.settings_cancel_import);
+        showTransferProgress(0, 1);
+        DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, null, this, () -> {
+            try (InputStream in = ctx.getContentResolver().openInputStream(uri)) {
+                if (in == null) return "Import failed: cannot open file";
+                DeckFileImporter.Result r = DeckFileImporter.importFrom(ctx, in, title, fileName,
+                        totalBytes, this::postTransferProgress, signal);
+                return "Deck \"" + r.title + "\" created: " + r.cards + " cards"
+                        + (r.duplicates > 0 ? ", " + r.duplicates + " duplicates" : "")
+                        + (r.skipped > 0 ? ", " + r.skipped + " skipped" : "");
+            } catch (OperationCanceledException e) {
+                return "Import cancelled";
+            } catch (IOException e) {
+                return "Import failed: " + e.getMessage();
+            }
+        }, this::onDeckImportDone);
+    }
+
+    /**
+     * Creates a deck from an Anki package on the BACKGROUND lane.
+     */
+    private void importAnki(Uri uri, String title, String fileName, boolean withScheduling) {
+        if (deckImport != null) return;
+        Context ctx = getApplicationContext();
+        CancellationSignal signal = new CancellationSignal();
+        deckImport = signal;
+        btnImportDeck.setText(R.string.settings_cancel_import);
+        showTransferProgress(0, 1);
+        DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, null, this, () -> {
+            try (InputStream in = ctx.getContentResolver().openInputStream(uri)) {
+                if (in == null) return "Import failed: cannot open file";
+                AnkiPackageImporter.Result r = AnkiPackageImporter.importFrom(ctx, in, title, fileName,
+                        withScheduling, this::postTransferProgress, signal);
+                return "Deck \"" + r.title + "\" created: " + r.cards + " cards"
+                        + (r.states > 0 ? ", " + r.states + " with Anki scheduling" : "")
+                        + (r.duplicates > 0 ? ", " + r.duplicates + " duplicates" : "")
+                        + (r.skipped > 0 ? ", " + r.skipped + " skipped" : "")
+                        + " (" + r.notesPerSecond() + " notes/s)";
+            } catch (OperationCanceledException e) {
+                return "Import cancelled";
+            } catch (IOException e) {
+                return "Import failed: " + e.getMessage();
+            }
+        }, this::onDeckImportDone);
+    }
+
+    private void onDeckImportDone(String message) {
+        deckImport = null;
+        btnImportDeck.setText(R.string.settings_import_deck);
+        onTransferDone(message);
+    }
+
+    /**
+     * Lists the snapshots of all decks; picking one asks for confirmation
+     * and restores it.
+     */
+    private void showSnapshots() {
+        Context ctx = getApplicationContext();
+        DbScheduler.get().submit(DbScheduler.Lane.READ, null, this,
+                () -> DeckSnapshots.listAll(ctx), snapshots -> {
+            if (snapshots.isEmpty()) {
+                Toast.makeText(this, "No snapshots yet", Toast.LENGTH_SHORT).show();
+                return;
             }
+            DateFormat fmt = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT);
+            String[] labels = new String[snapshots.size()];
+            for (int i = 0; i < labels.length; i++) {
+                DeckSnapshots.Snapshot s = snapshots.get(i);
+                labels[i] = "Deck " + s.deckId + " \u00b7 " + fmt.format(new Date(s.createdAt));
+            }
+            new MaterialAlertDialogBuilder(this)
+                    .setTitle(R.string.settings_restore_snapshot)
+                    .setItems(labels, (d, which) -> confirmRestore(snapshots, which, labels[which]))
+                    .show();
+        });
+    }
+
+    private void confirmRestore(List<DeckSnapshots.Snapshot> snapshots, int which, String label) {
+        new MaterialAlertDialogBuilder(this)
+                .setTitle("Restore " + label + "?")
+                .setMessage("Progress made in this deck since then will be lost.")
+                .setPositiveButton("Restore", (dialog, w) -> restore(snapshots.get(which)))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
 
-            // 3. Delete all deck-specific databases (cards_deck_*.db).
+    /**
+     * Restores a snapshot on the BACKGROUND lane, after the deck's queued writes.
+     */
+    private void restore(DeckSnapshots.Snapshot s) {
+        Context ctx = getApplicationContext();
+        DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, DbProvider.peek(s.deckId), this, () -> {
             try {
-                String[] dbNames = ctx.databaseList();
-                if (dbNames != null) {
-                    for (String name : dbNames) {
-                        if (name != null && name.startsWith("cards_deck_")) {
-                            ctx.deleteDatabase(name);
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
+                DeckSnapshots.restore(ctx, s);
+                return "Deck " + s.deckId + " restored";
+            } catch (IOException e) {
+                return "Restore failed: " + e.getMessage();
+            }
+        }, this::onTransferDone);
+    }
+
+    private void postTransferProgress(long done, long total) {
+        runOnUiThread(() -> showTransferProgress(done, total));
+    }
+
+    private void showTransferProgress(long done, long total) {
+        progressTransfer.setVisibility(View.VISIBLE);
+        progressTransfer.setProgress(total > 0 ? (int) (1000 * Math.min(done, total) / total) : 0);
+    }
+
+    private void onTransferDone(String message) {
+        progressTransfer.setVisibility(View.GONE);
+        Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+    }
+
+    /**
+     * Recomputes the due summary of every installed deck on the BACKGROUND
+     * lane (the enabled study directions changed).
+     */
+    private void refreshDueSummaries() {
+        Context ctx = getApplicationContext();
+        DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, null, null, () -> {
+            for (long deckId : DbProvider.installedDeckIds(ctx)) {
+                DueSummary.refresh(ctx, deckId, DbProvider.forDeck(ctx, deckId));
             }
+        });
+    }
 
-            // Notify user on the main thread that all data has been reset.
-            runOnUiThread(() ->
-                    Toast.makeText(this, "All data has been reset", Toast.LENGTH_SHORT).show()
-            );
-        }).start();
+    /**
+     * Clears the study progress of every installed deck in place
+     * ({@link DeckReset}); deck files, translations and open database handles
+     * are kept, and decks are reset in parallel. Deck snapshots are kept too,
+     * so a reset can be undone per deck from "Restore deck snapshot".
+     */
+    private void resetAllProgress() {
+        Context ctx = getApplicationContext();
+        // Global cards.db left by older versions; nothing opens it any more.
+        DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, null, null,
+                () -> ctx.deleteDatabase("cards.db"));
+        DeckReset.resetAll(this, this, decks ->
+                Toast.makeText(this, "Progress of " + decks + " decks has been reset",
+                        Toast.LENGTH_SHORT).show());
     }
 }
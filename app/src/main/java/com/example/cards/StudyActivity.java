@@ -1,18 +1,32 @@
 package com.example.cards;
 
+import android.content.res.ColorStateList;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
+import androidx.annotation.WorkerThread;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
+import androidx.core.text.PrecomputedTextCompat;
 
 import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.db.DbScheduler;
+import com.example.cards.data.maintenance.DeckMaintenance;
 import com.example.cards.data.model.Card;
+import com.example.cards.data.model.CardDirection;
+import com.example.cards.data.model.StudyCard;
 import com.example.cards.data.model.WordWithStats;
+import com.example.cards.data.quiz.DistractorIndex;
+import com.example.cards.diag.QueryMetrics;
 import com.example.cards.domain.ReviewRepository;
+import com.example.cards.domain.srs.QuizGrades;
+import com.example.cards.ui.text.TextLayoutCache;
+import com.example.cards.util.AppFonts;
 import com.example.cards.util.ThemeHelper;
 import com.google.android.material.appbar.MaterialToolbar;
 
@@ -26,16 +40,34 @@ import java.util.Random;
  * StudyActivity
  *
  * Runs a review session for a single deck:
- * - Loads only unlearned and not-excluded cards (CardDao.getSelection).
+ * - Loads unlearned and not-excluded cards that were studied before
+ *   (CardDao.getSelection) plus new cards within the daily new-card quota
+ *   (ReviewRepository.getNewCards). Opening a session writes nothing; a new
+ *   card gets its review state on its first grade.
+ * - Studies every enabled direction ({@link CardDirection}): with reverse
+ *   study on, a card is asked front → back and back → front as two
+ *   independent virtual cards ({@link StudyCard}), each with its own
+ *   schedule.
  * - Cycles through this selection in random order.
  * - When the queue ends but there are still unlearned cards, the selection is loaded again
  *   and shuffled (infinite cycle until all cards become learned).
- * - When all cards are learned, shows a final message.
+ * - When all cards are learned, shows a final message; when only the quota
+ *   holds new cards back, says so instead.
+ * - Front and back of the next few cards are precomputed in the background
+ *   ({@link TextLayoutCache}) while the current card is shown, so showing
+ *   a card or its answer does not measure text on the main thread.
+ * - Quiz mode ({@link #EXTRA_QUIZ}): instead of self-grading, the prompt
+ *   comes with {@link DistractorIndex#CHOICES} answers, the wrong ones taken
+ *   from the deck's precomputed {@link DistractorIndex}; the tap is graded
+ *   by {@link QuizGrades} (right or wrong, and how fast).
  */
 public class StudyActivity extends AppCompatActivity {
 
+    /** Intent extra: run the session as a multiple-choice quiz. */
+    public static final String EXTRA_QUIZ = "quiz";
+
     private ReviewRepository repo;
-    private final ArrayDeque<Card> queue = new ArrayDeque<>();
+    private final ArrayDeque<StudyCard> queue = new ArrayDeque<>();
 
     private Button btnShowTranslation, btnEasy, btnMedium, btnHard;
     private TextView tvWord, tvTranslation;
@@ -60,6 +92,23 @@ public class StudyActivity extends AppCompatActivity {
     private AppDatabase db;
     private long deckId = 1L;
 
+    // Cards after the current one whose text is kept precomputed.
+    private static final int PRECOMPUTE_AHEAD = 3;
+
+    // Quiz mode: choices, the deck's distractors (null until loaded), the
+    // question on screen and when it was shown.
+    private boolean quizMode;
+    private LinearLayout quizChoicesLayout;
+    private Button[] choiceButtons;
+    private ColorStateList choiceTint;
+    private DistractorIndex distractors;
+    private DistractorIndex.Question question;
+    private long questionShownAt;
+
+    // How long the right answer stays on screen after a quiz tap.
+    private static final long QUIZ_RIGHT_FEEDBACK_MS = 600L;
+    private static final long QUIZ_WRONG_FEEDBACK_MS = 1500L;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         ThemeHelper.applyThemeFromPrefs(this);
@@ -76,12 +125,22 @@ public class StudyActivity extends AppCompatActivity {
         btnDifficultyLayout = findViewById(R.id.btnDifficultyLayout);
         foxImage            = findViewById(R.id.foxImage);
         bubbleText          = findViewById(R.id.bubbleText);
+        quizChoicesLayout   = findViewById(R.id.quizChoicesLayout);
+        choiceButtons       = new Button[] {
+                findViewById(R.id.btnChoice1), findViewById(R.id.btnChoice2),
+                findViewById(R.id.btnChoice3), findViewById(R.id.btnChoice4) };
+        choiceTint          = choiceButtons[0].getBackgroundTintList();
         MaterialToolbar toolbar = findViewById(R.id.toolbar);
 
+        // Card typeface: cached, loaded off the main thread
+        AppFonts.apply(tvWord);
+        AppFonts.apply(tvTranslation);
+
         toolbar.setNavigationOnClickListener(v -> finish());
 
         // ----- Extras -----
         deckId = getIntent().getLongExtra(DeckActivity.EXTRA_DECK_ID, 1L);
+        quizMode = getIntent().getBooleanExtra(EXTRA_QUIZ, false);
 
         // ----- DB/Repo -----
         db = AppDatabase.DbFactory.forDeck(this, deckId);
@@ -95,6 +154,7 @@ public class StudyActivity extends AppCompatActivity {
 
         // Load first selection
         loadSelection();
+        if (quizMode) loadDistractors();
 
         // ---- Buttons ----
 
@@ -124,10 +184,15 @@ public class StudyActivity extends AppCompatActivity {
         btnMedium.setOnClickListener(okListener);
         btnEasy.setOnClickListener(okListener);
 
+        for (int i = 0; i < choiceButtons.length; i++) {
+            int choice = i;
+            choiceButtons[i].setOnClickListener(v -> answerQuiz(choice));
+        }
+
         btnShowTranslation.setOnClickListener(v -> {
-            Card c = queue.peekFirst();
+            StudyCard c = queue.peekFirst();
             if (c == null) return;
-            tvTranslation.setText(c.getBack());
+            TextLayoutCache.get().setText(tvTranslation, c.getAnswer());
             showAnswerState();
             showRandomPhrase();
         });
@@ -137,58 +202,103 @@ public class StudyActivity extends AppCompatActivity {
     // Screen states
     // ---------------------------
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Keeps database maintenance from running during a session.
+        DeckMaintenance.studyStarted();
+    }
+
+    @Override
+    protected void onStop() {
+        DeckMaintenance.studyStopped();
+        super.onStop();
+    }
+
     private void showQuestionState() {
         tvTranslation.setVisibility(View.GONE);
         btnDifficultyLayout.setVisibility(View.GONE);
+        quizChoicesLayout.setVisibility(View.GONE);
         btnShowTranslation.setVisibility(View.VISIBLE);
     }
 
     private void showAnswerState() {
         tvTranslation.setVisibility(View.VISIBLE);
         btnDifficultyLayout.setVisibility(View.VISIBLE);
+        quizChoicesLayout.setVisibility(View.GONE);
         btnShowTranslation.setVisibility(View.GONE);
     }
 
+    private void showQuizState(DistractorIndex.Question q) {
+        tvTranslation.setVisibility(View.GONE);
+        btnDifficultyLayout.setVisibility(View.GONE);
+        btnShowTranslation.setVisibility(View.GONE);
+        quizChoicesLayout.setVisibility(View.VISIBLE);
+        for (int i = 0; i < choiceButtons.length; i++) {
+            choiceButtons[i].setText(q.choices[i]);
+            choiceButtons[i].setBackgroundTintList(choiceTint);
+            choiceButtons[i].setEnabled(true);
+        }
+    }
+
     // ---------------------------
     // Data loading / selection
     // ---------------------------
 
     /**
-     * Loads a selection of unlearned & non-excluded cards for the deck.
-     * If there are no such cards, shows a final "all learned" message.
+     * Loads a selection of unlearned & non-excluded cards for the deck: the
+     * studied ones plus today's new cards, in every enabled direction.
+     * If there are no such cards, shows a final "all learned" message (or
+     * that today's new cards are used up).
      * If there are cards, shuffles them and starts (or restarts) the cycle.
      */
     private void loadSelection() {
-        AppDatabase.databaseExecutor.execute(() -> {
+        // Text styles as of now (the card typeface may still be loading).
+        PrecomputedTextCompat.Params wordParams = TextLayoutCache.paramsOf(tvWord);
+        PrecomputedTextCompat.Params translationParams = TextLayoutCache.paramsOf(tvTranslation);
+        int[] directions = CardDirection.enabled(this);
+        // Read-only: new cards get their review_state on the first grade.
+        DbScheduler.get().submit(DbScheduler.Lane.READ, db, this, () -> {
             long now = System.currentTimeMillis();
 
-            // Ensure review_state rows exist. This does not affect selection filters.
-            db.reviewDao().seedReviewState(deckId, now);
-
-            List<WordWithStats> selection = db.cardDao().getSelection(deckId, 800);
-
-            // Convert to Card and shuffle
-            List<Card> cards = new ArrayList<>();
-            if (selection != null && !selection.isEmpty()) {
-                Collections.shuffle(selection);
+            // Studied cards of each direction, converted to virtual cards
+            List<StudyCard> cards = new ArrayList<>();
+            for (int direction : directions) {
+                List<WordWithStats> selection = QueryMetrics.measure("CardDao.getSelection",
+                        () -> db.cardDao().getSelection(deckId, direction, 800));
+                if (selection == null) continue;
                 for (WordWithStats w : selection) {
                     Card c = new Card();
                     c.id = w.cardId;
                     c.deckId = deckId;
                     c.front = (w.front != null) ? w.front : "";
                     c.back  = (w.back  != null) ? w.back  : "";
-                    cards.add(c);
+                    cards.add(new StudyCard(c, direction));
                 }
             }
 
+            // Add today's new cards and shuffle
+            cards.addAll(QueryMetrics.measure("ReviewDao.getNewCards",
+                    () -> repo.getNewCards(deckId, directions, now, ReviewRepository.DEFAULT_NEW_PER_DAY)));
+            boolean quotaReached = cards.isEmpty() && repo.hasNewCards(deckId, directions);
+            if (!cards.isEmpty()) {
+                Collections.shuffle(cards);
+                // The first cards' text, together with the data.
+                precompute(cards.subList(0, Math.min(cards.size(), 1 + PRECOMPUTE_AHEAD)),
+                        wordParams, translationParams);
+            }
+
             runOnUiThread(() -> {
                 queue.clear();
                 if (cards.isEmpty()) {
-                    // No unlearned & non-excluded cards left – stop the cycle.
-                    tvWord.setText("All cards are learned");
+                    // No unlearned & non-excluded cards left for today – stop the cycle.
+                    tvWord.setText(quotaReached
+                            ? "No more new cards today"
+                            : "All cards are learned");
                     tvTranslation.setVisibility(View.GONE);
                     btnDifficultyLayout.setVisibility(View.GONE);
                     btnShowTranslation.setVisibility(View.GONE);
+                    quizChoicesLayout.setVisibility(View.GONE);
                     setButtonsEnabled(false);
                 } else {
                     queue.addAll(cards);
@@ -204,17 +314,114 @@ public class StudyActivity extends AppCompatActivity {
      * a new selection is loaded (cycle continues).
      */
     private void showNext() {
-        Card c = queue.peekFirst();
+        StudyCard c = queue.peekFirst();
         if (c == null) {
             // Queue ended: reload selection (infinite cycle for unlearned words).
             loadSelection();
             return;
         }
 
-        tvWord.setText(c.getFront());
+        if (quizMode && distractors == null) {
+            // Shown again once the distractors are loaded.
+            tvWord.setText("Preparing quiz…");
+            tvTranslation.setVisibility(View.GONE);
+            btnShowTranslation.setVisibility(View.GONE);
+            quizChoicesLayout.setVisibility(View.GONE);
+            return;
+        }
+
+        TextLayoutCache.get().setText(tvWord, c.getPrompt());
         tvTranslation.setText("");
-        showQuestionState();
-        setButtonsEnabled(true);
+        // A deck with too few distinct answers falls back to self-grading.
+        question = quizMode ? distractors.question(c, rnd) : null;
+        if (question != null) {
+            showQuizState(question);
+            questionShownAt = SystemClock.uptimeMillis();
+        } else {
+            showQuestionState();
+            setButtonsEnabled(true);
+        }
+        precomputeAhead();
+    }
+
+    /**
+     * Loads (or builds) the deck's distractor index, then shows the first
+     * question if the selection is already waiting for it.
+     */
+    private void loadDistractors() {
+        DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, null, this,
+                () -> DistractorIndex.get(getApplicationContext(), deckId, db),
+                index -> {
+                    distractors = index;
+                    if (!queue.isEmpty()) showNext();
+                });
+    }
+
+    /**
+     * Grades a quiz tap: marks the right choice (and the wrong one tapped),
+     * keeps it on screen for a moment, then moves on.
+     */
+    private void answerQuiz(int choice) {
+        DistractorIndex.Question q = question;
+        if (q == null) return;
+        question = null;
+        boolean correct = choice == q.correct;
+        int grade = QuizGrades.grade(correct, SystemClock.uptimeMillis() - questionShownAt);
+
+        for (Button b : choiceButtons) b.setEnabled(false);
+        choiceButtons[q.correct].setBackgroundTintList(
+                ColorStateList.valueOf(ContextCompat.getColor(this, R.color.easyColor)));
+        if (correct) {
+            hardClicks = 0;
+            switchFoxToNormal();
+            showRandomPhrase();
+        } else {
+            choiceButtons[choice].setBackgroundTintList(
+                    ColorStateList.valueOf(ContextCompat.getColor(this, R.color.hardColor)));
+            TextLayoutCache.get().setText(tvTranslation, q.card.getAnswer());
+            tvTranslation.setVisibility(View.VISIBLE);
+            // Same support as three Hard answers in a row.
+            hardClicks++;
+            if (hardClicks >= 3) {
+                hardClicks = 0;
+                switchFoxToSupport();
+                setBubbleText(hard3Phrase);
+            } else {
+                showRandomPhrase();
+            }
+        }
+        gradeAndNext(grade, correct ? QUIZ_RIGHT_FEEDBACK_MS : QUIZ_WRONG_FEEDBACK_MS);
+    }
+
+    /**
+     * Queues the text of the current card (its answer) and of the cards
+     * after it for precomputing.
+     */
+    private void precomputeAhead() {
+        List<StudyCard> next = new ArrayList<>(1 + PRECOMPUTE_AHEAD);
+        for (StudyCard c : queue) {
+            if (next.size() == 1 + PRECOMPUTE_AHEAD) break;
+            next.add(c);
+        }
+        if (next.isEmpty()) return;
+        // Current styles: also picks up the card typeface once it is applied.
+        PrecomputedTextCompat.Params wordParams = TextLayoutCache.paramsOf(tvWord);
+        PrecomputedTextCompat.Params translationParams = TextLayoutCache.paramsOf(tvTranslation);
+        TextLayoutCache.get().prefetch(() -> precompute(next, wordParams, translationParams));
+    }
+
+    @WorkerThread
+    private static void precompute(List<StudyCard> cards, PrecomputedTextCompat.Params wordParams,
+                                   PrecomputedTextCompat.Params translationParams) {
+        List<String> fronts = new ArrayList<>(cards.size());
+        List<String> backs = new ArrayList<>(cards.size());
+        for (StudyCard c : cards) {
+            fronts.add(c.getPrompt());
+            backs.add(c.getAnswer());
+        }
+        TextLayoutCache layouts = TextLayoutCache.get();
+        layouts.precomputeAll(fronts, wordParams);
+        layouts.precomputeAll(backs, translationParams);
     }
 
     private void setButtonsEnabled(boolean enabled) {
@@ -228,16 +435,29 @@ public class StudyActivity extends AppCompatActivity {
      * Applies grade, updates SM-2 state and moves to the next card.
      */
     private void gradeAndNext(int grade) {
-        Card current = queue.pollFirst();
+        gradeAndNext(grade, 0L);
+    }
+
+    /**
+     * Like {@link #gradeAndNext(int)}, keeping the current card on screen for
+     * at least {@code delayMillis}; the grade is saved right away.
+     */
+    private void gradeAndNext(int grade, long delayMillis) {
+        StudyCard current = queue.pollFirst();
         if (current == null) {
             showNext();
             return;
         }
 
-        AppDatabase.databaseExecutor.execute(() -> {
+        // The grade is saved even if the screen is closed meanwhile.
+        DbScheduler.get().submit(DbScheduler.Lane.WRITE, db, this, () -> {
             long now = System.currentTimeMillis();
-            repo.reviewAndSchedule(current.getId(), grade, now);
-            runOnUiThread(this::showNext);
+            repo.reviewAndSchedule(current.getId(), current.direction, grade, now);
+            if (delayMillis > 0) {
+                tvWord.postDelayed(this::showNext, delayMillis);
+            } else {
+                runOnUiThread(this::showNext);
+            }
         });
     }
 
@@ -13,10 +13,16 @@ import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.core.text.PrecomputedTextCompat;
 
+import com.example.cards.data.content.DeckContent;
 import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.db.DbScheduler;
 import com.example.cards.data.model.WordWithStats;
+import com.example.cards.ui.text.TextLayoutCache;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -29,7 +35,12 @@ import java.util.List;
  * - a "learned" checkbox that can be toggled by the user.
  *
  * Responsibilities:
- * - Bind word data (front/back text) to item views.
+ * - Bind word data (front/back text) to item views. Rows loaded without
+ *   text take it from the memory-mapped {@link DeckContent}, decoded only
+ *   for the rows actually shown.
+ * - Set row text from {@link TextLayoutCache}: the first rows are
+ *   precomputed together with the data load ({@link #precompute}), later
+ *   ones are prefetched in the background a screenful ahead of scrolling.
  * - Reflect and persist the "learned" state in the database when the
  *   checkbox is toggled.
  * - Notify an optional callback when the learned state changes, so the
@@ -53,6 +64,34 @@ public class WordAdapter extends ArrayAdapter<WordWithStats> {
     @Nullable
     private final OnLearnedChanged onLearnedChanged;
 
+    // Rows precomputed with the data load; roughly the first screenful.
+    public static final int FIRST_ROWS = 24;
+    // How far ahead of the last bound row text is prefetched.
+    private static final int PREFETCH_AHEAD = 24;
+
+    // Source of front/back text for rows loaded without it; null = SQLite text only.
+    @Nullable
+    private volatile DeckContent content;
+
+    // Text style of the row views; null until the first row is bound.
+    @Nullable
+    private RowParams rowParams;
+    // Rows below this position are prefetched (or queued).
+    private int prefetchedUpTo;
+
+    /**
+     * Text styles of a row's front and back views.
+     */
+    public static final class RowParams {
+        final PrecomputedTextCompat.Params front;
+        final PrecomputedTextCompat.Params back;
+
+        RowParams(PrecomputedTextCompat.Params front, PrecomputedTextCompat.Params back) {
+            this.front = front;
+            this.back = back;
+        }
+    }
+
     /**
      * Creates an adapter without a learned-state callback.
      */
@@ -107,9 +146,11 @@ public class WordAdapter extends ArrayAdapter<WordWithStats> {
         WordWithStats w = getItem(position);
         if (w == null) return convertView;
 
-        // Bind front/back text with null safety.
-        h.tvFront.setText(w.front == null ? "" : w.front);
-        h.tvBack.setText(w.back == null ? "" : w.back);
+        // Bind front/back text with null safety; precomputed when cached.
+        TextLayoutCache layouts = TextLayoutCache.get();
+        layouts.setText(h.tvFront, textOf(w.front, w.cardId, true, content));
+        layouts.setText(h.tvBack, textOf(w.back, w.cardId, false, content));
+        prefetchAfter(position, h);
 
         // Remove previous listener before updating checked state to avoid
         // triggering it when we call setChecked().
@@ -120,7 +161,7 @@ public class WordAdapter extends ArrayAdapter<WordWithStats> {
         // checkbox is toggled.
         h.cbLearned.setOnCheckedChangeListener((btn, checked) -> {
             final long cardId = w.cardId;
-            AppDatabase.databaseExecutor.execute(() -> {
+            DbScheduler.get().submit(DbScheduler.Lane.WRITE, db, null, () -> {
                 try {
                     // Update both the card and its review state in the DB.
                     db.cardDao().setLearnedBoth(cardId, checked);
@@ -155,6 +196,83 @@ public class WordAdapter extends ArrayAdapter<WordWithStats> {
         return convertView;
     }
 
+    /**
+     * Sets the mapped deck content used for rows without text.
+     */
+    public void setContent(@Nullable DeckContent content) {
+        this.content = content;
+    }
+
+    /**
+     * Text styles of this adapter's rows, taken from a row inflated for the
+     * purpose; used to precompute text before the adapter exists.
+     */
+    @NonNull
+    public static RowParams rowParams(@NonNull Context context, @NonNull ViewGroup parent) {
+        View row = LayoutInflater.from(context).inflate(R.layout.item_word, parent, false);
+        return new RowParams(
+                TextLayoutCache.paramsOf(row.findViewById(R.id.tvFront)),
+                TextLayoutCache.paramsOf(row.findViewById(R.id.tvBack)));
+    }
+
+    /**
+     * Precomputes the text of the first {@code count} rows. Call on the
+     * thread that loaded them.
+     */
+    @WorkerThread
+    public static void precompute(@NonNull List<WordWithStats> rows, @Nullable DeckContent content,
+                                  @NonNull RowParams params, int count) {
+        List<String> fronts = new ArrayList<>();
+        List<String> backs = new ArrayList<>();
+        collect(rows, 0, Math.min(count, rows.size()), content, fronts, backs);
+        TextLayoutCache layouts = TextLayoutCache.get();
+        layouts.precomputeAll(fronts, params.front);
+        layouts.precomputeAll(backs, params.back);
+    }
+
+    // Queues the rows after position for precomputing once the list nears them.
+    private void prefetchAfter(int position, VH h) {
+        if (rowParams == null) {
+            rowParams = new RowParams(TextLayoutCache.paramsOf(h.tvFront),
+                    TextLayoutCache.paramsOf(h.tvBack));
+        }
+        int end = Math.min(getCount(), position + 1 + PREFETCH_AHEAD);
+        // Prefetch in batches: wait until half a batch is left (or the list ends).
+        if (end <= prefetchedUpTo
+                || (end - prefetchedUpTo < PREFETCH_AHEAD / 2 && end < getCount())) return;
+        int from = Math.max(prefetchedUpTo, position + 1);
+        List<WordWithStats> batch = new ArrayList<>(end - from);
+        for (int i = from; i < end; i++) batch.add(getItem(i));
+        prefetchedUpTo = end;
+
+        DeckContent c = content;
+        RowParams params = rowParams;
+        // Mapped text is decoded on the prefetch thread too.
+        TextLayoutCache.get().prefetch(() -> precompute(batch, c, params, batch.size()));
+    }
+
+    private static void collect(List<WordWithStats> rows, int from, int to, @Nullable DeckContent content,
+                                List<String> fronts, List<String> backs) {
+        for (int i = from; i < to; i++) {
+            WordWithStats w = rows.get(i);
+            fronts.add(textOf(w.front, w.cardId, true, content));
+            backs.add(textOf(w.back, w.cardId, false, content));
+        }
+    }
+
+    /**
+     * Returns the row's own text if it has one, otherwise the text from the
+     * mapped deck content, otherwise "".
+     */
+    @NonNull
+    private static String textOf(@Nullable String own, long cardId, boolean front,
+                                 @Nullable DeckContent content) {
+        if (own != null) return own;
+        if (content == null) return "";
+        String mapped = front ? content.front(cardId) : content.back(cardId);
+        return mapped == null ? "" : mapped;
+    }
+
     /**
      * Replaces the adapter's data set with a new list of WordWithStats.
      * Uses setNotifyOnChange(false) to control when the update is propagated,
@@ -165,6 +283,7 @@ public class WordAdapter extends ArrayAdapter<WordWithStats> {
     public void updateData(@Nullable List<WordWithStats> newData) {
         setNotifyOnChange(false);
         clear();
+        prefetchedUpTo = 0;
         if (newData != null && !newData.isEmpty()) addAll(newData);
         notifyDataSetChanged();
     }
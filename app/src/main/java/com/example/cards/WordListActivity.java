@@ -12,8 +12,13 @@ import android.widget.ListView;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.TooltipCompat;
 
+import com.example.cards.data.content.DeckContent;
 import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.db.DbScheduler;
+import com.example.cards.data.db.DeckAssets;
+import com.example.cards.data.db.LanguagePacks;
 import com.example.cards.data.model.WordWithStats;
+import com.example.cards.diag.QueryMetrics;
 import com.example.cards.util.ThemeHelper;
 import com.google.android.material.appbar.MaterialToolbar;
 
@@ -31,8 +36,12 @@ import java.util.Objects;
  *
  * Responsibilities:
  * - Resolve deckId from Intent extras and open the corresponding deck database.
- * - Load the initial list of words with statistics.
+ * - Load the initial list of words with statistics. When the deck's
+ *   memory-mapped content matches its database, only the statistics come
+ *   from SQLite and the text is decoded per visible row.
  * - Filter words on the fly when the user types into the search field.
+ * - Precompute the text of the first rows on the loading thread, so
+ *   binding them does not measure text on the main thread.
  * - Clean up adapter and tooltips on lifecycle changes.
  */
 public class WordListActivity extends AppCompatActivity {
@@ -41,6 +50,10 @@ public class WordListActivity extends AppCompatActivity {
     private AppDatabase db;
     private ListView listView;
     private WordAdapter adapter;
+    // Mapped word text of this deck; null until loaded or if it cannot be used.
+    private volatile DeckContent content;
+    // Last submitted search; cancelled when the query changes again.
+    private DbScheduler.Task searchTask;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -83,10 +96,21 @@ public class WordListActivity extends AppCompatActivity {
 
         EditText searchInput = findViewById(R.id.searchInput);
 
+        // Row text style, for precomputing text on the loading thread.
+        WordAdapter.RowParams rowParams = WordAdapter.rowParams(this, listView);
+
         // ----- Initial data load (no search query, show all words) -----
-        AppDatabase.databaseExecutor.execute(() -> {
+        DbScheduler.get().submit(DbScheduler.Lane.READ, db, this, () -> {
+            // Use the mapped content only if it describes this database's cards:
+            // known from the catalog checksum, else compared with SQLite.
+            DeckContent mapped = LanguagePacks.contentFor(WordListActivity.this, deckId);
+            if (mapped != null && (DeckAssets.isCurrent(WordListActivity.this, deckId)
+                    || mapped.matches(db.cardDao()))) {
+                content = mapped;
+            }
             // Load all words with stats for this deck.
-            List<WordWithStats> rows = db.cardDao().getWordsWithStatsAll();
+            List<WordWithStats> rows = loadAll();
+            WordAdapter.precompute(rows, content, rowParams, WordAdapter.FIRST_ROWS);
             runOnUiThread(() -> {
                 // Create adapter and set a callback to mark result OK when learned state changes.
                 adapter = new WordAdapter(
@@ -95,6 +119,7 @@ public class WordListActivity extends AppCompatActivity {
                         db,
                         () -> setResult(RESULT_OK)
                 );
+                adapter.setContent(content);
                 listView.setAdapter(adapter);
             });
         });
@@ -108,16 +133,20 @@ public class WordListActivity extends AppCompatActivity {
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
                 final String q = (s == null) ? "" : s.toString().trim();
-                AppDatabase.databaseExecutor.execute(() -> {
+                // A newer keystroke makes the previous search obsolete.
+                if (searchTask != null) searchTask.cancel();
+                searchTask = DbScheduler.get().submit(DbScheduler.Lane.READ, db, WordListActivity.this, () -> {
                     List<WordWithStats> data;
                     if (q.isEmpty()) {
                         // Empty query → show all words.
-                        data = db.cardDao().getWordsWithStatsAll();
+                        data = loadAll();
                     } else {
                         // Non-empty query → search within this deck by text.
                         // Uses cardDao().searchWords(deckId, queryString).
-                        data = db.cardDao().searchWords(deckId, q);
+                        data = QueryMetrics.measure("CardDao.searchWords",
+                                () -> db.cardDao().searchWords(deckId, q));
                     }
+                    WordAdapter.precompute(data, content, rowParams, WordAdapter.FIRST_ROWS);
                     runOnUiThread(() -> {
                         if (adapter != null) adapter.updateData(data);
                     });
@@ -126,6 +155,19 @@ public class WordListActivity extends AppCompatActivity {
         });
     }
 
+    /**
+     * Loads all words with stats; without text when the mapped content is in use.
+     * Must be called on a database thread.
+     */
+    private List<WordWithStats> loadAll() {
+        if (content != null) {
+            return QueryMetrics.measure("CardDao.getWordStatsAll",
+                    () -> db.cardDao().getWordStatsAll());
+        }
+        return QueryMetrics.measure("CardDao.getWordsWithStatsAll",
+                () -> db.cardDao().getWordsWithStatsAll());
+    }
+
     @Override
     protected void onPause() {
         // Clear all tooltips to avoid leaks when the activity is no longer visible.
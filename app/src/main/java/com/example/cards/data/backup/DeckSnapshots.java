@@ -0,0 +1,366 @@
+package com.example.cards.data.backup;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.room.InvalidationTracker;
+import androidx.room.RoomDatabase;
+
+import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.db.DbProvider;
+import com.example.cards.data.db.DbScheduler;
+import com.example.cards.data.db.LanguagePacks;
+import com.example.cards.data.history.ReviewArchive;
+import com.example.cards.diag.PerfTrace;
+import com.example.cards.repo.DeckProgressTracker;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DeckSnapshots
+ *
+ * Periodic online backups of the deck databases, kept in
+ * {@code files/snapshots/deck_<id>/} and restorable from Settings.
+ *
+ * Behavior:
+ * - {@link #start} schedules a check every {@link #INTERVAL_MS} while the
+ *   process lives. Only decks written since their last snapshot are copied:
+ *   {@link DbProvider} lets {@link #watch} observe every deck database it
+ *   builds, and a write marks the deck dirty in "app_settings" (so a write
+ *   just before the process dies is still backed up on the next launch).
+ * - Snapshots run on the BACKGROUND lane. On Android 11+ (SQLite 3.28+)
+ *   they use {@code VACUUM INTO} on a separate read-only connection: it reads
+ *   one consistent WAL snapshot while Room's writer keeps committing, so
+ *   grades are never delayed. Older SQLite has no online copy; there the
+ *   deck's writer slot is taken, the WAL is checkpointed and the main file
+ *   copied, so a grade submitted meanwhile waits for that copy.
+ * - Each file is written to a temp name and renamed when complete; the
+ *   newest {@link #KEEP} per deck are kept.
+ * - A snapshot records the deck's translation language and the length of
+ *   its {@link ReviewArchive}. Compaction runs on the same single BACKGROUND
+ *   thread, so both are captured at the same point; restoring cuts the
+ *   archive back so no review is counted twice.
+ * - {@link #restore} swaps the file atomically through
+ *   {@link DbProvider#replaceDeck} and reopens the cached Room instance.
+ */
+public final class DeckSnapshots {
+
+    private static final String TAG = "DeckSnapshots";
+
+    /** Snapshots kept per deck. */
+    public static final int KEEP = 3;
+
+    static final long INTERVAL_MS = TimeUnit.MINUTES.toMillis(15);
+    private static final long FIRST_DELAY_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final String DIR = "snapshots";
+    private static final String SUFFIX = ".db";
+
+    private static final String PREFS_NAME = "app_settings";
+    private static final String KEY_DIRTY = "snapshot_dirty_";
+
+    // Tables whose writes make a deck worth another snapshot.
+    private static final String[] WATCHED = {
+            "cards", "review_state", "review_log", "learned_state", "review_log_monthly"
+    };
+
+    // VACUUM INTO needs SQLite 3.27; Android 11 ships 3.28.
+    private static final boolean ONLINE_COPY = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R;
+
+    private static final Handler MAIN = new Handler(Looper.getMainLooper());
+    private static boolean started; // main thread only
+
+    /**
+     * One snapshot file. The name encodes its metadata:
+     * {@code <createdAt>-<lang>-<c|p>-<archiveLength>.db}.
+     */
+    public static final class Snapshot {
+        public final long deckId;
+        public final long createdAt;
+        /** Translation language written into the snapshot. */
+        public final String lang;
+        /** Whether that language's pack covered the whole deck. */
+        public final boolean complete;
+        /** Review archive length when the snapshot was taken. */
+        public final long archiveLength;
+        public final File file;
+
+        Snapshot(long deckId, long createdAt, String lang, boolean complete,
+                 long archiveLength, File file) {
+            this.deckId = deckId;
+            this.createdAt = createdAt;
+            this.lang = lang;
+            this.complete = complete;
+            this.archiveLength = archiveLength;
+            this.file = file;
+        }
+
+        String fileName() {
+            return createdAt + "-" + lang + "-" + (complete ? "c" : "p") + "-" + archiveLength + SUFFIX;
+        }
+
+        @Nullable
+        static Snapshot parse(long deckId, File file) {
+            String name = file.getName();
+            if (!name.endsWith(SUFFIX)) return null;
+            String[] parts = name.substring(0, name.length() - SUFFIX.length()).split("-");
+            if (parts.length != 4) return null;
+            try {
+                return new Snapshot(deckId, Long.parseLong(parts[0]), parts[1], "c".equals(parts[2]),
+                        Long.parseLong(parts[3]), file);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    private DeckSnapshots() {
+        // Utility class; no instances.
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static File deckDir(Context context, long deckId) {
+        return new File(new File(context.getFilesDir(), DIR), "deck_" + deckId);
+    }
+
+    // -------------------------------------------------------------------------
+    // Change tracking and scheduling
+    // -------------------------------------------------------------------------
+
+    /**
+     * Marks the deck dirty whenever one of its progress tables changes.
+     * Called by {@link DbProvider} for each database instance it builds.
+     */
+    public static void watch(@NonNull Context context, long deckId, @NonNull RoomDatabase db) {
+        Context app = context.getApplicationContext();
+        db.getInvalidationTracker().addObserver(new InvalidationTracker.Observer(WATCHED) {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                SharedPreferences p = prefs(app);
+                if (!p.getBoolean(KEY_DIRTY + deckId, true)) {
+                    p.edit().putBoolean(KEY_DIRTY + deckId, true).apply();
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts the periodic snapshot check; later calls do nothing.
+     */
+    @MainThread
+    public static void start(@NonNull Context context) {
+        if (started) return;
+        started = true;
+        Context app = context.getApplicationContext();
+        MAIN.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, null, null,
+                        () -> snapshotDue(app));
+                MAIN.postDelayed(this, INTERVAL_MS);
+            }
+        }, FIRST_DELAY_MS);
+    }
+
+    /**
+     * Snapshots every installed deck that changed since its last snapshot,
+     * or has none yet.
+     */
+    @WorkerThread
+    static void snapshotDue(@NonNull Context app) {
+        SharedPreferences p = prefs(app);
+        for (long deckId : DbProvider.installedDeckIds(app)) {
+            if (!p.getBoolean(KEY_DIRTY + deckId, true) && !list(app, deckId).isEmpty()) continue;
+
+            AppDatabase db = DbProvider.forDeck(app, deckId);
+            if (ONLINE_COPY) {
+                snapshot(app, deckId, db);
+            } else {
+                // The copy must not race a commit; take the deck's writer slot.
+                DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, db, null,
+                        () -> snapshot(app, deckId, db));
+            }
+        }
+    }
+
+    /**
+     * Takes one snapshot of a deck and rotates old ones.
+     *
+     * @return the snapshot, or null if it could not be taken this time
+     */
+    @WorkerThread
+    @Nullable
+    static Snapshot snapshot(@NonNull Context app, long deckId, @NonNull AppDatabase db) {
+        File dir = deckDir(app, deckId);
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.w(TAG, "Cannot create " + dir);
+            return null;
+        }
+        File source = new File(db.getOpenHelper().getWritableDatabase().getPath());
+        if (dir.getUsableSpace() < source.length() * 2) {
+            Log.w(TAG, "Not enough space to snapshot deck " + deckId);
+            return null;
+        }
+
+        // 1) Metadata first: the language marker is written after the overlay
+        //    commits, so a snapshot is never older than the language it claims.
+        SharedPreferences p = prefs(app);
+        p.edit().putBoolean(KEY_DIRTY + deckId, false).commit();
+        Snapshot s = new Snapshot(deckId, System.currentTimeMillis(),
+                LanguagePacks.deckLanguage(app, deckId), LanguagePacks.isDeckComplete(app, deckId),
+                ReviewArchive.forDeck(app, deckId).file().length(), null);
+        File target = new File(dir, s.fileName());
+        File tmp = new File(dir, s.fileName() + ".tmp");
+        tmp.delete();
+
+        // 2) Copy.
+        long t = PerfTrace.begin("DeckSnapshots.snapshot");
+        boolean ok;
+        try {
+            ok = ONLINE_COPY ? vacuumInto(source, tmp) : checkpointAndCopy(db, source, tmp);
+            ok = ok && tmp.renameTo(target);
+        } catch (Exception e) {
+            Log.e(TAG, "Snapshot of deck " + deckId + " failed", e);
+            ok = false;
+        } finally {
+            PerfTrace.end(t);
+        }
+        if (!ok) {
+            tmp.delete();
+            p.edit().putBoolean(KEY_DIRTY + deckId, true).apply();
+            return null;
+        }
+
+        // 3) Rotate.
+        List<Snapshot> all = list(app, deckId);
+        for (int i = KEEP; i < all.size(); i++) all.get(i).file.delete();
+
+        Log.d(TAG, "Deck " + deckId + " -> " + target.getName() + " (" + target.length() + " bytes)");
+        return Snapshot.parse(deckId, target);
+    }
+
+    /**
+     * Writes a compacted, consistent copy through a separate read-only
+     * connection; Room's writer is never blocked.
+     */
+    private static boolean vacuumInto(File source, File tmp) {
+        SQLiteDatabase ro = SQLiteDatabase.openDatabase(source.getPath(), null,
+                SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS);
+        try {
+            ro.execSQL("VACUUM INTO ?", new Object[] { tmp.getPath() });
+        } finally {
+            ro.close();
+        }
+        return true;
+    }
+
+    /**
+     * Pre-VACUUM INTO fallback. Runs in the deck's writer slot: after a
+     * TRUNCATE checkpoint the main file holds every commit and nothing
+     * writes to it until the slot is released.
+     */
+    private static boolean checkpointAndCopy(AppDatabase db, File source, File tmp) throws IOException {
+        try (Cursor c = db.getOpenHelper().getWritableDatabase()
+                .query("PRAGMA wal_checkpoint(TRUNCATE)")) {
+            // Column 0 is 1 when a reader kept the checkpoint from finishing.
+            if (!c.moveToFirst() || c.getInt(0) != 0) {
+                Log.d(TAG, "Checkpoint busy; snapshot postponed");
+                return false;
+            }
+        }
+        try (InputStream in = new FileInputStream(source);
+             FileOutputStream out = new FileOutputStream(tmp)) {
+            byte[] buf = new byte[64 * 1024];
+            int r;
+            while ((r = in.read(buf)) > 0) {
+                out.write(buf, 0, r);
+            }
+            out.getFD().sync();
+        }
+        return true;
+    }
+
+    // -------------------------------------------------------------------------
+    // Listing and restore
+    // -------------------------------------------------------------------------
+
+    /**
+     * Snapshots of one deck, newest first.
+     */
+    @NonNull
+    public static List<Snapshot> list(@NonNull Context context, long deckId) {
+        List<Snapshot> out = new ArrayList<>();
+        File[] files = deckDir(context, deckId).listFiles();
+        if (files == null) return out;
+        for (File f : files) {
+            Snapshot s = Snapshot.parse(deckId, f);
+            if (s != null) out.add(s);
+        }
+        out.sort((a, b) -> Long.compare(b.createdAt, a.createdAt));
+        return out;
+    }
+
+    /**
+     * Snapshots of every installed deck, by deck, newest first.
+     */
+    @NonNull
+    public static List<Snapshot> listAll(@NonNull Context context) {
+        List<Snapshot> out = new ArrayList<>();
+        for (long deckId : DbProvider.installedDeckIds(context)) out.addAll(list(context, deckId));
+        return out;
+    }
+
+    /**
+     * Puts a snapshot back in place of its deck database and reopens the
+     * deck. Submit it on the BACKGROUND lane with the deck's cached instance
+     * ({@link DbProvider#peek}) as the writer key, so queued grades land
+     * before the swap and compaction cannot interleave.
+     */
+    @WorkerThread
+    public static void restore(@NonNull Context context, @NonNull Snapshot s) throws IOException {
+        Context app = context.getApplicationContext();
+        ReviewArchive archive = ReviewArchive.forDeck(app, s.deckId);
+        if (archive.file().length() < s.archiveLength) {
+            // History archived before the snapshot is gone (e.g. after a reset).
+            Log.w(TAG, "Archive of deck " + s.deckId + " is shorter than at snapshot time");
+        }
+
+        DbProvider.replaceDeck(app, s.deckId, s.file, s.lang, s.complete, () -> {
+            try {
+                archive.truncate(s.archiveLength);
+            } catch (IOException e) {
+                // Keep the deck as is rather than count archived reviews twice.
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        // The deck now equals this snapshot.
+        prefs(app).edit().putBoolean(KEY_DIRTY + s.deckId, false).commit();
+        DbProvider.forDeck(app, s.deckId);
+        DeckProgressTracker.get(app).reload(s.deckId);
+        Log.i(TAG, "Deck " + s.deckId + " restored from " + s.file.getName());
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.cards.data.catalog;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CustomDecks
+ *
+ * Registry of the decks the user created by importing a file. Their cards
+ * live in ordinary deck databases ({@code cards_deck_<id>.db}, same schema
+ * as the prepackaged decks); this class only keeps their ids and titles.
+ *
+ * Behavior:
+ * - Ids start at {@link #FIRST_ID}, far above the {@link DeckCatalog} ids,
+ *   and are never reused, so the file of a half-imported deck cannot
+ *   resurface under a new title.
+ * - A deck is listed only after its import committed ({@link #register}).
+ * - {@link #generation()} changes whenever the list does, so screens can
+ *   rebuild their deck list on return without comparing it; a visible
+ *   screen is told through {@link #setListener}.
+ * - Everything lives in the "app_settings" prefs; nothing here opens SQLite.
+ */
+public final class CustomDecks {
+
+    /** First id of a user deck; prepackaged decks stay below it. */
+    public static final long FIRST_ID = 10_000L;
+
+    private static final String PREFS_NAME = "app_settings";
+    // Comma-separated ids, in creation order.
+    private static final String KEY_IDS = "custom_decks";
+    private static final String KEY_NEXT_ID = "custom_deck_next_id";
+    private static final String KEY_TITLE = "custom_deck_title_";
+    private static final String KEY_SOURCE = "custom_deck_source_";
+    private static final String KEY_CARDS = "custom_deck_cards_";
+
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+    private static final Handler MAIN = new Handler(Looper.getMainLooper());
+
+    @Nullable
+    private static Runnable listener;   // accessed on the main thread only
+
+    /**
+     * One user deck.
+     */
+    public static final class Entry {
+        public final long deckId;
+        public final String title;
+        /** Name of the file it was imported from. */
+        public final String source;
+        /** Cards imported. */
+        public final int cards;
+
+        Entry(long deckId, String title, String source, int cards) {
+            this.deckId = deckId;
+            this.title = title;
+            this.source = source;
+            this.cards = cards;
+        }
+    }
+
+    private CustomDecks() {
+        // Utility class; no instances.
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Whether an id belongs to a user deck (which has no asset to install).
+     */
+    public static boolean isCustom(long deckId) {
+        return deckId >= FIRST_ID;
+    }
+
+    /**
+     * Changes every time a deck is registered in this process.
+     */
+    public static int generation() {
+        return GENERATION.get();
+    }
+
+    /**
+     * Attaches (or detaches with null) the callback run on the main thread
+     * after the list changed.
+     */
+    @MainThread
+    public static void setListener(@Nullable Runnable onChanged) {
+        listener = onChanged;
+    }
+
+    private static void changed() {
+        GENERATION.incrementAndGet();
+        MAIN.post(() -> {
+            if (listener != null) listener.run();
+        });
+    }
+
+    /**
+     * Reserves a fresh deck id for an import.
+     */
+    public static synchronized long allocateId(@NonNull Context context) {
+        SharedPreferences p = prefs(context);
+        long id = Math.max(FIRST_ID, p.getLong(KEY_NEXT_ID, FIRST_ID));
+        // commit(): a crash must not hand out the same id twice.
+        p.edit().putLong(KEY_NEXT_ID, id + 1).commit();
+        return id;
+    }
+
+    /**
+     * Lists a deck whose import has committed.
+     */
+    public static synchronized void register(@NonNull Context context, long deckId,
+                                             @NonNull String title, @NonNull String source,
+                                             int cards) {
+        SharedPreferences p = prefs(context);
+        List<Long> ids = ids(p);
+        if (!ids.contains(deckId)) ids.add(deckId);
+        p.edit()
+                .putString(KEY_TITLE + deckId, title)
+                .putString(KEY_SOURCE + deckId, source)
+                .putInt(KEY_CARDS + deckId, cards)
+                .putString(KEY_IDS, join(ids))
+                .commit();
+        changed();
+    }
+
+    /**
+     * All user decks, oldest first.
+     */
+    @NonNull
+    public static List<Entry> all(@NonNull Context context) {
+        SharedPreferences p = prefs(context);
+        List<Entry> out = new ArrayList<>();
+        for (long id : ids(p)) {
+            out.add(entry(p, id));
+        }
+        return Collections.unmodifiableList(out);
+    }
+
+    /**
+     * The user deck with this id, or null if there is none.
+     */
+    @Nullable
+    public static Entry find(@NonNull Context context, long deckId) {
+        SharedPreferences p = prefs(context);
+        return ids(p).contains(deckId) ? entry(p, deckId) : null;
+    }
+
+    private static Entry entry(SharedPreferences p, long id) {
+        return new Entry(id,
+                p.getString(KEY_TITLE + id, "Deck " + id),
+                p.getString(KEY_SOURCE + id, ""),
+                p.getInt(KEY_CARDS + id, 0));
+    }
+
+    private static List<Long> ids(SharedPreferences p) {
+        List<Long> ids = new ArrayList<>();
+        String raw = p.getString(KEY_IDS, "");
+        if (raw == null || raw.isEmpty()) return ids;
+        for (String s : raw.split(",")) {
+            try {
+                ids.add(Long.parseLong(s.trim()));
+            } catch (NumberFormatException ignore) {
+                // Damaged entry; skip it.
+            }
+        }
+        return ids;
+    }
+
+    private static String join(List<Long> ids) {
+        StringBuilder sb = new StringBuilder();
+        for (long id : ids) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(id);
+        }
+        return sb.toString();
+    }
+}
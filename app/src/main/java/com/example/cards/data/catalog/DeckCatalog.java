@@ -0,0 +1,164 @@
+package com.example.cards.data.catalog;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.cards.diag.PerfTrace;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DeckCatalog
+ *
+ * Immutable index of the prepackaged decks, read once from the
+ * {@code db/catalog.bin} asset generated at build time (see buildSrc
+ * {@code DeckCatalogWriter} for the layout).
+ *
+ * Behavior:
+ * - Holds everything screens need before a deck is opened: title, level,
+ *   subtitle and description, card count, and which language packs cover
+ *   the deck. Nothing here touches SQLite or the deck files.
+ * - The CRC-32 of each deck's database asset tells {@code DbProvider}
+ *   whether an installed deck came from the asset in this APK.
+ * - A missing or unreadable asset gives an empty catalog; callers fall
+ *   back to what they did before (e.g. a generic title).
+ */
+public final class DeckCatalog {
+
+    private static final String TAG = "DeckCatalog";
+
+    static final String ASSET = "db/catalog.bin";
+    private static final int MAGIC = 0x46434354; // "FCCT"
+    private static final int VERSION = 1;
+
+    private static volatile DeckCatalog INSTANCE;
+
+    /**
+     * One prepackaged deck.
+     */
+    public static final class Entry {
+        public final long deckId;
+        /** TOPIK-like level, 1..6. */
+        public final int level;
+        public final String title;
+        public final String subtitle;
+        public final String description;
+        /** Database asset of the base language pack, e.g. "db/eng/cards_deck_1.db". */
+        public final String assetPath;
+        /** Cards in the base pack. */
+        public final int cards;
+        /** CRC-32 of the database asset. */
+        public final long checksum;
+        /** Cards per language pack with content for this deck; base pack first. */
+        public final Map<String, Integer> languages;
+
+        Entry(long deckId, int level, String title, String subtitle, String description,
+              String assetPath, int cards, long checksum, Map<String, Integer> languages) {
+            this.deckId = deckId;
+            this.level = level;
+            this.title = title;
+            this.subtitle = subtitle;
+            this.description = description;
+            this.assetPath = assetPath;
+            this.cards = cards;
+            this.checksum = checksum;
+            this.languages = Collections.unmodifiableMap(languages);
+        }
+
+        /** Whether the pack of {@code lang} translates every card of the deck. */
+        public boolean isComplete(@NonNull String lang) {
+            Integer n = languages.get(lang);
+            return n != null && n == cards;
+        }
+    }
+
+    private final List<Entry> entries;
+
+    private DeckCatalog(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Returns the catalog, reading the asset on the first call.
+     */
+    @NonNull
+    public static DeckCatalog get(@NonNull Context context) {
+        if (INSTANCE == null) {
+            synchronized (DeckCatalog.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = load(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private static DeckCatalog load(Context app) {
+        long t = PerfTrace.begin("DeckCatalog.load");
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                app.getAssets().open(ASSET)))) {
+            return new DeckCatalog(read(in));
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot read " + ASSET + "; no deck catalog", e);
+            return new DeckCatalog(new ArrayList<>());
+        } finally {
+            PerfTrace.end(t);
+        }
+    }
+
+    static List<Entry> read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readUnsignedShort() != VERSION) {
+            throw new IOException("Bad header");
+        }
+        int count = in.readUnsignedShort();
+        List<Entry> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long deckId = in.readInt() & 0xFFFFFFFFL;
+            int level = in.readUnsignedByte();
+            String title = in.readUTF();
+            String subtitle = in.readUTF();
+            String description = in.readUTF();
+            String assetPath = in.readUTF();
+            int cards = in.readInt();
+            long checksum = in.readInt() & 0xFFFFFFFFL;
+            int langs = in.readUnsignedByte();
+            Map<String, Integer> languages = new LinkedHashMap<>();
+            for (int j = 0; j < langs; j++) {
+                String lang = in.readUTF();
+                languages.put(lang, in.readInt());
+            }
+            out.add(new Entry(deckId, level, title, subtitle, description,
+                    assetPath, cards, checksum, languages));
+        }
+        return out;
+    }
+
+    /**
+     * All decks, ordered as in the catalog source.
+     */
+    @NonNull
+    public List<Entry> all() {
+        return entries;
+    }
+
+    /**
+     * The deck with this id, or null if the catalog does not list it.
+     */
+    @Nullable
+    public Entry find(long deckId) {
+        for (Entry e : entries) {
+            if (e.deckId == deckId) return e;
+        }
+        return null;
+    }
+}
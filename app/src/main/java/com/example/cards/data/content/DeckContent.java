@@ -0,0 +1,238 @@
+package com.example.cards.data.content;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.cards.data.db.CardDao;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * DeckContent
+ *
+ * Read-only view of a deck's word content (front/back) in one language
+ * pack, memory-mapped from the {@code db/{lang}/cards_deck_{id}.bin} asset
+ * produced at build time by the deck compiler (see buildSrc
+ * {@code DeckContentWriter} for the layout).
+ *
+ * Behavior:
+ * - Opening a deck is a single {@link FileChannel#map} of the asset; the
+ *   asset is stored uncompressed in the APK, so nothing is copied. If the
+ *   asset is compressed anyway, it is extracted once to no-backup storage
+ *   and mapped from there.
+ * - Strings are decoded lazily, one card at a time, when a row is bound.
+ * - Cards are looked up by their {@code cards.id} (binary search).
+ * - Instances are cached per language and deck and are safe to share
+ *   between threads.
+ *
+ * SQLite remains the source of truth for ids, flags and progress. Callers
+ * should check {@link #matches(CardDao)} once before trusting the mapped
+ * strings, and fall back to SQLite text if it returns false.
+ */
+public final class DeckContent {
+
+    private static final String TAG = "DeckContent";
+
+    private static final int MAGIC = 'F' | ('C' << 8) | ('D' << 16) | ('K' << 24);
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+
+    // Keyed by "<lang>/<deckId>".
+    private static final ConcurrentMap<String, DeckContent> CACHE = new ConcurrentHashMap<>();
+
+    private final long deckId;
+    private final ByteBuffer buf;       // little-endian, never repositioned
+    private final int count;
+    private final int idsOffset;
+    private final int frontIndex;
+    private final int backIndex;
+    private final int frontPool;
+    private final int backPool;
+
+    private DeckContent(long deckId, ByteBuffer mapped) throws IOException {
+        this.deckId = deckId;
+        this.buf = mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC) {
+            throw new IOException("Not a deck content file");
+        }
+        int version = buf.getShort(4) & 0xFFFF;
+        if (version != VERSION) {
+            throw new IOException("Unsupported deck content version " + version);
+        }
+        if (buf.getInt(8) != deckId) {
+            throw new IOException("Content belongs to deck " + buf.getInt(8));
+        }
+        count = buf.getInt(12);
+        idsOffset = buf.getInt(16);
+        frontIndex = buf.getInt(20);
+        backIndex = buf.getInt(24);
+        frontPool = buf.getInt(28);
+        backPool = buf.getInt(32);
+        if (buf.getInt(36) != buf.capacity()) {
+            throw new IOException("Truncated deck content file");
+        }
+    }
+
+    /**
+     * Returns the mapped content of a deck in a language pack, or null if
+     * the pack has no content asset for it (callers then use the SQLite
+     * text columns).
+     *
+     * @param lang language pack, e.g. "eng" (see {@code LanguagePacks})
+     */
+    @Nullable
+    public static DeckContent forDeck(@NonNull Context context, @NonNull String lang, long deckId) {
+        String key = lang + "/" + deckId;
+        DeckContent cached = CACHE.get(key);
+        if (cached != null) return cached;
+
+        String asset = "db/" + lang + "/cards_deck_" + deckId + ".bin";
+        try {
+            DeckContent content = new DeckContent(deckId, map(context, asset));
+            DeckContent prev = CACHE.putIfAbsent(key, content);
+            return prev != null ? prev : content;
+        } catch (IOException e) {
+            Log.w(TAG, "No content for deck " + deckId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Maps an asset read-only: directly from the APK when it is stored
+     * uncompressed, otherwise from an extracted copy.
+     */
+    private static MappedByteBuffer map(Context context, String asset) throws IOException {
+        try (AssetFileDescriptor afd = context.getAssets().openFd(asset);
+             FileInputStream in = afd.createInputStream()) {
+            return in.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    afd.getStartOffset(), afd.getLength());
+        } catch (IOException compressed) {
+            // openFd() fails for compressed assets: extract once, then map the copy.
+            File file = new File(context.getNoBackupFilesDir(), asset.replace('/', '_'));
+            if (!file.exists()) {
+                File tmp = new File(file.getPath() + ".tmp");
+                try (InputStream in = context.getAssets().open(asset);
+                     FileOutputStream out = new FileOutputStream(tmp)) {
+                    byte[] b = new byte[8192];
+                    int r;
+                    while ((r = in.read(b)) > 0) out.write(b, 0, r);
+                }
+                if (!tmp.renameTo(file)) throw new IOException("Cannot install " + file);
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            }
+        }
+    }
+
+    public long getDeckId() {
+        return deckId;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the card id stored at position {@code index} (0..size-1).
+     */
+    public long cardIdAt(int index) {
+        return buf.getInt(idsOffset + 4 * index) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Returns the position of a card, or -1 if the deck has no such card.
+     */
+    public int indexOf(long cardId) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long id = cardIdAt(mid);
+            if (id < cardId) lo = mid + 1;
+            else if (id > cardId) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes the front text of a card, or returns null if it is unknown.
+     */
+    @Nullable
+    public String front(long cardId) {
+        int i = indexOf(cardId);
+        return i < 0 ? null : frontAt(i);
+    }
+
+    /**
+     * Decodes the back text of a card, or returns null if it is unknown.
+     */
+    @Nullable
+    public String back(long cardId) {
+        int i = indexOf(cardId);
+        return i < 0 ? null : backAt(i);
+    }
+
+    /**
+     * Decodes the front text stored at position {@code index} (0..size-1).
+     */
+    @NonNull
+    public String frontAt(int index) {
+        return decode(frontIndex, frontPool, index);
+    }
+
+    /**
+     * Decodes the back text stored at position {@code index} (0..size-1).
+     */
+    @NonNull
+    public String backAt(int index) {
+        return decode(backIndex, backPool, index);
+    }
+
+    private String decode(int index, int pool, int i) {
+        int start = buf.getInt(index + 4 * i);
+        int end = buf.getInt(index + 4 * (i + 1));
+        byte[] bytes = new byte[end - start];
+        // Duplicate: position/limit are per view, so readers never interfere.
+        ByteBuffer view = buf.duplicate();
+        view.position(pool + start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks that the mapped content describes the same cards as the deck
+     * database (e.g. a database installed by an older build): same card
+     * count, and the same first / middle / last words and translations.
+     */
+    @WorkerThread
+    public boolean matches(@NonNull CardDao dao) {
+        if (count == 0 || dao.countByDeck(deckId) != count) return false;
+        int[] probes = { 0, count / 2, count - 1 };
+        for (int i : probes) {
+            long id = cardIdAt(i);
+            if (!frontAt(i).equals(dao.frontOf(id))) return false;
+            if (!backAt(i).equals(dao.backOf(id))) return false;
+        }
+        return true;
+    }
+}
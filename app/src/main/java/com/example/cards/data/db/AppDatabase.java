@@ -9,16 +9,17 @@ import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import com.example.cards.data.model.Card;
+import com.example.cards.data.model.DailyRollup;
 import com.example.cards.data.model.LearnedState;
 import com.example.cards.data.model.ReviewLog;
+import com.example.cards.data.model.ReviewLogMonthly;
 import com.example.cards.data.model.ReviewState;
 
 import java.io.File;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * AppDatabase
@@ -29,38 +30,127 @@ import java.util.concurrent.Executors;
  *
  * Entities:
  * - {@link Card}         – base card data
- * - {@link ReviewState}  – SM-2 review state per card
+ * - {@link ReviewState}  – SM-2 review state per card and study direction
  * - {@link ReviewLog}    – history of reviews
  * - {@link LearnedState} – user-controlled learned flag
+ * - {@link ReviewLogMonthly} – monthly summaries of archived review history
+ * - {@link DailyRollup}  – per-day review counts for statistics
  *
  * Notes:
- * - Version = 1, exportSchema = false, destructive migration is used.
+ * - Version = 6, exportSchema = false. Prepackaged decks ship at version 1
+ *   and are brought up to date by {@link #MIGRATIONS} when first opened;
+ *   destructive migration remains the fallback for unknown versions.
  * - Foreign keys are enabled on open with PRAGMA foreign_keys = ON.
  */
 @Database(
-        entities = { Card.class, ReviewState.class, ReviewLog.class, LearnedState.class },
-        version = 1,
+        entities = { Card.class, ReviewState.class, ReviewLog.class, LearnedState.class,
+                ReviewLogMonthly.class, DailyRollup.class },
+        version = 6,
         exportSchema = false
 )
 public abstract class AppDatabase extends RoomDatabase {
 
+    private static volatile AppDatabase INSTANCE;
+
     /**
-     * Executor for background DB operations (queries, preloading, etc.).
+     * 1 → 2: adds review_log_monthly (review history compaction).
      */
-    public static final ExecutorService databaseExecutor =
-            Executors.newFixedThreadPool(4);
+    public static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS review_log_monthly ("
+                    + "cardId INTEGER NOT NULL, "
+                    + "month INTEGER NOT NULL, "
+                    + "reviews INTEGER NOT NULL, "
+                    + "lapses INTEGER NOT NULL, "
+                    + "gradeSum INTEGER NOT NULL, "
+                    + "firstReviewedAt INTEGER NOT NULL, "
+                    + "lastReviewedAt INTEGER NOT NULL, "
+                    + "PRIMARY KEY(cardId, month))");
+        }
+    };
 
-    private static volatile AppDatabase INSTANCE;
+    /**
+     * 2 → 3: adds daily_rollup (statistics). Existing history is counted
+     * into it afterwards by {@code DailyRollups}.
+     */
+    public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS daily_rollup ("
+                    + "day INTEGER NOT NULL, "
+                    + "hour INTEGER NOT NULL, "
+                    + "bucket INTEGER NOT NULL, "
+                    + "reviews INTEGER NOT NULL, "
+                    + "lapses INTEGER NOT NULL, "
+                    + "grade0 INTEGER NOT NULL, "
+                    + "grade1 INTEGER NOT NULL, "
+                    + "grade2 INTEGER NOT NULL, "
+                    + "grade3 INTEGER NOT NULL, "
+                    + "grade4 INTEGER NOT NULL, "
+                    + "grade5 INTEGER NOT NULL, "
+                    + "PRIMARY KEY(day, hour, bucket))");
+        }
+    };
+
+    /**
+     * 3 → 4: review state is created on a card's first grade instead of
+     * being seeded for the whole deck. Drops seeded rows that were never
+     * graded, so those cards are served as new cards again.
+     */
+    public static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("DELETE FROM review_state "
+                    + "WHERE lastGrade IS NULL AND intervalDays = 0 AND step = 0 "
+                    + "AND cardId NOT IN (SELECT cardId FROM review_log) "
+                    + "AND cardId NOT IN (SELECT cardId FROM review_log_monthly)");
+        }
+    };
+
+    /**
+     * 4 → 5: adds cards.tags (decks imported from CSV / TSV files).
+     */
+    public static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE cards ADD COLUMN tags TEXT");
+        }
+    };
+
+    /**
+     * 5 → 6: study directions ({@code CardDirection}). review_state and
+     * review_log get a direction column (existing rows are forward), and
+     * review_state is keyed by (cardId, direction). A card could only hold
+     * one state before; should a damaged file have more, the newest is kept.
+     */
+    public static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("DELETE FROM review_state WHERE id NOT IN "
+                    + "(SELECT MAX(id) FROM review_state GROUP BY cardId)");
+            db.execSQL("ALTER TABLE review_state ADD COLUMN direction INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("DROP INDEX IF EXISTS index_review_state_cardId");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_review_state_cardId_direction "
+                    + "ON review_state (cardId, direction)");
+            db.execSQL("ALTER TABLE review_log ADD COLUMN direction INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    /** All schema migrations, for {@link RoomDatabase.Builder#addMigrations}. */
+    public static final Migration[] MIGRATIONS = {
+            MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6 };
 
     public abstract CardDao cardDao();
     public abstract ReviewDao reviewDao();
+    public abstract StatsDao statsDao();
 
     /**
      * Returns a singleton instance of the global database "cards.db".
      * This DB can be used when you do not rely on per-deck prepackaged files.
      *
      * Uses:
-     * - fallbackToDestructiveMigration()
+     * - {@link #MIGRATIONS}, then fallbackToDestructiveMigration()
      * - foreign_keys pragma enabled on open
      */
     public static AppDatabase getInstance(Context ctx) {
@@ -72,7 +162,8 @@ public abstract class AppDatabase extends RoomDatabase {
                                     AppDatabase.class,
                                     "cards.db"   // can be renamed if needed (e.g. "cards_v2.db")
                             )
-                            // No migrations are added; destructive migration is acceptable here.
+                            // Unknown versions: destructive migration is acceptable here.
+                            .addMigrations(MIGRATIONS)
                             .fallbackToDestructiveMigration()
                             .addCallback(new RoomDatabase.Callback() {
                                 @Override
@@ -87,75 +178,6 @@ public abstract class AppDatabase extends RoomDatabase {
         return INSTANCE;
     }
 
-    /**
-     * Quick integrity check for a DB file:
-     * - File must exist.
-     * - File size must be larger than a minimal threshold (not an empty SQLite header).
-     * - Table "cards" must exist.
-     * - Table "cards" must contain at least one row (expected preloaded content).
-     *
-     * @param dbFile file object pointing to the database
-     * @return true if the DB looks valid, false otherwise
-     */
-    private static boolean isDbHealthy(File dbFile) {
-        if (!dbFile.exists()) return false;
-        if (dbFile.length() <= 4096) return false; // almost empty SQLite file
-
-        try (SQLiteDatabase sql = SQLiteDatabase.openDatabase(
-                dbFile.getPath(), null, SQLiteDatabase.OPEN_READONLY)) {
-
-            // Check that table "cards" exists.
-            try (Cursor t = sql.rawQuery(
-                    "SELECT 1 FROM sqlite_master WHERE type='table' AND name='cards'", null)) {
-                if (!t.moveToFirst()) return false;
-            }
-
-            // Check that "cards" contains some data (if prepackaged DB is expected).
-            try (Cursor c = sql.rawQuery("SELECT COUNT(*) FROM cards", null)) {
-                if (c.moveToFirst()) {
-                    int n = c.getInt(0);
-                    if (n == 0) return false;
-                } else {
-                    return false;
-                }
-            }
-
-            return true;
-        } catch (Throwable ignore) {
-            return false;
-        }
-    }
-
-    /**
-     * Copies a DB file from assets to the destination path.
-     * Throws a RuntimeException on failure so that the caller can abort startup.
-     *
-     * @param assets    AssetManager to read from
-     * @param assetPath path inside assets (e.g. "db/cards_deck_1.db")
-     * @param dest      destination file inside /databases
-     */
-    private static void copyFromAssetsOrThrow(android.content.res.AssetManager assets,
-                                              String assetPath,
-                                              java.io.File dest) {
-        try (java.io.InputStream in = assets.open(assetPath);
-             java.io.OutputStream out = new java.io.FileOutputStream(dest)) {
-
-            byte[] buf = new byte[8192];
-            int n;
-            while ((n = in.read(buf)) > 0) {
-                out.write(buf, 0, n);
-            }
-            out.flush();
-
-            Log.d("DB", "Prepackaged DB copied from assets: " + assetPath +
-                    " → " + dest.getAbsolutePath());
-
-        } catch (Exception e) {
-            Log.e("DB", "Error copying " + assetPath, e);
-            throw new RuntimeException("Failed to copy prepackaged DB: " + assetPath, e);
-        }
-    }
-
     /**
      * Factory for deck-specific databases.
      *
@@ -163,10 +185,10 @@ public abstract class AppDatabase extends RoomDatabase {
      *   cards_deck_{deckId}.db
      *
      * Behavior:
-     * - Checks integrity of the existing deck DB file using {@link #isDbHealthy(File)}.
-     * - If the file is missing or invalid, it is deleted and then copied
-     *   from assets/db/cards_deck_{deckId}.db.
-     * - After that, Room builds a database instance for that file.
+     * - Delegates to {@link DbProvider}, which installs the asset atomically,
+     *   checks only the SQLite header on open and leaves full checks and
+     *   repair to {@link DeckIntegrity} in the background. A damaged file is
+     *   never simply deleted: its readable progress is salvaged.
      */
     public static class DbFactory {
 
@@ -178,26 +200,7 @@ public abstract class AppDatabase extends RoomDatabase {
          * @param deckId deck identifier (1..N)
          */
         public static AppDatabase forDeck(Context ctx, long deckId) {
-            String dbFileName = "cards_deck_" + deckId + ".db";
-            File dbPath = ctx.getDatabasePath(dbFileName);
-            dbPath.getParentFile().mkdirs();
-
-            // Integrity check; if the DB is not healthy, recreate it from assets.
-            if (!isDbHealthy(dbPath)) {
-                if (dbPath.exists()) dbPath.delete();
-                copyFromAssetsOrThrow(ctx.getAssets(), "db/" + dbFileName, dbPath);
-            } else {
-                Log.d("DB", "Using existing healthy DB: " + dbPath);
-            }
-
-            return Room.databaseBuilder(ctx.getApplicationContext(), AppDatabase.class, dbFileName)
-                    .addCallback(new RoomDatabase.Callback() {
-                        @Override
-                        public void onOpen(@NonNull SupportSQLiteDatabase db) {
-                            db.execSQL("PRAGMA foreign_keys = ON");
-                        }
-                    })
-                    .build();
+            return DbProvider.forDeck(ctx, deckId);
         }
     }
 
@@ -7,6 +7,7 @@ import androidx.room.RewriteQueriesToDropUnusedColumns;
 import androidx.room.Transaction;
 
 import com.example.cards.data.model.Card;
+import com.example.cards.data.model.CardDirection;
 import com.example.cards.data.model.WordWithStats;
 
 import java.util.List;
@@ -23,6 +24,10 @@ import java.util.List;
  * - Provide search and statistics queries returning {@link WordWithStats}.
  * - Manage "excluded" and "learned" flags in {@code cards} and {@code learned_state}.
  * - Provide learned percent both as int and as LiveData.
+ *
+ * Word lists and stats show the forward direction's review state
+ * ({@link CardDirection#FORWARD}), one row per card; only the study
+ * selection is per direction.
  */
 @Dao
 public interface CardDao {
@@ -111,9 +116,10 @@ public interface CardDao {
                     "    c.learned AS learned, " +
                     "    rs.ease       AS ease, " +
                     "    rs.lastGrade  AS lastGrade, " +
-                    "    COALESCE((SELECT COUNT(*) FROM review_log rl WHERE rl.cardId = c.id), 0) AS totalReviews " +
+                    "    COALESCE((SELECT COUNT(*) FROM review_log rl WHERE rl.cardId = c.id), 0) " +
+                    "        + COALESCE((SELECT SUM(m.reviews) FROM review_log_monthly m WHERE m.cardId = c.id), 0) AS totalReviews " +
                     "FROM cards c " +
-                    "LEFT JOIN review_state rs ON rs.cardId = c.id " +
+                    "LEFT JOIN review_state rs ON rs.cardId = c.id AND rs.direction = " + CardDirection.FORWARD + " " +
                     "WHERE c.deckId = :deckId " +
                     "  AND (c.front LIKE '%' || :q || '%' OR c.back LIKE '%' || :q || '%') " +
                     "ORDER BY c.id ASC"
@@ -124,7 +130,8 @@ public interface CardDao {
      * Returns all words in a deck with stats:
      * - learned flag
      * - SM-2 ease and lastGrade
-     * - total number of review_log entries
+     * - total number of reviews (live review_log rows plus archived ones
+     *   summarized in review_log_monthly)
      */
     @Query(
             "SELECT " +
@@ -134,9 +141,10 @@ public interface CardDao {
                     "  c.learned       AS learned, " +
                     "  rs.ease         AS ease, " +
                     "  rs.lastGrade    AS lastGrade, " +
-                    "  COALESCE(COUNT(l.id),0) AS totalReviews " +
+                    "  COALESCE(COUNT(l.id),0) " +
+                    "      + COALESCE((SELECT SUM(m.reviews) FROM review_log_monthly m WHERE m.cardId = c.id), 0) AS totalReviews " +
                     "FROM cards c " +
-                    "LEFT JOIN review_state  rs ON rs.cardId = c.id " +
+                    "LEFT JOIN review_state  rs ON rs.cardId = c.id AND rs.direction = " + CardDirection.FORWARD + " " +
                     "LEFT JOIN review_log    l  ON l.cardId = c.id " +
                     "LEFT JOIN learned_state ls ON ls.cardId = c.id " +
                     "WHERE c.deckId = :deckId " +
@@ -158,8 +166,10 @@ public interface CardDao {
     List<Card> getPage(int limit, int offset);
 
     /**
-     * Returns a selection of not-yet-learned cards for a deck
-     * with stats, ordered by earliest dueAt first.
+     * Returns a selection of studied (having a review state in the given
+     * direction), not-yet-learned cards for a deck with stats, ordered by
+     * earliest dueAt first. Ease and grade are those of that direction. New
+     * cards come from {@link ReviewDao#getNewCards}.
      *
      * Uses @RewriteQueriesToDropUnusedColumns to avoid fetching unused data.
      */
@@ -172,10 +182,11 @@ public interface CardDao {
                     "    c.back  AS back, " +
                     "    COALESCE(rs.ease, 0) AS ease, " +
                     "    rs.lastGrade AS lastGrade, " +
-                    "    (SELECT COUNT(*) FROM review_log rl WHERE rl.cardId = c.id) AS totalReviews, " +
+                    "    (SELECT COUNT(*) FROM review_log rl WHERE rl.cardId = c.id) " +
+                    "        + COALESCE((SELECT SUM(m.reviews) FROM review_log_monthly m WHERE m.cardId = c.id), 0) AS totalReviews, " +
                     "    COALESCE(ls.learned, 0) AS learned " +
                     "FROM cards c " +
-                    "LEFT JOIN review_state rs ON rs.cardId = c.id " +
+                    "JOIN review_state rs ON rs.cardId = c.id AND rs.direction = :direction " +
                     "LEFT JOIN learned_state ls ON ls.cardId = c.id " +
                     "WHERE c.deckId = :deckId " +
                     "  AND COALESCE(c.excluded, 0) = 0 " +
@@ -183,7 +194,7 @@ public interface CardDao {
                     "ORDER BY rs.dueAt ASC, c.id ASC " +
                     "LIMIT :limit"
     )
-    List<WordWithStats> getSelection(long deckId, int limit);
+    List<WordWithStats> getSelection(long deckId, int direction, int limit);
 
     // -------------------------------------------------------------------------
     // EXCLUDED FLAG
@@ -247,16 +258,52 @@ public interface CardDao {
                     "    c.back  AS back, " +
                     "    COALESCE(rs.ease, 0)      AS ease, " +
                     "    rs.lastGrade              AS lastGrade, " +
-                    "    (SELECT COUNT(*) FROM review_log rl WHERE rl.cardId = c.id) AS totalReviews, " +
+                    "    (SELECT COUNT(*) FROM review_log rl WHERE rl.cardId = c.id) " +
+                    "        + COALESCE((SELECT SUM(m.reviews) FROM review_log_monthly m WHERE m.cardId = c.id), 0) AS totalReviews, " +
                     "    COALESCE(ls.learned, 0)   AS learned " +
                     "FROM cards c " +
-                    "LEFT JOIN review_state rs ON rs.cardId = c.id " +
+                    "LEFT JOIN review_state rs ON rs.cardId = c.id AND rs.direction = " + CardDirection.FORWARD + " " +
                     "LEFT JOIN learned_state ls ON ls.cardId = c.id " +
                     "WHERE COALESCE(c.excluded, 0) = 0 " +   // ← добавил фильтр
                     "ORDER BY rs.dueAt ASC, c.id ASC"
     )
     List<WordWithStats> getWordsWithStatsAll();
 
+    /**
+     * Same rows and order as {@link #getWordsWithStatsAll()}, but without the
+     * text columns ({@code front}/{@code back} are NULL). Used when the text
+     * is read from the memory-mapped deck content instead.
+     */
+    @Query(
+            "SELECT " +
+                    "    c.id AS cardId, " +
+                    "    NULL AS front, " +
+                    "    NULL AS back, " +
+                    "    COALESCE(rs.ease, 0)      AS ease, " +
+                    "    rs.lastGrade              AS lastGrade, " +
+                    "    (SELECT COUNT(*) FROM review_log rl WHERE rl.cardId = c.id) " +
+                    "        + COALESCE((SELECT SUM(m.reviews) FROM review_log_monthly m WHERE m.cardId = c.id), 0) AS totalReviews, " +
+                    "    COALESCE(ls.learned, 0)   AS learned " +
+                    "FROM cards c " +
+                    "LEFT JOIN review_state rs ON rs.cardId = c.id AND rs.direction = " + CardDirection.FORWARD + " " +
+                    "LEFT JOIN learned_state ls ON ls.cardId = c.id " +
+                    "WHERE COALESCE(c.excluded, 0) = 0 " +
+                    "ORDER BY rs.dueAt ASC, c.id ASC"
+    )
+    List<WordWithStats> getWordStatsAll();
+
+    /**
+     * Returns the front text of a card, or null if there is no such card.
+     */
+    @Query("SELECT front FROM cards WHERE id = :cardId")
+    String frontOf(long cardId);
+
+    /**
+     * Returns the back text of a card, or null if there is no such card.
+     */
+    @Query("SELECT back FROM cards WHERE id = :cardId")
+    String backOf(long cardId);
+
 
     /**
      * Returns unlearned, non-excluded words for a deck with stats.
@@ -269,10 +316,11 @@ public interface CardDao {
                     "  COALESCE(ls.learned, 0)      AS learned, " +
                     "  rs.ease                      AS ease, " +
                     "  rs.lastGrade                 AS lastGrade, " +
-                    "  (SELECT COUNT(*) FROM review_log rl WHERE rl.cardId = c.id) AS totalReviews " +
+                    "  (SELECT COUNT(*) FROM review_log rl WHERE rl.cardId = c.id) " +
+                    "      + COALESCE((SELECT SUM(m.reviews) FROM review_log_monthly m WHERE m.cardId = c.id), 0) AS totalReviews " +
                     "FROM cards c " +
                     "LEFT JOIN learned_state ls ON ls.cardId = c.id " +
-                    "LEFT JOIN review_state  rs ON rs.cardId = c.id " +
+                    "LEFT JOIN review_state  rs ON rs.cardId = c.id AND rs.direction = " + CardDirection.FORWARD + " " +
                     "WHERE COALESCE(ls.learned, 0) = 0 " +
                     "  AND c.excluded = 0 " +
                     "  AND c.deckId = :deckId " +
@@ -282,7 +330,8 @@ public interface CardDao {
 
     /**
      * Returns words with learned info and count of reviews for a deck.
-     * Uses a pre-aggregated subquery for review_log count.
+     * Uses a pre-aggregated subquery for the review count (live review_log
+     * rows plus archived reviews from review_log_monthly).
      */
     @Query(
             "SELECT " +
@@ -295,10 +344,13 @@ public interface CardDao {
                     "  COALESCE(rl.cnt, 0)                   AS totalReviews " +
                     "FROM cards c " +
                     "LEFT JOIN learned_state ls ON ls.cardId = c.id " +
-                    "LEFT JOIN review_state  rs ON rs.cardId = c.id " +
+                    "LEFT JOIN review_state  rs ON rs.cardId = c.id AND rs.direction = " + CardDirection.FORWARD + " " +
                     "LEFT JOIN ( " +
-                    "    SELECT cardId, COUNT(*) AS cnt " +
-                    "    FROM review_log " +
+                    "    SELECT cardId, SUM(n) AS cnt FROM ( " +
+                    "        SELECT cardId, COUNT(*) AS n FROM review_log GROUP BY cardId " +
+                    "        UNION ALL " +
+                    "        SELECT cardId, SUM(reviews) AS n FROM review_log_monthly GROUP BY cardId " +
+                    "    ) " +
                     "    GROUP BY cardId " +
                     ") rl ON rl.cardId = c.id " +
                     "WHERE c.deckId = :deckId"
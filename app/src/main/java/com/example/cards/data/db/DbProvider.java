@@ -5,11 +5,31 @@ import android.content.res.AssetManager;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
 import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.example.cards.data.backup.DeckSnapshots;
+import com.example.cards.data.catalog.CustomDecks;
+import com.example.cards.data.catalog.DeckCatalog;
+import com.example.cards.data.quiz.DistractorIndex;
+import com.example.cards.data.summary.DueSummary;
+import com.example.cards.diag.PerfTrace;
+import com.example.cards.diag.QueryMetrics;
+import com.example.cards.repo.DeckProgressTracker;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -24,15 +44,42 @@ import java.util.concurrent.ConcurrentMap;
  *
  * Behavior:
  * - On first access, checks whether the DB file exists in /data/data/.../databases/.
- * - If not, tries to copy a prepackaged DB from assets using several possible paths:
- *   "", "databases/", "db/".
+ * - If not, copies the prepackaged DB from the asset path listed in the
+ *   {@link DeckCatalog}; decks missing from it are looked up in several
+ *   possible paths: the base language pack "db/eng/" first, then "",
+ *   "databases/", "db/".
+ * - Copies go to a temp file of their own that is synced and renamed, so a
+ *   killed copy never leaves a truncated deck. The check, copy and rename
+ *   run inside the cache entry's computeIfAbsent: two first opens of a deck
+ *   (an activity and a background task) never interleave, and swaps by
+ *   {@link #replaceDeck} and friends wait for them.
+ * - An existing file whose SQLite header does not match its length is set
+ *   aside and the asset installed again ({@link DeckIntegrity}, which also
+ *   salvages the set-aside progress).
+ * - User decks ({@link CustomDecks}) have no asset: Room creates their
+ *   file empty, at the current schema, and the importer fills it.
  * - After copy (or if it already exists), builds a Room database with that file name.
- * - Caches Room instances in a static map to avoid rebuilding them.
+ * - Patches the words of a deck installed from an older asset
+ *   ({@link DeckAssets}), then re-points its translations to the chosen
+ *   language ({@link LanguagePacks}), in one WRITE-lane task in the deck's
+ *   writer slot. The opening thread (often the main thread) only reads
+ *   prefs; open screens see the new text through Room invalidation.
+ * - Installs {@link QueryMetrics}' query callback on every deck database.
+ * - Lets {@link DeckSnapshots} and {@link DueSummary} watch every deck database it
+ *   builds for writes.
+ * - Caches Room instances in a static map to avoid rebuilding them. All screens
+ *   share the cached instance, so Room invalidation observers see every write.
+ * - {@link #replaceDeck} swaps a deck file for a snapshot copy while the
+ *   cached instance is closed; the next {@link #forDeck} opens the new file.
+ *   {@link #reinstallDeck} does the same with the asset for a damaged deck.
+ *   {@link #deleteDeck} removes a user deck's file the same way.
  *
  * Notes:
  * - Manual asset copy is used instead of Room's createFromAsset to keep control.
- * - fallbackToDestructiveMigration() is enabled; it will not touch the manually
- *   copied file, but will handle schema changes if Room needs to recreate it.
+ * - Copied decks are at schema version 1 and are upgraded by
+ *   {@link AppDatabase#MIGRATIONS}, keeping user progress.
+ * - fallbackToDestructiveMigration() is enabled only for versions without a
+ *   migration path.
  */
 public final class DbProvider {
 
@@ -44,6 +91,7 @@ public final class DbProvider {
 
     // Possible asset subdirectories where deck DBs may reside.
     private static final String[] ASSET_DIRS = new String[] {
+            "db/" + LanguagePacks.BASE + "/", // assets/db/eng/<file>: base pack
             "",           // assets/<file>
             "databases/", // assets/databases/<file>
             "db/"         // assets/db/<file>
@@ -51,6 +99,8 @@ public final class DbProvider {
 
     // Cache of AppDatabase instances keyed by DB file name.
     private static final ConcurrentMap<String, AppDatabase> CACHE = new ConcurrentHashMap<>();
+    // Decks with a content update queued.
+    private static final Set<Long> UPDATING = ConcurrentHashMap.newKeySet();
 
     private DbProvider() {
         // Utility class; no instances.
@@ -68,41 +118,271 @@ public final class DbProvider {
     public static AppDatabase forDeck(@NonNull Context context, long deckId) {
         String dbName = fileNameForDeck(deckId);
 
-        // Ensure the prepackaged DB file is present before opening with Room.
-        ensurePrepackagedIfNeeded(context, dbName);
-
         // Build or return cached Room instance.
-        return CACHE.computeIfAbsent(dbName, key ->
-                Room.databaseBuilder(
-                                context.getApplicationContext(),
-                                AppDatabase.class,
-                                key
-                        )
-                        // IMPORTANT: do not use createFromAsset together with manual copy.
-                        // Add migrations here if needed.
-                        .fallbackToDestructiveMigration()
-                        .build()
-        );
+        AppDatabase db = CACHE.computeIfAbsent(dbName, key -> {
+            // Under the entry's lock: no other opener copies this deck meanwhile.
+            ensurePrepackagedIfNeeded(context, deckId, key);
+
+            RoomDatabase.Builder<AppDatabase> builder = Room.databaseBuilder(
+                            context.getApplicationContext(),
+                            AppDatabase.class,
+                            key
+                    )
+                    // IMPORTANT: do not use createFromAsset together with manual copy.
+                    // Assets ship at schema version 1; migrations bring them up to date.
+                    .addMigrations(AppDatabase.MIGRATIONS)
+                    .fallbackToDestructiveMigration()
+                    .addCallback(new RoomDatabase.Callback() {
+                        @Override
+                        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                            db.execSQL("PRAGMA foreign_keys = ON");
+                        }
+                    });
+
+            // Capture executed SQL for latency / slow-query diagnostics.
+            AppDatabase built = QueryMetrics.install(builder, key).build();
+            QueryMetrics.register(key, built);
+            DeckSnapshots.watch(context, deckId, built);
+            DueSummary.watch(context, deckId, built);
+            DeckIntegrity.salvageIfPending(context, deckId, built);
+            return built;
+        });
+
+        // Words follow the APK's asset, translations the chosen language;
+        // progress is untouched. User decks keep their own words.
+        if (!CustomDecks.isCustom(deckId)) scheduleContentUpdate(context, deckId, db);
+        return db;
+    }
+
+    /**
+     * Queues the content update for the decks that are open, after the
+     * language was changed.
+     */
+    static void updateOpenDecks(@NonNull Context context) {
+        for (String dbName : CACHE.keySet()) {
+            long deckId = deckIdOf(dbName);
+            AppDatabase db = CACHE.get(dbName);
+            if (deckId < 0 || db == null || CustomDecks.isCustom(deckId)) continue;
+            scheduleContentUpdate(context, deckId, db);
+        }
+    }
+
+    /**
+     * Queues the asset patch and language overlay in the deck's writer slot
+     * unless both are current or an update is already queued.
+     */
+    private static void scheduleContentUpdate(@NonNull Context context, long deckId,
+                                              @NonNull AppDatabase db) {
+        if (DeckAssets.isPatched(context, deckId) && LanguagePacks.isApplied(context, deckId)) return;
+        if (!UPDATING.add(deckId)) return;
+        Context app = context.getApplicationContext();
+        DbScheduler.get().submit(DbScheduler.Lane.WRITE, db, null, () -> {
+            try {
+                // Words first: the overlay matches translations by headword.
+                DeckAssets.ensureCurrent(app, deckId, db);
+                LanguagePacks.ensureApplied(app, deckId, db);
+            } finally {
+                UPDATING.remove(deckId);
+            }
+        });
+    }
+
+    /**
+     * Returns the cached Room instance for a deck without opening or copying
+     * anything, or null if the deck has not been opened in this process yet.
+     *
+     * @param deckId deck identifier
+     */
+    @Nullable
+    public static AppDatabase peek(long deckId) {
+        return CACHE.get(fileNameForDeck(deckId));
+    }
+
+    /**
+     * Replaces a deck's database file with a copy of {@code source}.
+     *
+     * The copy is written next to the deck file first; then, while no
+     * instance of the deck can be opened, {@code onSwap} runs, the cached
+     * Room instance is closed, stale -wal / -shm files are removed and the
+     * copy is renamed over the deck file (atomic on the same filesystem).
+     * Writes still queued for the old instance should be drained by the caller.
+     *
+     * @param context  app context
+     * @param deckId   deck identifier
+     * @param source   complete database file, e.g. a snapshot
+     * @param lang     translation language held by {@code source}
+     * @param complete whether that language's pack covered the whole deck
+     * @param onSwap   runs right before the swap; an {@link UncheckedIOException}
+     *                 from it leaves the deck as it was. May be null
+     */
+    @WorkerThread
+    public static void replaceDeck(@NonNull Context context, long deckId, @NonNull File source,
+                                   @NonNull String lang, boolean complete,
+                                   @Nullable Runnable onSwap) throws IOException {
+        String dbName = fileNameForDeck(deckId);
+        File dbFile = context.getDatabasePath(dbName);
+        File staged = new File(dbFile.getPath() + ".restore");
+
+        // 1) Stage the copy; the live deck is untouched if this fails.
+        try (InputStream in = new FileInputStream(source);
+             FileOutputStream out = new FileOutputStream(staged)) {
+            byte[] buf = new byte[64 * 1024];
+            int r;
+            while ((r = in.read(buf)) > 0) {
+                out.write(buf, 0, r);
+            }
+            out.getFD().sync();
+        }
+
+        // 2) Swap under the cache entry's lock, so forDeck() waits for it.
+        try {
+            CACHE.compute(dbName, (key, open) -> {
+                if (onSwap != null) onSwap.run();
+                if (open != null) open.close();
+                for (String suffix : new String[] { "-wal", "-shm", "-journal" }) {
+                    new File(dbFile.getPath() + suffix).delete();
+                }
+                if (!staged.renameTo(dbFile)) {
+                    throw new UncheckedIOException(new IOException("Cannot replace " + dbName));
+                }
+                LanguagePacks.onRestored(context, deckId, lang, complete);
+                DeckAssets.onRestored(context, deckId);
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            staged.delete();
+        }
+        Log.i(TAG, "Replaced " + dbName + " from " + source.getName());
+    }
+
+    /**
+     * Replaces a damaged deck's database with a fresh copy of its asset.
+     * The old file is closed and set aside for
+     * {@link DeckIntegrity#salvageIfPending}; the swap happens under the
+     * cache entry's lock like {@link #replaceDeck}.
+     *
+     * @param context app context
+     * @param deckId  deck identifier
+     */
+    @WorkerThread
+    static void reinstallDeck(@NonNull Context context, long deckId) throws IOException {
+        String dbName = fileNameForDeck(deckId);
+        File dbFile = context.getDatabasePath(dbName);
+        File staged = new File(dbFile.getPath() + ".repair");
+        if (!copyFromAssets(context, deckId, dbName, staged)) {
+            throw new IOException("No asset for " + dbName);
+        }
+        try {
+            CACHE.compute(dbName, (key, open) -> {
+                if (open != null) open.close();
+                if (!DeckIntegrity.setAside(dbFile) || !staged.renameTo(dbFile)) {
+                    throw new UncheckedIOException(new IOException("Cannot replace " + dbName));
+                }
+                LanguagePacks.onInstalled(context, deckId);
+                DeckAssets.onInstalled(context, deckId);
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            staged.delete();
+        }
+        Log.w(TAG, "Reinstalled " + dbName + " from assets");
+    }
+
+    /**
+     * Closes and deletes a deck's database file (with its -wal / -shm files)
+     * under the cache entry's lock; the next {@link #forDeck} starts afresh.
+     * Meant for user decks: a prepackaged deck would be installed again.
+     *
+     * @param context app context
+     * @param deckId  deck identifier
+     */
+    @WorkerThread
+    public static void deleteDeck(@NonNull Context context, long deckId) {
+        String dbName = fileNameForDeck(deckId);
+        CACHE.compute(dbName, (key, open) -> {
+            if (open != null) open.close();
+            context.deleteDatabase(dbName);
+            return null;
+        });
+        DistractorIndex.forget(context, deckId);
+        Log.i(TAG, "Deleted " + dbName);
+    }
+
+    /**
+     * Ids of the decks whose database file exists on this device, ascending.
+     * Decks that were never opened have no progress and are not listed.
+     *
+     * @param context app context
+     */
+    @NonNull
+    public static List<Long> installedDeckIds(@NonNull Context context) {
+        List<Long> ids = new ArrayList<>();
+        String[] names = context.databaseList();
+        if (names == null) return ids;
+        for (String name : names) {
+            long id = deckIdOf(name);
+            if (id >= 0) ids.add(id);
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Deck id of a deck database file name, or -1 for other files.
+     */
+    private static long deckIdOf(@Nullable String name) {
+        if (name == null || !name.startsWith(DB_PREFIX) || !name.endsWith(DB_SUFFIX)) return -1L;
+        try {
+            return Long.parseLong(name.substring(DB_PREFIX.length(), name.length() - DB_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            // Not a deck database (e.g. a temp file with the same prefix).
+            return -1L;
+        }
+    }
+
+    /**
+     * Whether the deck's database file exists, i.e. the deck was opened on
+     * this device at least once. Does not open or copy anything.
+     */
+    public static boolean isInstalled(@NonNull Context context, long deckId) {
+        return context.getDatabasePath(fileNameForDeck(deckId)).exists();
     }
 
     /**
      * Converts deckId into a DB file name, e.g. "cards_deck_1.db".
      */
-    private static String fileNameForDeck(long deckId) {
+    static String fileNameForDeck(long deckId) {
         return DB_PREFIX + deckId + DB_SUFFIX;
     }
 
     /**
      * Ensures the prepackaged DB file exists in the databases folder.
      * If the file is missing, attempts to copy it from the assets directory.
+     * Runs inside the deck's {@link #CACHE} computeIfAbsent, i.e. only while
+     * the deck is not open.
      *
      * @param context app context
+     * @param deckId  deck identifier
      * @param dbName  database file name
      */
     private static void ensurePrepackagedIfNeeded(@NonNull Context context,
+                                                  long deckId,
                                                   @NonNull String dbName) {
+        // Nothing to install; setting a user deck aside would lose it.
+        if (CustomDecks.isCustom(deckId)) return;
+
         File dbFile = context.getDatabasePath(dbName);
-        if (dbFile.exists()) return;
+        if (dbFile.exists()) {
+            // Header only; the full check runs periodically on open decks.
+            if (DeckIntegrity.looksComplete(dbFile)) return;
+            // Not SQLite or cut short: keep it for salvage, install afresh.
+            Log.w(TAG, dbName + " is incomplete; reinstalling");
+            if (!DeckIntegrity.setAside(dbFile)) dbFile.delete();
+        }
 
         // Ensure /databases directory exists.
         File parent = dbFile.getParentFile();
@@ -110,13 +390,24 @@ public final class DbProvider {
             parent.mkdirs();
         }
 
-        boolean copied = copyFromAssets(context.getAssets(), dbName, dbFile);
+        long t = PerfTrace.begin("DbProvider.extract");
+        boolean copied;
+        try {
+            copied = copyFromAssets(context, deckId, dbName, dbFile);
+        } finally {
+            PerfTrace.end(t);
+        }
+        PerfTrace.markOnce("first_deck_extracted");
         if (!copied) {
             Log.e(TAG, "Failed to find/copy " + dbName +
                     " from assets. Check paths and file name.");
             // We do NOT throw; Room will create an empty DB with the schema.
             // If you want to crash on missing asset, throw a RuntimeException here instead.
         } else {
+            LanguagePacks.onInstalled(context, deckId);
+            DeckAssets.onInstalled(context, deckId);
+            // The main menu showed 0% from the catalog; track it from now on.
+            DeckProgressTracker.get(context).onInstalled(deckId);
             Log.d(TAG, "Database copied successfully: " + dbFile.getAbsolutePath() +
                     " (" + dbFile.length() + " bytes)");
         }
@@ -124,30 +415,52 @@ public final class DbProvider {
 
     /**
      * Tries to copy the DB file from assets into the destination file.
-     * Checks several possible asset directory prefixes.
+     * Uses the deck's catalog asset path, else checks several possible asset
+     * directory prefixes. The copy is written
+     * to a temp file of its own, synced and renamed, so {@code dest} is
+     * either absent or complete even if the process dies halfway.
      *
-     * @param am      AssetManager
+     * @param context app context
+     * @param deckId  deck identifier
      * @param dbName  file name to look for
      * @param dest    target file in the app's databases directory
      * @return true if copy succeeded from any path, false otherwise
      */
-    private static boolean copyFromAssets(AssetManager am, String dbName, File dest) {
+    private static boolean copyFromAssets(Context context, long deckId, String dbName, File dest) {
+        AssetManager am = context.getAssets();
+        DeckCatalog.Entry entry = DeckCatalog.get(context).find(deckId);
+        List<String> paths = new ArrayList<>();
+        if (entry != null) paths.add(entry.assetPath);
         for (String dir : ASSET_DIRS) {
-            String assetPath = dir + dbName;
-            try (InputStream in = am.open(assetPath);
-                 FileOutputStream out = new FileOutputStream(dest)) {
-
-                byte[] buf = new byte[8192];
-                int r;
-                while ((r = in.read(buf)) > 0) {
-                    out.write(buf, 0, r);
+            paths.add(dir + dbName);
+        }
+        File tmp;
+        try {
+            tmp = File.createTempFile(dbName, ".tmp", dest.getParentFile());
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot create a temp file for " + dbName, e);
+            return false;
+        }
+        try {
+            for (String assetPath : paths) {
+                try (InputStream in = am.open(assetPath);
+                     FileOutputStream out = new FileOutputStream(tmp)) {
+
+                    byte[] buf = new byte[8192];
+                    int r;
+                    while ((r = in.read(buf)) > 0) {
+                        out.write(buf, 0, r);
+                    }
+                    out.getFD().sync();
+                } catch (Exception ignore) {
+                    // Try the next possible asset path.
+                    continue;
                 }
-                out.flush();
-                return true;
-            } catch (Exception ignore) {
-                // Try the next possible asset path.
+                return tmp.renameTo(dest);
             }
+            return false;
+        } finally {
+            tmp.delete();
         }
-        return false;
     }
 }
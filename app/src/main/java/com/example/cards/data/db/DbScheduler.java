@@ -0,0 +1,385 @@
+package com.example.cards.data.db;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.room.RoomDatabase;
+
+import com.example.cards.diag.LatencyHistogram;
+
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * DbScheduler
+ *
+ * Prioritized executor for all database work. Replaces the former fixed
+ * 4-thread {@code AppDatabase.databaseExecutor}.
+ *
+ * Lanes:
+ * - {@link Lane#WRITE}      – interactive writes (grades, learned toggles, reset).
+ * - {@link Lane#READ}       – interactive reads (lists, search, progress).
+ * - {@link Lane#BACKGROUND} – maintenance and diagnostics; runs on its own
+ *   low-priority thread so it never occupies an interactive worker.
+ *
+ * Behavior:
+ * - WRITE and READ share {@link #INTERACTIVE_THREADS} workers; a queued write
+ *   always starts before any queued read, so a burst of menu binds cannot
+ *   delay a user's grade.
+ * - WRITE and BACKGROUND tasks that name a database run one at a time per
+ *   database (single writer per deck file), queued writes first. READ tasks
+ *   are never serialized; WAL lets them run next to the writer.
+ * - A task submitted with a {@link LifecycleOwner} is cancelled when the
+ *   owner is destroyed: queued READ / BACKGROUND work is dropped and the
+ *   result is not delivered. Queued WRITE work still runs, so user input is
+ *   never lost; only its result callback is suppressed. The owner's
+ *   observer is removed as soon as the task has run or been skipped.
+ * - Per-lane queue depth, wait time (submit → start) and run time are
+ *   recorded; see {@link #format()}.
+ */
+public final class DbScheduler {
+
+    private static final String TAG = "DbScheduler";
+
+    // Workers shared by the WRITE and READ lanes.
+    private static final int INTERACTIVE_THREADS = 3;
+
+    /**
+     * Scheduling lane; declaration order is priority order.
+     */
+    public enum Lane { WRITE, READ, BACKGROUND }
+
+    /**
+     * Handle of a submitted task.
+     */
+    public static final class Task implements Runnable, Comparable<Task> {
+        final Lane lane;
+        final long seq;
+        @Nullable final Object writerKey;
+        final Runnable work;
+        final long submittedAt = SystemClock.elapsedRealtimeNanos();
+        private volatile boolean cancelled;
+        // Set before enqueue when the task has an owner.
+        boolean bound;
+        // Main thread only; the owner's observer until the task is done.
+        @Nullable Lifecycle lifecycle;
+        @Nullable LifecycleEventObserver observer;
+
+        Task(Lane lane, long seq, @Nullable Object writerKey, Runnable work) {
+            this.lane = lane;
+            this.seq = seq;
+            this.writerKey = writerKey;
+            this.work = work;
+        }
+
+        /**
+         * Cancels the task. Not-yet-started READ / BACKGROUND work is skipped;
+         * WRITE work still runs. The result callback is never delivered.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void run() {
+            get().runTask(this);
+        }
+
+        @Override
+        public int compareTo(@NonNull Task o) {
+            int byLane = lane.compareTo(o.lane);
+            return byLane != 0 ? byLane : Long.compare(seq, o.seq);
+        }
+    }
+
+    /**
+     * Pending tasks of one database writer; guarded by its own monitor.
+     * Removed from {@link #writers} once idle, so closed databases are not
+     * kept reachable; a retired writer is never reused.
+     */
+    private static final class Writer {
+        final PriorityQueue<Task> pending = new PriorityQueue<>();
+        boolean active;
+        boolean retired;
+    }
+
+    /**
+     * Metrics of one lane.
+     */
+    private static final class LaneStats {
+        final AtomicInteger depth = new AtomicInteger();
+        final AtomicInteger maxDepth = new AtomicInteger();
+        final LatencyHistogram waitMicros = new LatencyHistogram();
+        final LatencyHistogram runMicros = new LatencyHistogram();
+        final LongAdder cancelled = new LongAdder();
+        final LongAdder failed = new LongAdder();
+    }
+
+    private static volatile DbScheduler INSTANCE;
+
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final AtomicLong seq = new AtomicLong();
+    private final ConcurrentMap<Object, Writer> writers = new ConcurrentHashMap<>();
+    private final LaneStats[] stats = new LaneStats[Lane.values().length];
+
+    private final ThreadPoolExecutor interactive;
+    private final ThreadPoolExecutor background;
+
+    private DbScheduler() {
+        for (int i = 0; i < stats.length; i++) stats[i] = new LaneStats();
+
+        interactive = new ThreadPoolExecutor(
+                INTERACTIVE_THREADS, INTERACTIVE_THREADS,
+                0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                threads("db-io", Process.THREAD_PRIORITY_DEFAULT));
+        background = new ThreadPoolExecutor(
+                1, 1,
+                0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                threads("db-bg", Process.THREAD_PRIORITY_BACKGROUND));
+    }
+
+    /**
+     * Returns the process-wide scheduler.
+     */
+    public static DbScheduler get() {
+        if (INSTANCE == null) {
+            synchronized (DbScheduler.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new DbScheduler();
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private static ThreadFactory threads(String name, int priority) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(() -> {
+                Process.setThreadPriority(priority);
+                r.run();
+            }, name + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Submits work without a result.
+     *
+     * @param lane  scheduling lane
+     * @param db    database written by the task (single-writer key); null for
+     *              reads or work that touches no deck database
+     * @param owner lifecycle the task is bound to, or null
+     * @param work  code to run on a database thread
+     */
+    public Task submit(@NonNull Lane lane, @Nullable RoomDatabase db,
+                       @Nullable LifecycleOwner owner, @NonNull Runnable work) {
+        Task task = newTask(lane, db, work);
+        bind(task, owner);
+        enqueue(task);
+        return task;
+    }
+
+    /**
+     * Submits work whose result is delivered on the main thread, unless the
+     * task was cancelled by then.
+     */
+    public <T> Task submit(@NonNull Lane lane, @Nullable RoomDatabase db,
+                           @Nullable LifecycleOwner owner,
+                           @NonNull Supplier<T> work, @NonNull Consumer<T> onResult) {
+        Task[] self = new Task[1];
+        Task task = newTask(lane, db, () -> {
+            T result = work.get();
+            main.post(() -> {
+                if (!self[0].isCancelled()) onResult.accept(result);
+            });
+        });
+        self[0] = task;
+        bind(task, owner);
+        enqueue(task);
+        return task;
+    }
+
+    private Task newTask(Lane lane, @Nullable RoomDatabase db, Runnable work) {
+        // Reads never take the writer slot.
+        return new Task(lane, seq.getAndIncrement(), lane == Lane.READ ? null : db, work);
+    }
+
+    // -------------------------------------------------------------------------
+    // Queueing
+    // -------------------------------------------------------------------------
+
+    private void enqueue(Task task) {
+        LaneStats s = stats[task.lane.ordinal()];
+        int d = s.depth.incrementAndGet();
+        int max = s.maxDepth.get();
+        while (d > max && !s.maxDepth.compareAndSet(max, d)) {
+            max = s.maxDepth.get();
+        }
+
+        while (task.writerKey != null) {
+            Writer w = writers.computeIfAbsent(task.writerKey, k -> new Writer());
+            synchronized (w) {
+                if (w.retired) continue; // went idle meanwhile; take a fresh one
+                if (w.active) {
+                    w.pending.add(task);
+                    return;
+                }
+                w.active = true;
+                break;
+            }
+        }
+        dispatch(task);
+    }
+
+    private void dispatch(Task task) {
+        if (task.lane == Lane.BACKGROUND) {
+            background.execute(task);
+        } else {
+            interactive.execute(task);
+        }
+    }
+
+    private void runTask(Task task) {
+        LaneStats s = stats[task.lane.ordinal()];
+        s.depth.decrementAndGet();
+        try {
+            if (task.isCancelled() && task.lane != Lane.WRITE) {
+                s.cancelled.increment();
+                return;
+            }
+            long start = SystemClock.elapsedRealtimeNanos();
+            s.waitMicros.record((start - task.submittedAt) / 1_000L);
+            try {
+                task.work.run();
+            } catch (RuntimeException e) {
+                s.failed.increment();
+                Log.e(TAG, task.lane + " task failed", e);
+            }
+            s.runMicros.record((SystemClock.elapsedRealtimeNanos() - start) / 1_000L);
+        } finally {
+            if (task.writerKey != null) releaseWriter(task.writerKey);
+            // Queued after any result post, so the callback still sees a cancel.
+            if (task.bound) main.post(() -> unbind(task));
+        }
+    }
+
+    /**
+     * Hands the database to its next queued task, or retires its idle writer.
+     */
+    private void releaseWriter(Object key) {
+        Writer w = writers.get(key);
+        if (w == null) return;
+        Task next;
+        synchronized (w) {
+            next = w.pending.poll();
+            if (next == null) {
+                w.active = false;
+                w.retired = true;
+                writers.remove(key, w);
+            }
+        }
+        if (next != null) dispatch(next);
+    }
+
+    // -------------------------------------------------------------------------
+    // Lifecycle
+    // -------------------------------------------------------------------------
+
+    private void bind(Task task, @Nullable LifecycleOwner owner) {
+        if (owner == null) return;
+        task.bound = true;
+        // Lifecycle observers may only be touched on the main thread.
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            observe(task, owner);
+        } else {
+            main.post(() -> observe(task, owner));
+        }
+    }
+
+    private void observe(Task task, LifecycleOwner owner) {
+        Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            task.cancel();
+            return;
+        }
+        task.lifecycle = lifecycle;
+        task.observer = (source, event) -> {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                task.cancel();
+                unbind(task);
+            }
+        };
+        lifecycle.addObserver(task.observer);
+    }
+
+    /**
+     * Drops the task's observer once it has run, been skipped or cancelled,
+     * so a long-lived owner does not collect one per submitted task.
+     */
+    private static void unbind(Task task) {
+        if (task.observer == null) return;
+        task.lifecycle.removeObserver(task.observer);
+        task.observer = null;
+        task.lifecycle = null;
+    }
+
+    // -------------------------------------------------------------------------
+    // Metrics
+    // -------------------------------------------------------------------------
+
+    /**
+     * Current number of submitted, not yet started tasks in a lane.
+     */
+    public int queueDepth(@NonNull Lane lane) {
+        return stats[lane.ordinal()].depth.get();
+    }
+
+    /**
+     * Per-lane queue depth, wait time and run time, one line per lane.
+     */
+    @NonNull
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        for (Lane lane : Lane.values()) {
+            LaneStats s = stats[lane.ordinal()];
+            sb.append(String.format(Locale.US,
+                    "%-10s depth=%d max=%d n=%d wait p50=%.1f p99=%.1f max=%.1f ms"
+                            + " run p50=%.1f p99=%.1f ms cancelled=%d failed=%d%n",
+                    lane, s.depth.get(), s.maxDepth.get(), s.waitMicros.count(),
+                    s.waitMicros.percentile(0.50) / 1000.0,
+                    s.waitMicros.percentile(0.99) / 1000.0,
+                    s.waitMicros.maxMicros() / 1000.0,
+                    s.runMicros.percentile(0.50) / 1000.0,
+                    s.runMicros.percentile(0.99) / 1000.0,
+                    s.cancelled.sum(), s.failed.sum()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.cards.data.db;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.example.cards.data.catalog.DeckCatalog;
+import com.example.cards.data.content.DeckContent;
+import com.example.cards.diag.PerfTrace;
+
+/**
+ * DeckAssets
+ *
+ * Tracks which deck asset (by its {@link DeckCatalog} checksum) each
+ * installed deck database holds, and brings decks installed from an older
+ * asset up to date.
+ *
+ * Behavior:
+ * - A fresh copy of the asset records the catalog checksum. A deck restored
+ *   from a snapshot records none, since the snapshot may predate the asset.
+ * - {@link DbProvider} checks {@link #isPatched} on every open, one prefs
+ *   read. When the recorded checksum differs from the catalog's (the first
+ *   open after an app upgrade), it queues {@link #ensureCurrent} in the
+ *   deck's writer slot on the WRITE lane, so the patch never runs on the
+ *   thread that opens the deck. The deck's word content is patched once
+ *   from the base pack: words and translations of existing cards are
+ *   rewritten, new cards are added, and cards dropped from the asset are
+ *   kept with their progress. Open screens see the patch through Room
+ *   invalidation.
+ * - A deck whose cards are exactly the asset's is "current":
+ *   {@link #isCurrent} lets screens trust the mapped content without
+ *   comparing it with SQLite ({@link DeckContent#matches}).
+ */
+public final class DeckAssets {
+
+    private static final String TAG = "DeckAssets";
+
+    private static final String PREFS_NAME = "app_settings";
+    // Per deck: catalog checksum of the asset the database was installed or
+    // patched from, and whether its cards are exactly that asset's.
+    private static final String KEY_CHECKSUM = "deck_asset_";
+    private static final String KEY_EXACT = "deck_asset_exact_";
+
+    private DeckAssets() {
+        // Utility class; no instances.
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Whether a deck's database holds exactly the cards of the asset in this
+     * APK (and so of its mapped content).
+     */
+    public static boolean isCurrent(@NonNull Context context, long deckId) {
+        DeckCatalog.Entry entry = DeckCatalog.get(context).find(deckId);
+        SharedPreferences p = prefs(context);
+        return entry != null
+                && p.getLong(KEY_CHECKSUM + deckId, -1L) == entry.checksum
+                && p.getBoolean(KEY_EXACT + deckId, false);
+    }
+
+    /**
+     * Records that a fresh copy of the deck's asset was installed.
+     */
+    static void onInstalled(@NonNull Context context, long deckId) {
+        DeckCatalog.Entry entry = DeckCatalog.get(context).find(deckId);
+        SharedPreferences.Editor e = prefs(context).edit();
+        if (entry != null) {
+            e.putLong(KEY_CHECKSUM + deckId, entry.checksum).putBoolean(KEY_EXACT + deckId, true);
+        } else {
+            e.remove(KEY_CHECKSUM + deckId).remove(KEY_EXACT + deckId);
+        }
+        e.apply();
+    }
+
+    /**
+     * Forgets the asset of a deck swapped in from a snapshot; the next open
+     * patches it. Called by {@link DbProvider} while the deck is closed.
+     */
+    static void onRestored(@NonNull Context context, long deckId) {
+        prefs(context).edit()
+                .remove(KEY_CHECKSUM + deckId)
+                .remove(KEY_EXACT + deckId)
+                .commit();
+    }
+
+    /**
+     * Whether a deck holds (or was patched to) the catalog's asset, or has no
+     * catalog entry; a prefs read.
+     */
+    static boolean isPatched(@NonNull Context context, long deckId) {
+        DeckCatalog.Entry entry = DeckCatalog.get(context).find(deckId);
+        return entry == null || prefs(context).getLong(KEY_CHECKSUM + deckId, -1L) == entry.checksum;
+    }
+
+    /**
+     * Patches a deck's words from the base pack unless it already holds the
+     * catalog's asset. Runs in the deck's writer slot, queued by
+     * {@link DbProvider}, before {@link LanguagePacks#ensureApplied}.
+     */
+    @WorkerThread
+    static void ensureCurrent(@NonNull Context context, long deckId, @NonNull AppDatabase db) {
+        DeckCatalog.Entry entry = DeckCatalog.get(context).find(deckId);
+        if (entry == null) return;
+        SharedPreferences p = prefs(context);
+        if (p.getLong(KEY_CHECKSUM + deckId, -1L) == entry.checksum) return;
+
+        synchronized (DeckAssets.class) {
+            if (p.getLong(KEY_CHECKSUM + deckId, -1L) == entry.checksum) return;
+
+            DeckContent base = DeckContent.forDeck(context, LanguagePacks.BASE, deckId);
+            if (base == null) return;
+
+            // Translations in another language are the overlay's business; it
+            // matches by headword, so patched words get them on the next switch.
+            boolean baseBacks = LanguagePacks.BASE.equals(LanguagePacks.deckLanguage(context, deckId));
+
+            long t = PerfTrace.begin("DeckAssets.patch");
+            SupportSQLiteDatabase w = db.getOpenHelper().getWritableDatabase();
+            int[] changed;
+            try {
+                changed = patch(db, w, base, deckId, baseBacks);
+            } finally {
+                PerfTrace.end(t);
+            }
+            boolean exact = LanguagePacks.countCards(w, deckId) == base.size();
+            if (changed[1] > 0 && !baseBacks) {
+                // New cards carry base translations: have the overlay run again.
+                LanguagePacks.onInstalled(context, deckId);
+            }
+
+            // commit(): the patch is already durable, the marker must be too.
+            p.edit()
+                    .putLong(KEY_CHECKSUM + deckId, entry.checksum)
+                    .putBoolean(KEY_EXACT + deckId, exact)
+                    .commit();
+            Log.i(TAG, "Deck " + deckId + " patched: " + changed[0] + " updated, "
+                    + changed[1] + " added" + (exact ? "" : " (keeps cards not in the asset)"));
+        }
+    }
+
+    /**
+     * Rewrites and adds cards from the base pack in one Room transaction, so
+     * open screens are notified.
+     *
+     * @return {updated, inserted}
+     */
+    private static int[] patch(AppDatabase db, SupportSQLiteDatabase w, DeckContent base,
+                               long deckId, boolean baseBacks) {
+        int updated = 0;
+        int inserted = 0;
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try {
+            // OR IGNORE: a word already present under another id stays as it is.
+            SupportSQLiteStatement update = w.compileStatement(baseBacks
+                    ? "UPDATE OR IGNORE cards SET front = ?1, back = ?2"
+                        + " WHERE id = ?3 AND deckId = ?4 AND (front <> ?1 OR back <> ?2)"
+                    : "UPDATE OR IGNORE cards SET front = ?1"
+                        + " WHERE id = ?3 AND deckId = ?4 AND front <> ?1");
+            SupportSQLiteStatement insert = w.compileStatement(
+                    "INSERT OR IGNORE INTO cards (id, deckId, front, back, createdAt, learned, excluded)"
+                            + " VALUES (?, ?, ?, ?, ?, 0, 0)");
+            for (int i = 0; i < base.size(); i++) {
+                long id = base.cardIdAt(i);
+                String front = base.frontAt(i);
+                String back = base.backAt(i);
+
+                update.bindString(1, front);
+                update.bindString(2, back);
+                update.bindLong(3, id);
+                update.bindLong(4, deckId);
+                updated += update.executeUpdateDelete();
+                update.clearBindings();
+
+                insert.bindLong(1, id);
+                insert.bindLong(2, deckId);
+                insert.bindString(3, front);
+                insert.bindString(4, back);
+                insert.bindLong(5, now);
+                if (insert.executeInsert() != -1) inserted++;
+                insert.clearBindings();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return new int[] { updated, inserted };
+    }
+}
@@ -0,0 +1,407 @@
+package com.example.cards.data.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.example.cards.data.history.DailyRollups;
+import com.example.cards.diag.PerfTrace;
+import com.example.cards.repo.DeckProgressTracker;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * DeckIntegrity
+ *
+ * Detects damaged deck databases and rebuilds them without losing the
+ * progress that can still be read.
+ *
+ * Behavior:
+ * - Opening a deck only reads its 100-byte SQLite header
+ *   ({@link #looksComplete}); a file that is not SQLite or is shorter than
+ *   its header says (an interrupted copy) is set aside and a fresh copy of
+ *   the asset installed. Startup never runs a full check.
+ * - {@link #start} runs {@code PRAGMA quick_check} on a separate read-only
+ *   connection for each deck not checked within {@link #INTERVAL_MS}, on the
+ *   BACKGROUND lane; the maintenance job reports its own quick_check
+ *   through {@link #onChecked}.
+ * - A failed check reinstalls the deck from its asset in the deck's writer
+ *   slot ({@link DbProvider#reinstallDeck}); the damaged file is kept as
+ *   {@code cards_deck_<id>.db.corrupt}.
+ * - While such a file exists, each new Room instance of the deck salvages it
+ *   ({@link #salvageIfPending}): readable rows of review_state,
+ *   learned_state, review_log and review_log_monthly, and the cards'
+ *   learned / excluded flags, are copied in one Room transaction. Tables are
+ *   read in rowid order from both ends, so rows on either side of a damaged
+ *   page survive. The set-aside file is deleted only after the commit, and
+ *   daily_rollup is rebuilt from the salvaged history.
+ */
+public final class DeckIntegrity {
+
+    private static final String TAG = "DeckIntegrity";
+
+    static final long INTERVAL_MS = TimeUnit.DAYS.toMillis(3);
+    private static final long FIRST_DELAY_MS = TimeUnit.MINUTES.toMillis(2);
+    private static final long POLL_MS = TimeUnit.HOURS.toMillis(6);
+
+    private static final String PREFS_NAME = "app_settings";
+    private static final String KEY_CHECKED = "integrity_checked_";
+
+    private static final String ASIDE = ".corrupt";
+
+    private static final byte[] MAGIC = "SQLite format 3\0".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER = 100;
+
+    // Progress tables copied row by row, in this order.
+    private static final String[] SALVAGED = {
+            "review_state", "learned_state", "review_log", "review_log_monthly"
+    };
+
+    private static boolean started; // main thread only
+
+    private DeckIntegrity() {
+        // Utility class; no instances.
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    // -------------------------------------------------------------------------
+    // Header check
+    // -------------------------------------------------------------------------
+
+    /**
+     * Cheap structural check of a database file: SQLite magic, a whole
+     * number of pages, and at least as many pages as the header records.
+     */
+    public static boolean looksComplete(@NonNull File file) {
+        long length = file.length();
+        if (length < HEADER) return false;
+        byte[] h = new byte[HEADER];
+        try (InputStream in = new FileInputStream(file)) {
+            int off = 0;
+            while (off < HEADER) {
+                int r = in.read(h, off, HEADER - off);
+                if (r < 0) return false;
+                off += r;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        if (!Arrays.equals(Arrays.copyOf(h, MAGIC.length), MAGIC)) return false;
+
+        int pageSize = ((h[16] & 0xFF) << 8) | (h[17] & 0xFF);
+        if (pageSize == 1) pageSize = 65536;
+        if (pageSize < 512 || Integer.bitCount(pageSize) != 1) return false;
+        if (length % pageSize != 0) return false;
+
+        // The in-header page count is only valid when written by SQLite 3.7+
+        // in the same transaction as the change counter.
+        if (readInt(h, 92) == readInt(h, 24)) {
+            long pages = readInt(h, 28) & 0xFFFFFFFFL;
+            return length >= pages * pageSize;
+        }
+        return true;
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16)
+                | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+    }
+
+    /**
+     * Name a damaged deck file is kept under until salvaged.
+     */
+    static File asideFor(@NonNull File dbFile) {
+        return new File(dbFile.getPath() + ASIDE);
+    }
+
+    /**
+     * Moves a deck file (and its WAL) aside for salvage; the deck must be
+     * closed. A previous, unsalvaged file is replaced.
+     *
+     * @return false if the file could not be moved
+     */
+    static boolean setAside(@NonNull File dbFile) {
+        File aside = asideFor(dbFile);
+        deleteWithSidecars(aside);
+        new File(dbFile.getPath() + "-wal").renameTo(new File(aside.getPath() + "-wal"));
+        for (String suffix : new String[] { "-shm", "-journal" }) {
+            new File(dbFile.getPath() + suffix).delete();
+        }
+        return dbFile.renameTo(aside);
+    }
+
+    private static void deleteWithSidecars(File f) {
+        for (String suffix : new String[] { "", "-wal", "-shm", "-journal" }) {
+            new File(f.getPath() + suffix).delete();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Periodic quick_check
+    // -------------------------------------------------------------------------
+
+    /**
+     * Starts the periodic check; later calls do nothing.
+     */
+    @MainThread
+    public static void start(@NonNull Context context) {
+        if (started) return;
+        started = true;
+        Context app = context.getApplicationContext();
+        Handler main = new Handler(Looper.getMainLooper());
+        main.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, null, null,
+                        () -> checkDue(app));
+                main.postDelayed(this, POLL_MS);
+            }
+        }, FIRST_DELAY_MS);
+    }
+
+    @WorkerThread
+    static void checkDue(@NonNull Context app) {
+        SharedPreferences p = prefs(app);
+        for (long deckId : DbProvider.installedDeckIds(app)) {
+            if (System.currentTimeMillis() - p.getLong(KEY_CHECKED + deckId, 0) < INTERVAL_MS) continue;
+            long t = PerfTrace.begin("DeckIntegrity.check");
+            try {
+                onChecked(app, deckId, quickCheck(app.getDatabasePath(DbProvider.fileNameForDeck(deckId))));
+            } finally {
+                PerfTrace.end(t);
+            }
+        }
+    }
+
+    /**
+     * First row of {@code PRAGMA quick_check} ("ok" when healthy), read on
+     * its own connection so the deck's writer is not blocked.
+     */
+    @WorkerThread
+    @NonNull
+    static String quickCheck(@NonNull File dbFile) {
+        try (SQLiteDatabase sql = open(dbFile, SQLiteDatabase.OPEN_READONLY);
+             Cursor c = sql.rawQuery("PRAGMA quick_check(1)", null)) {
+            return c.moveToFirst() ? c.getString(0) : "no result";
+        } catch (SQLiteException e) {
+            return "unreadable: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Records a check of a deck and queues its repair if it failed.
+     *
+     * @param result first row of quick_check
+     */
+    public static void onChecked(@NonNull Context context, long deckId, @NonNull String result) {
+        Context app = context.getApplicationContext();
+        prefs(app).edit().putLong(KEY_CHECKED + deckId, System.currentTimeMillis()).apply();
+        if ("ok".equals(result)) return;
+        Log.e(TAG, "Deck " + deckId + " failed quick_check: " + result);
+        DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, DbProvider.peek(deckId), null,
+                () -> repair(app, deckId));
+    }
+
+    /**
+     * Replaces a damaged deck with its asset; salvage follows when the deck
+     * is reopened. Must run in the deck's writer slot.
+     */
+    @WorkerThread
+    static void repair(@NonNull Context app, long deckId) {
+        try {
+            DbProvider.reinstallDeck(app, deckId);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot reinstall deck " + deckId, e);
+            return;
+        }
+        DbProvider.forDeck(app, deckId);
+        DeckProgressTracker.get(app).reload(deckId);
+    }
+
+    // -------------------------------------------------------------------------
+    // Salvage
+    // -------------------------------------------------------------------------
+
+    /**
+     * Queues a salvage of the deck's set-aside file, if there is one.
+     * Called by {@link DbProvider} for each database instance it builds.
+     */
+    static void salvageIfPending(@NonNull Context context, long deckId, @NonNull AppDatabase db) {
+        Context app = context.getApplicationContext();
+        File aside = asideFor(app.getDatabasePath(DbProvider.fileNameForDeck(deckId)));
+        if (!aside.exists()) return;
+        DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, db, null,
+                () -> salvage(app, deckId, db, aside));
+    }
+
+    /**
+     * Copies the readable progress of {@code aside} into the deck. Must run
+     * in the deck's writer slot.
+     *
+     * @return rows salvaged, or -1 if the copy failed (the file is kept)
+     */
+    @WorkerThread
+    static long salvage(@NonNull Context app, long deckId, @NonNull AppDatabase db, @NonNull File aside) {
+        if (!aside.exists()) return 0;
+        long t = PerfTrace.begin("DeckIntegrity.salvage");
+        try {
+            SQLiteDatabase src;
+            try {
+                // Writable so a set-aside WAL can be recovered; the file is discarded anyway.
+                src = open(aside, SQLiteDatabase.OPEN_READWRITE);
+            } catch (SQLiteException e) {
+                Log.e(TAG, "Deck " + deckId + ": nothing salvageable", e);
+                deleteWithSidecars(aside);
+                return 0;
+            }
+
+            long[] rows = { 0 };
+            try {
+                SupportSQLiteDatabase dst = db.getOpenHelper().getWritableDatabase();
+                db.beginTransaction();
+                try {
+                    // 1) Flags on the (freshly installed) cards.
+                    scanBothEnds(src, "SELECT id, learned, excluded FROM cards WHERE learned <> 0 OR excluded <> 0",
+                            c -> {
+                                ContentValues v = new ContentValues();
+                                v.put("learned", c.getInt(1));
+                                v.put("excluded", c.getInt(2));
+                                rows[0] += dst.update("cards", SQLiteDatabase.CONFLICT_IGNORE, v,
+                                        "id = ?", new Object[] { c.getLong(0) });
+                            });
+
+                    // 2) Progress tables, columns known to both schemas.
+                    for (String table : SALVAGED) {
+                        Set<String> target = columns(dst, table);
+                        if (target.isEmpty() || !hasTable(src, table)) continue;
+                        scanBothEnds(src, "SELECT * FROM " + table, c -> {
+                            if (insert(dst, table, target, c)) rows[0]++;
+                        });
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Salvage of deck " + deckId + " failed; will retry", e);
+                return -1;
+            } finally {
+                src.close();
+            }
+
+            deleteWithSidecars(aside);
+            Log.i(TAG, "Deck " + deckId + ": salvaged " + rows[0] + " rows");
+            DailyRollups.scheduleRebuild(app, deckId, db);
+            return rows[0];
+        } finally {
+            PerfTrace.end(t);
+        }
+    }
+
+    // Opens without Android's default corruption handler, which deletes the file.
+    private static SQLiteDatabase open(File file, int flags) {
+        return SQLiteDatabase.openDatabase(file.getPath(), null,
+                flags, dbObj -> Log.w(TAG, "Corruption in " + file.getName()));
+    }
+
+    /**
+     * Feeds every readable row of {@code select} to {@code row}: in rowid
+     * order until the first unreadable page, then backwards from the end
+     * down to it. Rows read twice are ignored by the inserts.
+     */
+    private static void scanBothEnds(SQLiteDatabase src, String select, Consumer<Cursor> row) {
+        if (scan(src, select + " ORDER BY rowid ASC", row)) return;
+        scan(src, select + " ORDER BY rowid DESC", row);
+    }
+
+    /**
+     * @return true if the whole result was read
+     */
+    private static boolean scan(SQLiteDatabase src, String sql, Consumer<Cursor> row) {
+        Cursor c;
+        try {
+            c = src.rawQuery(sql, null);
+        } catch (SQLiteException e) {
+            Log.w(TAG, "Unreadable: " + sql, e);
+            return false;
+        }
+        try {
+            while (true) {
+                // Only read errors end the scan; write errors abort the salvage.
+                try {
+                    if (!c.moveToNext()) return true;
+                } catch (SQLiteException e) {
+                    Log.w(TAG, "Unreadable rows in: " + sql, e);
+                    return false;
+                }
+                row.accept(c);
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    private static boolean hasTable(SQLiteDatabase src, String table) {
+        try (Cursor c = src.rawQuery(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?", new String[] { table })) {
+            return c.moveToFirst();
+        } catch (SQLiteException e) {
+            return false;
+        }
+    }
+
+    private static Set<String> columns(SupportSQLiteDatabase db, String table) {
+        Set<String> out = new HashSet<>();
+        try (Cursor c = db.query("PRAGMA table_info(" + table + ")")) {
+            int name = c.getColumnIndexOrThrow("name");
+            while (c.moveToNext()) out.add(c.getString(name));
+        }
+        return out;
+    }
+
+    private static boolean insert(SupportSQLiteDatabase dst, String table, Set<String> target, Cursor c) {
+        ContentValues v = new ContentValues();
+        for (int i = 0; i < c.getColumnCount(); i++) {
+            String col = c.getColumnName(i);
+            if (!target.contains(col)) continue;
+            switch (c.getType(i)) {
+                case Cursor.FIELD_TYPE_INTEGER: v.put(col, c.getLong(i)); break;
+                case Cursor.FIELD_TYPE_FLOAT:   v.put(col, c.getDouble(i)); break;
+                case Cursor.FIELD_TYPE_STRING:  v.put(col, c.getString(i)); break;
+                case Cursor.FIELD_TYPE_BLOB:    v.put(col, c.getBlob(i)); break;
+                default:                        v.putNull(col); break;
+            }
+        }
+        try {
+            return dst.insert(table, SQLiteDatabase.CONFLICT_IGNORE, v) != -1;
+        } catch (SQLiteConstraintException e) {
+            // A card that is not in the asset any more (foreign key).
+            return false;
+        }
+    }
+}
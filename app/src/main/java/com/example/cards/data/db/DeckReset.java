@@ -0,0 +1,166 @@
+package com.example.cards.data.db;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.example.cards.data.history.ReviewArchive;
+import com.example.cards.diag.PerfTrace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * DeckReset
+ *
+ * Clears study progress in place, keeping the installed deck content
+ * (cards, translations in the chosen language) and the cached Room
+ * instances.
+ *
+ * Behavior:
+ * - One transaction per deck empties review_state, review_log,
+ *   review_log_monthly, daily_rollup and learned_state and clears the cards' learned /
+ *   excluded flags. The deck's {@link ReviewArchive} is deleted only after
+ *   that transaction commits, so a failed reset leaves the rollups and the
+ *   history they summarize in place.
+ * - Each deck is a WRITE task on its own writer slot: decks reset in
+ *   parallel on the interactive workers, and a deck's queued grades and
+ *   compaction batches are ordered around its reset instead of racing it.
+ * - The transaction goes through Room, so invalidation observers
+ *   (progress percents, snapshot tracking, open lists) see the change and
+ *   every cached handle stays valid; nothing is deleted or re-extracted.
+ * - Every card is new again: its review_state is created by its first
+ *   grade after the reset.
+ * - A confirmed reset is never bound to the screen that asked for it: a
+ *   rotation or back press only drops the completion callback.
+ */
+public final class DeckReset {
+
+    private static final String TAG = "DeckReset";
+
+    private static final String[] STATEMENTS = {
+            "DELETE FROM review_log",
+            "DELETE FROM review_log_monthly",
+            "DELETE FROM daily_rollup",
+            "DELETE FROM review_state",
+            "DELETE FROM learned_state",
+            "UPDATE cards SET learned = 0, excluded = 0 WHERE learned <> 0 OR excluded <> 0"
+    };
+
+    private DeckReset() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Resets one deck on the WRITE lane. The reset runs to completion even if
+     * {@code owner} is destroyed meanwhile; only the callback is bound to it.
+     *
+     * @param onDone receives whether the reset committed, on the main thread,
+     *               unless {@code owner} is destroyed by then
+     */
+    @MainThread
+    public static void resetDeck(@NonNull Context context, long deckId,
+                                 @Nullable LifecycleOwner owner, @NonNull Consumer<Boolean> onDone) {
+        Context app = context.getApplicationContext();
+        // Opening may copy the asset; do it off the main thread, then take the slot.
+        DbScheduler.get().submit(DbScheduler.Lane.READ, null, null, () -> {
+            AppDatabase db = DbProvider.forDeck(app, deckId);
+            DbScheduler.get().submit(DbScheduler.Lane.WRITE, db, null,
+                    () -> reset(app, deckId, db), ok -> {
+                if (alive(owner)) onDone.accept(ok);
+            });
+        });
+    }
+
+    /**
+     * Resets every installed deck, in parallel. Like {@link #resetDeck}, the
+     * resets do not depend on {@code owner}; only the callback does.
+     *
+     * @param onDone receives the number of decks reset, on the main thread,
+     *               unless {@code owner} is destroyed by then
+     */
+    @MainThread
+    public static void resetAll(@NonNull Context context, @Nullable LifecycleOwner owner,
+                                @NonNull IntConsumer onDone) {
+        Context app = context.getApplicationContext();
+        DbScheduler.get().submit(DbScheduler.Lane.READ, null, null, () -> {
+            // Open (and cache) every deck off the main thread.
+            List<Long> ids = DbProvider.installedDeckIds(app);
+            for (long deckId : ids) DbProvider.forDeck(app, deckId);
+            return ids;
+        }, ids -> {
+            List<AppDatabase> dbs = new ArrayList<>(ids.size());
+            List<Long> open = new ArrayList<>(ids.size());
+            for (long deckId : ids) {
+                AppDatabase db = DbProvider.peek(deckId);
+                if (db == null) continue; // replaced meanwhile (restore)
+                dbs.add(db);
+                open.add(deckId);
+            }
+            if (dbs.isEmpty()) {
+                if (alive(owner)) onDone.accept(0);
+                return;
+            }
+            // Results arrive on the main thread, so plain counters suffice.
+            int[] left = { dbs.size() };
+            int[] reset = { 0 };
+            for (int i = 0; i < dbs.size(); i++) {
+                long deckId = open.get(i);
+                AppDatabase db = dbs.get(i);
+                DbScheduler.get().submit(DbScheduler.Lane.WRITE, db, null,
+                        () -> reset(app, deckId, db), ok -> {
+                    if (ok) reset[0]++;
+                    if (--left[0] == 0 && alive(owner)) onDone.accept(reset[0]);
+                });
+            }
+        });
+    }
+
+    /**
+     * Whether a callback bound to {@code owner} may still be delivered.
+     */
+    @MainThread
+    private static boolean alive(@Nullable LifecycleOwner owner) {
+        return owner == null
+                || owner.getLifecycle().getCurrentState() != Lifecycle.State.DESTROYED;
+    }
+
+    /**
+     * Clears one deck's progress. Must run in the deck's writer slot.
+     *
+     * @return true if the transaction committed
+     */
+    @WorkerThread
+    static boolean reset(@NonNull Context app, long deckId, @NonNull AppDatabase db) {
+        long t = PerfTrace.begin("DeckReset.deck");
+        try {
+            // 1) Tables, in one Room transaction so observers are notified.
+            SupportSQLiteDatabase w = db.getOpenHelper().getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (String sql : STATEMENTS) w.execSQL(sql);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            // 2) Archive, now that nothing refers to it (see the class notes).
+            ReviewArchive.forDeck(app, deckId).delete();
+            return true;
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Reset of deck " + deckId + " failed", e);
+            return false;
+        } finally {
+            PerfTrace.end(t);
+        }
+    }
+}
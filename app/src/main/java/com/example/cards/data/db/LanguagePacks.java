@@ -0,0 +1,232 @@
+package com.example.cards.data.db;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.example.cards.data.content.DeckContent;
+import com.example.cards.diag.PerfTrace;
+
+/**
+ * LanguagePacks
+ *
+ * Translation language of the deck databases. The APK ships one pack per
+ * language ({@code assets/db/eng/}, {@code assets/db/rus/}); every pack has
+ * the same Korean headwords (some packs are partial) with a different
+ * {@code back} text.
+ *
+ * Behavior:
+ * - Only one database per deck is ever installed: the {@link #BASE} pack,
+ *   which has the complete set of cards.
+ * - The chosen language is applied as an overlay: the {@code back} column is
+ *   rewritten from the chosen pack's memory-mapped content, matched by
+ *   headword ({@code front}). Nothing else is copied or extracted.
+ * - Card ids and headwords never change, so all progress (review_state,
+ *   review_log, learned_state, flags) stays with the same word across
+ *   language switches.
+ * - Switching languages persists the choice and re-points the decks that
+ *   are open; the others are re-pointed when next opened through
+ *   {@link DbProvider}. The overlay always runs as a WRITE-lane task in the
+ *   deck's writer slot, never on the thread that opens the deck.
+ * - Cards a partial pack does not cover keep their current translation.
+ *
+ * The overlay uses plain UPDATEs on Room's connection rather than
+ * {@code ATTACH}: attaching a database makes Android turn off WAL for the
+ * connection.
+ */
+public final class LanguagePacks {
+
+    private static final String TAG = "LanguagePacks";
+
+    public static final String ENG = "eng";
+    public static final String RUS = "rus";
+
+    /** Language of the installed deck databases; its packs are complete. */
+    public static final String BASE = ENG;
+
+    private static final String PREFS_NAME = "app_settings";
+    private static final String KEY_LANGUAGE = "translation_language";
+    // Per deck: language currently written into the installed file, and
+    // whether that pack covered every card of the deck.
+    private static final String KEY_DECK_LANG = "deck_lang_";
+    private static final String KEY_DECK_COMPLETE = "deck_lang_complete_";
+
+    private LanguagePacks() {
+        // Utility class; no instances.
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Returns the chosen translation language ({@link #ENG} by default).
+     */
+    @NonNull
+    public static String current(@NonNull Context context) {
+        String lang = prefs(context).getString(KEY_LANGUAGE, BASE);
+        return RUS.equals(lang) ? RUS : ENG;
+    }
+
+    /**
+     * Persists the chosen translation language and queues the overlay for
+     * the decks that are open. Other decks pick it up when they are next
+     * opened.
+     */
+    public static void setCurrent(@NonNull Context context, @NonNull String lang) {
+        if (!ENG.equals(lang) && !RUS.equals(lang)) {
+            throw new IllegalArgumentException("Unknown language " + lang);
+        }
+        prefs(context).edit().putString(KEY_LANGUAGE, lang).apply();
+        DbProvider.updateOpenDecks(context);
+    }
+
+    /**
+     * Asset path of a file of the base pack, e.g. "db/eng/cards_deck_1.db".
+     */
+    @NonNull
+    static String baseAssetPath(@NonNull String fileName) {
+        return "db/" + BASE + "/" + fileName;
+    }
+
+    /**
+     * Records that a fresh copy of the base pack was installed for a deck.
+     */
+    static void onInstalled(@NonNull Context context, long deckId) {
+        prefs(context).edit()
+                .putString(KEY_DECK_LANG + deckId, BASE)
+                .putBoolean(KEY_DECK_COMPLETE + deckId, true)
+                .apply();
+    }
+
+    /**
+     * Records the translations held by a deck database that was swapped in
+     * from a snapshot. Called by {@link DbProvider} while the deck is closed.
+     */
+    static void onRestored(@NonNull Context context, long deckId,
+                           @NonNull String lang, boolean complete) {
+        prefs(context).edit()
+                .putString(KEY_DECK_LANG + deckId, lang)
+                .putBoolean(KEY_DECK_COMPLETE + deckId, complete)
+                .commit();
+    }
+
+    /**
+     * Language currently written into a deck's installed database.
+     */
+    @NonNull
+    public static String deckLanguage(@NonNull Context context, long deckId) {
+        return prefs(context).getString(KEY_DECK_LANG + deckId, BASE);
+    }
+
+    /**
+     * Whether the pack of {@link #deckLanguage} covered every card of the deck.
+     */
+    public static boolean isDeckComplete(@NonNull Context context, long deckId) {
+        return prefs(context).getBoolean(KEY_DECK_COMPLETE + deckId, true);
+    }
+
+    /**
+     * Whether a deck's translations are in the chosen language; a prefs read.
+     */
+    static boolean isApplied(@NonNull Context context, long deckId) {
+        return current(context).equals(deckLanguage(context, deckId));
+    }
+
+    /**
+     * Re-points a deck's translations to the chosen language if they are not
+     * already in it. Runs in the deck's writer slot, queued by
+     * {@link DbProvider} when a deck is opened or the language changes.
+     */
+    @WorkerThread
+    static void ensureApplied(@NonNull Context context, long deckId, @NonNull AppDatabase db) {
+        String lang = current(context);
+        SharedPreferences p = prefs(context);
+        if (lang.equals(p.getString(KEY_DECK_LANG + deckId, BASE))) return;
+
+        synchronized (LanguagePacks.class) {
+            if (lang.equals(p.getString(KEY_DECK_LANG + deckId, BASE))) return;
+
+            DeckContent pack = DeckContent.forDeck(context, lang, deckId);
+            if (pack == null) {
+                Log.w(TAG, "No " + lang + " pack for deck " + deckId + "; keeping translations");
+                return;
+            }
+
+            long t = PerfTrace.begin("LanguagePacks.overlay");
+            SupportSQLiteDatabase w = db.getOpenHelper().getWritableDatabase();
+            int matched;
+            try {
+                matched = overlay(db, w, pack, deckId);
+            } finally {
+                PerfTrace.end(t);
+            }
+            boolean complete = matched == pack.size() && matched == countCards(w, deckId);
+
+            // commit(): the overlay is already durable, the marker must be too.
+            p.edit()
+                    .putString(KEY_DECK_LANG + deckId, lang)
+                    .putBoolean(KEY_DECK_COMPLETE + deckId, complete)
+                    .commit();
+            Log.d(TAG, "Deck " + deckId + " -> " + lang + ": " + matched + "/" + pack.size()
+                    + " headwords matched" + (complete ? "" : " (partial pack)"));
+        }
+    }
+
+    /**
+     * Rewrites {@code cards.back} from a pack in one Room transaction, so
+     * open screens are notified.
+     *
+     * @return number of cards whose headword was found in the pack
+     */
+    private static int overlay(AppDatabase db, SupportSQLiteDatabase w, DeckContent pack,
+                               long deckId) {
+        int matched = 0;
+        db.beginTransaction();
+        try {
+            SupportSQLiteStatement st = w.compileStatement(
+                    "UPDATE cards SET back = ? WHERE deckId = ? AND front = ?");
+            for (int i = 0; i < pack.size(); i++) {
+                st.bindString(1, pack.backAt(i));
+                st.bindLong(2, deckId);
+                st.bindString(3, pack.frontAt(i));
+                matched += st.executeUpdateDelete();
+                st.clearBindings();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return matched;
+    }
+
+    /**
+     * Number of cards of a deck, read on the writer's connection.
+     */
+    static int countCards(SupportSQLiteDatabase w, long deckId) {
+        try (Cursor c = w.query("SELECT COUNT(*) FROM cards WHERE deckId = ?",
+                new Object[] { deckId })) {
+            return c.moveToFirst() ? c.getInt(0) : 0;
+        }
+    }
+
+    /**
+     * Returns the mapped content matching the translations installed for a
+     * deck, or null if they came from a partial pack (the caller then reads
+     * the text from SQLite).
+     */
+    @Nullable
+    public static DeckContent contentFor(@NonNull Context context, long deckId) {
+        SharedPreferences p = prefs(context);
+        if (!p.getBoolean(KEY_DECK_COMPLETE + deckId, true)) return null;
+        return DeckContent.forDeck(context, p.getString(KEY_DECK_LANG + deckId, BASE), deckId);
+    }
+}
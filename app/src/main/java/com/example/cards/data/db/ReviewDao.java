@@ -7,72 +7,88 @@ import androidx.room.Query;
 import androidx.room.Transaction;
 
 import com.example.cards.data.model.Card;
+import com.example.cards.data.model.CardDirection;
+import com.example.cards.data.model.DailyRollup;
 import com.example.cards.data.model.ReviewLog;
+import com.example.cards.data.model.ReviewLogMonthly;
 import com.example.cards.data.model.ReviewState;
 
 import java.util.List;
+import java.util.TimeZone;
 
 /**
  * ReviewDao
  *
  * Data access object for all review-related operations:
  * - Querying due cards (with or without deck filter).
- * - Seeding initial review_state rows for cards that do not have them yet.
+ * - Direction-aware ({@link CardDirection}): card lists are served for one
+ *   direction at a time, counts for a set of directions. Every join on
+ *   review_state names the direction, so it is a unique-index lookup on
+ *   (cardId, direction).
+ * - Serving new cards (no review_state row yet) and counting how many were
+ *   introduced on a day, for the daily new-card quota.
  * - Counting states, due items, excluded and learned cards.
  * - Updating "learned" flag.
- * - Saving review state and review log in a single transaction.
+ * - Saving review state, review log and the daily rollup in a single transaction.
+ * - Reading and compacting review history (see {@code ReviewLogCompactor}).
  */
 @Dao
 public interface ReviewDao {
 
     /**
-     * Returns the current review state for the specified card, if it exists.
+     * Returns the current review state of a card in one direction, if it exists.
      *
-     * @param cardId card identifier
+     * @param cardId    card identifier
+     * @param direction {@link CardDirection} value
      * @return {@link ReviewState} or null if no state exists yet
      */
-    @Query("SELECT * FROM review_state WHERE cardId = :cardId LIMIT 1")
-    ReviewState getState(long cardId);
+    @Query("SELECT * FROM review_state WHERE cardId = :cardId AND direction = :direction LIMIT 1")
+    ReviewState getState(long cardId, int direction);
 
     /**
-     * Returns cards that are due for review at the given time, across all decks.
+     * Returns cards that are due for review at the given time in one
+     * direction, across all decks.
      * Uses review_state.dueAt and respects the card "excluded" flag.
      *
-     * @param now   current time in milliseconds
-     * @param limit maximum number of cards to return
+     * @param direction {@link CardDirection} value
+     * @param now       current time in milliseconds
+     * @param limit     maximum number of cards to return
      * @return list of due {@link Card} items
      */
     @Query("""
            SELECT c.* FROM cards c
-           JOIN review_state rs ON rs.cardId = c.id
+           JOIN review_state rs ON rs.cardId = c.id AND rs.direction = :direction
            WHERE rs.dueAt <= :now AND c.excluded = 0
            ORDER BY rs.dueAt ASC
            LIMIT :limit
            """)
-    List<Card> dueCards(long now, int limit);
+    List<Card> dueCards(int direction, long now, int limit);
 
     /**
-     * Returns cards that are due for review at the given time within a specific deck.
+     * Returns cards that are due for review at the given time within a
+     * specific deck, in one direction.
      *
-     * @param deckId deck identifier
-     * @param now    current time in milliseconds
-     * @param limit  maximum number of cards to return
+     * @param deckId    deck identifier
+     * @param direction {@link CardDirection} value
+     * @param now       current time in milliseconds
+     * @param limit     maximum number of cards to return
      * @return list of due {@link Card} items for the given deck
      */
     @Query("""
        SELECT c.* FROM cards c
-       JOIN review_state rs ON rs.cardId = c.id
+       JOIN review_state rs ON rs.cardId = c.id AND rs.direction = :direction
        WHERE c.deckId = :deckId AND rs.dueAt <= :now AND c.excluded = 0
        ORDER BY RANDOM()              -- ← вместо ORDER BY rs.dueAt ASC
        LIMIT :limit
        """)
-    List<Card> getDueCards(long deckId, long now, int limit);
+    List<Card> getDueCards(long deckId, int direction, long now, int limit);
 
 
     // ---------- COUNTS ----------
 
     /**
-     * Counts how many review_state rows exist for the given deck.
+     * Counts how many review_state rows exist for the given deck, in all
+     * directions.
      *
      * @param deckId deck identifier
      * @return number of states for cards in that deck
@@ -80,22 +96,38 @@ public interface ReviewDao {
     @Query("SELECT COUNT(*) FROM review_state rs JOIN cards c ON c.id = rs.cardId WHERE c.deckId = :deckId")
     int countStates(long deckId);
 
+    // ---------- NEW CARDS ----------
+
     /**
-     * Seeds review_state rows for all cards in the given deck that do not yet
-     * have a state. Newly created states will have:
-     * - intervalDays = 0
-     * - ease         = 2.5
-     * - step         = 0
-     * - dueAt        = :now
+     * Returns active cards that were never graded in a direction (no
+     * review_state row for it), in deck order. Their state is created by
+     * the first grade.
      *
-     * @param deckId deck identifier
-     * @param now    current time in milliseconds
+     * @param deckId    deck identifier
+     * @param direction {@link CardDirection} value
+     * @param limit     maximum number of cards to return
+     * @return list of new {@link Card} items
+     */
+    @Query("""
+           SELECT c.* FROM cards c
+           LEFT JOIN learned_state ls ON ls.cardId = c.id
+           WHERE c.deckId = :deckId AND c.excluded = 0 AND COALESCE(ls.learned, 0) = 0
+             AND NOT EXISTS (SELECT 1 FROM review_state rs
+                             WHERE rs.cardId = c.id AND rs.direction = :direction)
+           ORDER BY c.id
+           LIMIT :limit
+           """)
+    List<Card> getNewCards(long deckId, int direction, int limit);
+
+    /**
+     * Number of cards graded for the first time on a local day, in any
+     * direction: their reviews are counted in the NEW bucket of daily_rollup.
+     *
+     * @param day local day, see {@link DailyRollup#dayOf}
      */
-    @Query("INSERT INTO review_state(cardId, intervalDays, ease, step, dueAt) " +
-            "SELECT c.id, 0, 2.5, 0, :now FROM cards c " +
-            "LEFT JOIN review_state rs ON rs.cardId = c.id " +
-            "WHERE c.deckId = :deckId AND rs.cardId IS NULL")
-    void seedReviewState(long deckId, long now);
+    @Query("SELECT COALESCE(SUM(reviews), 0) FROM daily_rollup " +
+            "WHERE day = :day AND bucket = " + DailyRollup.BUCKET_NEW)
+    int countNewOn(int day);
 
     /**
      * Counts how many cards in the deck are marked as excluded.
@@ -116,18 +148,42 @@ public interface ReviewDao {
     int countLearnedCards(long deckId);
 
     /**
-     * Counts how many cards are due for review in the given deck at the given time.
+     * Counts how many cards are due for review in the given deck at the given
+     * time. A card due in two of the directions counts twice.
      *
-     * @param deckId deck identifier
-     * @param now    current time in milliseconds
+     * @param deckId     deck identifier
+     * @param directions {@link CardDirection} values to count
+     * @param now        current time in milliseconds
      * @return number of due cards
      */
     @Query("""
            SELECT COUNT(*) FROM cards c
-           JOIN review_state rs ON rs.cardId = c.id
+           JOIN review_state rs ON rs.cardId = c.id AND rs.direction IN (:directions)
            WHERE c.deckId = :deckId AND rs.dueAt <= :now AND c.excluded = 0
            """)
-    int countDue(long deckId, long now);
+    int countDue(long deckId, int[] directions, long now);
+
+    /**
+     * Due times of active cards falling due in (from, to], in the given
+     * directions.
+     */
+    @Query("""
+           SELECT rs.dueAt FROM cards c
+           JOIN review_state rs ON rs.cardId = c.id AND rs.direction IN (:directions)
+           WHERE c.deckId = :deckId AND rs.dueAt > :from AND rs.dueAt <= :to AND c.excluded = 0
+           """)
+    List<Long> dueBetween(long deckId, int[] directions, long from, long to);
+
+    /**
+     * Earliest due time of an active card after {@code now} in the given
+     * directions, or null.
+     */
+    @Query("""
+           SELECT MIN(rs.dueAt) FROM cards c
+           JOIN review_state rs ON rs.cardId = c.id AND rs.direction IN (:directions)
+           WHERE c.deckId = :deckId AND rs.dueAt > :now AND c.excluded = 0
+           """)
+    Long nextDueAfter(long deckId, int[] directions, long now);
 
     // ---------- LEARNED ----------
 
@@ -177,14 +233,133 @@ public interface ReviewDao {
     long insertLog(ReviewLog log);
 
     /**
-     * Saves review state and review log atomically in a single transaction.
+     * Creates an empty daily_rollup row unless it exists.
+     */
+    @Query("INSERT OR IGNORE INTO daily_rollup(day, hour, bucket, reviews, lapses, " +
+            "grade0, grade1, grade2, grade3, grade4, grade5) " +
+            "VALUES (:day, :hour, :bucket, 0, 0, 0, 0, 0, 0, 0, 0)")
+    void insertRollupRow(int day, int hour, int bucket);
+
+    /**
+     * Counts one review with the given grade in an existing daily_rollup row.
+     */
+    @Query("UPDATE daily_rollup SET reviews = reviews + 1, lapses = lapses + (:grade < 3), " +
+            "grade0 = grade0 + (:grade = 0), grade1 = grade1 + (:grade = 1), " +
+            "grade2 = grade2 + (:grade = 2), grade3 = grade3 + (:grade = 3), " +
+            "grade4 = grade4 + (:grade = 4), grade5 = grade5 + (:grade = 5) " +
+            "WHERE day = :day AND hour = :hour AND bucket = :bucket")
+    void addToRollup(int day, int hour, int bucket, int grade);
+
+    /**
+     * Saves review state and review log atomically in a single transaction,
+     * and counts the review in daily_rollup (local day and hour of
+     * {@code log.reviewedAt}, bucket of the card's previous state in the
+     * same direction).
      *
      * @param state updated review state
      * @param log   review log entry to store
      */
     @Transaction
     default void saveStateAndLog(ReviewState state, ReviewLog log) {
+        // Read before the upsert: the bucket is the interval the card had.
+        int bucket = DailyRollup.bucketOf(getState(state.cardId, state.direction));
         upsertStateEntity(state);
         insertLog(log);
+
+        TimeZone tz = TimeZone.getDefault();
+        int day = DailyRollup.dayOf(log.reviewedAt, tz);
+        int hour = DailyRollup.hourOf(log.reviewedAt, tz);
+        insertRollupRow(day, hour, bucket);
+        addToRollup(day, hour, bucket, log.grade);
     }
+
+    // ---------- HISTORY / COMPACTION ----------
+
+    /**
+     * Returns the oldest review_log rows (by id) reviewed before the given time.
+     *
+     * @param before exclusive upper bound of reviewedAt (ms)
+     * @param limit  maximum number of rows
+     */
+    @Query("SELECT * FROM review_log WHERE reviewedAt < :before ORDER BY id LIMIT :limit")
+    List<ReviewLog> logsBefore(long before, int limit);
+
+    /**
+     * Returns review_log rows with id greater than {@code afterId}, in id order.
+     * Used to page through the live history.
+     */
+    @Query("SELECT * FROM review_log WHERE id > :afterId ORDER BY id LIMIT :limit")
+    List<ReviewLog> logsAfter(long afterId, int limit);
+
+    /**
+     * Monthly (UTC) per-card summaries of the review_log rows with id in
+     * [minId, maxId] reviewed before {@code before}. Reviews in all
+     * directions are summed together.
+     */
+    @Query("""
+           SELECT cardId,
+                  CAST(strftime('%Y%m', reviewedAt / 1000, 'unixepoch') AS INTEGER) AS month,
+                  COUNT(*)                                  AS reviews,
+                  SUM(CASE WHEN grade < 3 THEN 1 ELSE 0 END) AS lapses,
+                  SUM(grade)                                AS gradeSum,
+                  MIN(reviewedAt)                           AS firstReviewedAt,
+                  MAX(reviewedAt)                           AS lastReviewedAt
+           FROM review_log
+           WHERE id BETWEEN :minId AND :maxId AND reviewedAt < :before
+           GROUP BY cardId, month
+           """)
+    List<ReviewLogMonthly> summarizeLogs(long minId, long maxId, long before);
+
+    /**
+     * Deletes the rows {@link #summarizeLogs(long, long, long)} summarizes.
+     *
+     * @return number of deleted rows
+     */
+    @Query("DELETE FROM review_log WHERE id BETWEEN :minId AND :maxId AND reviewedAt < :before")
+    int deleteLogs(long minId, long maxId, long before);
+
+    /**
+     * Adds counts to an existing monthly summary.
+     *
+     * @return number of rows affected (0 if the summary does not exist yet)
+     */
+    @Query("UPDATE review_log_monthly SET " +
+            "reviews = reviews + :reviews, " +
+            "lapses = lapses + :lapses, " +
+            "gradeSum = gradeSum + :gradeSum, " +
+            "firstReviewedAt = MIN(firstReviewedAt, :firstReviewedAt), " +
+            "lastReviewedAt = MAX(lastReviewedAt, :lastReviewedAt) " +
+            "WHERE cardId = :cardId AND month = :month")
+    int addToMonth(long cardId, int month, int reviews, int lapses, long gradeSum,
+                   long firstReviewedAt, long lastReviewedAt);
+
+    /**
+     * Inserts a monthly summary.
+     */
+    @Insert
+    void insertMonth(ReviewLogMonthly month);
+
+    /**
+     * Moves review_log rows into review_log_monthly atomically: the rows with
+     * id in [minId, maxId] reviewed before {@code before} are summarized,
+     * merged into the monthly table and deleted. Running it again for the same
+     * range is a no-op.
+     *
+     * @return number of review_log rows removed
+     */
+    @Transaction
+    default int rollUpLogs(long minId, long maxId, long before) {
+        for (ReviewLogMonthly m : summarizeLogs(minId, maxId, before)) {
+            int n = addToMonth(m.cardId, m.month, m.reviews, m.lapses, m.gradeSum,
+                    m.firstReviewedAt, m.lastReviewedAt);
+            if (n == 0) insertMonth(m);
+        }
+        return deleteLogs(minId, maxId, before);
+    }
+
+    /**
+     * Number of live review_log rows.
+     */
+    @Query("SELECT COUNT(*) FROM review_log")
+    long countLogs();
 }
@@ -0,0 +1,107 @@
+package com.example.cards.data.db;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import com.example.cards.data.model.CardDirection;
+import com.example.cards.data.model.DeckMaturity;
+import com.example.cards.data.model.RollupTotal;
+
+import java.util.List;
+
+/**
+ * StatsDao
+ *
+ * Read-only statistics over the daily_rollup aggregate. Every range query
+ * reads the rollup rows of the days in [fromDay, toDay] through the primary
+ * key, so its cost depends on the number of days, not on the number of
+ * reviews.
+ *
+ * Days are local days since 1970-01-01 (see {@code DailyRollup.dayOf}).
+ */
+@Dao
+public interface StatsDao {
+
+    /**
+     * Review totals per day that has reviews, in day order.
+     */
+    @Query("""
+           SELECT day AS key, 0 AS hour,
+                  SUM(reviews) AS reviews, SUM(lapses) AS lapses,
+                  SUM(grade0) AS grade0, SUM(grade1) AS grade1, SUM(grade2) AS grade2,
+                  SUM(grade3) AS grade3, SUM(grade4) AS grade4, SUM(grade5) AS grade5
+           FROM daily_rollup
+           WHERE day BETWEEN :fromDay AND :toDay
+           GROUP BY day
+           ORDER BY day
+           """)
+    List<RollupTotal> perDay(int fromDay, int toDay);
+
+    /**
+     * Review totals per interval bucket (retention by interval).
+     */
+    @Query("""
+           SELECT bucket AS key, 0 AS hour,
+                  SUM(reviews) AS reviews, SUM(lapses) AS lapses,
+                  SUM(grade0) AS grade0, SUM(grade1) AS grade1, SUM(grade2) AS grade2,
+                  SUM(grade3) AS grade3, SUM(grade4) AS grade4, SUM(grade5) AS grade5
+           FROM daily_rollup
+           WHERE day BETWEEN :fromDay AND :toDay
+           GROUP BY bucket
+           ORDER BY bucket
+           """)
+    List<RollupTotal> perBucket(int fromDay, int toDay);
+
+    /**
+     * Review totals per weekday (0 = Sunday; day 0 was a Thursday) and hour.
+     */
+    @Query("""
+           SELECT (day + 4) % 7 AS key, hour,
+                  SUM(reviews) AS reviews, SUM(lapses) AS lapses,
+                  SUM(grade0) AS grade0, SUM(grade1) AS grade1, SUM(grade2) AS grade2,
+                  SUM(grade3) AS grade3, SUM(grade4) AS grade4, SUM(grade5) AS grade5
+           FROM daily_rollup
+           WHERE day BETWEEN :fromDay AND :toDay
+           GROUP BY key, hour
+           """)
+    List<RollupTotal> perWeekdayHour(int fromDay, int toDay);
+
+    /**
+     * Totals over the whole range (grade distribution).
+     */
+    @Query("""
+           SELECT 0 AS key, 0 AS hour,
+                  COALESCE(SUM(reviews), 0) AS reviews, COALESCE(SUM(lapses), 0) AS lapses,
+                  COALESCE(SUM(grade0), 0) AS grade0, COALESCE(SUM(grade1), 0) AS grade1,
+                  COALESCE(SUM(grade2), 0) AS grade2, COALESCE(SUM(grade3), 0) AS grade3,
+                  COALESCE(SUM(grade4), 0) AS grade4, COALESCE(SUM(grade5), 0) AS grade5
+           FROM daily_rollup
+           WHERE day BETWEEN :fromDay AND :toDay
+           """)
+    RollupTotal total(int fromDay, int toDay);
+
+    /**
+     * Maturity of the deck's active cards, from their current forward state.
+     */
+    @Query("SELECT COALESCE(SUM(CASE WHEN rs.lastGrade IS NULL THEN 1 ELSE 0 END), 0) AS unseen, " +
+            "COALESCE(SUM(CASE WHEN rs.lastGrade IS NOT NULL AND rs.intervalDays < 1 " +
+            "                  THEN 1 ELSE 0 END), 0) AS learning, " +
+            "COALESCE(SUM(CASE WHEN rs.lastGrade IS NOT NULL AND rs.intervalDays BETWEEN 1 AND 20 " +
+            "                  THEN 1 ELSE 0 END), 0) AS young, " +
+            "COALESCE(SUM(CASE WHEN rs.lastGrade IS NOT NULL AND rs.intervalDays >= 21 " +
+            "                  THEN 1 ELSE 0 END), 0) AS mature " +
+            "FROM cards c " +
+            "LEFT JOIN review_state rs ON rs.cardId = c.id AND rs.direction = " + CardDirection.FORWARD + " " +
+            "WHERE c.deckId = :deckId AND c.excluded = 0")
+    DeckMaturity maturity(long deckId);
+
+    /**
+     * Whether the deck has review history but no rollups yet (databases
+     * from before daily_rollup existed, or restored from such a snapshot).
+     */
+    @Query("""
+           SELECT (EXISTS (SELECT 1 FROM review_log) OR EXISTS (SELECT 1 FROM review_log_monthly))
+                  AND NOT EXISTS (SELECT 1 FROM daily_rollup)
+           """)
+    boolean needsBackfill();
+}
@@ -0,0 +1,148 @@
+package com.example.cards.data.history;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.db.DbScheduler;
+import com.example.cards.data.model.CardDirection;
+import com.example.cards.data.model.DailyRollup;
+import com.example.cards.diag.PerfTrace;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * DailyRollups
+ *
+ * Builds the daily_rollup aggregate of a deck from its full review history
+ * ({@link ReviewHistory}: archive, then live review_log). New reviews are
+ * counted by {@code ReviewDao.saveStateAndLog} itself; a rebuild is only
+ * needed for history written another way.
+ *
+ * Behavior:
+ * - {@link #backfillIfNeeded} rebuilds once for a deck that has history but
+ *   no rollups (upgraded from schema 2, or restored from such a snapshot).
+ * - {@link #scheduleRebuild} rebuilds unconditionally (after an import).
+ * - A rebuild is one BACKGROUND task on the deck's writer slot: no grade
+ *   commits between reading the history and replacing the table, so no
+ *   review is lost or counted twice.
+ * - A review's bucket comes from the card's previous review in the same
+ *   direction, in id order (its result interval); the first review of a
+ *   card in a direction is new. This matches what saveStateAndLog derives
+ *   from review_state.
+ * - Memory is bounded by the number of rollup rows and virtual cards, not
+ *   reviews.
+ */
+public final class DailyRollups {
+
+    private static final String TAG = "DailyRollups";
+
+    private static final String INSERT =
+            "INSERT INTO daily_rollup(day, hour, bucket, reviews, lapses, "
+                    + "grade0, grade1, grade2, grade3, grade4, grade5) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Counters of one rollup row: reviews, lapses, grade0..grade5.
+    private static final int REVIEWS = 0;
+    private static final int LAPSES = 1;
+    private static final int GRADE0 = 2;
+    private static final int COUNTERS = GRADE0 + 6;
+
+    private DailyRollups() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Queues a rebuild if the deck has review history but no rollups.
+     */
+    public static void backfillIfNeeded(@NonNull Context context, long deckId, @NonNull AppDatabase db) {
+        Context app = context.getApplicationContext();
+        DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, db, null, () -> {
+            if (db.statsDao().needsBackfill()) rebuild(app, deckId, db);
+        });
+    }
+
+    /**
+     * Queues an unconditional rebuild.
+     */
+    public static void scheduleRebuild(@NonNull Context context, long deckId, @NonNull AppDatabase db) {
+        Context app = context.getApplicationContext();
+        DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, db, null,
+                () -> rebuild(app, deckId, db));
+    }
+
+    /**
+     * Replaces daily_rollup with counts from the full history. Must run in
+     * the deck's writer slot.
+     *
+     * @return number of reviews counted, or -1 if the history could not be read
+     */
+    @WorkerThread
+    static long rebuild(@NonNull Context app, long deckId, @NonNull AppDatabase db) {
+        long t = PerfTrace.begin("DailyRollups.rebuild");
+        try {
+            // 1) Aggregate in memory, keyed by (day, hour, bucket).
+            TimeZone tz = TimeZone.getDefault();
+            Map<Long, int[]> rows = new HashMap<>();
+            // Keyed by virtual card: cardId * CardDirection.COUNT + direction.
+            Map<Long, Integer> lastInterval = new HashMap<>();
+            long[] total = { 0 };
+            try {
+                ReviewHistory.forEach(app, deckId, db, log -> {
+                    Integer prev = lastInterval.put(log.cardId * CardDirection.COUNT + log.direction,
+                            log.resultIntervalDays);
+                    int bucket = prev == null ? DailyRollup.BUCKET_NEW : DailyRollup.bucketOf(prev);
+                    int day = DailyRollup.dayOf(log.reviewedAt, tz);
+                    int hour = DailyRollup.hourOf(log.reviewedAt, tz);
+                    int[] c = rows.computeIfAbsent(key(day, hour, bucket), k -> new int[COUNTERS]);
+                    c[REVIEWS]++;
+                    if (log.grade < 3) c[LAPSES]++;
+                    if (log.grade >= 0 && log.grade <= 5) c[GRADE0 + log.grade]++;
+                    total[0]++;
+                });
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot read the history of deck " + deckId, e);
+                return -1;
+            }
+
+            // 2) Replace the table in one transaction.
+            SupportSQLiteStatement insert = db.compileStatement(INSERT);
+            db.beginTransaction();
+            try {
+                db.getOpenHelper().getWritableDatabase().execSQL("DELETE FROM daily_rollup");
+                for (Map.Entry<Long, int[]> e : rows.entrySet()) {
+                    long k = e.getKey();
+                    int[] c = e.getValue();
+                    insert.bindLong(1, k >> 16);
+                    insert.bindLong(2, (k >> 8) & 0xFF);
+                    insert.bindLong(3, k & 0xFF);
+                    for (int i = 0; i < COUNTERS; i++) insert.bindLong(4 + i, c[i]);
+                    insert.executeInsert();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                try {
+                    insert.close();
+                } catch (IOException ignore) {
+                    // Nothing to release beyond the native statement.
+                }
+            }
+            Log.d(TAG, "Deck " + deckId + ": " + total[0] + " reviews in " + rows.size() + " rollup rows");
+            return total[0];
+        } finally {
+            PerfTrace.end(t);
+        }
+    }
+
+    private static long key(int day, int hour, int bucket) {
+        return ((long) day << 16) | ((long) hour << 8) | bucket;
+    }
+}
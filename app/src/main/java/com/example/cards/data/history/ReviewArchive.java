@@ -0,0 +1,476 @@
+package com.example.cards.data.history;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.example.cards.data.model.CardDirection;
+import com.example.cards.data.model.ReviewLog;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * ReviewArchive
+ *
+ * Append-only file of review_log rows that were compacted out of a deck
+ * database: {@code files/review_archive/deck_<id>.rla}.
+ *
+ * Format: a sequence of segments, one per compaction batch. Each segment is
+ * <pre>
+ *   int   magic "FCRA"      byte  version (1 or 2)
+ *   int   rows              long  minId, maxId, before
+ *   int   rawLength         int   deflatedLength    int crc32(deflated)
+ *   byte[deflatedLength]    deflated column data
+ * </pre>
+ * (big-endian). The column data stores all rows column by column, in id
+ * order, as varints:
+ * - id, cardId, reviewedAt: delta to the previous row (cardId and
+ *   reviewedAt zig-zag encoded);
+ * - grade: one byte;
+ * - resultIntervalDays, resultStep: zig-zag varints;
+ * - resultEase: IEEE bits XOR the previous row's bits, so repeated eases
+ *   cost one byte;
+ * - direction (version 2 only): one byte. Version 1 segments, written
+ *   before study directions existed, read back as forward.
+ * The legacy {@code ts} column is not stored; rows read back have ts = 0,
+ * as the app writes them.
+ *
+ * Behavior:
+ * - {@link #append} writes and fsyncs a segment. A torn segment left by a
+ *   crash is cut off by the next {@link #segments()} scan.
+ * - Segment headers record the review_log range they came from, so the
+ *   compactor can finish a batch whose database delete did not commit.
+ * - {@link #keys()} lists which reviews are archived, so importers can
+ *   skip reviews the deck already has outside review_log.
+ */
+public final class ReviewArchive {
+
+    private static final int MAGIC = 0x46435241; // "FCRA"
+    private static final int VERSION = 2;
+    // Oldest version still read.
+    private static final int MIN_VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 1 + 4 + 8 + 8 + 8 + 4 + 4 + 4;
+
+    /**
+     * Header of one archived batch.
+     */
+    public static final class Segment {
+        /** Number of rows. */
+        public final int rows;
+        /** Smallest and largest review_log id in the segment. */
+        public final long minId, maxId;
+        /** Compaction cutoff: all rows were reviewed before this time. */
+        public final long before;
+
+        final int version;
+        final long offset;
+        final int rawLength;
+        final int deflatedLength;
+
+        Segment(int rows, long minId, long maxId, long before,
+                int version, long offset, int rawLength, int deflatedLength) {
+            this.rows = rows;
+            this.minId = minId;
+            this.maxId = maxId;
+            this.before = before;
+            this.version = version;
+            this.offset = offset;
+            this.rawLength = rawLength;
+            this.deflatedLength = deflatedLength;
+        }
+    }
+
+    /**
+     * Identities (cardId, reviewedAt, direction) of all archived rows, for
+     * duplicate checks. 16 bytes per row.
+     */
+    public static final class Keys {
+        /** Latest compaction cutoff; 0 for an empty archive. */
+        public final long before;
+        private final long[] reviewedAt;   // ascending
+        private final long[] cards;        // cardId * COUNT + direction, same order
+
+        Keys(long before, long[] reviewedAt, long[] cards) {
+            this.before = before;
+            this.reviewedAt = reviewedAt;
+            this.cards = cards;
+        }
+
+        /**
+         * Whether the archive holds a review of this card at this time in
+         * this direction.
+         */
+        public boolean contains(long cardId, long reviewedAt, int direction) {
+            if (reviewedAt >= before) return false;
+            long card = cardId * CardDirection.COUNT + direction;
+            int i = Arrays.binarySearch(this.reviewedAt, reviewedAt);
+            if (i < 0) return false;
+            // Equal times form a run around i.
+            while (i > 0 && this.reviewedAt[i - 1] == reviewedAt) i--;
+            for (; i < this.reviewedAt.length && this.reviewedAt[i] == reviewedAt; i++) {
+                if (cards[i] == card) return true;
+            }
+            return false;
+        }
+
+        public int size() {
+            return reviewedAt.length;
+        }
+    }
+
+    private final File file;
+
+    public ReviewArchive(@NonNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * Archive of a deck, in the app's files dir.
+     */
+    @NonNull
+    public static ReviewArchive forDeck(@NonNull Context ctx, long deckId) {
+        return new ReviewArchive(new File(new File(ctx.getFilesDir(), "review_archive"),
+                "deck_" + deckId + ".rla"));
+    }
+
+    /**
+     * Deletes the archives of all decks (used by the full data reset).
+     */
+    public static void deleteAll(@NonNull Context ctx) {
+        File[] files = new File(ctx.getFilesDir(), "review_archive").listFiles();
+        if (files == null) return;
+        for (File f : files) f.delete();
+    }
+
+    @NonNull
+    public File file() {
+        return file;
+    }
+
+    // -------------------------------------------------------------------------
+    // Writing
+    // -------------------------------------------------------------------------
+
+    /**
+     * Appends the rows (in id order, non-empty) as one segment and syncs the
+     * file to disk.
+     *
+     * @param before the compaction cutoff the rows were selected with
+     */
+    @NonNull
+    public synchronized Segment append(@NonNull List<ReviewLog> rows, long before) throws IOException {
+        if (rows.isEmpty()) throw new IllegalArgumentException("empty segment");
+        byte[] raw = encode(rows);
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream(raw.length / 3 + 64);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                deflated.write(buf, 0, n);
+            }
+        } finally {
+            deflater.end();
+        }
+        byte[] body = deflated.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        long minId = rows.get(0).id;
+        long maxId = rows.get(rows.size() - 1).id;
+
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        long offset = file.length();
+        try (FileOutputStream fos = new FileOutputStream(file, true)) {
+            DataOutputStream out = new DataOutputStream(fos);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(rows.size());
+            out.writeLong(minId);
+            out.writeLong(maxId);
+            out.writeLong(before);
+            out.writeInt(raw.length);
+            out.writeInt(body.length);
+            out.writeInt((int) crc.getValue());
+            out.write(body);
+            out.flush();
+            fos.getFD().sync();
+        }
+        return new Segment(rows.size(), minId, maxId, before, VERSION, offset, raw.length, body.length);
+    }
+
+    /**
+     * Cuts the file back to {@code length} bytes, a value of
+     * {@code file().length()} taken earlier. Used when a deck database is
+     * restored from a snapshot: segments appended since then hold rows that
+     * the restored database still has in review_log.
+     */
+    public synchronized void truncate(long length) throws IOException {
+        if (!file.exists() || file.length() <= length) return;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+            raf.getFD().sync();
+        }
+    }
+
+    /**
+     * Deletes this archive (progress reset of its deck).
+     */
+    public synchronized void delete() {
+        file.delete();
+    }
+
+    // -------------------------------------------------------------------------
+    // Reading
+    // -------------------------------------------------------------------------
+
+    /**
+     * Returns all complete segments in file order. A damaged or partial
+     * segment and everything after it is truncated away.
+     */
+    @NonNull
+    public synchronized List<Segment> segments() throws IOException {
+        List<Segment> out = new ArrayList<>();
+        if (!file.exists()) return out;
+
+        long valid = 0;
+        long length = file.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file), 64 * 1024))) {
+            while (valid + HEADER_BYTES <= length) {
+                if (in.readInt() != MAGIC) break;
+                int version = in.readUnsignedByte();
+                if (version < MIN_VERSION || version > VERSION) break;
+                int rows = in.readInt();
+                long minId = in.readLong();
+                long maxId = in.readLong();
+                long before = in.readLong();
+                int rawLength = in.readInt();
+                int deflatedLength = in.readInt();
+                int crc = in.readInt();
+                if (rows <= 0 || deflatedLength < 0
+                        || valid + HEADER_BYTES + deflatedLength > length) break;
+
+                byte[] body = new byte[deflatedLength];
+                in.readFully(body);
+                CRC32 check = new CRC32();
+                check.update(body);
+                if ((int) check.getValue() != crc) break;
+
+                out.add(new Segment(rows, minId, maxId, before, version, valid, rawLength, deflatedLength));
+                valid += HEADER_BYTES + deflatedLength;
+            }
+        } catch (EOFException ignore) {
+            // Torn tail; everything up to `valid` is intact.
+        }
+
+        if (valid < length) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(valid);
+                raf.getFD().sync();
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Latest compaction cutoff of the archive, or 0 when it is empty. Every
+     * archived row was reviewed before it; reviews from this time on can only
+     * be in review_log.
+     */
+    public long before() throws IOException {
+        long before = 0;
+        for (Segment s : segments()) before = Math.max(before, s.before);
+        return before;
+    }
+
+    /**
+     * Loads the identities of every archived row.
+     */
+    @NonNull
+    public Keys keys() throws IOException {
+        List<Segment> segments = segments();
+        int n = 0;
+        long before = 0;
+        for (Segment s : segments) {
+            n += s.rows;
+            before = Math.max(before, s.before);
+        }
+        long[] at = new long[n];
+        long[] cards = new long[n];
+        int i = 0;
+        for (Segment s : segments) {
+            for (ReviewLog log : read(s)) {
+                at[i] = log.reviewedAt;
+                cards[i++] = log.cardId * CardDirection.COUNT + log.direction;
+            }
+        }
+
+        // Sort both columns by time.
+        Integer[] order = new Integer[n];
+        for (int k = 0; k < n; k++) order[k] = k;
+        Arrays.sort(order, (a, b) -> Long.compare(at[a], at[b]));
+        long[] sortedAt = new long[n];
+        long[] sortedCards = new long[n];
+        for (int k = 0; k < n; k++) {
+            sortedAt[k] = at[order[k]];
+            sortedCards[k] = cards[order[k]];
+        }
+        return new Keys(before, sortedAt, sortedCards);
+    }
+
+    /**
+     * Streams every archived row, segment by segment. Only one segment is
+     * decoded in memory at a time.
+     */
+    public void forEach(@NonNull Consumer<ReviewLog> sink) throws IOException {
+        for (Segment s : segments()) {
+            for (ReviewLog log : read(s)) sink.accept(log);
+        }
+    }
+
+    /**
+     * Decodes the rows of one segment.
+     */
+    @NonNull
+    public List<ReviewLog> read(@NonNull Segment s) throws IOException {
+        byte[] body = new byte[s.deflatedLength];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(s.offset + HEADER_BYTES);
+            raf.readFully(body);
+        }
+        byte[] raw = new byte[s.rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(body);
+            int n = inflater.inflate(raw);
+            if (n != raw.length || !inflater.finished()) {
+                throw new IOException("Corrupt archive segment at " + s.offset);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt archive segment at " + s.offset, e);
+        } finally {
+            inflater.end();
+        }
+        return decode(raw, s.rows, s.version);
+    }
+
+    // -------------------------------------------------------------------------
+    // Column codec
+    // -------------------------------------------------------------------------
+
+    static byte[] encode(List<ReviewLog> rows) {
+        Varints out = new Varints(rows.size() * 12);
+        long prev = 0;
+        for (ReviewLog r : rows) { out.writeUnsigned(r.id - prev); prev = r.id; }
+        prev = 0;
+        for (ReviewLog r : rows) { out.writeSigned(r.cardId - prev); prev = r.cardId; }
+        prev = 0;
+        for (ReviewLog r : rows) { out.writeSigned(r.reviewedAt - prev); prev = r.reviewedAt; }
+        for (ReviewLog r : rows) out.write(r.grade);
+        for (ReviewLog r : rows) out.writeSigned(r.resultIntervalDays);
+        prev = 0;
+        for (ReviewLog r : rows) {
+            long bits = Double.doubleToRawLongBits(r.resultEase);
+            // High bits (sign, exponent, top mantissa) carry the information;
+            // reversing puts them at the varint's cheap end.
+            out.writeUnsigned(Long.reverse(bits ^ prev));
+            prev = bits;
+        }
+        for (ReviewLog r : rows) out.writeSigned(r.resultStep);
+        for (ReviewLog r : rows) out.write(r.direction);
+        return out.toByteArray();
+    }
+
+    static List<ReviewLog> decode(byte[] raw, int count, int version) throws IOException {
+        ReviewLog[] rows = new ReviewLog[count];
+        for (int i = 0; i < count; i++) rows[i] = new ReviewLog();
+        int[] pos = { 0 };
+        long prev = 0;
+        for (ReviewLog r : rows) { prev += readUnsigned(raw, pos); r.id = prev; }
+        prev = 0;
+        for (ReviewLog r : rows) { prev += readSigned(raw, pos); r.cardId = prev; }
+        prev = 0;
+        for (ReviewLog r : rows) { prev += readSigned(raw, pos); r.reviewedAt = prev; }
+        for (ReviewLog r : rows) {
+            if (pos[0] >= raw.length) throw new IOException("Truncated archive segment");
+            r.grade = raw[pos[0]++];
+        }
+        for (ReviewLog r : rows) r.resultIntervalDays = (int) readSigned(raw, pos);
+        prev = 0;
+        for (ReviewLog r : rows) {
+            prev ^= Long.reverse(readUnsigned(raw, pos));
+            r.resultEase = Double.longBitsToDouble(prev);
+        }
+        for (ReviewLog r : rows) r.resultStep = (int) readSigned(raw, pos);
+        if (version >= 2) {
+            for (ReviewLog r : rows) {
+                if (pos[0] >= raw.length) throw new IOException("Truncated archive segment");
+                r.direction = raw[pos[0]++];
+            }
+        }
+        if (pos[0] != raw.length) throw new IOException("Trailing bytes in archive segment");
+
+        List<ReviewLog> out = new ArrayList<>(count);
+        for (ReviewLog r : rows) out.add(r);
+        return out;
+    }
+
+    private static long readUnsigned(byte[] raw, int[] pos) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            if (pos[0] >= raw.length) throw new IOException("Truncated archive segment");
+            int b = raw[pos[0]++];
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Bad varint in archive segment");
+    }
+
+    private static long readSigned(byte[] raw, int[] pos) throws IOException {
+        long v = readUnsigned(raw, pos);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * Growable byte buffer with LEB128 varint writers.
+     */
+    private static final class Varints extends ByteArrayOutputStream {
+        Varints(int size) {
+            super(size);
+        }
+
+        void writeUnsigned(long v) {
+            while ((v & ~0x7FL) != 0) {
+                write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            write((int) v);
+        }
+
+        void writeSigned(long v) {
+            writeUnsigned((v << 1) ^ (v >> 63));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.cards.data.history;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.model.ReviewLog;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * ReviewHistory
+ *
+ * Full review history of a deck for analytics and optimizers, independent
+ * of how much of it has been compacted.
+ *
+ * Behavior:
+ * - Yields every review exactly once: first the archived rows
+ *   ({@link ReviewArchive}, segment by segment), then the live review_log
+ *   rows in id order, paged.
+ * - Memory stays bounded by one archive segment or one page.
+ * - Holds the deck's compaction lock for the whole stream.
+ */
+public final class ReviewHistory {
+
+    private static final int PAGE = 1_000;
+
+    private ReviewHistory() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Streams the deck's full review history into {@code sink}.
+     *
+     * @param context context for the archive location
+     * @param deckId  deck identifier
+     * @param db      the deck's database
+     * @param sink    receives each review; must not touch review_log
+     */
+    @WorkerThread
+    public static void forEach(@NonNull Context context, long deckId, @NonNull AppDatabase db,
+                               @NonNull Consumer<ReviewLog> sink) throws IOException {
+        synchronized (ReviewLogCompactor.lockFor(deckId)) {
+            ReviewArchive.forDeck(context, deckId).forEach(sink);
+
+            long afterId = 0;
+            List<ReviewLog> page;
+            do {
+                page = db.reviewDao().logsAfter(afterId, PAGE);
+                for (ReviewLog log : page) sink.accept(log);
+                if (!page.isEmpty()) afterId = page.get(page.size() - 1).id;
+            } while (page.size() == PAGE);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.cards.data.history;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.db.DbScheduler;
+import com.example.cards.data.db.ReviewDao;
+import com.example.cards.data.model.ReviewLog;
+import com.example.cards.diag.PerfTrace;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReviewLogCompactor
+ *
+ * Keeps the hot review_log table small. Rows older than {@link #KEEP_DAYS}
+ * are moved out of the deck database in batches of {@link #BATCH}:
+ * 1) the batch is appended to the deck's {@link ReviewArchive} and synced;
+ * 2) in one transaction it is summarized into review_log_monthly and
+ *    deleted from review_log ({@link ReviewDao#rollUpLogs}).
+ *
+ * Behavior:
+ * - A crash between 1) and 2) leaves the rows in both places; the next run
+ *   first repeats 2) for the archive's last segment, which is a no-op when
+ *   that batch already committed. No row is ever counted twice.
+ * - Each batch is its own BACKGROUND task on the deck's writer slot, so a
+ *   grade submitted meanwhile waits for at most one batch.
+ * - Runs at most once per day per deck; the time of the last completed run
+ *   is kept in "app_settings".
+ * - Freed pages go to SQLite's freelist and are reused by new reviews, so
+ *   the database file stops growing rather than shrinking.
+ * - Compaction and {@link ReviewHistory} streaming exclude each other per
+ *   deck, so a stream never sees a row twice or misses one.
+ */
+public final class ReviewLogCompactor {
+
+    private static final String TAG = "ReviewLogCompactor";
+
+    /** Raw review rows younger than this stay in review_log. */
+    public static final long KEEP_DAYS = 90;
+
+    /** Rows per archive segment and per transaction. */
+    static final int BATCH = 5_000;
+
+    private static final long MIN_INTERVAL_MS = TimeUnit.DAYS.toMillis(1);
+
+    private static final String PREFS_NAME = "app_settings";
+    private static final String KEY_LAST_RUN = "review_compacted_at_";
+
+    // Per-deck mutex shared with ReviewHistory.
+    private static final ConcurrentMap<Long, Object> LOCKS = new ConcurrentHashMap<>();
+
+    private ReviewLogCompactor() {
+        // Utility class; no instances.
+    }
+
+    static Object lockFor(long deckId) {
+        return LOCKS.computeIfAbsent(deckId, k -> new Object());
+    }
+
+    /**
+     * Queues a compaction run for the deck unless one completed within the
+     * last day.
+     */
+    public static void scheduleIfDue(@NonNull Context context, long deckId, @NonNull AppDatabase db) {
+        Context app = context.getApplicationContext();
+        long last = prefs(app).getLong(KEY_LAST_RUN + deckId, 0L);
+        long now = System.currentTimeMillis();
+        if (now - last < MIN_INTERVAL_MS) return;
+
+        long before = now - TimeUnit.DAYS.toMillis(KEEP_DAYS);
+        submitBatch(app, deckId, db, before, true, 0);
+    }
+
+    private static void submitBatch(Context app, long deckId, AppDatabase db,
+                                    long before, boolean first, long movedSoFar) {
+        DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, db, null, () -> {
+            int moved;
+            try {
+                if (first) recover(app, deckId, db);
+                moved = compactBatch(app, deckId, db, before);
+            } catch (IOException e) {
+                Log.e(TAG, "deck " + deckId + ": archive write failed; history left in place", e);
+                return;
+            }
+
+            long total = movedSoFar + moved;
+            if (moved == BATCH) {
+                // More to do; requeue so waiting writes get the deck in between.
+                submitBatch(app, deckId, db, before, false, total);
+                return;
+            }
+            prefs(app).edit().putLong(KEY_LAST_RUN + deckId, System.currentTimeMillis()).apply();
+            if (total > 0) {
+                Log.i(TAG, "deck " + deckId + ": archived " + total + " review rows, "
+                        + db.reviewDao().countLogs() + " remain");
+            }
+        });
+    }
+
+    /**
+     * Archives and rolls up one batch of the oldest rows reviewed before
+     * {@code before}.
+     *
+     * @return number of rows moved; less than {@link #BATCH} when done
+     */
+    @WorkerThread
+    public static int compactBatch(@NonNull Context context, long deckId,
+                                   @NonNull AppDatabase db, long before) throws IOException {
+        ReviewDao dao = db.reviewDao();
+        synchronized (lockFor(deckId)) {
+            List<ReviewLog> rows = dao.logsBefore(before, BATCH);
+            if (rows.isEmpty()) return 0;
+
+            long t = PerfTrace.begin("ReviewLogCompactor.batch");
+            try {
+                ReviewArchive.Segment seg = ReviewArchive.forDeck(context, deckId).append(rows, before);
+                dao.rollUpLogs(seg.minId, seg.maxId, seg.before);
+            } finally {
+                PerfTrace.end(t);
+            }
+            return rows.size();
+        }
+    }
+
+    /**
+     * Completes the database half of the archive's last batch, in case the
+     * process died after the archive write.
+     */
+    @WorkerThread
+    static void recover(@NonNull Context context, long deckId, @NonNull AppDatabase db) throws IOException {
+        synchronized (lockFor(deckId)) {
+            List<ReviewArchive.Segment> segments = ReviewArchive.forDeck(context, deckId).segments();
+            if (segments.isEmpty()) return;
+            ReviewArchive.Segment last = segments.get(segments.size() - 1);
+            int n = db.reviewDao().rollUpLogs(last.minId, last.maxId, last.before);
+            if (n > 0) Log.w(TAG, "deck " + deckId + ": finished interrupted batch (" + n + " rows)");
+        }
+    }
+
+    private static SharedPreferences prefs(Context ctx) {
+        return ctx.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.cards.data.maintenance;
+
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.db.DbProvider;
+import com.example.cards.data.db.DbScheduler;
+import com.example.cards.data.db.DeckIntegrity;
+import com.example.cards.data.summary.DueSummary;
+import com.example.cards.diag.PerfTrace;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * DeckMaintenance
+ *
+ * Periodic upkeep of the deck databases, run by {@link DeckMaintenanceJob}
+ * while the device is idle and charging.
+ *
+ * Behavior:
+ * - Decks are maintained one at a time, each as its own BACKGROUND task in
+ *   the deck's writer slot; the next deck is queued only when the previous
+ *   one is done, so snapshots and compaction queued meanwhile run in between.
+ * - Per deck: {@code PRAGMA optimize} (ANALYZE before Android 8, whose
+ *   SQLite lacks it), incremental vacuum, WAL checkpoint, quick_check.
+ *   Deck assets are compiled with auto_vacuum INCREMENTAL, so runs only
+ *   free unused pages. Databases installed from older assets (auto_vacuum
+ *   NONE) are switched once with a full VACUUM, as a fallback.
+ * - Never overlaps a study session: StudyActivity reports itself through
+ *   {@link #studyStarted}/{@link #studyStopped}. A session, or the system
+ *   stopping the job, ends the run between steps; the job is then retried.
+ * - Duration, bytes reclaimed and the quick_check result of each deck are
+ *   kept in "app_settings" and shown on the Diagnostics screen.
+ * - Each maintained deck also gets its {@link DueSummary} entry rewritten,
+ *   and its quick_check result goes to {@link DeckIntegrity}, which repairs
+ *   a damaged deck.
+ */
+public final class DeckMaintenance {
+
+    private static final String TAG = "DeckMaintenance";
+
+    static final int JOB_ID = 41;
+    private static final long PERIOD_MS = TimeUnit.DAYS.toMillis(1);
+
+    private static final String PREFS_NAME = "app_settings";
+    private static final String KEY_RESULT = "maintenance_deck_";
+
+    // PRAGMA optimize needs SQLite 3.18; Android 8 ships 3.18.
+    private static final boolean OPTIMIZE = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O;
+
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private static final String STOPPED = "stopped";
+    private static final String FAILED = "failed: ";
+
+    // Open StudyActivity instances (started, not stopped).
+    private static final AtomicInteger STUDYING = new AtomicInteger();
+
+    /**
+     * Outcome of one deck's maintenance.
+     */
+    public static final class Result {
+        public final long deckId;
+        public final long finishedAt;
+        public final long durationMs;
+        /** Main file + WAL size before minus after; may be negative. */
+        public final long bytesReclaimed;
+        /** First row of quick_check ("ok"), or why the run stopped early. */
+        public final String check;
+
+        Result(long deckId, long finishedAt, long durationMs, long bytesReclaimed, String check) {
+            this.deckId = deckId;
+            this.finishedAt = finishedAt;
+            this.durationMs = durationMs;
+            this.bytesReclaimed = bytesReclaimed;
+            this.check = check;
+        }
+
+        /** Whether quick_check ran (the run was not stopped or failed before it). */
+        boolean checked() {
+            return !check.equals(STOPPED) && !check.startsWith(FAILED);
+        }
+    }
+
+    private DeckMaintenance() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Schedules the daily job unless it is already pending.
+     */
+    public static void schedule(@NonNull Context context) {
+        JobScheduler js = context.getSystemService(JobScheduler.class);
+        if (js == null || js.getPendingJob(JOB_ID) != null) return;
+        JobInfo job = new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, DeckMaintenanceJob.class))
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .setPeriodic(PERIOD_MS)
+                .build();
+        if (js.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.w(TAG, "Maintenance job not scheduled");
+        }
+    }
+
+    @MainThread
+    public static void studyStarted() {
+        STUDYING.incrementAndGet();
+    }
+
+    @MainThread
+    public static void studyStopped() {
+        STUDYING.decrementAndGet();
+    }
+
+    static boolean isStudying() {
+        return STUDYING.get() > 0;
+    }
+
+    // -------------------------------------------------------------------------
+    // Run
+    // -------------------------------------------------------------------------
+
+    /**
+     * Maintains every installed deck in turn.
+     *
+     * @param stopped polled between steps; true ends the run
+     * @param onDone  receives whether every deck was done, on a worker thread
+     */
+    static void runAll(@NonNull Context context, @NonNull BooleanSupplier stopped,
+                       @NonNull Consumer<Boolean> onDone) {
+        Context app = context.getApplicationContext();
+        BooleanSupplier stop = () -> stopped.getAsBoolean() || isStudying();
+        DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, null, null,
+                () -> next(app, DbProvider.installedDeckIds(app), 0, stop, onDone));
+    }
+
+    private static void next(Context app, List<Long> ids, int i, BooleanSupplier stop,
+                             Consumer<Boolean> onDone) {
+        if (i == ids.size() || stop.getAsBoolean()) {
+            onDone.accept(i == ids.size());
+            return;
+        }
+        long deckId = ids.get(i);
+        AppDatabase db = DbProvider.forDeck(app, deckId);
+        DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, db, null, () -> {
+            Result r = maintain(deckId, db, stop);
+            if (r != null) {
+                record(app, r);
+                if (r.checked()) DeckIntegrity.onChecked(app, deckId, r.check);
+                DueSummary.refresh(app, deckId, db);
+            }
+            // Queued behind whatever else is waiting for the BACKGROUND lane.
+            next(app, ids, i + 1, stop, onDone);
+        });
+    }
+
+    /**
+     * Runs the maintenance steps on one deck. Must run in the deck's writer slot.
+     *
+     * @return the outcome, or null if stopped before the first step
+     */
+    @WorkerThread
+    static Result maintain(long deckId, @NonNull AppDatabase db, @NonNull BooleanSupplier stop) {
+        if (stop.getAsBoolean()) return null;
+        long t = PerfTrace.begin("DeckMaintenance.deck");
+        long start = System.nanoTime();
+        String check;
+        long before = 0;
+        File main = null;
+        try {
+            SupportSQLiteDatabase w = db.getOpenHelper().getWritableDatabase();
+            main = new File(w.getPath());
+            before = sizeOf(main);
+
+            // 1) Planner statistics.
+            pragma(w, OPTIMIZE ? "PRAGMA optimize" : "ANALYZE");
+
+            // 2) Free pages (see the class notes for the fallback switch).
+            if (stop.getAsBoolean()) {
+                check = STOPPED;
+            } else {
+                if (pragma(w, "PRAGMA auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+                    w.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+                    w.execSQL("VACUUM");
+                } else {
+                    pragma(w, "PRAGMA incremental_vacuum");
+                }
+
+                // 3) Fold the WAL back into the main file and truncate it.
+                if (pragma(w, "PRAGMA wal_checkpoint(TRUNCATE)") != 0) {
+                    Log.d(TAG, "Deck " + deckId + ": checkpoint busy");
+                }
+
+                // 4) Structure check (no index content check, unlike integrity_check).
+                check = stop.getAsBoolean() ? STOPPED : quickCheck(w);
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Maintenance of deck " + deckId + " failed", e);
+            check = FAILED + e.getMessage();
+        } finally {
+            PerfTrace.end(t);
+        }
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long reclaimed = main == null ? 0 : before - sizeOf(main);
+        if (!"ok".equals(check)) Log.w(TAG, "Deck " + deckId + ": " + check);
+        Log.i(TAG, "Deck " + deckId + ": " + durationMs + " ms, " + reclaimed + " bytes reclaimed");
+        return new Result(deckId, System.currentTimeMillis(), durationMs, reclaimed, check);
+    }
+
+    // Steps every row (some pragmas work per row) and returns column 0 of the first.
+    private static long pragma(SupportSQLiteDatabase w, String sql) {
+        try (Cursor c = w.query(sql)) {
+            long first = c.moveToFirst() ? c.getLong(0) : 0;
+            while (c.moveToNext()) {
+                // Drain.
+            }
+            return first;
+        }
+    }
+
+    private static String quickCheck(SupportSQLiteDatabase w) {
+        try (Cursor c = w.query("PRAGMA quick_check(1)")) {
+            return c.moveToFirst() ? c.getString(0) : "no result";
+        }
+    }
+
+    private static long sizeOf(File main) {
+        return main.length() + new File(main.getPath() + "-wal").length();
+    }
+
+    // -------------------------------------------------------------------------
+    // Results
+    // -------------------------------------------------------------------------
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static void record(Context app, Result r) {
+        prefs(app).edit()
+                .putString(KEY_RESULT + r.deckId,
+                        r.finishedAt + "," + r.durationMs + "," + r.bytesReclaimed + "," + r.check)
+                .apply();
+    }
+
+    /**
+     * Last result per deck, ordered by deck id.
+     */
+    @NonNull
+    public static Map<Long, Result> lastResults(@NonNull Context context) {
+        Map<Long, Result> out = new TreeMap<>();
+        for (Map.Entry<String, ?> e : prefs(context).getAll().entrySet()) {
+            if (!e.getKey().startsWith(KEY_RESULT) || !(e.getValue() instanceof String)) continue;
+            String[] parts = ((String) e.getValue()).split(",", 4);
+            if (parts.length != 4) continue;
+            try {
+                long deckId = Long.parseLong(e.getKey().substring(KEY_RESULT.length()));
+                out.put(deckId, new Result(deckId, Long.parseLong(parts[0]),
+                        Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3]));
+            } catch (NumberFormatException ignore) {
+                // Not ours.
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Human-readable last results for the Diagnostics screen.
+     */
+    @NonNull
+    public static String format(@NonNull Context context) {
+        StringBuilder sb = new StringBuilder("Maintenance\n");
+        Map<Long, Result> results = lastResults(context);
+        if (results.isEmpty()) sb.append("  never run\n");
+        for (Result r : results.values()) {
+            sb.append(String.format(Locale.US, "  deck %-3d %tF %<tR %6d ms %+9d B %s%n",
+                    r.deckId, r.finishedAt, r.durationMs, r.bytesReclaimed, r.check));
+        }
+        return sb.toString();
+    }
+}
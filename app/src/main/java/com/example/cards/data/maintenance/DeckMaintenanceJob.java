@@ -0,0 +1,36 @@
+package com.example.cards.data.maintenance;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+
+/**
+ * DeckMaintenanceJob
+ *
+ * JobScheduler entry point of {@link DeckMaintenance}; scheduled daily with
+ * idle and charging constraints.
+ *
+ * Behavior:
+ * - Skipped (and retried later) while a study session is open.
+ * - The run itself happens on the BACKGROUND lane; the job stays active
+ *   until every deck is done or the run stops early.
+ * - When the system stops the job (idle or charging ended), the run ends
+ *   after its current step and the job asks to be rescheduled.
+ */
+public class DeckMaintenanceJob extends JobService {
+
+    private volatile boolean stopped;
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        stopped = false;
+        DeckMaintenance.runAll(this, () -> stopped,
+                completed -> jobFinished(params, !completed));
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        stopped = true;
+        return true;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.cards.data.model;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Index;
@@ -22,6 +23,7 @@ import androidx.room.PrimaryKey;
  * - createdAt:  timestamp (optional, defaults to 0)
  * - learned:    user-defined learned marker
  * - excluded:   user-defined skip flag (excluded from reviews)
+ * - tags:       space-separated tags of an imported card (optional)
  *
  * Unique index:
  * - (deckId, front, back) to prevent duplicate cards inside the same deck.
@@ -57,6 +59,10 @@ public class Card {
     @ColumnInfo(defaultValue = "0")
     public boolean excluded;
 
+    /** Space-separated tags from an imported file; null for shipped decks. */
+    @Nullable
+    public String tags;
+
     // -------------------------------------------------------------
     // Getters
     // -------------------------------------------------------------
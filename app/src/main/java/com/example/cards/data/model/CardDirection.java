@@ -0,0 +1,85 @@
+package com.example.cards.data.model;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+
+/**
+ * CardDirection
+ *
+ * Card templates: the directions in which one {@link Card} row is studied.
+ * A card seen in one direction is a virtual card of its own, with its own
+ * {@link ReviewState} keyed by (cardId, direction); the content row is
+ * shared and never duplicated.
+ *
+ * Directions:
+ * - {@link #FORWARD}: front (Korean) asked, back (translation) answered.
+ * - {@link #REVERSE}: back asked, front answered.
+ *
+ * Behavior:
+ * - Direction values are stored in review_state.direction and
+ *   review_log.direction; existing rows are {@link #FORWARD}.
+ * - Which directions are studied is a setting in the "app_settings" prefs
+ *   ({@link #enabled}); forward is always on.
+ */
+public final class CardDirection {
+
+    /** Front → back; the only direction before reverse study existed. */
+    public static final int FORWARD = 0;
+    /** Back → front. */
+    public static final int REVERSE = 1;
+    /** Number of directions; direction values are 0..COUNT-1. */
+    public static final int COUNT = 2;
+
+    private static final String PREFS_NAME = "app_settings";
+    private static final String KEY_REVERSE = "study_reverse";
+
+    private CardDirection() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Text asked for a card in a direction.
+     */
+    @NonNull
+    public static String prompt(@NonNull Card card, int direction) {
+        return direction == REVERSE ? card.getBack() : card.getFront();
+    }
+
+    /**
+     * Text expected as the answer for a card in a direction.
+     */
+    @NonNull
+    public static String answer(@NonNull Card card, int direction) {
+        return direction == REVERSE ? card.getFront() : card.getBack();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Whether cards are also studied back → front.
+     */
+    public static boolean isReverseEnabled(@NonNull Context context) {
+        return prefs(context).getBoolean(KEY_REVERSE, false);
+    }
+
+    /**
+     * Turns reverse study on or off. Reverse progress is kept while it is
+     * off, and resumes when it is turned on again.
+     */
+    public static void setReverseEnabled(@NonNull Context context, boolean enabled) {
+        prefs(context).edit().putBoolean(KEY_REVERSE, enabled).apply();
+    }
+
+    /**
+     * Directions currently studied, forward first. A fresh array each call.
+     */
+    @NonNull
+    public static int[] enabled(@NonNull Context context) {
+        return isReverseEnabled(context) ? new int[] { FORWARD, REVERSE } : new int[] { FORWARD };
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.cards.data.model;
+
+import androidx.annotation.Nullable;
+import androidx.room.Entity;
+
+import java.util.TimeZone;
+
+/**
+ * DailyRollup
+ *
+ * Review counts of a deck per local day, hour of day and interval bucket.
+ * Maintained in the same transaction as each review
+ * ({@code ReviewDao.saveStateAndLog}) and rebuilt from the full history by
+ * {@code DailyRollups}, so statistics never scan review_log.
+ *
+ * Fields:
+ * - day:     local calendar day of the review, in days since 1970-01-01.
+ * - hour:    local hour of the review (0–23).
+ * - bucket:  interval the card had before the review, see {@link #bucketOf}.
+ * - reviews: number of reviews.
+ * - lapses:  reviews graded below 3 (an SM-2 failure).
+ * - grade0..grade5: reviews per grade.
+ *
+ * Day and hour use the time zone at the time of the review; a later
+ * time-zone change does not move existing rows.
+ */
+@Entity(
+        tableName = "daily_rollup",
+        primaryKeys = { "day", "hour", "bucket" }
+)
+public class DailyRollup {
+
+    /** Bucket of a card's first review. */
+    public static final int BUCKET_NEW = 0;
+    /** Reviewed before, interval below one day (learning / relearning). */
+    public static final int BUCKET_LEARNING = 1;
+    /** Interval 1–6 days. */
+    public static final int BUCKET_DAYS = 2;
+    /** Interval 7–20 days. */
+    public static final int BUCKET_WEEKS = 3;
+    /** Interval 21–89 days (mature). */
+    public static final int BUCKET_MONTHS = 4;
+    /** Interval of 90 days or more. */
+    public static final int BUCKET_LONG = 5;
+
+    public static final int BUCKETS = 6;
+
+    private static final long HOUR_MS = 3_600_000L;
+    private static final long DAY_MS = 24 * HOUR_MS;
+
+    public int day;
+
+    public int hour;
+
+    public int bucket;
+
+    public int reviews;
+
+    public int lapses;
+
+    public int grade0;
+    public int grade1;
+    public int grade2;
+    public int grade3;
+    public int grade4;
+    public int grade5;
+
+    /**
+     * Local day (days since the epoch) of a timestamp.
+     */
+    public static int dayOf(long millis, TimeZone tz) {
+        return (int) Math.floorDiv(millis + tz.getOffset(millis), DAY_MS);
+    }
+
+    /**
+     * Local hour (0–23) of a timestamp.
+     */
+    public static int hourOf(long millis, TimeZone tz) {
+        return (int) (Math.floorMod(millis + tz.getOffset(millis), DAY_MS) / HOUR_MS);
+    }
+
+    /**
+     * Interval bucket of a review, from the card's state before it.
+     *
+     * @param before state before the review; null or never graded = new card
+     */
+    public static int bucketOf(@Nullable ReviewState before) {
+        if (before == null || before.lastGrade == null) return BUCKET_NEW;
+        return bucketOf(before.intervalDays);
+    }
+
+    /**
+     * Bucket of a review of an already reviewed card with the given interval.
+     */
+    public static int bucketOf(int intervalDays) {
+        if (intervalDays < 1) return BUCKET_LEARNING;
+        if (intervalDays < 7) return BUCKET_DAYS;
+        if (intervalDays < 21) return BUCKET_WEEKS;
+        if (intervalDays < 90) return BUCKET_MONTHS;
+        return BUCKET_LONG;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.cards.data.model;
+
+/**
+ * DeckMaturity
+ *
+ * Projection model: how far the active (not excluded) cards of a deck are,
+ * by their current review_state.
+ *
+ * Fields:
+ * - unseen:   never graded.
+ * - learning: graded, interval below one day.
+ * - young:    interval 1–20 days.
+ * - mature:   interval of 21 days or more.
+ */
+public class DeckMaturity {
+
+    public int unseen;
+
+    public int learning;
+
+    public int young;
+
+    public int mature;
+
+    public int total() {
+        return unseen + learning + young + mature;
+    }
+}
@@ -20,6 +20,7 @@ import androidx.room.PrimaryKey;
  * Fields:
  * - id:                  auto-generated primary key.
  * - cardId:              ID of the card being reviewed.
+ * - direction:           direction it was studied in ({@link CardDirection}).
  * - reviewedAt:          timestamp of review (milliseconds).
  * - grade:               grade given by user (0..5).
  * - resultIntervalDays:  interval in days after applying SM-2.
@@ -43,6 +44,10 @@ public class ReviewLog {
     @ColumnInfo
     public long cardId;
 
+    /** Study direction of the review (0 = forward). */
+    @ColumnInfo(defaultValue = "0")
+    public int direction;
+
     /** Timestamp when the card was reviewed (ms since epoch). */
     @ColumnInfo
     public long reviewedAt;
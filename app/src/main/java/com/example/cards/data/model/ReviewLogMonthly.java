@@ -0,0 +1,44 @@
+package com.example.cards.data.model;
+
+import androidx.room.Entity;
+
+/**
+ * ReviewLogMonthly
+ *
+ * Per-card, per-month summary of review_log rows that were moved to the
+ * deck's review archive by the compactor.
+ *
+ * Purpose:
+ * - Keep review counts and basic grade statistics in the hot database after
+ *   the raw rows are gone, so stats projections stay correct.
+ * - Stay small: at most one row per card and calendar month.
+ *
+ * Fields:
+ * - cardId:          ID of the reviewed card.
+ * - month:           calendar month (UTC) as yyyyMM, e.g. 202501.
+ * - reviews:         number of reviews in that month.
+ * - lapses:          reviews graded below 3 (an SM-2 failure).
+ * - gradeSum:        sum of grades, for the average grade.
+ * - firstReviewedAt: earliest review of the month (ms since epoch).
+ * - lastReviewedAt:  latest review of the month (ms since epoch).
+ */
+@Entity(
+        tableName = "review_log_monthly",
+        primaryKeys = { "cardId", "month" }
+)
+public class ReviewLogMonthly {
+
+    public long cardId;
+
+    public int month;
+
+    public int reviews;
+
+    public int lapses;
+
+    public long gradeSum;
+
+    public long firstReviewedAt;
+
+    public long lastReviewedAt;
+}
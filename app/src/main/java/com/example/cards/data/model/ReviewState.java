@@ -3,6 +3,7 @@ package com.example.cards.data.model;
 import static androidx.room.ForeignKey.CASCADE;
 
 import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
 import androidx.room.Index;
@@ -12,16 +13,20 @@ import androidx.room.PrimaryKey;
  * ReviewState
  *
  * Room entity representing the current spaced-repetition state
- * of a single card. Each card has at most one ReviewState row.
+ * of a single card in one study direction ({@link CardDirection}). Each
+ * (cardId, direction) pair has at most one ReviewState row.
  *
  * This model stores:
+ * - direction:      which way the card is studied (0 = forward)
  * - intervalDays:   current review interval in days (0 for learning)
  * - ease:           SM-2 ease factor (usually 1.3–3.0)
  * - step:           learning step (0–2 for learning, ≥3 for mature cards)
  * - dueAt:          timestamp when this card becomes due
  * - lastGrade:      last review grade (nullable if not reviewed yet)
  *
- * The table enforces a foreign key relation with Card(id).
+ * The table enforces a foreign key relation with Card(id). The unique
+ * (cardId, direction) index serves both the per-direction lookups and the
+ * joins on cardId alone (its leading column).
  */
 @Entity(
         tableName = "review_state",
@@ -32,7 +37,7 @@ import androidx.room.PrimaryKey;
                 onDelete = CASCADE
         ),
         indices = {
-                @Index(value = "cardId") // non-unique index for fast lookup
+                @Index(value = { "cardId", "direction" }, unique = true)
         }
 )
 public class ReviewState {
@@ -43,6 +48,10 @@ public class ReviewState {
     /** Foreign key referencing Card(id). */
     public long cardId;
 
+    /** Study direction, one of the {@link CardDirection} values. */
+    @ColumnInfo(defaultValue = "0")
+    public int direction;
+
     /** Current interval length in days (0 = learning). */
     public int intervalDays;
 
@@ -0,0 +1,40 @@
+package com.example.cards.data.model;
+
+/**
+ * RollupTotal
+ *
+ * Projection model for statistics read from daily_rollup: review counts
+ * summed over a group of rollup rows.
+ *
+ * Fields:
+ * - key:     the group — a day, an interval bucket or a weekday (0 = Sunday),
+ *            depending on the query; 0 when the query does not group.
+ * - hour:    hour of day for per-hour groups, otherwise 0.
+ * - reviews: number of reviews in the group.
+ * - lapses:  reviews graded below 3.
+ * - grade0..grade5: reviews per grade.
+ */
+public class RollupTotal {
+
+    public int key;
+
+    public int hour;
+
+    public long reviews;
+
+    public long lapses;
+
+    public long grade0;
+    public long grade1;
+    public long grade2;
+    public long grade3;
+    public long grade4;
+    public long grade5;
+
+    /**
+     * Share of reviews that passed (grade 3 or more), or 0 without reviews.
+     */
+    public double retention() {
+        return reviews > 0 ? 1.0 - (double) lapses / reviews : 0.0;
+    }
+}
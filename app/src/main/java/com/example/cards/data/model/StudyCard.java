@@ -0,0 +1,30 @@
+package com.example.cards.data.model;
+
+import androidx.annotation.NonNull;
+
+/**
+ * StudyCard
+ *
+ * A virtual card of a study session: one {@link Card} row seen in one
+ * {@link CardDirection}. Not stored; the queue of a session holds these.
+ */
+public final class StudyCard {
+
+    @NonNull
+    public final Card card;
+    /** One of the {@link CardDirection} values. */
+    public final int direction;
+
+    public StudyCard(@NonNull Card card, int direction) {
+        this.card = card;
+        this.direction = direction;
+    }
+
+    public long getId() { return card.getId(); }
+
+    /** Text shown as the question. */
+    @NonNull public String getPrompt() { return CardDirection.prompt(card, direction); }
+
+    /** Text shown as the answer. */
+    @NonNull public String getAnswer() { return CardDirection.answer(card, direction); }
+}
@@ -0,0 +1,469 @@
+package com.example.cards.data.quiz;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.db.DbScheduler;
+import com.example.cards.data.model.CardDirection;
+import com.example.cards.data.model.StudyCard;
+import com.example.cards.diag.PerfTrace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * DistractorIndex
+ *
+ * Per-deck table of plausible wrong answers for the multiple-choice quiz:
+ * for every card, the {@link #NEIGHBORS} cards most easily confused with it.
+ * A deck is one level, so every neighbor is a word of the same level.
+ *
+ * Behavior:
+ * - Neighbors share syllables with the card's front (inverted index from
+ *   syllable to cards), then are ranked by edit distance of the fronts,
+ *   shared syllables and length of the answer text. Cards with too few of
+ *   those are topped up with the cards of closest front length.
+ * - Built once per deck content on the BACKGROUND lane and cached: in
+ *   memory, and as {@code files/distractors/deck_<id>.bin} keyed by a
+ *   fingerprint of (id, front, back) of all cards. A language switch or any
+ *   content change gives a new fingerprint and a rebuild.
+ * - {@link #question} only reads the precomputed neighbors: no query and
+ *   no allocation beyond the question itself, well under a millisecond.
+ * - Immutable once built; safe to share between threads.
+ */
+public final class DistractorIndex {
+
+    private static final String TAG = "DistractorIndex";
+
+    /** Neighbors kept per card. */
+    static final int NEIGHBORS = 8;
+    /** Wrong answers of a question; with the right one, {@link #CHOICES}. */
+    public static final int DISTRACTORS = 3;
+    public static final int CHOICES = DISTRACTORS + 1;
+
+    // Syllable-sharing candidates scored with edit distance, per card.
+    private static final int CANDIDATES = 32;
+    // Syllables on more fronts than this (particles, 하, 다) say little
+    // about similarity and would make the build quadratic.
+    private static final int MAX_POSTING = 400;
+    // Distractors are drawn from the best this many usable neighbors.
+    private static final int DRAW_FROM = 5;
+
+    private static final int MAGIC = 0x46434449; // "FCDI"
+    private static final int VERSION = 1;
+
+    private static final ConcurrentMap<Long, DistractorIndex> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * One multiple-choice question.
+     */
+    public static final class Question {
+        /** Card asked and the direction it is asked in. */
+        public final StudyCard card;
+        /** {@link #CHOICES} answer texts, shuffled. */
+        public final String[] choices;
+        /** Index of the right answer in {@link #choices}. */
+        public final int correct;
+
+        Question(StudyCard card, String[] choices, int correct) {
+            this.card = card;
+            this.choices = choices;
+            this.correct = correct;
+        }
+    }
+
+    final long fingerprint;
+    private final long[] ids;          // ascending
+    private final String[] fronts;
+    private final String[] backs;
+    private final int[] neighbors;     // NEIGHBORS positions per card, -1 padded
+
+    private DistractorIndex(long fingerprint, long[] ids, String[] fronts, String[] backs,
+                            int[] neighbors) {
+        this.fingerprint = fingerprint;
+        this.ids = ids;
+        this.fronts = fronts;
+        this.backs = backs;
+        this.neighbors = neighbors;
+    }
+
+    // -------------------------------------------------------------------------
+    // Loading
+    // -------------------------------------------------------------------------
+
+    /**
+     * Queues loading (or building) the deck's index on the BACKGROUND lane,
+     * so it is ready when a quiz starts.
+     */
+    public static void prefetch(@NonNull Context context, long deckId, @NonNull AppDatabase db) {
+        Context app = context.getApplicationContext();
+        DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, null, null, () -> get(app, deckId, db));
+    }
+
+    /**
+     * The deck's index for its current content: from memory, from the file
+     * cache, or built now.
+     */
+    @WorkerThread
+    @NonNull
+    public static DistractorIndex get(@NonNull Context context, long deckId, @NonNull AppDatabase db) {
+        long t = PerfTrace.begin("DistractorIndex.get");
+        try {
+            // 1) Current content; one indexed scan of the deck's cards.
+            List<Long> idList = new ArrayList<>();
+            List<String> frontList = new ArrayList<>();
+            List<String> backList = new ArrayList<>();
+            try (Cursor c = db.query("SELECT id, front, back FROM cards WHERE deckId = ? ORDER BY id",
+                    new Object[] { deckId })) {
+                while (c.moveToNext()) {
+                    idList.add(c.getLong(0));
+                    frontList.add(c.getString(1));
+                    backList.add(c.getString(2));
+                }
+            }
+            int n = idList.size();
+            long[] ids = new long[n];
+            for (int i = 0; i < n; i++) ids[i] = idList.get(i);
+            String[] fronts = frontList.toArray(new String[0]);
+            String[] backs = backList.toArray(new String[0]);
+            long fingerprint = fingerprint(ids, fronts, backs);
+
+            // 2) Same content as last time: memory, then file.
+            DistractorIndex cached = CACHE.get(deckId);
+            if (cached != null && cached.fingerprint == fingerprint) return cached;
+
+            File file = file(context, deckId);
+            int[] neighbors = readNeighbors(file, fingerprint, n);
+            if (neighbors == null) {
+                // 3) Build and keep for the next launch.
+                neighbors = buildNeighbors(fronts, backs);
+                try {
+                    writeNeighbors(file, fingerprint, n, neighbors);
+                } catch (IOException e) {
+                    Log.w(TAG, "Cannot cache the index of deck " + deckId, e);
+                }
+                Log.d(TAG, "Deck " + deckId + ": built for " + n + " cards");
+            }
+            DistractorIndex index = new DistractorIndex(fingerprint, ids, fronts, backs, neighbors);
+            CACHE.put(deckId, index);
+            return index;
+        } finally {
+            PerfTrace.end(t);
+        }
+    }
+
+    /**
+     * Drops a deck's cached index (its database was deleted or replaced).
+     */
+    public static void forget(@NonNull Context context, long deckId) {
+        CACHE.remove(deckId);
+        file(context, deckId).delete();
+    }
+
+    /**
+     * Builds an index from card rows (ids ascending); no caching.
+     */
+    @NonNull
+    static DistractorIndex of(long[] ids, String[] fronts, String[] backs) {
+        return new DistractorIndex(fingerprint(ids, fronts, backs), ids, fronts, backs,
+                buildNeighbors(fronts, backs));
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    // -------------------------------------------------------------------------
+    // Questions
+    // -------------------------------------------------------------------------
+
+    /**
+     * Makes a question for a card: its prompt's right answer plus
+     * {@link #DISTRACTORS} answers of neighbors, in random order. Neighbors
+     * whose answer reads the same as the right one are skipped. Returns null
+     * when the deck has too few distinct answers for a question.
+     */
+    @Nullable
+    public Question question(@NonNull StudyCard card, @NonNull Random rnd) {
+        String answer = card.getAnswer();
+        String key = normalize(answer);
+        int direction = card.direction;
+
+        // 1) Usable neighbors, best first.
+        int[] usable = new int[NEIGHBORS];
+        int found = 0;
+        int pos = Arrays.binarySearch(ids, card.getId());
+        if (pos >= 0) {
+            for (int k = 0; k < NEIGHBORS && found < DRAW_FROM; k++) {
+                int j = neighbors[pos * NEIGHBORS + k];
+                if (j < 0) break;
+                if (isNew(j, direction, key, usable, found)) usable[found++] = j;
+            }
+        }
+
+        // 2) Pick DISTRACTORS of them at random; top up from the whole deck
+        //    if a tiny or changed deck left too few.
+        String[] choices = new String[CHOICES];
+        int picked = 0;
+        for (int i = 0; i < found && picked < DISTRACTORS; i++) {
+            int r = i + rnd.nextInt(found - i);
+            int j = usable[r];
+            usable[r] = usable[i];
+            usable[i] = j;
+            choices[picked++] = answerOf(j, direction);
+        }
+        for (int tries = 0; picked < DISTRACTORS && tries < 8 * ids.length; tries++) {
+            int j = rnd.nextInt(ids.length);
+            if (!isNew(j, direction, key, usable, found)) continue;
+            if (found < usable.length) usable[found++] = j;
+            choices[picked++] = answerOf(j, direction);
+        }
+        if (picked < DISTRACTORS) return null;
+
+        // 3) Right answer at a random place.
+        int correct = rnd.nextInt(CHOICES);
+        choices[DISTRACTORS] = choices[correct];
+        choices[correct] = answer;
+        return new Question(card, choices, correct);
+    }
+
+    /** Whether card j gives an answer other than the key and those chosen. */
+    private boolean isNew(int j, int direction, String key, int[] chosen, int count) {
+        String text = normalize(answerOf(j, direction));
+        if (text.isEmpty() || text.equals(key)) return false;
+        for (int i = 0; i < count; i++) {
+            if (chosen[i] == j || normalize(answerOf(chosen[i], direction)).equals(text)) return false;
+        }
+        return true;
+    }
+
+    private String answerOf(int j, int direction) {
+        return direction == CardDirection.REVERSE ? fronts[j] : backs[j];
+    }
+
+    private static String normalize(String s) {
+        return s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // -------------------------------------------------------------------------
+    // Building
+    // -------------------------------------------------------------------------
+
+    /**
+     * Neighbor positions of every card, {@link #NEIGHBORS} per card.
+     */
+    static int[] buildNeighbors(String[] fronts, String[] backs) {
+        int n = fronts.length;
+        int[] out = new int[n * NEIGHBORS];
+        Arrays.fill(out, -1);
+        if (n < 2) return out;
+
+        // 1) Syllable → cards, as flat arrays (distinct syllables per front).
+        Map<Character, Integer> syllableIds = new HashMap<>();
+        int[][] syllables = new int[n][];
+        for (int i = 0; i < n; i++) {
+            String f = fronts[i];
+            int[] s = new int[f.length()];
+            int count = 0;
+            for (int c = 0; c < f.length(); c++) {
+                char ch = f.charAt(c);
+                if (!Character.isLetterOrDigit(ch)) continue;
+                Integer id = syllableIds.get(ch);
+                if (id == null) {
+                    id = syllableIds.size();
+                    syllableIds.put(ch, id);
+                }
+                boolean seen = false;
+                for (int k = 0; k < count && !seen; k++) seen = s[k] == id;
+                if (!seen) s[count++] = id;
+            }
+            syllables[i] = Arrays.copyOf(s, count);
+        }
+        int[] start = new int[syllableIds.size() + 1];
+        for (int[] s : syllables) for (int id : s) start[id + 1]++;
+        for (int id = 0; id < syllableIds.size(); id++) start[id + 1] += start[id];
+        int[] postings = new int[start[syllableIds.size()]];
+        int[] fill = Arrays.copyOf(start, syllableIds.size());
+        for (int i = 0; i < n; i++) for (int id : syllables[i]) postings[fill[id]++] = i;
+
+        // 2) Cards by front length, for the top-up.
+        Integer[] byLength = new Integer[n];
+        for (int i = 0; i < n; i++) byLength[i] = i;
+        Arrays.sort(byLength, (a, b) -> Integer.compare(fronts[a].length(), fronts[b].length()));
+        int[] lengthRank = new int[n];
+        for (int r = 0; r < n; r++) lengthRank[byLength[r]] = r;
+
+        // 3) Per card: candidates sharing syllables, then the best by distance.
+        int[] shared = new int[n];
+        int[] touched = new int[n];
+        long[] keys = new long[n];
+        int[] dp = new int[64];
+        int[] prev = new int[64];
+        for (int i = 0; i < n; i++) {
+            int touchedCount = 0;
+            for (int id : syllables[i]) {
+                if (start[id + 1] - start[id] > MAX_POSTING) continue;
+                for (int p = start[id]; p < start[id + 1]; p++) {
+                    int j = postings[p];
+                    if (j != i && shared[j]++ == 0) touched[touchedCount++] = j;
+                }
+            }
+
+            // Most shared syllables first, then closest front length.
+            int lenI = fronts[i].length();
+            for (int t = 0; t < touchedCount; t++) {
+                int j = touched[t];
+                long lenDiff = Math.min(0xFFFFF, Math.abs(fronts[j].length() - lenI));
+                keys[t] = ((long) (0xFF - Math.min(0xFF, shared[j])) << 52) | (lenDiff << 32) | j;
+            }
+            Arrays.sort(keys, 0, touchedCount);
+            int candidates = Math.min(CANDIDATES, touchedCount);
+
+            // Rank: edit distance, then shared syllables, then answer length.
+            int backLenI = backs[i].length();
+            for (int t = 0; t < candidates; t++) {
+                int j = (int) (keys[t] & 0xFFFFFFFFL);
+                if (dp.length <= fronts[j].length() || dp.length <= lenI) {
+                    int size = Math.max(fronts[j].length(), lenI) + 1;
+                    dp = new int[size];
+                    prev = new int[size];
+                }
+                long distance = Math.min(0xFFFF, editDistance(fronts[i], fronts[j], prev, dp));
+                long backDiff = Math.min(0xFFFF, Math.abs(backs[j].length() - backLenI));
+                keys[t] = (distance << 48) | ((long) (0xFF - Math.min(0xFF, shared[j])) << 40)
+                        | (backDiff << 24) | j;
+            }
+            Arrays.sort(keys, 0, candidates);
+            int k = 0;
+            for (int t = 0; t < candidates && k < NEIGHBORS; t++) {
+                out[i * NEIGHBORS + k++] = (int) (keys[t] & 0xFFFFFF);
+            }
+            for (int t = 0; t < touchedCount; t++) shared[touched[t]] = 0;
+
+            // Top up with the cards of closest front length.
+            int rank = lengthRank[i];
+            for (int step = 1; k < NEIGHBORS && step < n; step++) {
+                for (int r : new int[] { rank - step, rank + step }) {
+                    if (r < 0 || r >= n || k >= NEIGHBORS) continue;
+                    int j = byLength[r];
+                    if (!contains(out, i * NEIGHBORS, k, j)) out[i * NEIGHBORS + k++] = j;
+                }
+            }
+        }
+        return out;
+    }
+
+    private static boolean contains(int[] a, int from, int count, int value) {
+        for (int k = 0; k < count; k++) if (a[from + k] == value) return true;
+        return false;
+    }
+
+    /** Levenshtein distance of two short strings, with caller-owned rows. */
+    static int editDistance(String a, String b, int[] prev, int[] cur) {
+        int m = b.length();
+        for (int j = 0; j <= m; j++) prev[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+            }
+            int[] swap = prev;
+            prev = cur;
+            cur = swap;
+        }
+        return prev[m];
+    }
+
+    /** FNV-1a over ids and texts. */
+    static long fingerprint(long[] ids, String[] fronts, String[] backs) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < ids.length; i++) {
+            h = (h ^ ids[i]) * 0x100000001b3L;
+            for (String s : new String[] { fronts[i], backs[i] }) {
+                for (int c = 0; c < s.length(); c++) h = (h ^ s.charAt(c)) * 0x100000001b3L;
+                h = (h ^ 0xFFFF) * 0x100000001b3L; // field separator
+            }
+        }
+        return h;
+    }
+
+    // -------------------------------------------------------------------------
+    // File cache
+    // -------------------------------------------------------------------------
+
+    private static File file(Context context, long deckId) {
+        return new File(new File(context.getFilesDir(), "distractors"), "deck_" + deckId + ".bin");
+    }
+
+    /**
+     * Neighbors cached for exactly this content, or null.
+     */
+    @Nullable
+    private static int[] readNeighbors(File file, long fingerprint, int n) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            if (in.readLong() != fingerprint || in.readInt() != n || in.readInt() != NEIGHBORS) {
+                return null;
+            }
+            int[] neighbors = new int[n * NEIGHBORS];
+            for (int i = 0; i < neighbors.length; i++) {
+                int j = in.readInt();
+                if (j < -1 || j >= n) return null;
+                neighbors[i] = j;
+            }
+            return neighbors;
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.w(TAG, "Ignoring unreadable " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the cache file: temp file, fsync, rename.
+     */
+    private static void writeNeighbors(File file, long fingerprint, int n, int[] neighbors)
+            throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            out.writeInt(n);
+            out.writeInt(NEIGHBORS);
+            for (int j : neighbors) out.writeInt(j);
+            out.flush();
+            fos.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) throw new IOException("Cannot replace " + file);
+    }
+}
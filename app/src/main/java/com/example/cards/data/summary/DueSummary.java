@@ -0,0 +1,263 @@
+package com.example.cards.data.summary;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import androidx.room.InvalidationTracker;
+
+import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.db.DbScheduler;
+import com.example.cards.data.db.ReviewDao;
+import com.example.cards.data.model.CardDirection;
+import com.example.cards.diag.PerfTrace;
+import com.example.cards.ui.widget.DueWidgetProvider;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DueSummary
+ *
+ * Tiny precomputed file ({@code files/due_summary.bin}) with the due and
+ * learned counts of every deck, so readers that only need those numbers
+ * (the home-screen widget) never open SQLite.
+ *
+ * Behavior:
+ * - Deck databases built by {@code DbProvider} are passed to {@link #watch}: any
+ *   commit to cards or review_state (a grade, a learned toggle, a reset, a
+ *   restore, an import) queues a refresh of that deck on the READ lane.
+ *   Bursts coalesce to one pending refresh per deck.
+ * - A refresh runs five indexed queries for one deck, then rewrites the whole
+ *   file: temp file, fsync, rename. Readers see the old or the new file,
+ *   never a partial one.
+ * - Due counts cover the study directions enabled when the entry was
+ *   computed ({@link CardDirection#enabled}); a card due both ways counts
+ *   twice, as it is asked twice.
+ * - Each entry stores the cards due at computation time plus how many fall
+ *   due in each of the next {@link #HOURS} hours, so {@link Entry#dueAt}
+ *   stays correct (to the hour) long after the file was written.
+ * - Each rewrite redraws the home-screen widget ({@link DueWidgetProvider}).
+ */
+public final class DueSummary {
+
+    private static final String TAG = "DueSummary";
+
+    private static final String FILE = "due_summary.bin";
+    private static final int MAGIC = 0x46434453; // "FCDS"
+    private static final int VERSION = 1;
+
+    /** Hours ahead covered by {@link Entry#upcoming}. */
+    public static final int HOURS = 24;
+
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+
+    // Tables whose writes change due / learned counts.
+    private static final String[] WATCHED = { "cards", "review_state" };
+
+    // Decks with a refresh queued but not started.
+    private static final Set<Long> PENDING = ConcurrentHashMap.newKeySet();
+
+    // Serializes read-modify-write of the file.
+    private static final Object LOCK = new Object();
+
+    /**
+     * Counts of one deck at {@link #computedAt}.
+     */
+    public static final class Entry {
+        public final long deckId;
+        public final long computedAt;
+        /** Active cards due at computedAt. */
+        public final int due;
+        public final int learned;
+        public final int total;
+        /** Earliest due time after computedAt, or 0 if none. */
+        public final long nextDueAt;
+        /** upcoming[i]: cards falling due in (computedAt + i h, computedAt + (i+1) h]. */
+        public final int[] upcoming;
+
+        public Entry(long deckId, long computedAt, int due, int learned, int total,
+                     long nextDueAt, @NonNull int[] upcoming) {
+            this.deckId = deckId;
+            this.computedAt = computedAt;
+            this.due = due;
+            this.learned = learned;
+            this.total = total;
+            this.nextDueAt = nextDueAt;
+            this.upcoming = upcoming;
+        }
+
+        /**
+         * Cards due at {@code now}, counting only the hours fully elapsed
+         * since computedAt (an undercount of at most one hour's cards).
+         */
+        public int dueAt(long now) {
+            int n = due;
+            long elapsed = now - computedAt;
+            for (int i = 0; i < upcoming.length && (i + 1) * HOUR_MS <= elapsed; i++) {
+                n += upcoming[i];
+            }
+            return n;
+        }
+    }
+
+    private DueSummary() {
+        // Utility class; no instances.
+    }
+
+    private static File file(Context context) {
+        return new File(context.getFilesDir(), FILE);
+    }
+
+    /**
+     * Refreshes the deck's entry whenever its counts may have changed, and
+     * once now. Called by {@code DbProvider} for each database it builds.
+     */
+    public static void watch(@NonNull Context context, long deckId, @NonNull AppDatabase db) {
+        Context app = context.getApplicationContext();
+        db.getInvalidationTracker().addObserver(new InvalidationTracker.Observer(WATCHED) {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                schedule(app, deckId, db);
+            }
+        });
+        schedule(app, deckId, db);
+    }
+
+    private static void schedule(Context app, long deckId, AppDatabase db) {
+        if (!PENDING.add(deckId)) return;
+        DbScheduler.get().submit(DbScheduler.Lane.READ, null, null, () -> {
+            // Cleared first: a commit during the queries queues one more pass.
+            PENDING.remove(deckId);
+            refresh(app, deckId, db);
+        });
+    }
+
+    /**
+     * Recomputes one deck's entry and rewrites the file.
+     */
+    @WorkerThread
+    public static void refresh(@NonNull Context app, long deckId, @NonNull AppDatabase db) {
+        long t = PerfTrace.begin("DueSummary.refresh");
+        try {
+            Entry e;
+            try {
+                e = compute(deckId, db, CardDirection.enabled(app), System.currentTimeMillis());
+            } catch (RuntimeException ex) {
+                // Closed by a restore meanwhile; the new instance refreshes itself.
+                Log.w(TAG, "Deck " + deckId + " not readable now", ex);
+                return;
+            }
+            synchronized (LOCK) {
+                Map<Long, Entry> all = new TreeMap<>();
+                for (Entry old : read(app)) all.put(old.deckId, old);
+                all.put(deckId, e);
+                write(file(app), new ArrayList<>(all.values()));
+            }
+        } catch (IOException ex) {
+            Log.e(TAG, "Cannot write the due summary", ex);
+            return;
+        } finally {
+            PerfTrace.end(t);
+        }
+        DueWidgetProvider.updateAll(app);
+    }
+
+    @WorkerThread
+    static Entry compute(long deckId, AppDatabase db, int[] directions, long now) {
+        ReviewDao dao = db.reviewDao();
+        int[] upcoming = new int[HOURS];
+        for (long dueAt : dao.dueBetween(deckId, directions, now, now + HOURS * HOUR_MS)) {
+            // dueAt in (now, now + HOURS h]
+            upcoming[(int) ((dueAt - now - 1) / HOUR_MS)]++;
+        }
+        Long next = dao.nextDueAfter(deckId, directions, now);
+        return new Entry(deckId, now, dao.countDue(deckId, directions, now), dao.countLearnedCards(deckId),
+                db.cardDao().countByDeck(deckId), next == null ? 0 : next, upcoming);
+    }
+
+    // -------------------------------------------------------------------------
+    // File format
+    // -------------------------------------------------------------------------
+
+    /**
+     * All entries, ordered by deck id; empty if the file is missing or
+     * unreadable. Cheap enough for the main thread (a few hundred bytes).
+     */
+    @NonNull
+    public static List<Entry> read(@NonNull Context context) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file(context))))) {
+            return read(in);
+        } catch (FileNotFoundException e) {
+            return Collections.emptyList();
+        } catch (IOException e) {
+            Log.w(TAG, "Unreadable due summary", e);
+            return Collections.emptyList();
+        }
+    }
+
+    static List<Entry> read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Bad header");
+        int n = in.readInt();
+        List<Entry> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            long deckId = in.readLong();
+            long computedAt = in.readLong();
+            int due = in.readInt();
+            int learned = in.readInt();
+            int total = in.readInt();
+            long nextDueAt = in.readLong();
+            int[] upcoming = new int[in.readUnsignedByte()];
+            for (int h = 0; h < upcoming.length; h++) upcoming[h] = in.readInt();
+            out.add(new Entry(deckId, computedAt, due, learned, total, nextDueAt, upcoming));
+        }
+        return out;
+    }
+
+    static void write(DataOutputStream out, List<Entry> entries) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        for (Entry e : entries) {
+            out.writeLong(e.deckId);
+            out.writeLong(e.computedAt);
+            out.writeInt(e.due);
+            out.writeInt(e.learned);
+            out.writeInt(e.total);
+            out.writeLong(e.nextDueAt);
+            out.writeByte(e.upcoming.length);
+            for (int c : e.upcoming) out.writeInt(c);
+        }
+    }
+
+    private static void write(File target, List<Entry> entries) throws IOException {
+        File tmp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            write(out, entries);
+            out.flush();
+            fos.getFD().sync();
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            throw new IOException("Cannot rename " + tmp + " to " + target);
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.example.cards.data.transfer;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.cards.data.catalog.CustomDecks;
+import com.example.cards.diag.PerfTrace;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * AnkiPackageImporter
+ *
+ * Creates a user deck ({@link CustomDecks}) from an Anki package
+ * ({@code .apkg} or {@code .colpkg}).
+ *
+ * Behavior:
+ * - The zip is read as a stream: only the collection entry is written to a
+ *   temp file (the newest one present, {@code collection.anki21} over
+ *   {@code collection.anki2}); media entries are skipped unread.
+ * - Packages that only carry a zstd-compressed {@code collection.anki21b}
+ *   are rejected with a hint to export them for older Anki versions.
+ * - Notes are read in pages of {@link #PAGE} by id, so memory is bounded
+ *   whatever the collection size. The first two fields become front and
+ *   back, as plain text ({@link #plainText}); notes with an empty side are
+ *   skipped. Anki tags are kept.
+ * - With {@code withScheduling}, the first card of each note that Anki has
+ *   studied gets a review_state (interval, ease, due); suspended cards are
+ *   excluded. Learning cards start at interval 0, relearning cards keep the
+ *   interval they fall back to. New cards get none and are introduced by the
+ *   daily quota.
+ * - Cards are written by {@link NewDeckWriter} in batches; a failed or
+ *   cancelled import leaves no deck behind.
+ * - Throughput (notes per second) is logged and returned.
+ * - Must run off the main thread; the caller owns and closes the source.
+ */
+public final class AnkiPackageImporter {
+
+    private static final String TAG = "AnkiPackageImporter";
+
+    static final int PAGE = 1_000;
+
+    private static final int BUFFER = 64 * 1024;
+    private static final long DAY_SECONDS = 86_400L;
+
+    // Anki card types and queues (cards.type / cards.queue).
+    private static final int TYPE_NEW = 0;
+    private static final int TYPE_REVIEW = 2;
+    private static final int TYPE_RELEARNING = 3;
+    private static final int QUEUE_SUSPENDED = -1;
+    private static final int QUEUE_DAY_LEARN = 3;
+
+    // Anki does not store the last answer; any pass keeps the card studied.
+    private static final int IMPORTED_GRADE = 3;
+
+    private static final Pattern SOUND = Pattern.compile("\\[sound:[^\\]]*\\]");
+    private static final Pattern BLOCKS = Pattern.compile(
+            "(?is)<(style|script)[^>]*>.*?</\\1>");
+    private static final Pattern BREAKS = Pattern.compile("(?i)<(br|div|p|li)\\b[^>]*>");
+    private static final Pattern TAGS = Pattern.compile("<[^>]*>");
+    private static final Pattern ENTITY = Pattern.compile("&(#x[0-9a-fA-F]+|#[0-9]+|[a-zA-Z]+);");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    /**
+     * Progress callback, called on the importing thread.
+     */
+    public interface Listener {
+        /**
+         * @param done  notes read so far
+         * @param total notes in the collection
+         */
+        void onProgress(long done, long total);
+    }
+
+    /**
+     * What an import created.
+     */
+    public static final class Result {
+        public long deckId;
+        public String title;
+        public long notes;
+        /** Cards inserted. */
+        public long cards;
+        /** Review states taken over from Anki. */
+        public long states;
+        /** Notes already present in the deck. */
+        public long duplicates;
+        /** Notes without a front or back. */
+        public long skipped;
+        /** Wall time of the whole import, unzip included. */
+        public long millis;
+
+        public long notesPerSecond() {
+            return millis > 0 ? notes * 1000L / millis : notes;
+        }
+    }
+
+    private AnkiPackageImporter() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Whether a file name looks like an Anki package.
+     */
+    public static boolean isPackage(@NonNull String fileName) {
+        String n = fileName.toLowerCase(Locale.ROOT);
+        return n.endsWith(".apkg") || n.endsWith(".colpkg");
+    }
+
+    /**
+     * Imports an Anki package as a new deck.
+     *
+     * @param context        context
+     * @param source         package contents; not closed
+     * @param title          title of the new deck
+     * @param sourceName     file name, kept with the deck
+     * @param withScheduling take over Anki's intervals, ease and due dates
+     * @param listener       progress callback (worker thread), or null
+     * @param cancel         cancellation signal, or null
+     * @throws IOException                if the package cannot be read or
+     *                                    holds no cards
+     * @throws OperationCanceledException if cancelled; nothing is kept
+     */
+    @WorkerThread
+    @NonNull
+    public static Result importFrom(@NonNull Context context, @NonNull InputStream source,
+                                    @NonNull String title, @NonNull String sourceName,
+                                    boolean withScheduling, @Nullable Listener listener,
+                                    @Nullable CancellationSignal cancel) throws IOException {
+        Context app = context.getApplicationContext();
+        long start = SystemClock.elapsedRealtime();
+        long t = PerfTrace.begin("AnkiPackageImporter.import");
+        File collection = File.createTempFile("anki-import", ".db", app.getCacheDir());
+        try {
+            extractCollection(source, collection, cancel);
+            Result r;
+            try (SQLiteDatabase col = SQLiteDatabase.openDatabase(collection.getPath(), null,
+                    SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS)) {
+                r = copyNotes(app, col, title, sourceName, withScheduling, listener, cancel);
+            } catch (SQLiteException e) {
+                throw new IOException("Not an Anki collection: " + e.getMessage(), e);
+            }
+            r.millis = SystemClock.elapsedRealtime() - start;
+            Log.i(TAG, "deck " + r.deckId + " from " + sourceName + ": " + r.notes + " notes, "
+                    + r.cards + " cards, " + r.states + " states, " + r.duplicates + " duplicates, "
+                    + r.skipped + " skipped in " + r.millis + " ms (" + r.notesPerSecond() + " notes/s)");
+            return r;
+        } finally {
+            SQLiteDatabase.deleteDatabase(collection);
+            PerfTrace.end(t);
+        }
+    }
+
+    /**
+     * Streams the zip and writes the newest collection entry to {@code dest}.
+     */
+    private static void extractCollection(InputStream source, File dest,
+                                          @Nullable CancellationSignal cancel) throws IOException {
+        ZipInputStream zip = new ZipInputStream(new BufferedInputStream(source, BUFFER));
+        byte[] buf = new byte[BUFFER];
+        // 0 none, 1 collection.anki2, 2 collection.anki21.
+        int found = 0;
+        boolean zstd = false;
+        ZipEntry e;
+        while ((e = zip.getNextEntry()) != null) {
+            if (cancel != null) cancel.throwIfCanceled();
+            String name = e.getName();
+            if (name.equals("collection.anki21b")) zstd = true;
+            int rank = name.equals("collection.anki21") ? 2 : name.equals("collection.anki2") ? 1 : 0;
+            if (rank <= found) continue;
+
+            try (FileOutputStream out = new FileOutputStream(dest)) {
+                int r;
+                while ((r = zip.read(buf)) > 0) {
+                    out.write(buf, 0, r);
+                    if (cancel != null) cancel.throwIfCanceled();
+                }
+            }
+            found = rank;
+        }
+        // Next to an .anki21b, collection.anki2 only says "please update Anki".
+        if (zstd && found < 2) {
+            throw new IOException("This package uses the newest Anki format; export it with "
+                    + "\"Support older Anki versions\" checked");
+        }
+        if (found == 0) throw new IOException("No Anki collection in this file");
+    }
+
+    private static Result copyNotes(Context app, SQLiteDatabase col, String title, String sourceName,
+                                    boolean withScheduling, @Nullable Listener listener,
+                                    @Nullable CancellationSignal cancel) throws IOException {
+        long crt = longOf(col, "SELECT crt FROM col");
+        long total = longOf(col, "SELECT COUNT(*) FROM notes");
+
+        Result r = new Result();
+        r.title = title;
+        NewDeckWriter w = new NewDeckWriter(app);
+        r.deckId = w.deckId;
+        boolean ok = false;
+        try {
+            long lastId = Long.MIN_VALUE;
+            while (true) {
+                int read = 0;
+                // The note's first card (lowest template ordinal) carries its schedule.
+                try (Cursor c = col.rawQuery(
+                        "SELECT n.id, n.flds, n.tags, c.type, c.queue, c.due, c.ivl, c.factor"
+                                + " FROM notes n"
+                                + " LEFT JOIN cards c ON c.id ="
+                                + "   (SELECT id FROM cards WHERE nid = n.id ORDER BY ord LIMIT 1)"
+                                + " WHERE n.id > ? ORDER BY n.id LIMIT " + PAGE,
+                        new String[] { Long.toString(lastId) })) {
+                    while (c.moveToNext()) {
+                        read++;
+                        lastId = c.getLong(0);
+                        r.notes++;
+                        copyNote(c, w, r, crt, withScheduling);
+                    }
+                }
+                if (cancel != null) cancel.throwIfCanceled();
+                if (listener != null) listener.onProgress(r.notes, total);
+                if (read < PAGE) break;
+            }
+            w.commit(title, sourceName);
+            ok = true;
+        } finally {
+            if (!ok) w.abort();
+        }
+        r.cards = w.cards;
+        r.duplicates = w.duplicates;
+        r.states = w.states;
+        return r;
+    }
+
+    private static void copyNote(Cursor c, NewDeckWriter w, Result r, long crt,
+                                 boolean withScheduling) {
+        String[] fields = c.getString(1).split("\u001f", -1);
+        String front = plainText(fields[0]);
+        String back = fields.length > 1 ? plainText(fields[1]) : "";
+        if (front.isEmpty() || back.isEmpty()) {
+            r.skipped++;
+            return;
+        }
+
+        boolean hasCard = !c.isNull(3);
+        int type = hasCard ? c.getInt(3) : TYPE_NEW;
+        int queue = hasCard ? c.getInt(4) : 0;
+        long id = w.addCard(front, back, DeckFileImporter.tags(c.getString(2)),
+                withScheduling && queue == QUEUE_SUSPENDED);
+        if (id == -1 || !withScheduling || type == TYPE_NEW) return;
+
+        long due = c.getLong(5);
+        int ivl = c.getInt(6);
+        int factor = c.getInt(7);
+        float ease = factor > 0 ? Math.max(1.3f, Math.min(3.0f, factor / 1000f)) : 2.5f;
+        if (type == TYPE_REVIEW) {
+            // Review due: days since the collection was created.
+            w.addState(id, Math.max(1, ivl), ease, 3,
+                    (crt + due * DAY_SECONDS) * 1000L, IMPORTED_GRADE);
+        } else {
+            // (Re)learning due: epoch seconds, or days for day-spanning steps.
+            long dueAt = queue == QUEUE_DAY_LEARN ? (crt + due * DAY_SECONDS) * 1000L : due * 1000L;
+            // A lapsed card returns to its reduced interval once it passes the steps.
+            w.addState(id, type == TYPE_RELEARNING ? Math.max(0, ivl) : 0, ease, 0, dueAt,
+                    IMPORTED_GRADE);
+        }
+    }
+
+    private static long longOf(SQLiteDatabase db, String sql) {
+        try (Cursor c = db.rawQuery(sql, null)) {
+            return c.moveToFirst() ? c.getLong(0) : 0L;
+        }
+    }
+
+    /**
+     * Plain text of an Anki field: sound references, styles and scripts are
+     * dropped, line-level tags become spaces, other tags are removed and
+     * HTML entities decoded; whitespace is collapsed.
+     */
+    @NonNull
+    static String plainText(@NonNull String html) {
+        String s = SOUND.matcher(html).replaceAll("");
+        s = BLOCKS.matcher(s).replaceAll("");
+        s = BREAKS.matcher(s).replaceAll(" ");
+        s = TAGS.matcher(s).replaceAll("");
+        if (s.indexOf('&') >= 0) s = decodeEntities(s);
+        return SPACES.matcher(s).replaceAll(" ").trim();
+    }
+
+    private static String decodeEntities(String s) {
+        Matcher m = ENTITY.matcher(s);
+        StringBuilder sb = new StringBuilder(s.length());
+        int last = 0;
+        while (m.find()) {
+            sb.append(s, last, m.start());
+            String e = m.group(1);
+            String decoded;
+            try {
+                if (e.startsWith("#x") || e.startsWith("#X")) {
+                    decoded = new String(Character.toChars(Integer.parseInt(e.substring(2), 16)));
+                } else if (e.startsWith("#")) {
+                    decoded = new String(Character.toChars(Integer.parseInt(e.substring(1))));
+                } else {
+                    decoded = named(e);
+                }
+            } catch (IllegalArgumentException bad) {
+                decoded = null;
+            }
+            sb.append(decoded != null ? decoded : m.group());
+            last = m.end();
+        }
+        return sb.append(s, last, s.length()).toString();
+    }
+
+    @Nullable
+    private static String named(String entity) {
+        switch (entity) {
+            case "nbsp": return " ";
+            case "amp": return "&";
+            case "lt": return "<";
+            case "gt": return ">";
+            case "quot": return "\"";
+            case "apos": return "'";
+            default: return null;
+        }
+    }
+}
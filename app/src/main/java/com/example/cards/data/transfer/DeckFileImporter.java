@@ -0,0 +1,232 @@
+package com.example.cards.data.transfer;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.cards.data.catalog.CustomDecks;
+import com.example.cards.diag.PerfTrace;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * DeckFileImporter
+ *
+ * Creates a user deck ({@link CustomDecks}) from a CSV or TSV file with
+ * one card per record: front, back and optional tags.
+ *
+ * Behavior:
+ * - The file is parsed record by record ({@link DelimitedParser}); memory
+ *   stays flat whatever its size. The delimiter is sniffed from the first
+ *   record line (tab, semicolon or comma).
+ * - Leading {@code #} lines (Anki export headers) and a "front, back"
+ *   header row are skipped, as are records with an empty front or back.
+ * - Cards are written by {@link NewDeckWriter}: duplicates of the
+ *   (deckId, front, back) unique index are dropped by {@code INSERT OR
+ *   IGNORE}, and writes are committed in batches.
+ * - Progress is reported in bytes of the file. Cancellation is checked
+ *   between rows; a cancelled or failed import deletes the new deck, and
+ *   a deck is only listed once its last batch has committed.
+ * - Must run off the main thread; the caller owns and closes the source.
+ */
+public final class DeckFileImporter {
+
+    private static final String TAG = "DeckFileImporter";
+
+    private static final int PROGRESS_EVERY = 1_000;
+    private static final int BUFFER = 64 * 1024;
+    // Enough to see the first record line behind Anki's header lines.
+    private static final int SNIFF_LIMIT = 16 * 1024;
+
+    /**
+     * Progress callback, called on the importing thread.
+     */
+    public interface Listener {
+        /**
+         * @param done  bytes of the file read so far
+         * @param total size of the file, or -1 if unknown
+         */
+        void onProgress(long done, long total);
+    }
+
+    /**
+     * What an import created.
+     */
+    public static final class Result {
+        public long deckId;
+        public String title;
+        /** Records read, header and comment lines excluded. */
+        public long rows;
+        /** Cards inserted. */
+        public long cards;
+        /** Rows already present in the deck. */
+        public long duplicates;
+        /** Rows without a front or back. */
+        public long skipped;
+    }
+
+    /**
+     * Input stream that counts the bytes read through it.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long s = super.skip(n);
+            count += s;
+            return s;
+        }
+    }
+
+    private DeckFileImporter() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Imports a CSV / TSV file as a new deck.
+     *
+     * @param context    context
+     * @param source     file contents, UTF-8; not closed
+     * @param title      title of the new deck
+     * @param sourceName file name, kept with the deck
+     * @param totalBytes size of the file, or -1 if unknown
+     * @param listener   progress callback (worker thread), or null
+     * @param cancel     cancellation signal, or null
+     * @throws IOException                if the file cannot be read or parsed,
+     *                                    or holds no cards
+     * @throws OperationCanceledException if cancelled; nothing is kept
+     */
+    @WorkerThread
+    @NonNull
+    public static Result importFrom(@NonNull Context context, @NonNull InputStream source,
+                                    @NonNull String title, @NonNull String sourceName,
+                                    long totalBytes, @Nullable Listener listener,
+                                    @Nullable CancellationSignal cancel) throws IOException {
+        Context app = context.getApplicationContext();
+        CountingInputStream counted = new CountingInputStream(source);
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(counted, StandardCharsets.UTF_8), BUFFER);
+        DelimitedParser parser = new DelimitedParser(reader, sniff(reader));
+
+        Result r = new Result();
+        r.title = title;
+
+        long t = PerfTrace.begin("DeckFileImporter.import");
+        NewDeckWriter w = new NewDeckWriter(app);
+        r.deckId = w.deckId;
+        boolean ok = false;
+        try {
+            boolean preamble = true;
+            List<String> fields;
+            while ((fields = parser.next()) != null) {
+                if (cancel != null) cancel.throwIfCanceled();
+
+                String front = fields.get(0).trim();
+                String back = fields.size() > 1 ? fields.get(1).trim() : "";
+                if (fields.size() == 1 && front.isEmpty()) continue; // blank line
+                if (preamble) {
+                    // Anki headers ("#separator:tab") and a column header row.
+                    if (front.startsWith("#")) continue;
+                    preamble = false;
+                    if (front.equalsIgnoreCase("front") && back.equalsIgnoreCase("back")) continue;
+                }
+                r.rows++;
+                if (front.isEmpty() || back.isEmpty()) {
+                    r.skipped++;
+                    continue;
+                }
+
+                w.addCard(front, back, fields.size() > 2 ? tags(fields.get(2)) : null, false);
+                if (listener != null && r.rows % PROGRESS_EVERY == 0) {
+                    listener.onProgress(counted.count, totalBytes);
+                }
+            }
+            w.commit(title, sourceName);
+            ok = true;
+        } finally {
+            if (!ok) w.abort();
+            PerfTrace.end(t);
+        }
+        r.cards = w.cards;
+        r.duplicates = w.duplicates;
+
+        if (listener != null) listener.onProgress(counted.count, totalBytes);
+        Log.i(TAG, "deck " + r.deckId + " from " + sourceName + ": " + r.rows + " rows, "
+                + r.cards + " cards, " + r.duplicates + " duplicates, " + r.skipped + " skipped");
+        return r;
+    }
+
+    /**
+     * Reads ahead to the first record line and picks the delimiter; Anki's
+     * {@code #separator:} header wins. The reader is reset to the start.
+     */
+    static char sniff(BufferedReader reader) throws IOException {
+        char[] head = new char[SNIFF_LIMIT];
+        int n = 0;
+        reader.mark(SNIFF_LIMIT);
+        try {
+            int r;
+            while (n < head.length && (r = reader.read(head, n, head.length - n)) > 0) n += r;
+        } finally {
+            reader.reset();
+        }
+
+        for (String line : new String(head, 0, n).split("\r\n|\r|\n")) {
+            String s = line.startsWith("\uFEFF") ? line.substring(1) : line;
+            if (s.startsWith("#separator:")) {
+                String sep = s.substring("#separator:".length()).trim().toLowerCase(Locale.ROOT);
+                if (sep.equals("tab")) return '\t';
+                if (sep.equals("semicolon")) return ';';
+                if (sep.equals("comma")) return ',';
+            }
+            if (!s.startsWith("#") && !s.trim().isEmpty()) return DelimitedParser.sniff(s);
+        }
+        return ',';
+    }
+
+    /**
+     * Normalizes a tags field to single-space-separated tags, or null.
+     */
+    @Nullable
+    static String tags(String raw) {
+        String[] parts = raw.trim().split("[\\s,]+");
+        StringBuilder sb = new StringBuilder();
+        for (String p : parts) {
+            if (p.isEmpty()) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(p);
+        }
+        return sb.length() > 0 ? sb.toString() : null;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.cards.data.transfer;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DelimitedParser
+ *
+ * Streaming reader of CSV / TSV records, one record per {@link #next()}.
+ *
+ * Behavior:
+ * - Fields are separated by the given delimiter; records end at LF, CRLF
+ *   or CR. A leading byte order mark is dropped.
+ * - A field that starts with a double quote is quoted: it may contain the
+ *   delimiter and line breaks, and {@code ""} stands for one quote
+ *   (RFC 4180; Anki writes TSV the same way).
+ * - Only the current record is held in memory; a field longer than
+ *   {@link #MAX_FIELD} characters fails the parse instead of growing
+ *   without bound.
+ */
+final class DelimitedParser {
+
+    static final int MAX_FIELD = 64 * 1024;
+
+    private static final int BUFFER = 16 * 1024;
+
+    private final Reader in;
+    private final char delimiter;
+    private final char[] buf = new char[BUFFER];
+    private int pos;
+    private int len;
+    private boolean started;
+    // A CR was the last char read; a following LF belongs to it.
+    private boolean afterCr;
+
+    // Current line, and the one the record being read started on (1-based).
+    private int line = 1;
+    private int recordLine;
+
+    DelimitedParser(Reader in, char delimiter) {
+        this.in = in;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Picks the delimiter of a file from its first record line: tab if it
+     * has one, else semicolon if it has a semicolon but no comma, else comma.
+     */
+    static char sniff(String firstLine) {
+        if (firstLine.indexOf('\t') >= 0) return '\t';
+        if (firstLine.indexOf(';') >= 0 && firstLine.indexOf(',') < 0) return ';';
+        return ',';
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return its fields, or null at the end of input. An empty line is a
+     *         record with one empty field.
+     * @throws IOException on read errors, an unterminated quote or an
+     *                     oversized field
+     */
+    @Nullable
+    List<String> next() throws IOException {
+        recordLine = line;
+        int c = read();
+        if (c == -1) return null;
+
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        while (true) {
+            if (c == '"' && field.length() == 0) {
+                c = quoted(field);
+            }
+            if (c == -1 || c == '\n') {
+                fields.add(field.toString());
+                return fields;
+            }
+            if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                append(field, (char) c);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Reads the rest of a quoted field into {@code field}.
+     *
+     * @return the first char after the closing quote
+     */
+    private int quoted(StringBuilder field) throws IOException {
+        int start = line;
+        while (true) {
+            int c = read();
+            if (c == -1) throw new IOException("Unterminated quote from line " + start);
+            if (c == '"') {
+                c = read();
+                if (c != '"') return c;
+            }
+            append(field, (char) c);
+        }
+    }
+
+    private void append(StringBuilder field, char c) throws IOException {
+        if (field.length() >= MAX_FIELD) {
+            throw new IOException("Field longer than " + MAX_FIELD + " characters on line " + recordLine);
+        }
+        field.append(c);
+    }
+
+    /**
+     * Next char with line breaks folded to '\n', or -1.
+     */
+    private int read() throws IOException {
+        while (true) {
+            if (pos == len) {
+                len = in.read(buf, 0, buf.length);
+                pos = 0;
+                if (len <= 0) {
+                    len = 0;
+                    return -1;
+                }
+            }
+            char c = buf[pos++];
+            if (!started) {
+                started = true;
+                if (c == '\uFEFF') continue;
+            }
+            if (c == '\n' && afterCr) {
+                afterCr = false;
+                continue;
+            }
+            afterCr = c == '\r';
+            if (c == '\r' || c == '\n') {
+                line++;
+                return '\n';
+            }
+            return c;
+        }
+    }
+}
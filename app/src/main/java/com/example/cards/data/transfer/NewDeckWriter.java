@@ -0,0 +1,142 @@
+package com.example.cards.data.transfer;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.example.cards.data.catalog.CustomDecks;
+import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.db.DbProvider;
+
+import java.io.IOException;
+
+/**
+ * NewDeckWriter
+ *
+ * Fills the database of a new user deck for the file importers
+ * ({@link DeckFileImporter}, {@link AnkiPackageImporter}).
+ *
+ * Behavior:
+ * - Allocates a {@link CustomDecks} id and opens its (empty) database.
+ * - Cards go in with {@code INSERT OR IGNORE}, so the (deckId, front, back)
+ *   unique index drops duplicates without a lookup per row.
+ * - Writes are committed in transactions of {@link #BATCH} rows.
+ * - {@link #commit} lists the deck; {@link #abort} deletes its database, so
+ *   a failed or cancelled import leaves nothing behind.
+ */
+final class NewDeckWriter {
+
+    static final int BATCH = 2_000;
+
+    final long deckId;
+    private final Context app;
+    private final AppDatabase db;
+    private final SupportSQLiteStatement insertCard;
+    private final SupportSQLiteStatement insertState;
+    private final long createdAt = System.currentTimeMillis();
+    private int pending;
+
+    long cards;
+    long duplicates;
+    long states;
+
+    @WorkerThread
+    NewDeckWriter(@NonNull Context app) {
+        this.app = app;
+        this.deckId = CustomDecks.allocateId(app);
+        this.db = DbProvider.forDeck(app, deckId);
+        insertCard = db.compileStatement(
+                "INSERT OR IGNORE INTO cards (deckId, front, back, tags, createdAt, learned, excluded)"
+                        + " VALUES (?, ?, ?, ?, ?, 0, ?)");
+        insertState = db.compileStatement(
+                "INSERT INTO review_state (cardId, intervalDays, ease, step, dueAt, lastGrade)"
+                        + " VALUES (?, ?, ?, ?, ?, ?)");
+        db.beginTransaction();
+    }
+
+    /**
+     * Adds a card.
+     *
+     * @return its id, or -1 if the deck already has the same front and back
+     */
+    long addCard(@NonNull String front, @NonNull String back, @Nullable String tags,
+                 boolean excluded) {
+        insertCard.bindLong(1, deckId);
+        insertCard.bindString(2, front);
+        insertCard.bindString(3, back);
+        if (tags == null) insertCard.bindNull(4); else insertCard.bindString(4, tags);
+        insertCard.bindLong(5, createdAt);
+        insertCard.bindLong(6, excluded ? 1 : 0);
+        long id = insertCard.executeInsert();
+        insertCard.clearBindings();
+        if (id == -1) {
+            duplicates++;
+        } else {
+            cards++;
+            wrote();
+        }
+        return id;
+    }
+
+    /**
+     * Adds the review state of a card that was studied elsewhere.
+     */
+    void addState(long cardId, int intervalDays, float ease, int step, long dueAt, int lastGrade) {
+        insertState.bindLong(1, cardId);
+        insertState.bindLong(2, intervalDays);
+        insertState.bindDouble(3, ease);
+        insertState.bindLong(4, step);
+        insertState.bindLong(5, dueAt);
+        insertState.bindLong(6, lastGrade);
+        insertState.executeInsert();
+        states++;
+        wrote();
+    }
+
+    /** Counts a write; commits the batch when full. */
+    private void wrote() {
+        if (++pending < BATCH) return;
+        db.setTransactionSuccessful();
+        db.endTransaction();
+        db.beginTransaction();
+        pending = 0;
+    }
+
+    /**
+     * Commits the last batch and lists the deck.
+     *
+     * @throws IOException if nothing was imported; the deck is dropped
+     */
+    void commit(@NonNull String title, @NonNull String source) throws IOException {
+        db.setTransactionSuccessful();
+        db.endTransaction();
+        close();
+        if (cards == 0) {
+            DbProvider.deleteDeck(app, deckId);
+            throw new IOException("No cards found in " + source);
+        }
+        CustomDecks.register(app, deckId, title, source, (int) cards);
+    }
+
+    /**
+     * Rolls back the open batch and deletes the deck's database.
+     */
+    void abort() {
+        if (db.inTransaction()) db.endTransaction();
+        close();
+        DbProvider.deleteDeck(app, deckId);
+    }
+
+    private void close() {
+        for (SupportSQLiteStatement st : new SupportSQLiteStatement[] { insertCard, insertState }) {
+            try {
+                st.close();
+            } catch (IOException ignore) {
+                // Nothing to release beyond the native statement.
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.cards.data.transfer;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.db.DbProvider;
+import com.example.cards.data.history.ReviewArchive;
+import com.example.cards.data.history.ReviewHistory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * ProgressExporter
+ *
+ * Writes the study progress of every installed deck into one
+ * {@link ProgressFormat} stream.
+ *
+ * Behavior:
+ * - Per deck: cards with any progress (their text is the import key), SM-2
+ *   states of reviewed cards in every direction, learned_state rows, then
+ *   the full review
+ *   history, archived part included ({@link ReviewHistory}).
+ * - Everything is read through cursors and written straight to the gzip
+ *   stream, so memory does not grow with the amount of history.
+ * - Totals are counted up front so {@link ProgressFormat.Listener} can
+ *   report a fraction; it is called every {@link #PROGRESS_EVERY} records.
+ * - Must run off the main thread; the caller owns and closes the target.
+ */
+public final class ProgressExporter {
+
+    private static final String TAG = "ProgressExporter";
+
+    private static final int PROGRESS_EVERY = 1_000;
+    private static final int BUFFER = 64 * 1024;
+
+    // Cards that carry progress; everything below refers to these.
+    private static final String CARDS_WHERE =
+            "WHERE c.learned = 1 OR c.excluded = 1 " +
+            "   OR EXISTS (SELECT 1 FROM review_state rs WHERE rs.cardId = c.id AND rs.lastGrade IS NOT NULL) " +
+            "   OR EXISTS (SELECT 1 FROM learned_state ls WHERE ls.cardId = c.id) " +
+            "   OR EXISTS (SELECT 1 FROM review_log rl WHERE rl.cardId = c.id) " +
+            "   OR EXISTS (SELECT 1 FROM review_log_monthly m WHERE m.cardId = c.id)";
+
+    private static final String CARDS =
+            "SELECT c.id, c.front, c.back, c.learned, c.excluded FROM cards c " + CARDS_WHERE;
+    private static final String CARDS_COUNT =
+            "SELECT COUNT(*) FROM cards c " + CARDS_WHERE;
+
+    private static final String STATES =
+            "SELECT rs.cardId, rs.intervalDays, rs.ease, rs.step, rs.dueAt, rs.lastGrade, rs.direction " +
+            "FROM review_state rs JOIN cards c ON c.id = rs.cardId " +
+            "WHERE rs.lastGrade IS NOT NULL";
+    private static final String STATES_COUNT =
+            "SELECT COUNT(*) FROM review_state rs JOIN cards c ON c.id = rs.cardId " +
+            "WHERE rs.lastGrade IS NOT NULL";
+
+    private static final String LEARNED =
+            "SELECT ls.cardId, ls.learned FROM learned_state ls JOIN cards c ON c.id = ls.cardId";
+    private static final String LEARNED_COUNT =
+            "SELECT COUNT(*) FROM learned_state ls JOIN cards c ON c.id = ls.cardId";
+
+    /**
+     * What an export wrote.
+     */
+    public static final class Result {
+        public int decks;
+        public long records;
+    }
+
+    /**
+     * Counts records and reports progress.
+     */
+    private static final class Counter {
+        final long total;
+        @Nullable final ProgressFormat.Listener listener;
+        long done;
+
+        Counter(long total, @Nullable ProgressFormat.Listener listener) {
+            this.total = total;
+            this.listener = listener;
+        }
+
+        void tick() {
+            done++;
+            if (listener != null && done % PROGRESS_EVERY == 0) listener.onProgress(done, total);
+        }
+    }
+
+    private ProgressExporter() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Exports all installed decks into {@code target}.
+     *
+     * @param context  context
+     * @param target   stream to write; flushed but not closed
+     * @param listener progress callback (worker thread), or null
+     */
+    @WorkerThread
+    @NonNull
+    public static Result export(@NonNull Context context, @NonNull OutputStream target,
+                                @Nullable ProgressFormat.Listener listener) throws IOException {
+        Context app = context.getApplicationContext();
+        List<Long> decks = DbProvider.installedDeckIds(app);
+
+        // 1) Totals, for progress.
+        long total = 0;
+        for (long deckId : decks) {
+            AppDatabase db = DbProvider.forDeck(app, deckId);
+            total += 1 + count(db, CARDS_COUNT) + count(db, STATES_COUNT) + count(db, LEARNED_COUNT)
+                    + db.reviewDao().countLogs();
+            for (ReviewArchive.Segment s : ReviewArchive.forDeck(app, deckId).segments()) total += s.rows;
+        }
+
+        // 2) Records.
+        GZIPOutputStream gzip = new GZIPOutputStream(target, BUFFER);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(gzip, BUFFER));
+        out.writeInt(ProgressFormat.MAGIC);
+        out.writeInt(ProgressFormat.VERSION);
+        out.writeLong(System.currentTimeMillis());
+        out.writeLong(total);
+
+        Counter counter = new Counter(total, listener);
+        for (long deckId : decks) {
+            writeDeck(app, deckId, DbProvider.forDeck(app, deckId), out, counter);
+        }
+        out.writeByte(ProgressFormat.END);
+        out.writeLong(counter.done);
+        out.flush();
+        gzip.finish();
+        target.flush();
+
+        if (listener != null) listener.onProgress(counter.done, total);
+        if (counter.done != total) {
+            // Reviews made during the export; the file is still consistent.
+            Log.w(TAG, "wrote " + counter.done + " records, counted " + total);
+        }
+
+        Result r = new Result();
+        r.decks = decks.size();
+        r.records = counter.done;
+        return r;
+    }
+
+    private static void writeDeck(Context app, long deckId, AppDatabase db,
+                                  DataOutputStream out, Counter counter) throws IOException {
+        out.writeByte(ProgressFormat.DECK);
+        out.writeLong(deckId);
+        counter.tick();
+
+        try (Cursor c = db.query(CARDS, null)) {
+            while (c.moveToNext()) {
+                out.writeByte(ProgressFormat.CARD);
+                out.writeLong(c.getLong(0));
+                ProgressFormat.writeString(out, c.getString(1));
+                ProgressFormat.writeString(out, c.getString(2));
+                int flags = (c.getInt(3) != 0 ? ProgressFormat.FLAG_LEARNED : 0)
+                        | (c.getInt(4) != 0 ? ProgressFormat.FLAG_EXCLUDED : 0);
+                out.writeByte(flags);
+                counter.tick();
+            }
+        }
+
+        try (Cursor c = db.query(STATES, null)) {
+            while (c.moveToNext()) {
+                out.writeByte(ProgressFormat.STATE);
+                out.writeLong(c.getLong(0));
+                out.writeInt(c.getInt(1));
+                out.writeFloat(c.getFloat(2));
+                out.writeInt(c.getInt(3));
+                out.writeLong(c.getLong(4));
+                out.writeInt(c.isNull(5) ? -1 : c.getInt(5));
+                out.writeByte(c.getInt(6));
+                counter.tick();
+            }
+        }
+
+        try (Cursor c = db.query(LEARNED, null)) {
+            while (c.moveToNext()) {
+                out.writeByte(ProgressFormat.LEARNED);
+                out.writeLong(c.getLong(0));
+                out.writeByte(c.getInt(1) != 0 ? 1 : 0);
+                counter.tick();
+            }
+        }
+
+        try {
+            ReviewHistory.forEach(app, deckId, db, log -> {
+                try {
+                    out.writeByte(ProgressFormat.REVIEW);
+                    out.writeLong(log.cardId);
+                    out.writeLong(log.reviewedAt);
+                    out.writeByte(log.grade);
+                    out.writeInt(log.resultIntervalDays);
+                    out.writeDouble(log.resultEase);
+                    out.writeInt(log.resultStep);
+                    out.writeByte(log.direction);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                counter.tick();
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static long count(AppDatabase db, String sql) {
+        try (Cursor c = db.query(sql, null)) {
+            return c.moveToFirst() ? c.getLong(0) : 0L;
+        }
+    }
+}
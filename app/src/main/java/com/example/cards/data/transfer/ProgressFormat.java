@@ -0,0 +1,82 @@
+package com.example.cards.data.transfer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ProgressFormat
+ *
+ * Layout of a progress export file ({@code .fcprogress}): a gzip stream of
+ * big-endian records.
+ * <pre>
+ *   header:  int magic "FCPX", int version, long createdAt, long totalRecords
+ *   records: byte tag, then the tag's fields
+ *     'D' deck     long deckId                       (starts a deck section)
+ *     'C' card     long cardId, str front, str back, byte flags (1 learned, 2 excluded)
+ *     'S' state    long cardId, int intervalDays, float ease, int step,
+ *                  long dueAt, int lastGrade (-1 = none), byte direction
+ *     'L' learned  long cardId, byte learned
+ *     'R' review   long cardId, long reviewedAt, byte grade,
+ *                  int resultIntervalDays, double resultEase, int resultStep,
+ *                  byte direction
+ *     'E' end      long records written (excluding 'E')
+ * </pre>
+ * Version 1 files have no direction bytes; their states and reviews are
+ * forward ({@code CardDirection.FORWARD}).
+ * {@code str} is an int byte length followed by UTF-8 bytes. Within a deck
+ * section every card is written before the records that refer to it; card
+ * ids are only meaningful inside their section, the importer maps them to
+ * local cards by (deckId, front, back).
+ */
+public final class ProgressFormat {
+
+    public static final int MAGIC = 0x46435058; // "FCPX"
+    public static final int VERSION = 2;
+
+    /** Suggested file name extension. */
+    public static final String EXTENSION = ".fcprogress";
+
+    static final byte DECK = 'D';
+    static final byte CARD = 'C';
+    static final byte STATE = 'S';
+    static final byte LEARNED = 'L';
+    static final byte REVIEW = 'R';
+    static final byte END = 'E';
+
+    static final int FLAG_LEARNED = 1;
+    static final int FLAG_EXCLUDED = 2;
+
+    // Longest card text accepted on import; guards against corrupt lengths.
+    private static final int MAX_STRING_BYTES = 1 << 20;
+
+    /**
+     * Progress of an export or import, called on the worker thread.
+     */
+    public interface Listener {
+        /**
+         * @param done  records processed so far
+         * @param total records in the whole transfer
+         */
+        void onProgress(long done, long total);
+    }
+
+    private ProgressFormat() {
+        // Utility class; no instances.
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0 || n > MAX_STRING_BYTES) throw new IOException("Bad string length " + n);
+        byte[] b = new byte[n];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
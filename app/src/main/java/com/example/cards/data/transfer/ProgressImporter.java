@@ -0,0 +1,392 @@
+package com.example.cards.data.transfer;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.db.DbProvider;
+import com.example.cards.data.history.DailyRollups;
+import com.example.cards.data.history.ReviewArchive;
+import com.example.cards.data.model.CardDirection;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * ProgressImporter
+ *
+ * Reads a {@link ProgressFormat} stream and merges it into the deck
+ * databases on this device.
+ *
+ * Behavior:
+ * - Cards are matched by (deckId, front, back). If the back text differs
+ *   (content update, other translation language) a card with the same front
+ *   is used when there is exactly one. Records of unmatched cards are
+ *   skipped and counted.
+ * - Upserts: the imported SM-2 state (per card and direction),
+ *   learned_state row and learned / excluded flags replace the local ones.
+ *   Reviews are inserted unless the card already has a review at the same
+ *   time in the same direction, live or compacted into the deck's
+ *   {@link ReviewArchive}, so importing the same file twice adds nothing
+ *   and archived reviews are never counted again. Version 1 files carry
+ *   forward progress only.
+ * - Writes are committed in transactions of {@link #CHUNK} records. A
+ *   failure keeps the chunks committed so far; importing again completes it.
+ * - Imported reviews are not counted by saveStateAndLog; each deck that got
+ *   reviews has its daily_rollup rebuilt afterwards ({@link DailyRollups}).
+ * - Memory is bounded by one deck's card id map, plus the keys of its
+ *   archived reviews once a review older than the archive's cutoff is read.
+ * - Must run off the main thread; the caller owns and closes the source.
+ */
+public final class ProgressImporter {
+
+    private static final String TAG = "ProgressImporter";
+
+    static final int CHUNK = 2_000;
+
+    private static final int PROGRESS_EVERY = 1_000;
+    private static final int BUFFER = 64 * 1024;
+
+    /**
+     * What an import changed.
+     */
+    public static final class Result {
+        public int decks;
+        public long cards;
+        public long states;
+        public long learned;
+        public long reviews;
+        /** Records of cards that do not exist here, and duplicate reviews. */
+        public long skipped;
+    }
+
+    /**
+     * Writer for one deck section: card id map, prepared statements and the
+     * open chunk transaction.
+     */
+    private static final class DeckWriter {
+        final AppDatabase db;
+        final long deckId;
+        // Exported card id -> local card id, or -1 when there is no match.
+        final Map<Long, Long> cards = new HashMap<>();
+
+        final SupportSQLiteStatement updateState;
+        final SupportSQLiteStatement insertState;
+        final SupportSQLiteStatement upsertLearned;
+        final SupportSQLiteStatement updateFlags;
+        final SupportSQLiteStatement insertReview;
+        // Format version of the file; decides the record layout.
+        final int version;
+        int pending;
+        // Reviews inserted; they bypass saveStateAndLog, so rollups are rebuilt.
+        long reviews;
+
+        // Compacted history: cutoff, and the keys once a review before it is read.
+        final ReviewArchive archive;
+        long archiveLength = -1;
+        long archivedBefore;
+        ReviewArchive.Keys archived;
+
+        DeckWriter(Context app, AppDatabase db, long deckId, int version) throws IOException {
+            this.db = db;
+            this.deckId = deckId;
+            this.version = version;
+            this.archive = ReviewArchive.forDeck(app, deckId);
+            updateState = db.compileStatement(
+                    "UPDATE review_state SET intervalDays = ?, ease = ?, step = ?, dueAt = ?, lastGrade = ? " +
+                    "WHERE cardId = ? AND direction = ?");
+            insertState = db.compileStatement(
+                    "INSERT INTO review_state(intervalDays, ease, step, dueAt, lastGrade, cardId, direction) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)");
+            upsertLearned = db.compileStatement(
+                    "INSERT OR REPLACE INTO learned_state(cardId, learned) VALUES (?, ?)");
+            updateFlags = db.compileStatement(
+                    "UPDATE cards SET learned = ?, excluded = ? WHERE id = ?");
+            insertReview = db.compileStatement(
+                    "INSERT INTO review_log(cardId, reviewedAt, grade, resultIntervalDays, " +
+                    "resultEase, resultStep, direction, ts) " +
+                    "SELECT ?, ?, ?, ?, ?, ?, ?, 0 " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM review_log " +
+                    "                  WHERE cardId = ? AND reviewedAt = ? AND direction = ?)");
+            db.beginTransaction();
+            try {
+                checkArchive();
+            } catch (IOException e) {
+                abort();
+                throw e;
+            }
+        }
+
+        /**
+         * Re-reads the archive's cutoff if a compaction appended to it since
+         * the last check. Called at the start of each chunk transaction:
+         * while it is open, no compaction batch can delete its rows from
+         * review_log, so every review is either live or in the known archive.
+         */
+        void checkArchive() throws IOException {
+            long length = archive.file().length();
+            if (length == archiveLength) return;
+            archivedBefore = archive.before();
+            archiveLength = archive.file().length();
+            archived = null;
+        }
+
+        /** Whether a review was compacted into the deck's archive. */
+        boolean isArchived(long cardId, long reviewedAt, int direction) throws IOException {
+            if (reviewedAt >= archivedBefore) return false;
+            if (archived == null) archived = archive.keys();
+            return archived.contains(cardId, reviewedAt, direction);
+        }
+
+        /** Local id of an exported card, or -1. */
+        long local(long exportedId) {
+            Long id = cards.get(exportedId);
+            return id != null ? id : -1L;
+        }
+
+        /** Resolves a card by (deckId, front, back), falling back to a unique front. */
+        long resolve(String front, String back) {
+            long onlyByFront = -1;
+            int byFront = 0;
+            try (Cursor c = db.query("SELECT id, back FROM cards WHERE deckId = ? AND front = ?",
+                    new Object[] { deckId, front })) {
+                while (c.moveToNext()) {
+                    if (back.equals(c.getString(1))) return c.getLong(0);
+                    onlyByFront = c.getLong(0);
+                    byFront++;
+                }
+            }
+            return byFront == 1 ? onlyByFront : -1L;
+        }
+
+        /** Counts a write; commits the chunk when full. */
+        void wrote() throws IOException {
+            if (++pending < CHUNK) return;
+            db.setTransactionSuccessful();
+            db.endTransaction();
+            db.beginTransaction();
+            pending = 0;
+            checkArchive();
+        }
+
+        void commit() {
+            db.setTransactionSuccessful();
+            db.endTransaction();
+            close();
+        }
+
+        void abort() {
+            if (db.inTransaction()) db.endTransaction();
+            close();
+        }
+
+        private void close() {
+            for (SupportSQLiteStatement st : new SupportSQLiteStatement[] {
+                    updateState, insertState, upsertLearned, updateFlags, insertReview }) {
+                try {
+                    st.close();
+                } catch (IOException ignore) {
+                    // Nothing to release beyond the native statement.
+                }
+            }
+        }
+    }
+
+    private ProgressImporter() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Imports a progress stream.
+     *
+     * @param context  context
+     * @param source   export file contents; not closed
+     * @param listener progress callback (worker thread), or null
+     * @throws IOException if the stream is not a progress export, is from a
+     *                     newer app version, or is truncated
+     */
+    @WorkerThread
+    @NonNull
+    public static Result importFrom(@NonNull Context context, @NonNull InputStream source,
+                                    @Nullable ProgressFormat.Listener listener) throws IOException {
+        Context app = context.getApplicationContext();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(source, BUFFER), BUFFER));
+
+        if (in.readInt() != ProgressFormat.MAGIC) throw new IOException("Not a progress export");
+        int version = in.readInt();
+        if (version > ProgressFormat.VERSION) {
+            throw new IOException("Export format " + version + " is newer than this app supports");
+        }
+        in.readLong(); // createdAt
+        long total = in.readLong();
+
+        Result r = new Result();
+        long done = 0;
+        DeckWriter w = null;
+        try {
+            while (true) {
+                byte tag = in.readByte();
+                if (tag == ProgressFormat.END) {
+                    long written = in.readLong();
+                    if (written != done) {
+                        throw new IOException("Export declares " + written + " records, read " + done);
+                    }
+                    break;
+                }
+
+                if (tag == ProgressFormat.DECK) {
+                    if (w != null) finish(app, w, true);
+                    w = null;
+                    long deckId = in.readLong();
+                    w = new DeckWriter(app, DbProvider.forDeck(app, deckId), deckId, version);
+                    r.decks++;
+                } else if (w == null) {
+                    throw new IOException("Record before the first deck");
+                } else {
+                    readRecord(tag, in, w, r);
+                }
+
+                done++;
+                if (listener != null && done % PROGRESS_EVERY == 0) listener.onProgress(done, total);
+            }
+            if (w != null) finish(app, w, true);
+            w = null;
+        } finally {
+            if (w != null) finish(app, w, false);
+        }
+
+        if (listener != null) listener.onProgress(done, total);
+        Log.i(TAG, "imported " + r.decks + " decks: " + r.cards + " cards, " + r.states + " states, "
+                + r.learned + " learned, " + r.reviews + " reviews, " + r.skipped + " skipped");
+        return r;
+    }
+
+    /**
+     * Commits (or rolls back the open chunk of) a deck section and queues a
+     * daily_rollup rebuild if reviews were added.
+     */
+    private static void finish(Context app, DeckWriter w, boolean commit) {
+        if (commit) w.commit(); else w.abort();
+        if (w.reviews > 0) DailyRollups.scheduleRebuild(app, w.deckId, w.db);
+    }
+
+    private static void readRecord(byte tag, DataInputStream in, DeckWriter w, Result r)
+            throws IOException {
+        switch (tag) {
+            case ProgressFormat.CARD: {
+                long exportedId = in.readLong();
+                String front = ProgressFormat.readString(in);
+                String back = ProgressFormat.readString(in);
+                int flags = in.readUnsignedByte();
+                long local = w.resolve(front, back);
+                w.cards.put(exportedId, local);
+                if (local < 0) {
+                    r.skipped++;
+                    return;
+                }
+                w.updateFlags.bindLong(1, (flags & ProgressFormat.FLAG_LEARNED) != 0 ? 1 : 0);
+                w.updateFlags.bindLong(2, (flags & ProgressFormat.FLAG_EXCLUDED) != 0 ? 1 : 0);
+                w.updateFlags.bindLong(3, local);
+                w.updateFlags.executeUpdateDelete();
+                r.cards++;
+                w.wrote();
+                return;
+            }
+            case ProgressFormat.STATE: {
+                long local = w.local(in.readLong());
+                int intervalDays = in.readInt();
+                float ease = in.readFloat();
+                int step = in.readInt();
+                long dueAt = in.readLong();
+                int lastGrade = in.readInt();
+                int direction = readDirection(in, w.version);
+                if (local < 0) {
+                    r.skipped++;
+                    return;
+                }
+                // Same bind order for both statements; cardId and direction last.
+                for (SupportSQLiteStatement st : new SupportSQLiteStatement[] { w.updateState, w.insertState }) {
+                    st.bindLong(1, intervalDays);
+                    st.bindDouble(2, ease);
+                    st.bindLong(3, step);
+                    st.bindLong(4, dueAt);
+                    if (lastGrade < 0) st.bindNull(5); else st.bindLong(5, lastGrade);
+                    st.bindLong(6, local);
+                    st.bindLong(7, direction);
+                }
+                if (w.updateState.executeUpdateDelete() == 0) w.insertState.executeInsert();
+                r.states++;
+                w.wrote();
+                return;
+            }
+            case ProgressFormat.LEARNED: {
+                long local = w.local(in.readLong());
+                int learned = in.readUnsignedByte();
+                if (local < 0) {
+                    r.skipped++;
+                    return;
+                }
+                w.upsertLearned.bindLong(1, local);
+                w.upsertLearned.bindLong(2, learned != 0 ? 1 : 0);
+                w.upsertLearned.executeInsert();
+                r.learned++;
+                w.wrote();
+                return;
+            }
+            case ProgressFormat.REVIEW: {
+                long local = w.local(in.readLong());
+                long reviewedAt = in.readLong();
+                int grade = in.readByte();
+                int intervalDays = in.readInt();
+                double ease = in.readDouble();
+                int step = in.readInt();
+                int direction = readDirection(in, w.version);
+                if (local < 0 || w.isArchived(local, reviewedAt, direction)) {
+                    r.skipped++;
+                    return;
+                }
+                SupportSQLiteStatement st = w.insertReview;
+                st.bindLong(1, local);
+                st.bindLong(2, reviewedAt);
+                st.bindLong(3, grade);
+                st.bindLong(4, intervalDays);
+                st.bindDouble(5, ease);
+                st.bindLong(6, step);
+                st.bindLong(7, direction);
+                st.bindLong(8, local);
+                st.bindLong(9, reviewedAt);
+                st.bindLong(10, direction);
+                if (st.executeInsert() == -1) {
+                    r.skipped++;
+                } else {
+                    r.reviews++;
+                    w.reviews++;
+                }
+                w.wrote();
+                return;
+            }
+            default:
+                throw new IOException("Unknown record '" + (char) tag + "'");
+        }
+    }
+
+    /** Direction of a state or review record; version 1 had only forward. */
+    private static int readDirection(DataInputStream in, int version) throws IOException {
+        if (version < 2) return CardDirection.FORWARD;
+        int direction = in.readUnsignedByte();
+        if (direction >= CardDirection.COUNT) throw new IOException("Unknown direction " + direction);
+        return direction;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.cards.diag;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram
+ *
+ * Lock-free log-linear histogram of latencies in microseconds, in the spirit
+ * of HdrHistogram: every power-of-two range is split into {@link #SUB_BUCKETS}
+ * linear sub-buckets, so any recorded value is kept with a relative error
+ * below 1/{@value #SUB_BUCKETS} while the whole 1 us .. ~19 h range fits in
+ * a few hundred counters.
+ *
+ * Behavior:
+ * - {@link #record(long)} is wait-free apart from the CAS loop for the max;
+ *   it can be called from any number of threads.
+ * - Readers ({@link #percentile(double)}, {@link #count()}, ...) see a
+ *   possibly slightly inconsistent snapshot while writers are active, which
+ *   is fine for diagnostics.
+ * - Values above the covered range are clamped into the last bucket; the
+ *   exact maximum is tracked separately.
+ */
+public final class LatencyHistogram {
+
+    // Linear sub-buckets per power of two (must be a power of two).
+    static final int SUB_BUCKETS = 16;
+    private static final int SUB_BITS = 4;
+
+    // Number of power-of-two ranges above the first linear range.
+    private static final int RANGES = 32;
+
+    static final int BUCKET_COUNT = SUB_BUCKETS + RANGES * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sumMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Records one latency value.
+     *
+     * @param micros latency in microseconds; negative values count as 0
+     */
+    public void record(long micros) {
+        long v = Math.max(0L, micros);
+        counts.incrementAndGet(indexOf(v));
+        total.incrementAndGet();
+        sumMicros.addAndGet(v);
+
+        long cur = maxMicros.get();
+        while (v > cur && !maxMicros.compareAndSet(cur, v)) {
+            cur = maxMicros.get();
+        }
+    }
+
+    public long count() {
+        return total.get();
+    }
+
+    public long maxMicros() {
+        return maxMicros.get();
+    }
+
+    public double meanMicros() {
+        long n = total.get();
+        return n == 0 ? 0.0 : (double) sumMicros.get() / n;
+    }
+
+    /**
+     * Returns the value at the given quantile, e.g. 0.99 for p99, as the
+     * midpoint of the bucket that contains it. Returns 0 when empty.
+     *
+     * @param q quantile in [0, 1]
+     */
+    public long percentile(double q) {
+        long n = total.get();
+        if (n == 0) return 0L;
+
+        long rank = (long) Math.ceil(Math.min(1.0, Math.max(0.0, q)) * n);
+        if (rank < 1) rank = 1;
+
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                long low = lowerBound(i);
+                long mid = low + (bucketWidth(i) - 1) / 2;
+                return Math.min(mid, maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    /**
+     * Copies the raw bucket counters, for export.
+     */
+    public long[] bucketCounts() {
+        long[] out = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) out[i] = counts.get(i);
+        return out;
+    }
+
+    /**
+     * Maps a value to its bucket index.
+     */
+    static int indexOf(long v) {
+        if (v < SUB_BUCKETS) return (int) v;
+
+        int exp = (63 - Long.numberOfLeadingZeros(v)) - SUB_BITS;  // >= 0
+        if (exp >= RANGES) return BUCKET_COUNT - 1;
+
+        int mantissa = (int) (v >>> exp);                          // SUB_BUCKETS..2*SUB_BUCKETS-1
+        return SUB_BUCKETS + exp * SUB_BUCKETS + (mantissa - SUB_BUCKETS);
+    }
+
+    /**
+     * Smallest value stored in the given bucket.
+     */
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exp = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        int mantissa = (index - SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return (long) mantissa << exp;
+    }
+
+    /**
+     * Number of distinct values that fall into the given bucket.
+     */
+    static long bucketWidth(int index) {
+        if (index < SUB_BUCKETS) return 1L;
+        return 1L << ((index - SUB_BUCKETS) / SUB_BUCKETS);
+    }
+}
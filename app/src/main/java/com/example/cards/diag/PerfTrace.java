@@ -0,0 +1,219 @@
+package com.example.cards.diag;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * PerfTrace
+ *
+ * Lightweight startup instrumentation that can stay enabled in release builds.
+ *
+ * Usage:
+ * <pre>
+ *   long t = PerfTrace.begin("MainMenu.onCreate");
+ *   ...
+ *   PerfTrace.end(t);
+ *
+ *   PerfTrace.markOnce("first_progress_percent");
+ * </pre>
+ *
+ * Behavior:
+ * - {@link #begin(String)} / {@link #end(long)} wrap a phase in a systrace
+ *   section (visible in Perfetto) and record its duration.
+ * - {@link #markOnce(String)} records the time elapsed since process start
+ *   the first time a milestone is reached (e.g. time to first percent).
+ * - Records go into a fixed-size in-memory ring buffer; the oldest entries
+ *   are overwritten. Writers never block each other.
+ * - When disabled, every call is a single volatile read and returns.
+ *
+ * The enabled flag is persisted in the "app_settings" preferences and
+ * toggled from {@link com.example.cards.DiagnosticsActivity}.
+ */
+public final class PerfTrace {
+
+    private static final String PREFS_NAME = "app_settings";
+    private static final String KEY_ENABLED = "perf_trace_enabled";
+
+    // Ring buffer capacity; must be a power of two.
+    private static final int CAPACITY = 256;
+
+    /** Returned by {@link #begin(String)} when tracing is off; {@link #end(long)} ignores it. */
+    public static final long DISABLED = -1L;
+
+    /**
+     * One recorded timing.
+     */
+    public static final class Entry {
+        /** SECTION: a measured phase; MARK: a milestone since process start. */
+        public final boolean mark;
+        public final String name;
+        /** Uptime (ms) at which the phase started / the milestone happened. */
+        public final long atUptimeMs;
+        /** Phase duration, or time since process start for marks (ns). */
+        public final long durationNanos;
+        public final String thread;
+
+        Entry(boolean mark, String name, long atUptimeMs, long durationNanos, String thread) {
+            this.mark = mark;
+            this.name = name;
+            this.atUptimeMs = atUptimeMs;
+            this.durationNanos = durationNanos;
+            this.thread = thread;
+        }
+    }
+
+    private static volatile boolean enabled = true;
+
+    private static final AtomicReferenceArray<Entry> RING = new AtomicReferenceArray<>(CAPACITY);
+    private static final AtomicLong CURSOR = new AtomicLong();
+    private static final Set<String> MARKED = ConcurrentHashMap.newKeySet();
+
+    // Names of the sections currently open on each thread, innermost last.
+    private static final ThreadLocal<ArrayList<String>> OPEN = new ThreadLocal<ArrayList<String>>() {
+        @Override
+        protected ArrayList<String> initialValue() {
+            return new ArrayList<>(4);
+        }
+    };
+
+    private PerfTrace() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Loads the persisted enabled flag. Cheap after the first
+     * {@code getSharedPreferences} call of the process (ThemeHelper already
+     * loads the same file).
+     */
+    public static void init(@NonNull Context context) {
+        SharedPreferences prefs =
+                context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        enabled = prefs.getBoolean(KEY_ENABLED, true);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables tracing and persists the choice.
+     */
+    public static void setEnabled(@NonNull Context context, boolean on) {
+        enabled = on;
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putBoolean(KEY_ENABLED, on)
+                .apply();
+    }
+
+    /**
+     * Starts a traced phase on the current thread.
+     *
+     * @return token to pass to {@link #end(long)}
+     */
+    public static long begin(@NonNull String name) {
+        if (!enabled) return DISABLED;
+        Trace.beginSection(name);
+        OPEN.get().add(name);
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    /**
+     * Ends the phase started by the matching {@link #begin(String)}.
+     */
+    public static void end(long token) {
+        if (token == DISABLED) return;
+        long took = SystemClock.elapsedRealtimeNanos() - token;
+        Trace.endSection();
+
+        ArrayList<String> open = OPEN.get();
+        String name = open.isEmpty() ? "?" : open.remove(open.size() - 1);
+        long startUptime = SystemClock.uptimeMillis() - took / 1_000_000L;
+        record(new Entry(false, name, startUptime, took, Thread.currentThread().getName()));
+    }
+
+    /**
+     * Records the time since process start the first time {@code name} is
+     * reached. Later calls with the same name are ignored.
+     */
+    public static void markOnce(@NonNull String name) {
+        if (!enabled || MARKED.contains(name) || !MARKED.add(name)) return;
+        long now = SystemClock.uptimeMillis();
+        long sinceStart = (now - Process.getStartUptimeMillis()) * 1_000_000L;
+        record(new Entry(true, name, now, sinceStart, Thread.currentThread().getName()));
+    }
+
+    private static void record(Entry e) {
+        long i = CURSOR.getAndIncrement();
+        RING.set((int) (i & (CAPACITY - 1)), e);
+    }
+
+    /**
+     * Returns the buffered entries, oldest first.
+     */
+    @NonNull
+    public static List<Entry> snapshot() {
+        long end = CURSOR.get();
+        long start = Math.max(0, end - CAPACITY);
+        List<Entry> out = new ArrayList<>((int) (end - start));
+        for (long i = start; i < end; i++) {
+            Entry e = RING.get((int) (i & (CAPACITY - 1)));
+            if (e != null) out.add(e);
+        }
+        return out;
+    }
+
+    /**
+     * Formats the buffered entries as plain text, one per line.
+     */
+    @NonNull
+    public static String format() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("process start uptime=").append(Process.getStartUptimeMillis()).append(" ms\n");
+        for (Entry e : snapshot()) {
+            sb.append(String.format(Locale.US, "%-5s %-40s %9.2f ms  @%d  [%s]%n",
+                    e.mark ? "MARK" : "SECT",
+                    e.name,
+                    e.durationNanos / 1e6,
+                    e.atUptimeMs,
+                    e.thread));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes {@link #format()} into {@code dir/startup-<timestamp>.txt}.
+     *
+     * @return the written file
+     */
+    @NonNull
+    public static File dump(@NonNull File dir) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File f = new File(dir, "startup-" + System.currentTimeMillis() + ".txt");
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(f), StandardCharsets.UTF_8)) {
+            w.write(format());
+        }
+        return f;
+    }
+}
@@ -0,0 +1,347 @@
+package com.example.cards.diag;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+
+import com.example.cards.data.db.DbScheduler;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * QueryMetrics
+ *
+ * Query latency instrumentation for the deck databases.
+ *
+ * Usage:
+ * <pre>
+ *   // DbProvider, when building a deck database:
+ *   QueryMetrics.install(builder, dbName);
+ *   QueryMetrics.register(dbName, db);
+ *
+ *   // Call sites:
+ *   List&lt;WordWithStats&gt; rows =
+ *           QueryMetrics.measure("CardDao.getSelection", () -> dao.getSelection(deckId, direction, 800));
+ * </pre>
+ *
+ * Behavior:
+ * - {@link #measure(String, Supplier)} records the latency of a named DAO call
+ *   into a {@link LatencyHistogram} and the number of rows it returned
+ *   (list size, or 1 for scalar results).
+ * - Room's query callback is installed on every deck database with a direct
+ *   executor, so it runs on the querying thread and captures the exact SQL
+ *   and bind arguments executed inside a measured call.
+ * - A call slower than {@link #SLOW_MS} is logged; the first time a given
+ *   statement is slow, its {@code EXPLAIN QUERY PLAN} is computed on a
+ *   background thread, logged and kept for the export.
+ * - {@link #toJson()} / {@link #export(File)} write everything as JSON for
+ *   offline analysis.
+ *
+ * The enabled flag is persisted in the "app_settings" preferences. While
+ * disabled, {@link #measure} only calls through and no query callback is
+ * installed on databases opened afterwards.
+ */
+public final class QueryMetrics {
+
+    private static final String TAG = "QueryMetrics";
+
+    private static final String PREFS_NAME = "app_settings";
+    private static final String KEY_ENABLED = "query_metrics_enabled";
+
+    /** Calls at least this slow are logged with their query plan. */
+    public static final long SLOW_MS = 50L;
+
+    /**
+     * Counters for one named query.
+     */
+    private static final class Stat {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder rows = new LongAdder();
+        final AtomicLong maxRows = new AtomicLong();
+        final LongAdder slow = new LongAdder();
+    }
+
+    /**
+     * One statement seen by the query callback.
+     */
+    private static final class Statement {
+        final String dbName;
+        final String sql;
+        final Object[] args;
+
+        Statement(String dbName, String sql, Object[] args) {
+            this.dbName = dbName;
+            this.sql = sql;
+            this.args = args;
+        }
+    }
+
+    private static volatile boolean enabled = true;
+
+    private static final ConcurrentMap<String, Stat> STATS = new ConcurrentHashMap<>();
+    // Query plans by SQL text; an empty string marks a plan being computed.
+    private static final ConcurrentMap<String, String> PLANS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, RoomDatabase> DATABASES = new ConcurrentHashMap<>();
+
+    // Statements executed by the measured call currently running on this thread;
+    // null while no measured call is active.
+    private static final ThreadLocal<List<Statement>> CAPTURE = new ThreadLocal<>();
+
+    private QueryMetrics() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Loads the persisted enabled flag.
+     */
+    public static void init(@NonNull Context context) {
+        enabled = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getBoolean(KEY_ENABLED, true);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables metrics and persists the choice. Databases that are
+     * already open keep (or keep lacking) their query callback.
+     */
+    public static void setEnabled(@NonNull Context context, boolean on) {
+        enabled = on;
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putBoolean(KEY_ENABLED, on)
+                .apply();
+    }
+
+    /**
+     * Installs the capturing query callback on a database builder.
+     *
+     * @param builder Room builder of the database
+     * @param dbName  database file name, used to find it again for EXPLAIN
+     */
+    public static <T extends RoomDatabase> RoomDatabase.Builder<T> install(
+            @NonNull RoomDatabase.Builder<T> builder, @NonNull String dbName) {
+        if (!enabled) return builder;
+        return builder.setQueryCallback(
+                (sql, bindArgs) -> capture(dbName, sql, bindArgs.toArray()),
+                Runnable::run);
+    }
+
+    /**
+     * Remembers a built database so slow statements on it can be explained.
+     */
+    public static void register(@NonNull String dbName, @NonNull RoomDatabase db) {
+        DATABASES.put(dbName, db);
+    }
+
+    private static void capture(String dbName, String sql, Object[] args) {
+        List<Statement> sink = CAPTURE.get();
+        if (sink != null) sink.add(new Statement(dbName, sql, args));
+    }
+
+    /**
+     * Runs a read and records its latency and row count under {@code name}.
+     */
+    public static <T> T measure(@NonNull String name, @NonNull Supplier<T> query) {
+        if (!enabled) return query.get();
+
+        List<Statement> outer = CAPTURE.get();
+        List<Statement> statements = new ArrayList<>(2);
+        CAPTURE.set(statements);
+        long start = SystemClock.elapsedRealtimeNanos();
+        T result = null;
+        try {
+            result = query.get();
+            return result;
+        } finally {
+            long took = SystemClock.elapsedRealtimeNanos() - start;
+            CAPTURE.set(outer);
+            if (outer != null) outer.addAll(statements);
+            record(name, took, rowsOf(result), statements);
+        }
+    }
+
+    /**
+     * Runs a write (or any call without a result) and records its latency.
+     */
+    public static void measureWrite(@NonNull String name, @NonNull Runnable write) {
+        measure(name, () -> {
+            write.run();
+            return null;
+        });
+    }
+
+    private static long rowsOf(Object result) {
+        if (result == null) return 0;
+        if (result instanceof Collection) return ((Collection<?>) result).size();
+        return 1;
+    }
+
+    private static void record(String name, long tookNanos, long rows, List<Statement> statements) {
+        Stat s = STATS.get(name);
+        if (s == null) {
+            s = new Stat();
+            Stat prev = STATS.putIfAbsent(name, s);
+            if (prev != null) s = prev;
+        }
+        s.latency.record(tookNanos / 1_000L);
+        s.rows.add(rows);
+        long cur = s.maxRows.get();
+        while (rows > cur && !s.maxRows.compareAndSet(cur, rows)) {
+            cur = s.maxRows.get();
+        }
+
+        long tookMs = tookNanos / 1_000_000L;
+        if (tookMs < SLOW_MS) return;
+
+        s.slow.increment();
+        Log.w(TAG, String.format(Locale.US, "slow query %s: %d ms, %d rows", name, tookMs, rows));
+        for (Statement st : statements) {
+            if (isExplainable(st.sql)) explainOnce(st);
+        }
+    }
+
+    private static boolean isExplainable(String sql) {
+        String head = sql.trim().toUpperCase(Locale.US);
+        return head.startsWith("SELECT") || head.startsWith("WITH")
+                || head.startsWith("INSERT") || head.startsWith("REPLACE")
+                || head.startsWith("UPDATE") || head.startsWith("DELETE");
+    }
+
+    private static void explainOnce(Statement st) {
+        String known = PLANS.putIfAbsent(st.sql, "");
+        if (known != null) {
+            if (!known.isEmpty()) Log.w(TAG, "plan for " + st.sql + "\n" + known);
+            return;
+        }
+        RoomDatabase db = DATABASES.get(st.dbName);
+        if (db == null) return;
+
+        // EXPLAIN runs off the query thread so the slow call is not made slower.
+        DbScheduler.get().submit(DbScheduler.Lane.BACKGROUND, null, null, () -> {
+            StringBuilder plan = new StringBuilder();
+            try (Cursor c = db.query(new SimpleSQLiteQuery("EXPLAIN QUERY PLAN " + st.sql, st.args))) {
+                // Columns: id, parent, notused, detail.
+                int detail = c.getColumnIndex("detail");
+                while (c.moveToNext()) {
+                    if (plan.length() > 0) plan.append('\n');
+                    plan.append(c.getString(detail >= 0 ? detail : c.getColumnCount() - 1));
+                }
+            } catch (Exception e) {
+                plan.append("EXPLAIN failed: ").append(e.getMessage());
+            }
+            PLANS.put(st.sql, plan.toString());
+            Log.w(TAG, "plan for " + st.sql + "\n" + plan);
+        });
+    }
+
+    /**
+     * Builds a JSON snapshot of all collected metrics.
+     */
+    @NonNull
+    public static JSONObject toJson() throws JSONException {
+        JSONObject root = new JSONObject();
+        root.put("generatedAt", System.currentTimeMillis());
+        root.put("slowThresholdMs", SLOW_MS);
+        root.put("subBucketsPerPowerOfTwo", LatencyHistogram.SUB_BUCKETS);
+
+        JSONObject queries = new JSONObject();
+        for (Map.Entry<String, Stat> e : new TreeMap<>(STATS).entrySet()) {
+            Stat s = e.getValue();
+            LatencyHistogram h = s.latency;
+            JSONObject q = new JSONObject();
+            q.put("count", h.count());
+            q.put("slow", s.slow.sum());
+            q.put("rowsTotal", s.rows.sum());
+            q.put("rowsMax", s.maxRows.get());
+            q.put("meanUs", Math.round(h.meanMicros()));
+            q.put("p50Us", h.percentile(0.50));
+            q.put("p90Us", h.percentile(0.90));
+            q.put("p99Us", h.percentile(0.99));
+            q.put("maxUs", h.maxMicros());
+
+            // Sparse buckets: [lowerBoundUs, count] pairs.
+            JSONArray buckets = new JSONArray();
+            long[] counts = h.bucketCounts();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) continue;
+                buckets.put(new JSONArray().put(LatencyHistogram.lowerBound(i)).put(counts[i]));
+            }
+            q.put("buckets", buckets);
+            queries.put(e.getKey(), q);
+        }
+        root.put("queries", queries);
+
+        JSONObject plans = new JSONObject();
+        for (Map.Entry<String, String> e : new TreeMap<>(PLANS).entrySet()) {
+            if (!e.getValue().isEmpty()) plans.put(e.getKey(), e.getValue());
+        }
+        root.put("plans", plans);
+        return root;
+    }
+
+    /**
+     * Short human-readable summary, one line per query.
+     */
+    @NonNull
+    public static String format() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Stat> e : new TreeMap<>(STATS).entrySet()) {
+            LatencyHistogram h = e.getValue().latency;
+            sb.append(String.format(Locale.US,
+                    "%-32s n=%-5d p50=%.1f p99=%.1f max=%.1f ms rows=%d%n",
+                    e.getKey(), h.count(),
+                    h.percentile(0.50) / 1000.0,
+                    h.percentile(0.99) / 1000.0,
+                    h.maxMicros() / 1000.0,
+                    e.getValue().rows.sum()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes {@link #toJson()} into {@code dir/queries-<timestamp>.json}.
+     *
+     * @return the written file
+     */
+    @NonNull
+    public static File export(@NonNull File dir) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File f = new File(dir, "queries-" + System.currentTimeMillis() + ".json");
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(f), StandardCharsets.UTF_8)) {
+            w.write(toJson().toString(2));
+        } catch (JSONException e) {
+            throw new IOException("Cannot build JSON", e);
+        }
+        return f;
+    }
+}
@@ -5,11 +5,18 @@ import androidx.annotation.WorkerThread;
 import com.example.cards.data.db.CardDao;
 import com.example.cards.data.db.ReviewDao;
 import com.example.cards.data.model.Card;
+import com.example.cards.data.model.CardDirection;
+import com.example.cards.data.model.DailyRollup;
 import com.example.cards.data.model.ReviewLog;
 import com.example.cards.data.model.ReviewState;
+import com.example.cards.data.model.StudyCard;
+import com.example.cards.diag.QueryMetrics;
 import com.example.cards.domain.srs.Sm2;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.TimeZone;
 
 /**
  * ReviewRepository
@@ -17,7 +24,10 @@ import java.util.List;
  * Repository that encapsulates all operations related to spaced repetition
  * review logic:
  * - Loading due cards (optionally by deck).
- * - Reading and updating review state for a card.
+ * - Serving new cards within a daily quota. A card has no review state until
+ *   its first grade, so opening a session writes nothing.
+ * - Reading and updating review state for a card in one study direction
+ *   ({@link CardDirection}); the overloads without a direction mean forward.
  * - Applying the SM-2 algorithm and scheduling the next review time.
  * - Saving review logs for analytics/history.
  *
@@ -26,16 +36,34 @@ import java.util.List;
  */
 public class ReviewRepository {
 
+    /** New cards introduced per deck and local day unless configured otherwise. */
+    public static final int DEFAULT_NEW_PER_DAY = 20;
+
     // DAO that provides access to review-related tables (state, logs, due queries).
     private final ReviewDao reviewDao;
 
+    // SM-2 parameters used for every review.
+    private final Sm2.Config config;
+
     /**
      * Constructs a ReviewRepository using the given ReviewDao.
      *
      * @param reviewDao DAO for review state and logs
      */
     public ReviewRepository(ReviewDao reviewDao) {
+        this(reviewDao, new Sm2.Config());
+    }
+
+    /**
+     * Constructs a ReviewRepository with custom SM-2 parameters
+     * (e.g. a seeded fuzz source for reproducible simulations).
+     *
+     * @param reviewDao DAO for review state and logs
+     * @param config    SM-2 configuration
+     */
+    public ReviewRepository(ReviewDao reviewDao, Sm2.Config config) {
         this.reviewDao = reviewDao;
+        this.config = config;
     }
 
     /**
@@ -49,7 +77,7 @@ public class ReviewRepository {
      */
     public List<Card> getDue(long deckId, long now, int limit) {
         // Previously: reviewDao.getDueCards(deckId, now, limit);
-        return reviewDao.dueCards(now, limit);
+        return reviewDao.dueCards(CardDirection.FORWARD, now, limit);
     }
 
     /**
@@ -65,7 +93,7 @@ public class ReviewRepository {
     }
 
     /**
-     * Returns due cards for a specific deck.
+     * Returns due cards for a specific deck (forward direction).
      *
      * @param deckId target deck ID
      * @param now    current time in milliseconds
@@ -73,7 +101,20 @@ public class ReviewRepository {
      * @return list of due cards for the deck
      */
     public List<Card> getDueCards(long deckId, long now, int limit) {
-        return reviewDao.getDueCards(deckId, now, limit);
+        return getDueCards(deckId, CardDirection.FORWARD, now, limit);
+    }
+
+    /**
+     * Returns due cards for a specific deck in one direction.
+     *
+     * @param deckId    target deck ID
+     * @param direction {@link CardDirection} value
+     * @param now       current time in milliseconds
+     * @param limit     maximum number of cards to return
+     * @return list of due cards for the deck
+     */
+    public List<Card> getDueCards(long deckId, int direction, long now, int limit) {
+        return reviewDao.getDueCards(deckId, direction, now, limit);
     }
 
     /**
@@ -84,17 +125,90 @@ public class ReviewRepository {
      * @return list of due cards
      */
     public List<Card> getDue(long now, int limit) {
-        return reviewDao.dueCards(now, limit);
+        return reviewDao.dueCards(CardDirection.FORWARD, now, limit);
+    }
+
+    /**
+     * Returns never-graded cards of a deck (forward direction), in deck
+     * order, up to what is left of today's new-card quota. Cards graded for
+     * the first time today count against it (the NEW bucket of
+     * daily_rollup), so reopening a session does not hand out more.
+     *
+     * @param deckId    target deck ID
+     * @param now       current time in milliseconds
+     * @param newPerDay new cards allowed per local day
+     * @return new cards, possibly empty
+     */
+    public List<Card> getNewCards(long deckId, long now, int newPerDay) {
+        int left = newLeftToday(now, newPerDay);
+        if (left <= 0) return Collections.emptyList();
+        return reviewDao.getNewCards(deckId, CardDirection.FORWARD, left);
     }
 
     /**
-     * Returns current review state for the given card.
+     * Returns cards never graded in one of the given directions, up to
+     * what is left of today's new-card quota. The quota is shared: the
+     * directions take turns, so each gets its part of it while it has new
+     * cards, in deck order.
      *
-     * @param cardId ID of the card
+     * @param deckId     target deck ID
+     * @param directions {@link CardDirection} values to serve
+     * @param now        current time in milliseconds
+     * @param newPerDay  new cards allowed per local day, all directions together
+     * @return new virtual cards, possibly empty
+     */
+    public List<StudyCard> getNewCards(long deckId, int[] directions, long now, int newPerDay) {
+        int left = newLeftToday(now, newPerDay);
+        if (left <= 0) return Collections.emptyList();
+
+        // 1) Candidates per direction; each could fill the quota alone.
+        List<List<Card>> byDirection = new ArrayList<>(directions.length);
+        for (int direction : directions) {
+            byDirection.add(reviewDao.getNewCards(deckId, direction, left));
+        }
+
+        // 2) Round-robin until the quota or the candidates run out.
+        List<StudyCard> out = new ArrayList<>(left);
+        for (int i = 0; out.size() < left; i++) {
+            boolean any = false;
+            for (int d = 0; d < directions.length && out.size() < left; d++) {
+                List<Card> cards = byDirection.get(d);
+                if (i >= cards.size()) continue;
+                out.add(new StudyCard(cards.get(i), directions[d]));
+                any = true;
+            }
+            if (!any) break;
+        }
+        return out;
+    }
+
+    private int newLeftToday(long now, int newPerDay) {
+        return newPerDay - reviewDao.countNewOn(DailyRollup.dayOf(now, TimeZone.getDefault()));
+    }
+
+    /**
+     * Whether the deck still has cards that were never graded in one of the
+     * given directions, regardless of today's quota.
+     *
+     * @param deckId     target deck ID
+     * @param directions {@link CardDirection} values
+     */
+    public boolean hasNewCards(long deckId, int[] directions) {
+        for (int direction : directions) {
+            if (!reviewDao.getNewCards(deckId, direction, 1).isEmpty()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns current review state for the given card in one direction.
+     *
+     * @param cardId    ID of the card
+     * @param direction {@link CardDirection} value
      * @return {@link ReviewState} or null if not yet created
      */
-    public ReviewState getState(long cardId) {
-        return reviewDao.getState(cardId);
+    public ReviewState getState(long cardId, int direction) {
+        return reviewDao.getState(cardId, direction);
     }
 
     /**
@@ -104,28 +218,47 @@ public class ReviewRepository {
      *
      * This method is intended to be called on a background thread.
      *
+     * Forward direction; see {@link #reviewAndSchedule(long, int, int, long)}.
+     *
+     * @param cardId    ID of the reviewed card
+     * @param grade     grade given by the user (SM-2 compatible)
+     * @param nowMillis current time in milliseconds
+     * @return updated ReviewState
+     */
+    @WorkerThread
+    public ReviewState reviewAndSchedule(long cardId, int grade, long nowMillis) {
+        return reviewAndSchedule(cardId, CardDirection.FORWARD, grade, nowMillis);
+    }
+
+    /**
+     * Applies the review result (grade) for the card in one direction; the
+     * other directions of the card keep their own schedule.
+     *
      * Steps:
-     * 1. Load current ReviewState; if absent, create a default one.
+     * 1. Load current ReviewState of the direction; if absent (its first
+     *    grade), create a default one.
      * 2. Map ReviewState to {@link Sm2.State}.
-     * 3. Call {@link Sm2#review(Sm2.State, int)} with the provided grade.
+     * 3. Call {@link Sm2#review(Sm2.State, int, long, Sm2.Config)} with the provided grade.
      * 4. Map the result back to ReviewState (interval, ease, step, dueAt).
      * 5. Create a {@link ReviewLog} with the result.
      * 6. Save state and log atomically via {@link ReviewDao#saveStateAndLog(ReviewState, ReviewLog)}.
      *
      * @param cardId    ID of the reviewed card
+     * @param direction {@link CardDirection} it was studied in
      * @param grade     grade given by the user (SM-2 compatible)
      * @param nowMillis current time in milliseconds
      * @return updated ReviewState
      */
     @WorkerThread
-    public ReviewState reviewAndSchedule(long cardId, int grade, long nowMillis) {
+    public ReviewState reviewAndSchedule(long cardId, int direction, int grade, long nowMillis) {
         // 1) Current state (can be null on first review).
-        ReviewState st = reviewDao.getState(cardId);
+        ReviewState st = reviewDao.getState(cardId, direction);
 
         // 2) If state does not exist yet, create a default one.
         if (st == null) {
             st = new ReviewState();
             st.cardId = cardId;
+            st.direction = direction;
             st.intervalDays = 0;
             st.ease = 2.5f;     // initial ease
             st.step = 0;
@@ -139,18 +272,19 @@ public class ReviewRepository {
         sm2.step = st.step;
 
         // 4) Apply SM-2 review algorithm.
-        sm2 = Sm2.review(sm2, grade);
+        sm2 = Sm2.review(sm2, grade, nowMillis, config);
 
         // 5) Update entity with SM-2 result.
         st.intervalDays = sm2.intervalDays;
         st.ease = (float) sm2.ease;
         st.step = sm2.step;
         st.lastGrade = grade;
-        st.dueAt = Sm2.nextDueAtFromNowMillis(st.intervalDays, nowMillis);
+        st.dueAt = Sm2.nextDueAtFromNowMillis(st.intervalDays, nowMillis, config);
 
         // 6) Prepare review log entry.
         ReviewLog log = new ReviewLog();
         log.cardId = cardId;
+        log.direction = direction;
         log.reviewedAt = nowMillis;
         log.grade = grade;
         log.resultIntervalDays = st.intervalDays;
@@ -158,7 +292,9 @@ public class ReviewRepository {
         log.resultStep = st.step;
 
         // 7) Save state and log atomically in one transaction.
-        reviewDao.saveStateAndLog(st, log);
+        ReviewState state = st;
+        QueryMetrics.measureWrite("ReviewDao.saveStateAndLog",
+                () -> reviewDao.saveStateAndLog(state, log));
 
         return st;
     }
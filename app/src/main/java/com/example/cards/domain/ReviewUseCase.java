@@ -1,15 +1,18 @@
 package com.example.cards.domain;
 
 import com.example.cards.data.model.Card;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.LongSupplier;
 
 /**
  * ReviewUseCase
  *
  * Domain-level use case for reviewing cards within a specific deck.
  * Encapsulates business logic for:
- * - Fetching due cards for the current deck.
+ * - Fetching due cards for the current deck, topped up with new cards
+ *   within the daily new-card quota.
  * - Applying review results (grading).
  *
  * Intended to be injected into UI controllers (activities/fragments/viewmodels)
@@ -23,6 +26,12 @@ public class ReviewUseCase {
     // ID of the deck this use case operates on.
     private final long deckId;
 
+    // Source of "now" in milliseconds.
+    private final LongSupplier clock;
+
+    // New cards introduced per local day.
+    private final int newPerDay;
+
     /**
      * Constructs a ReviewUseCase bound to a specific deck.
      *
@@ -30,20 +39,54 @@ public class ReviewUseCase {
      * @param deckId ID of the deck whose cards this use case handles
      */
     public ReviewUseCase(ReviewRepository repo, long deckId) {
+        this(repo, deckId, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructs a ReviewUseCase with an explicit clock (e.g. simulated time).
+     *
+     * @param repo   deck-aware ReviewRepository
+     * @param deckId ID of the deck whose cards this use case handles
+     * @param clock  returns the current time in milliseconds
+     */
+    public ReviewUseCase(ReviewRepository repo, long deckId, LongSupplier clock) {
+        this(repo, deckId, clock, ReviewRepository.DEFAULT_NEW_PER_DAY);
+    }
+
+    /**
+     * Constructs a ReviewUseCase with an explicit clock and new-card quota.
+     *
+     * @param repo      deck-aware ReviewRepository
+     * @param deckId    ID of the deck whose cards this use case handles
+     * @param clock     returns the current time in milliseconds
+     * @param newPerDay new cards introduced per local day
+     */
+    public ReviewUseCase(ReviewRepository repo, long deckId, LongSupplier clock, int newPerDay) {
         this.repo = repo;
         this.deckId = deckId;
+        this.clock = clock;
+        this.newPerDay = newPerDay;
     }
 
     /**
-     * Loads a batch of due cards for the current deck.
+     * Loads a batch of due cards for the current deck. Reviews come first;
+     * what is left of the limit is filled with new cards, within the daily
+     * quota.
      *
      * @param limit maximum number of cards to load
      * @return list of due {@link Card}, never null
      */
     public List<Card> loadDueBatch(int limit) {
-        long now = System.currentTimeMillis();
+        long now = clock.getAsLong();
         List<Card> due = repo.getDueCards(deckId, now, limit);
-        return due != null ? due : Collections.emptyList();
+        if (due == null) due = Collections.emptyList();
+        if (due.size() >= limit) return due;
+
+        List<Card> fresh = repo.getNewCards(deckId, now, newPerDay);
+        if (fresh.isEmpty()) return due;
+        List<Card> batch = new ArrayList<>(due);
+        batch.addAll(fresh.subList(0, Math.min(fresh.size(), limit - due.size())));
+        return batch;
     }
 
     /**
@@ -53,7 +96,7 @@ public class ReviewUseCase {
      * @param grade  rating given by the user (difficulty/quality)
      */
     public void onAnswer(long cardId, int grade) {
-        long now = System.currentTimeMillis();
+        long now = clock.getAsLong();
         repo.reviewAndSchedule(cardId, grade, now);
     }
 }
@@ -0,0 +1,41 @@
+package com.example.cards.domain.srs;
+
+/**
+ * QuizGrades
+ *
+ * Turns a multiple-choice answer into an {@link Sm2} grade, so a quiz
+ * schedules cards like the Hard / Medium / Easy buttons do.
+ *
+ * Mapping:
+ * - Wrong choice → {@link #WRONG}: a lapse, the card is relearned.
+ * - Right within {@link #FAST_MILLIS} → 5 (Easy).
+ * - Right within {@link #SLOW_MILLIS} → 4 (Medium).
+ * - Right but slower → 3 (Hard): recognized, not recalled.
+ */
+public final class QuizGrades {
+
+    /** Grade of a wrong choice. */
+    public static final int WRONG = 1;
+
+    /** Answers faster than this count as Easy. */
+    public static final long FAST_MILLIS = 4_000L;
+    /** Answers faster than this count as Medium. */
+    public static final long SLOW_MILLIS = 10_000L;
+
+    private QuizGrades() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Grade of an answer.
+     *
+     * @param correct      whether the right choice was picked
+     * @param answerMillis time from showing the question to the tap
+     */
+    public static int grade(boolean correct, long answerMillis) {
+        if (!correct) return WRONG;
+        if (answerMillis < FAST_MILLIS) return 5;
+        if (answerMillis < SLOW_MILLIS) return 4;
+        return 3;
+    }
+}
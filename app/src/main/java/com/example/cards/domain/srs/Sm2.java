@@ -1,5 +1,6 @@
 package com.example.cards.domain.srs;
 
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -50,6 +51,10 @@ public final class Sm2 {
         public double fuzzPercentMin = 0.05;  // 5%
         public double fuzzPercentMax = 0.15;  // 15%
         public boolean enableFuzz = true;
+
+        // Source of the fuzz; null = ThreadLocalRandom. A seeded Random makes
+        // schedules reproducible (simulations, tests).
+        public Random random = null;
     }
 
     /**
@@ -147,10 +152,11 @@ public final class Sm2 {
 
         // Apply slight random fuzz so cards are not all due at exactly the same moment.
         if (cfg.enableFuzz && intervalDays > 0) {
-            double p = ThreadLocalRandom.current()
-                    .nextDouble(cfg.fuzzPercentMin, cfg.fuzzPercentMax);
+            Random rnd = cfg.random != null ? cfg.random : ThreadLocalRandom.current();
+            double p = cfg.fuzzPercentMin
+                    + rnd.nextDouble() * (cfg.fuzzPercentMax - cfg.fuzzPercentMin);
             long jitter = (long) (TimeUnit.DAYS.toMillis(intervalDays) * p);
-            base += ThreadLocalRandom.current().nextBoolean() ? jitter : -jitter;
+            base += rnd.nextBoolean() ? jitter : -jitter;
         }
 
         return base;
@@ -6,8 +6,10 @@ import androidx.room.Room;
 
 import com.example.cards.data.db.AppDatabase;
 import com.example.cards.data.model.Card;
+import com.example.cards.data.model.CardDirection;
 import com.example.cards.data.model.ReviewLog;
 import com.example.cards.data.model.ReviewState;
+import com.example.cards.domain.ReviewRepository;
 import com.example.cards.domain.srs.Sm2;
 
 import java.util.Collections;
@@ -39,7 +41,7 @@ public class CardRepository {
                 context,
                 AppDatabase.class,
                 "cards.db"
-        ).build();
+        ).addMigrations(AppDatabase.MIGRATIONS).build();
     }
 
     /**
@@ -50,7 +52,7 @@ public class CardRepository {
      * @return list of {@link Card} that should be reviewed now (never null)
      */
     public List<Card> getDueCards(long now, int limit) {
-        List<Card> due = db.reviewDao().dueCards(now, limit);
+        List<Card> due = db.reviewDao().dueCards(CardDirection.FORWARD, now, limit);
         return due != null ? due : Collections.emptyList();
     }
 
@@ -58,44 +60,15 @@ public class CardRepository {
      * Handles user's answer for a specific card and schedules the next review
      * using the SM-2 algorithm.
      *
-     * Steps:
-     * 1. Load current {@link ReviewState} for the card.
-     * 2. Build an SM-2 state and call {@link Sm2#review(Sm2.State, int)} with the grade.
-     * 3. Update ReviewState fields (interval, ease, step, dueAt).
-     * 4. Persist the updated state in the database.
-     * 5. Insert a {@link ReviewLog} entry for analytics/history.
+     * Delegates to {@link ReviewRepository#reviewAndSchedule}, which creates
+     * the {@link ReviewState} on a card's first grade, applies {@link Sm2}
+     * and stores the state with a {@link ReviewLog} entry in one transaction.
      *
      * @param cardId ID of the card being reviewed
      * @param grade  review grade selected by the user (SM-2 compatible value)
      * @param now    current timestamp in milliseconds
      */
     public void reviewAndSchedule(long cardId, int grade, long now) {
-        // Get current review state for the card.
-        ReviewState st = db.reviewDao().getState(cardId);
-
-        // Map ReviewState to SM-2 state.
-        Sm2.State s = new Sm2.State();
-        s.intervalDays = st.intervalDays;
-        s.ease = st.ease;
-        s.step = st.step;
-
-        // Apply SM-2 review logic.
-        s = Sm2.review(s, grade);
-
-        // Map SM-2 result back to ReviewState.
-        st.intervalDays = s.intervalDays;
-        st.ease = (float) s.ease;
-        st.step = s.step;
-        st.dueAt = now + (s.intervalDays * 24L * 60L * 60L * 1000L); // days → ms
-
-        // Save updated review state.
-        db.reviewDao().upsertStateEntity(st);
-
-        // Write a review log entry.
-        ReviewLog log = new ReviewLog();
-        log.cardId = cardId;
-        log.ts = now;
-        log.grade = grade;
-        db.reviewDao().insertLog(log);
+        new ReviewRepository(db.reviewDao()).reviewAndSchedule(cardId, grade, now);
     }
 }
@@ -0,0 +1,238 @@
+package com.example.cards.repo;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.InvalidationTracker;
+
+import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.db.DbProvider;
+import com.example.cards.data.db.DbScheduler;
+import com.example.cards.diag.QueryMetrics;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * DeckProgressTracker
+ *
+ * Keeps the learned percent (0..100) of every deck shown in the main menu
+ * and recomputes it only when the underlying tables actually change.
+ *
+ * Behavior:
+ * - A deck that was never opened on this device has nothing learned: its
+ *   request reports 0 without copying or opening the database. Once
+ *   {@link DbProvider} installs it, {@link #onInstalled} starts real tracking.
+ * - The first request for an installed deck opens its database (via {@link DbProvider}),
+ *   subscribes to Room table invalidation for {@code cards} and
+ *   {@code learned_state}, and runs one {@code learnedPercent} query.
+ * - Later writes to those tables mark the deck as dirty. Dirty decks are
+ *   collected for {@link #COALESCE_MS} and then recomputed in one batch, so a
+ *   burst of checkbox toggles costs one query per deck.
+ * - While no listener is attached (main menu not visible), dirty decks are
+ *   only remembered and recomputed when a listener comes back.
+ * - The listener is told only about decks whose percent really changed;
+ *   results computed while it was detached are delivered on re-attach.
+ *
+ * Writes to {@code review_state} / {@code review_log} do not affect the percent
+ * and therefore never trigger a query.
+ */
+public final class DeckProgressTracker {
+
+    private static final String TAG = "DeckProgress";
+
+    /** Returned by {@link #getPercent(long)} while a deck has not been loaded yet. */
+    public static final int UNKNOWN = -1;
+
+    // Delay used to merge bursts of invalidations into a single recompute.
+    private static final long COALESCE_MS = 150L;
+
+    /**
+     * Receives percent updates on the main thread.
+     */
+    public interface Listener {
+        void onProgressChanged(long deckId, int percent);
+    }
+
+    private static volatile DeckProgressTracker INSTANCE;
+
+    private final Context appContext;
+    private final Handler main = new Handler(Looper.getMainLooper());
+
+    // Last computed percent per deck.
+    private final ConcurrentMap<Long, Integer> percents = new ConcurrentHashMap<>();
+    // Decks with a registered invalidation observer (or a pending first load).
+    private final Set<Long> tracked = ConcurrentHashMap.newKeySet();
+    // Decks changed since their last recompute.
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    // Decks recomputed while no listener was attached (main thread only).
+    private final Set<Long> unpublished = new HashSet<>();
+
+    @Nullable
+    private Listener listener;          // accessed on the main thread only
+    private boolean flushScheduled;     // accessed on the main thread only
+
+    private DeckProgressTracker(Context context) {
+        this.appContext = context.getApplicationContext();
+    }
+
+    /**
+     * Returns the process-wide tracker instance.
+     */
+    public static DeckProgressTracker get(@NonNull Context context) {
+        if (INSTANCE == null) {
+            synchronized (DeckProgressTracker.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new DeckProgressTracker(context);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Attaches (or detaches with null) the listener. Attaching flushes decks
+     * that changed while nobody was listening.
+     */
+    @MainThread
+    public void setListener(@Nullable Listener l) {
+        listener = l;
+        if (l == null) return;
+
+        for (long deckId : unpublished) {
+            l.onProgressChanged(deckId, getPercent(deckId));
+        }
+        unpublished.clear();
+
+        if (!dirty.isEmpty()) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Returns the cached percent for a deck or {@link #UNKNOWN}.
+     * Never touches the database.
+     */
+    public int getPercent(long deckId) {
+        Integer p = percents.get(deckId);
+        return p != null ? p : UNKNOWN;
+    }
+
+    /**
+     * Starts tracking a deck if it is not tracked yet. The first load opens
+     * the deck database, subscribes to invalidation and computes the percent.
+     * Calling this for an already tracked deck is free.
+     */
+    public void request(long deckId) {
+        if (!tracked.add(deckId)) return;
+
+        if (!DbProvider.isInstalled(appContext, deckId)) {
+            tracked.remove(deckId);
+            publish(deckId, 0);
+            return;
+        }
+
+        DbScheduler.get().submit(DbScheduler.Lane.READ, null, null, () -> {
+            try {
+                AppDatabase db = DbProvider.forDeck(appContext, deckId);
+                db.getInvalidationTracker().addObserver(
+                        new InvalidationTracker.Observer("cards", "learned_state") {
+                            @Override
+                            public void onInvalidated(@NonNull Set<String> tables) {
+                                markDirty(deckId);
+                            }
+                        });
+                recompute(deckId, db);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to load progress for deck " + deckId, e);
+                tracked.remove(deckId);
+            }
+        });
+    }
+
+    /**
+     * Starts tracking a deck whose 0% came from it not being installed, now
+     * that {@link DbProvider} has installed it.
+     */
+    public void onInstalled(long deckId) {
+        if (percents.containsKey(deckId) && !tracked.contains(deckId)) request(deckId);
+    }
+
+    /**
+     * Re-subscribes a deck after its database instance was replaced (restore
+     * from a snapshot) and recomputes its percent.
+     */
+    public void reload(long deckId) {
+        tracked.remove(deckId);
+        request(deckId);
+    }
+
+    /**
+     * Called from Room's invalidation thread.
+     */
+    private void markDirty(long deckId) {
+        dirty.add(deckId);
+        main.post(this::scheduleFlush);
+    }
+
+    @MainThread
+    private void scheduleFlush() {
+        if (flushScheduled || listener == null) return;
+        flushScheduled = true;
+        main.postDelayed(this::flush, COALESCE_MS);
+    }
+
+    @MainThread
+    private void flush() {
+        flushScheduled = false;
+        if (listener == null) return;
+
+        List<Long> batch = new ArrayList<>(dirty);
+        dirty.removeAll(batch);
+        if (batch.isEmpty()) return;
+
+        DbScheduler.get().submit(DbScheduler.Lane.READ, null, null, () -> {
+            for (long deckId : batch) {
+                try {
+                    recompute(deckId, DbProvider.forDeck(appContext, deckId));
+                } catch (Exception e) {
+                    Log.e(TAG, "Failed to recompute progress for deck " + deckId, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs the percent query and publishes the result only if it changed.
+     */
+    private void recompute(long deckId, AppDatabase db) {
+        int percent = QueryMetrics.measure("CardDao.learnedPercent",
+                () -> db.cardDao().learnedPercent(deckId));
+        publish(deckId, percent);
+    }
+
+    /**
+     * Stores a percent and tells the listener if it changed.
+     */
+    private void publish(long deckId, int percent) {
+        Integer old = percents.put(deckId, percent);
+        if (old != null && old == percent) return;
+
+        main.post(() -> {
+            if (listener != null) {
+                listener.onProgressChanged(deckId, percent);
+            } else {
+                unpublished.add(deckId);
+            }
+        });
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.cards.repo;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.example.cards.data.db.AppDatabase;
+import com.example.cards.data.db.StatsDao;
+import com.example.cards.data.model.DailyRollup;
+import com.example.cards.data.model.DeckMaturity;
+import com.example.cards.data.model.RollupTotal;
+import com.example.cards.diag.QueryMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * StatsRepository
+ *
+ * Statistics API of one deck database, answered from the daily_rollup
+ * aggregate ({@link StatsDao}), never from review_log:
+ * - reviews per day, with empty days filled in;
+ * - retention by interval bucket;
+ * - grade distribution;
+ * - time-of-day heatmap (weekday × hour);
+ * - deck maturity (from review_state).
+ *
+ * Ranges are inclusive local days (days since 1970-01-01, see
+ * {@link #today()}); every range query costs O(days in range). Calls read
+ * the database and must run off the main thread (READ lane).
+ */
+public class StatsRepository {
+
+    private final StatsDao dao;
+
+    /**
+     * @param db deck database
+     */
+    public StatsRepository(@NonNull AppDatabase db) {
+        this.dao = db.statsDao();
+    }
+
+    /**
+     * Today's local day number.
+     */
+    public static int today() {
+        return DailyRollup.dayOf(System.currentTimeMillis(), TimeZone.getDefault());
+    }
+
+    /**
+     * One entry per day in [fromDay, toDay], in day order; days without
+     * reviews have zero counts.
+     */
+    @WorkerThread
+    @NonNull
+    public List<RollupTotal> reviewsPerDay(int fromDay, int toDay) {
+        List<RollupTotal> rows = QueryMetrics.measure("StatsDao.perDay",
+                () -> dao.perDay(fromDay, toDay));
+        List<RollupTotal> out = new ArrayList<>(Math.max(0, toDay - fromDay + 1));
+        int i = 0;
+        for (int day = fromDay; day <= toDay; day++) {
+            if (i < rows.size() && rows.get(i).key == day) {
+                out.add(rows.get(i++));
+            } else {
+                RollupTotal empty = new RollupTotal();
+                empty.key = day;
+                out.add(empty);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Totals per interval bucket, indexed by {@code DailyRollup.BUCKET_*};
+     * see {@link RollupTotal#retention()}.
+     */
+    @WorkerThread
+    @NonNull
+    public RollupTotal[] retentionByBucket(int fromDay, int toDay) {
+        RollupTotal[] out = new RollupTotal[DailyRollup.BUCKETS];
+        for (RollupTotal r : QueryMetrics.measure("StatsDao.perBucket",
+                () -> dao.perBucket(fromDay, toDay))) {
+            if (r.key >= 0 && r.key < out.length) out[r.key] = r;
+        }
+        for (int b = 0; b < out.length; b++) {
+            if (out[b] == null) {
+                out[b] = new RollupTotal();
+                out[b].key = b;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Number of reviews per grade 0..5.
+     */
+    @WorkerThread
+    @NonNull
+    public long[] gradeDistribution(int fromDay, int toDay) {
+        RollupTotal t = QueryMetrics.measure("StatsDao.total", () -> dao.total(fromDay, toDay));
+        return new long[] { t.grade0, t.grade1, t.grade2, t.grade3, t.grade4, t.grade5 };
+    }
+
+    /**
+     * Reviews per [weekday][hour]; weekday 0 is Sunday.
+     */
+    @WorkerThread
+    @NonNull
+    public long[][] heatmap(int fromDay, int toDay) {
+        long[][] out = new long[7][24];
+        for (RollupTotal r : QueryMetrics.measure("StatsDao.perWeekdayHour",
+                () -> dao.perWeekdayHour(fromDay, toDay))) {
+            // Days before 1970 would give a negative remainder.
+            out[(r.key + 7) % 7][r.hour] += r.reviews;
+        }
+        return out;
+    }
+
+    /**
+     * Maturity of the deck's active cards.
+     */
+    @WorkerThread
+    @NonNull
+    public DeckMaturity maturity(long deckId) {
+        return QueryMetrics.measure("StatsDao.maturity", () -> dao.maturity(deckId));
+    }
+}
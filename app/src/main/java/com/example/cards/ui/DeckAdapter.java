@@ -13,9 +13,9 @@ import androidx.core.view.ViewCompat;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.cards.R;
-import com.example.cards.data.db.AppDatabase;
 import com.example.cards.data.model.Deck;
-import com.example.cards.data.db.DbProvider;
+import com.example.cards.diag.PerfTrace;
+import com.example.cards.repo.DeckProgressTracker;
 
 import java.util.List;
 
@@ -29,7 +29,9 @@ import java.util.List;
  *
  * Responsibilities:
  * - Bind deck title and progress (learned percent) to card views.
- * - Load learned percentage in the background for each deck.
+ * - Read learned percent from {@link DeckProgressTracker}; binding never runs
+ *   a query for a deck whose percent is already known.
+ * - Apply {@link #PAYLOAD_PROGRESS} updates by touching only the progress views.
  * - Provide click handling for deck selection.
  * - Animate the fox icon in the first item and handle its touch area.
  */
@@ -46,14 +48,32 @@ public class DeckAdapter extends RecyclerView.Adapter<DeckAdapter.VH> {
     private static final int TYPE_NORMAL = 0;
     private static final int TYPE_FIRST  = 1;
 
+    /** Payload for {@code notifyItemChanged}: only the learned percent changed. */
+    public static final Object PAYLOAD_PROGRESS = new Object();
+
     private final List<Deck> data;
+    private final DeckProgressTracker progress;
     private final OnDeckClick onClick;
 
-    public DeckAdapter(List<Deck> data, OnDeckClick onClick) {
+    public DeckAdapter(List<Deck> data, DeckProgressTracker progress, OnDeckClick onClick) {
         this.data = data;
+        this.progress = progress;
         this.onClick = onClick;
     }
 
+    /**
+     * Re-binds the progress views of the given deck, if it is in the list.
+     * Intended as the {@link DeckProgressTracker.Listener} callback.
+     */
+    public void onProgressChanged(long deckId) {
+        for (int i = 0; i < data.size(); i++) {
+            if (data.get(i).id == deckId) {
+                notifyItemChanged(i, PAYLOAD_PROGRESS);
+                return;
+            }
+        }
+    }
+
     /**
      * ViewHolder for a deck card.
      * Contains:
@@ -102,36 +122,33 @@ public class DeckAdapter extends RecyclerView.Adapter<DeckAdapter.VH> {
         return new VH(v);
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull VH h, int pos, @NonNull List<Object> payloads) {
+        // Progress-only update: leave title, listeners and fox untouched.
+        if (payloads.contains(PAYLOAD_PROGRESS)) {
+            bindProgress(h, data.get(pos));
+            return;
+        }
+        onBindViewHolder(h, pos);
+    }
+
     @Override
     public void onBindViewHolder(@NonNull VH h, int pos) {
+        long t = PerfTrace.begin("DeckAdapter.bind");
+        try {
+            bindFull(h, pos);
+        } finally {
+            PerfTrace.end(t);
+        }
+    }
+
+    private void bindFull(@NonNull VH h, int pos) {
         // 1) Current deck model.
         Deck d = data.get(pos);
         h.title.setText(d.title);
 
-        // 2) Initial placeholders for percent and progress.
-        if (h.tvPercent != null) {
-            h.tvPercent.setText("…%");
-        }
-        if (h.progress != null) {
-            h.progress.setMax(100);
-            h.progress.setProgress(0);
-        }
-
-        // 3) Background calculation of learned percent for this deck.
-        AppDatabase.databaseExecutor.execute(() -> {
-            AppDatabase db = DbProvider.forDeck(h.itemView.getContext(), d.id);
-            int percent = db.cardDao().learnedPercent(d.id);
-
-            h.itemView.post(() -> {
-                int cur = h.getBindingAdapterPosition();
-                if (cur == RecyclerView.NO_POSITION) return;
-                // Ensure ViewHolder is still bound to the same deck.
-                if (data.get(cur).id != d.id) return;
-
-                if (h.tvPercent != null) h.tvPercent.setText(percent + "%");
-                if (h.progress  != null) h.progress.setProgress(percent);
-            });
-        });
+        // 2) + 3) Learned percent from the tracker (placeholder until loaded).
+        bindProgress(h, d);
 
         // 4) Card click → propagate deck selection via callback.
         h.itemView.setOnClickListener(v -> {
@@ -196,6 +213,30 @@ public class DeckAdapter extends RecyclerView.Adapter<DeckAdapter.VH> {
         }
     }
 
+    /**
+     * Shows the cached learned percent, or a placeholder while the tracker
+     * loads it for the first time.
+     */
+    private void bindProgress(@NonNull VH h, @NonNull Deck d) {
+        int percent = progress.getPercent(d.id);
+        if (percent == DeckProgressTracker.UNKNOWN) {
+            progress.request(d.id);
+            if (h.tvPercent != null) h.tvPercent.setText("…%");
+            if (h.progress  != null) {
+                h.progress.setMax(100);
+                h.progress.setProgress(0);
+            }
+            return;
+        }
+
+        if (h.tvPercent != null) h.tvPercent.setText(percent + "%");
+        if (h.progress  != null) {
+            h.progress.setMax(100);
+            h.progress.setProgress(percent);
+        }
+        PerfTrace.markOnce("first_progress_percent");
+    }
+
     @Override
     public int getItemCount() {
         return data.size();
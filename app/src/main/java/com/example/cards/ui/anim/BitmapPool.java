@@ -0,0 +1,85 @@
+package com.example.cards.ui.anim;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * BitmapPool
+ *
+ * Small pool of mutable bitmaps that can be passed to
+ * {@link android.graphics.BitmapFactory.Options#inBitmap} so that decoding
+ * a new frame reuses the memory of an old one instead of allocating.
+ *
+ * Behavior:
+ * - {@link #get(int, int, Bitmap.Config)} returns any pooled bitmap whose
+ *   allocation is large enough for the requested size (API 19+ rule).
+ * - {@link #put(Bitmap)} returns a bitmap to the pool; if the pool is over
+ *   its byte budget, the bitmap is recycled instead.
+ *
+ * Thread-safe: decoding happens on a worker thread while frames are released
+ * on the main thread.
+ */
+final class BitmapPool {
+
+    private final long maxBytes;
+    private final ArrayDeque<Bitmap> free = new ArrayDeque<>();
+    private long pooledBytes;
+
+    /**
+     * @param maxBytes upper bound for the total size of pooled bitmaps
+     */
+    BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Takes a bitmap that can hold {@code width x height} pixels of the given
+     * config, or returns null if none fits.
+     */
+    @Nullable
+    synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        long needed = (long) width * height * bytesPerPixel(config);
+        Iterator<Bitmap> it = free.iterator();
+        while (it.hasNext()) {
+            Bitmap b = it.next();
+            if (b.getAllocationByteCount() >= needed) {
+                it.remove();
+                pooledBytes -= b.getAllocationByteCount();
+                return b;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a bitmap to the pool. Immutable or recycled bitmaps are ignored.
+     */
+    synchronized void put(@Nullable Bitmap b) {
+        if (b == null || b.isRecycled()) return;
+        if (!b.isMutable() || pooledBytes + b.getAllocationByteCount() > maxBytes) {
+            b.recycle();
+            return;
+        }
+        free.push(b);
+        pooledBytes += b.getAllocationByteCount();
+    }
+
+    /**
+     * Recycles every pooled bitmap.
+     */
+    synchronized void clear() {
+        for (Bitmap b : free) b.recycle();
+        free.clear();
+        pooledBytes = 0;
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) return 2;
+        if (config == Bitmap.Config.ALPHA_8) return 1;
+        return 4;
+    }
+}
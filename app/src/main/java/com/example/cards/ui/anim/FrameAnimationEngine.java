@@ -0,0 +1,440 @@
+package com.example.cards.ui.anim;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+import android.view.Choreographer;
+import android.widget.ImageView;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * FrameAnimationEngine
+ *
+ * Plays a frame-by-frame animation made of drawable resources (JPEG/PNG)
+ * into an {@link ImageView} without decoding anything on the main thread.
+ *
+ * Behavior:
+ * - Frames are decoded on a dedicated worker thread, down-sampled to the
+ *   target view size (power-of-two inSampleSize, no density scaling).
+ * - Decoded bitmaps are cached per resource; evicted ones go back to a
+ *   {@link BitmapPool} and are reused through {@code inBitmap}.
+ * - Playback is driven by {@link Choreographer}. On each vsync the frame that
+ *   should be visible at that time is computed; if it is not decoded yet the
+ *   previous frame stays on screen (counted as late) and the clock keeps
+ *   running, so slow decodes drop frames instead of stalling the timeline.
+ * - A frame that fails to decode (error, null result, out of memory) is not
+ *   retried; a later one just stays late. If the first frame fails, the
+ *   clock never starts and playback finishes at once, so a splash waiting
+ *   for {@link Listener#onFinished} is never stuck.
+ *
+ * Metrics are available through {@link #getStats()}.
+ */
+public final class FrameAnimationEngine implements Choreographer.FrameCallback {
+
+    private static final String TAG = "FrameAnim";
+
+    // How many upcoming frames are decoded ahead of the playhead.
+    private static final int LOOKAHEAD = 3;
+    // Max decoded bitmaps kept at once (current + lookahead + slack).
+    private static final int MAX_DECODED = LOOKAHEAD + 3;
+    // Budget for bitmaps waiting in the pool.
+    private static final long POOL_BYTES = 8L * 1024 * 1024;
+    // A vsync gap above this factor of the nominal interval counts as jank.
+    private static final float JANK_FACTOR = 1.5f;
+    private static final long NOMINAL_FRAME_NANOS = 16_666_667L;
+
+    /**
+     * A single frame: drawable resource shown for a fixed duration.
+     */
+    public static final class Frame {
+        public final int resId;
+        public final long durationMs;
+
+        public Frame(int resId, long durationMs) {
+            this.resId = resId;
+            this.durationMs = durationMs;
+        }
+    }
+
+    /**
+     * Playback callbacks, invoked on the main thread.
+     */
+    public interface Listener {
+        /** A new frame index became visible (skipped indices are not reported). */
+        void onFrame(int index);
+
+        /** The timeline reached its end. */
+        void onFinished();
+    }
+
+    /**
+     * Snapshot of decode-time and jank metrics.
+     */
+    public static final class Stats {
+        public int decodeCount;
+        public long decodeTotalNanos;
+        public long decodeMaxNanos;
+        public int framesShown;
+        /** Frames never shown because the clock had already moved past them. */
+        public int framesDropped;
+        /** Vsyncs on which the due frame was not decoded yet. */
+        public int framesLate;
+        /** Vsync gaps longer than 1.5 x the nominal 16.6 ms interval. */
+        public int jankyVsyncs;
+
+        public double avgDecodeMs() {
+            return decodeCount == 0 ? 0 : decodeTotalNanos / 1e6 / decodeCount;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "decodes=" + decodeCount +
+                    " avgDecodeMs=" + String.format(java.util.Locale.US, "%.2f", avgDecodeMs()) +
+                    " maxDecodeMs=" + String.format(java.util.Locale.US, "%.2f", decodeMaxNanos / 1e6) +
+                    " shown=" + framesShown +
+                    " dropped=" + framesDropped +
+                    " late=" + framesLate +
+                    " jankyVsyncs=" + jankyVsyncs;
+        }
+    }
+
+    private final Resources res;
+    private final ImageView target;
+    private final ExecutorService decoder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "frame-decoder");
+        t.setPriority(Thread.NORM_PRIORITY - 1);
+        return t;
+    });
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final BitmapPool pool = new BitmapPool(POOL_BYTES);
+
+    // Decoded bitmaps by resource id, in access order (main thread only).
+    private final LinkedHashMap<Integer, Bitmap> decoded = new LinkedHashMap<>(16, 0.75f, true);
+    // Resources currently being decoded (main thread only).
+    private final Set<Integer> inFlight = new HashSet<>();
+    // Resources whose decode failed in this playback (main thread only).
+    private final Set<Integer> failed = new HashSet<>();
+    // Source dimensions per resource (decoder thread only).
+    private final SparseArray<int[]> bounds = new SparseArray<>();
+
+    private final Stats stats = new Stats();
+
+    private List<Frame> frames = new ArrayList<>();
+    private long[] endsAtMs = new long[0];
+    @Nullable private Listener listener;
+
+    private int targetW, targetH;
+    private long startNanos;
+    private long lastVsyncNanos;
+    private int shownIndex = -1;
+    private int shownResId;
+    private boolean running;
+    private boolean released;
+
+    /**
+     * @param res    resources used to open frame drawables
+     * @param target view that displays frames; its size drives down-sampling
+     */
+    public FrameAnimationEngine(@NonNull Resources res, @NonNull ImageView target) {
+        this.res = res;
+        this.target = target;
+    }
+
+    /**
+     * Starts playing the given timeline. Must be called after the target view
+     * has been laid out, otherwise frames are decoded at full size.
+     */
+    @MainThread
+    public void play(@NonNull List<Frame> timeline, @Nullable Listener l) {
+        if (released) return;
+        frames = new ArrayList<>(timeline);
+        listener = l;
+
+        endsAtMs = new long[frames.size()];
+        long t = 0;
+        for (int i = 0; i < frames.size(); i++) {
+            t += frames.get(i).durationMs;
+            endsAtMs[i] = t;
+        }
+
+        targetW = target.getWidth();
+        targetH = target.getHeight();
+        startNanos = 0;
+        lastVsyncNanos = 0;
+        shownIndex = -1;
+        failed.clear();
+        running = true;
+
+        prefetchFrom(0);
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Stops playback, shuts down the decoder and recycles every bitmap.
+     * The engine cannot be reused afterwards.
+     */
+    @MainThread
+    public void release() {
+        running = false;
+        released = true;
+        Choreographer.getInstance().removeFrameCallback(this);
+        decoder.shutdownNow();
+        target.setImageDrawable(null);
+        for (Bitmap b : decoded.values()) b.recycle();
+        decoded.clear();
+        pool.clear();
+    }
+
+    /**
+     * Returns a copy of the current metrics.
+     */
+    @MainThread
+    @NonNull
+    public Stats getStats() {
+        Stats s = new Stats();
+        s.decodeCount = stats.decodeCount;
+        s.decodeTotalNanos = stats.decodeTotalNanos;
+        s.decodeMaxNanos = stats.decodeMaxNanos;
+        s.framesShown = stats.framesShown;
+        s.framesDropped = stats.framesDropped;
+        s.framesLate = stats.framesLate;
+        s.jankyVsyncs = stats.jankyVsyncs;
+        return s;
+    }
+
+    // ---------------------------------------------------------------------
+    // Playback
+    // ---------------------------------------------------------------------
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running || frames.isEmpty()) return;
+
+        if (lastVsyncNanos != 0 && frameTimeNanos - lastVsyncNanos > NOMINAL_FRAME_NANOS * JANK_FACTOR) {
+            stats.jankyVsyncs++;
+        }
+        lastVsyncNanos = frameTimeNanos;
+
+        // The clock starts only once the first frame is ready to show.
+        if (startNanos == 0) {
+            int first = frames.get(0).resId;
+            if (!decoded.containsKey(first)) {
+                if (failed.contains(first)) {
+                    finish();
+                    return;
+                }
+                // Re-requests it should the decoder have lost it.
+                prefetchFrom(0);
+                Choreographer.getInstance().postFrameCallback(this);
+                return;
+            }
+            startNanos = frameTimeNanos;
+        }
+
+        long elapsedMs = (frameTimeNanos - startNanos) / 1_000_000L;
+        if (elapsedMs >= endsAtMs[endsAtMs.length - 1]) {
+            finish();
+            return;
+        }
+
+        int due = indexAt(elapsedMs);
+        if (due != shownIndex) {
+            Bitmap bmp = decoded.get(frames.get(due).resId);
+            if (bmp != null) {
+                if (shownIndex >= 0 && due > shownIndex + 1) {
+                    stats.framesDropped += due - shownIndex - 1;
+                }
+                shownIndex = due;
+                shownResId = frames.get(due).resId;
+                target.setImageBitmap(bmp);
+                stats.framesShown++;
+                if (listener != null) listener.onFrame(due);
+            } else {
+                stats.framesLate++;
+            }
+        }
+
+        prefetchFrom(due);
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    private void finish() {
+        running = false;
+        if (shownIndex < frames.size() - 1) {
+            stats.framesDropped += frames.size() - 1 - shownIndex;
+        }
+        Log.d(TAG, "finished: " + stats);
+        if (listener != null) listener.onFinished();
+    }
+
+    /**
+     * Binary search for the frame visible at {@code elapsedMs}.
+     */
+    private int indexAt(long elapsedMs) {
+        int lo = 0, hi = endsAtMs.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (endsAtMs[mid] <= elapsedMs) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // ---------------------------------------------------------------------
+    // Decoding
+    // ---------------------------------------------------------------------
+
+    /**
+     * Makes sure the frames from {@code index} up to {@link #LOOKAHEAD} ahead
+     * are decoded or being decoded.
+     */
+    @MainThread
+    private void prefetchFrom(int index) {
+        int end = Math.min(frames.size(), index + 1 + LOOKAHEAD);
+        for (int i = index; i < end; i++) {
+            int resId = frames.get(i).resId;
+            if (decoded.containsKey(resId) || inFlight.contains(resId) || failed.contains(resId)) {
+                continue;
+            }
+            inFlight.add(resId);
+            decoder.execute(() -> decode(resId));
+        }
+    }
+
+    @WorkerThread
+    private void decode(int resId) {
+        long t0 = SystemClock.elapsedRealtimeNanos();
+        Bitmap bmp = null;
+        try {
+            int[] size = bounds.get(resId);
+            if (size == null) {
+                size = readBounds(resId);
+                bounds.put(resId, size);
+            }
+
+            BitmapFactory.Options opts = new BitmapFactory.Options();
+            opts.inScaled = false;    // sample to the view, not to screen density
+            opts.inMutable = true;    // required for inBitmap reuse
+            opts.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            opts.inSampleSize = sampleSize(size[0], size[1], targetW, targetH);
+
+            int outW = (size[0] + opts.inSampleSize - 1) / opts.inSampleSize;
+            int outH = (size[1] + opts.inSampleSize - 1) / opts.inSampleSize;
+            opts.inBitmap = pool.get(outW, outH, opts.inPreferredConfig);
+
+            try {
+                bmp = decodeStream(resId, opts);
+            } catch (IllegalArgumentException reuseFailed) {
+                // Pooled bitmap was not compatible; decode into fresh memory.
+                pool.put(opts.inBitmap);
+                opts.inBitmap = null;
+                bmp = decodeStream(resId, opts);
+            }
+        } catch (Exception | OutOfMemoryError e) {
+            // Always post a result: the main thread waits for it.
+            Log.e(TAG, "Failed to decode frame " + resId, e);
+        }
+
+        long took = SystemClock.elapsedRealtimeNanos() - t0;
+        Bitmap result = bmp;
+        main.post(() -> onDecoded(resId, result, took));
+    }
+
+    @MainThread
+    private void onDecoded(int resId, @Nullable Bitmap bmp, long tookNanos) {
+        inFlight.remove(resId);
+        if (released) {
+            if (bmp != null) bmp.recycle();
+            return;
+        }
+        if (bmp == null) {
+            failed.add(resId);
+            // Without a first frame the clock never starts.
+            if (running && startNanos == 0 && !frames.isEmpty() && frames.get(0).resId == resId) {
+                finish();
+            }
+            return;
+        }
+
+        stats.decodeCount++;
+        stats.decodeTotalNanos += tookNanos;
+        stats.decodeMaxNanos = Math.max(stats.decodeMaxNanos, tookNanos);
+
+        decoded.put(resId, bmp);
+        trimDecoded();
+    }
+
+    /**
+     * Moves least recently used bitmaps (never the one on screen or one of
+     * the next frames) back into the pool.
+     */
+    @MainThread
+    private void trimDecoded() {
+        if (decoded.size() <= MAX_DECODED) return;
+
+        Set<Integer> keep = new HashSet<>();
+        keep.add(shownResId);
+        int from = Math.max(shownIndex, 0);
+        int end = Math.min(frames.size(), from + 1 + LOOKAHEAD);
+        for (int i = from; i < end; i++) keep.add(frames.get(i).resId);
+
+        Iterator<Map.Entry<Integer, Bitmap>> it = decoded.entrySet().iterator();
+        while (decoded.size() > MAX_DECODED && it.hasNext()) {
+            Map.Entry<Integer, Bitmap> e = it.next();
+            if (keep.contains(e.getKey())) continue;
+            it.remove();
+            pool.put(e.getValue());
+        }
+    }
+
+    @WorkerThread
+    private int[] readBounds(int resId) throws java.io.IOException {
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inJustDecodeBounds = true;
+        opts.inScaled = false;
+        try (InputStream in = res.openRawResource(resId)) {
+            BitmapFactory.decodeStream(in, null, opts);
+        }
+        return new int[] { opts.outWidth, opts.outHeight };
+    }
+
+    @WorkerThread
+    private Bitmap decodeStream(int resId, BitmapFactory.Options opts) throws java.io.IOException {
+        try (InputStream in = res.openRawResource(resId)) {
+            return BitmapFactory.decodeStream(in, null, opts);
+        }
+    }
+
+    /**
+     * Largest power-of-two sample size that keeps the bitmap at least as big
+     * as the requested size in both dimensions.
+     */
+    static int sampleSize(int srcW, int srcH, int reqW, int reqH) {
+        int sample = 1;
+        if (reqW <= 0 || reqH <= 0) return sample;
+        while (srcW / (sample * 2) >= reqW && srcH / (sample * 2) >= reqH) {
+            sample *= 2;
+        }
+        return sample;
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.cards.ui.text;
+
+import android.widget.TextView;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+
+import com.example.cards.diag.PerfTrace;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TextLayoutCache
+ *
+ * Process-wide cache of {@link PrecomputedTextCompat}: text whose glyphs
+ * were measured and shaped off the main thread, keyed by the text and the
+ * text style ({@link PrecomputedTextCompat.Params}: typeface, size, locale,
+ * break strategy...).
+ *
+ * Behavior:
+ * - Screens take the style of a view on the main thread with
+ *   {@link #paramsOf}, then precompute text with {@link #precompute} on a
+ *   thread they already use for loading (together with the data), or
+ *   queue that work with {@link #prefetch} on the cache's own thread.
+ * - {@link #setText} uses a cached entry only if it was computed for the
+ *   view's current style (e.g. not before the card typeface was applied);
+ *   otherwise it falls back to a plain setText, measured at layout time.
+ * - Least recently used entries are dropped beyond {@link #MAX_ENTRIES}.
+ * - Hit/miss counts are shown on the Diagnostics screen.
+ */
+public final class TextLayoutCache {
+
+    static final int MAX_ENTRIES = 512;
+
+    private static volatile TextLayoutCache INSTANCE;
+
+    private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "text-layout");
+        t.setPriority(Thread.NORM_PRIORITY - 1);
+        return t;
+    });
+
+    // Access order; guarded by itself.
+    private final LinkedHashMap<Key, PrecomputedTextCompat> entries =
+            new LinkedHashMap<Key, PrecomputedTextCompat>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, PrecomputedTextCompat> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong computed = new AtomicLong();
+
+    private static final class Key {
+        final String text;
+        final PrecomputedTextCompat.Params params;
+
+        Key(String text, PrecomputedTextCompat.Params params) {
+            this.text = text;
+            this.params = params;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return text.equals(k.text) && params.equals(k.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * text.hashCode() + params.hashCode();
+        }
+    }
+
+    private TextLayoutCache() {
+    }
+
+    public static TextLayoutCache get() {
+        if (INSTANCE == null) {
+            synchronized (TextLayoutCache.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new TextLayoutCache();
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Current text style of {@code view}, to precompute text for it.
+     */
+    @MainThread
+    @NonNull
+    public static PrecomputedTextCompat.Params paramsOf(@NonNull TextView view) {
+        return TextViewCompat.getTextMetricsParams(view);
+    }
+
+    /**
+     * Returns {@code text} precomputed for {@code params}, from the cache or
+     * computed now on the calling thread.
+     */
+    @WorkerThread
+    @NonNull
+    public PrecomputedTextCompat precompute(@NonNull CharSequence text,
+                                            @NonNull PrecomputedTextCompat.Params params) {
+        Key key = new Key(text.toString(), params);
+        synchronized (entries) {
+            PrecomputedTextCompat cached = entries.get(key);
+            if (cached != null) return cached;
+        }
+        PrecomputedTextCompat pct = PrecomputedTextCompat.create(text, params);
+        computed.incrementAndGet();
+        synchronized (entries) {
+            entries.put(key, pct);
+        }
+        return pct;
+    }
+
+    /**
+     * Precomputes every non-empty text for {@code params}.
+     */
+    @WorkerThread
+    public void precomputeAll(@NonNull List<? extends CharSequence> texts,
+                              @NonNull PrecomputedTextCompat.Params params) {
+        long t = PerfTrace.begin("TextLayoutCache.precompute");
+        try {
+            for (CharSequence text : texts) {
+                if (text != null && text.length() > 0) precompute(text, params);
+            }
+        } finally {
+            PerfTrace.end(t);
+        }
+    }
+
+    /**
+     * Runs {@code work} (which calls {@link #precompute}) on the cache's
+     * low-priority background thread.
+     */
+    public void prefetch(@NonNull Runnable work) {
+        prefetcher.execute(work);
+    }
+
+    /**
+     * Sets {@code text} on {@code view}, precomputed if the cache has it for
+     * the view's current style.
+     */
+    @MainThread
+    public void setText(@NonNull TextView view, @Nullable CharSequence text) {
+        if (text == null || text.length() == 0) {
+            view.setText(text);
+            return;
+        }
+        Key key = new Key(text.toString(), paramsOf(view));
+        PrecomputedTextCompat cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+            TextViewCompat.setPrecomputedText(view, cached);
+        } else {
+            misses.incrementAndGet();
+            view.setText(text);
+        }
+    }
+
+    /**
+     * Human-readable counters for the Diagnostics screen.
+     */
+    @NonNull
+    public String format() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        long h = hits.get();
+        long m = misses.get();
+        return String.format(Locale.US, "Text layout\n  hits=%d misses=%d (%.0f%%) computed=%d cached=%d\n",
+                h, m, h + m == 0 ? 0.0 : 100.0 * h / (h + m), computed.get(), size);
+    }
+}
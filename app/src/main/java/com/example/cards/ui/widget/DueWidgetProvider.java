@@ -0,0 +1,82 @@
+package com.example.cards.ui.widget;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.text.format.DateUtils;
+import android.widget.RemoteViews;
+
+import androidx.annotation.NonNull;
+
+import com.example.cards.MainMenuActivity;
+import com.example.cards.R;
+import com.example.cards.data.summary.DueSummary;
+
+/**
+ * DueWidgetProvider
+ *
+ * Home-screen widget with the number of cards due across all decks.
+ *
+ * Behavior:
+ * - Reads only {@link DueSummary}'s file: no database is opened, so an
+ *   update costs one small file read even when the app is not running.
+ * - Redrawn by {@link DueSummary} after each rewrite, and by the system every
+ *   30 minutes so cards falling due while the app is idle are counted.
+ * - With nothing due, shows when the next card falls due; otherwise the
+ *   learned / total counts. Tapping opens the main menu.
+ */
+public class DueWidgetProvider extends AppWidgetProvider {
+
+    @Override
+    public void onUpdate(Context context, AppWidgetManager manager, int[] appWidgetIds) {
+        RemoteViews views = render(context);
+        for (int id : appWidgetIds) manager.updateAppWidget(id, views);
+    }
+
+    /**
+     * Redraws every placed instance of the widget.
+     */
+    public static void updateAll(@NonNull Context context) {
+        AppWidgetManager manager = AppWidgetManager.getInstance(context);
+        if (manager == null) return; // no widget support on this device
+        int[] ids = manager.getAppWidgetIds(new ComponentName(context, DueWidgetProvider.class));
+        if (ids.length == 0) return;
+        manager.updateAppWidget(ids, render(context));
+    }
+
+    private static RemoteViews render(Context context) {
+        long now = System.currentTimeMillis();
+        int due = 0;
+        int learned = 0;
+        int total = 0;
+        long next = 0;
+        for (DueSummary.Entry e : DueSummary.read(context)) {
+            due += e.dueAt(now);
+            learned += e.learned;
+            total += e.total;
+            if (e.nextDueAt != 0 && (next == 0 || e.nextDueAt < next)) next = e.nextDueAt;
+        }
+
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_due);
+        views.setTextViewText(R.id.widget_due_count, String.valueOf(due));
+        String detail;
+        if (due > 0) {
+            detail = context.getString(R.string.widget_learned, learned, total);
+        } else if (next != 0) {
+            detail = context.getString(R.string.widget_next_due, DateUtils.formatDateTime(context, next,
+                    DateUtils.FORMAT_SHOW_TIME | DateUtils.FORMAT_SHOW_WEEKDAY | DateUtils.FORMAT_ABBREV_WEEKDAY));
+        } else {
+            detail = context.getString(R.string.widget_nothing_due);
+        }
+        views.setTextViewText(R.id.widget_due_detail, detail);
+
+        Intent open = new Intent(context, MainMenuActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        views.setOnClickPendingIntent(R.id.widget_root, PendingIntent.getActivity(context, 0, open,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE));
+        return views;
+    }
+}
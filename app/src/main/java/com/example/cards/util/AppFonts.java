@@ -0,0 +1,119 @@
+package com.example.cards.util;
+
+import android.content.Context;
+import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.widget.TextView;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.res.ResourcesCompat;
+
+import com.example.cards.R;
+import com.example.cards.diag.PerfTrace;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * AppFonts
+ *
+ * Process-wide cache of the card typeface (res/font/noto_sans_kr, a subset
+ * built by the subsetFonts task).
+ *
+ * Behavior:
+ * - The font file is parsed once, on a background thread, starting with
+ *   {@link #preload} from MainMenuActivity; layouts no longer reference it,
+ *   so inflating a screen never waits for it.
+ * - {@link #apply} sets the cached typeface right away, or as soon as the
+ *   load finishes; until then the views draw with the system font.
+ * - The view's own text style (bold) is kept.
+ * - If the font cannot be loaded the views simply keep the system font.
+ */
+public final class AppFonts {
+
+    private static final String TAG = "AppFonts";
+
+    private static final Object LOCK = new Object();
+
+    private static volatile Typeface cards;
+    private static boolean loading;
+    private static boolean failed;
+    // Views waiting for the load; main thread only.
+    private static final List<WeakReference<TextView>> PENDING = new ArrayList<>();
+
+    private AppFonts() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Starts loading the typeface unless it is loaded or loading already.
+     */
+    public static void preload(@NonNull Context context) {
+        synchronized (LOCK) {
+            if (cards != null || loading || failed) return;
+            loading = true;
+        }
+        Context app = context.getApplicationContext();
+        Handler main = new Handler(Looper.getMainLooper());
+        Thread t = new Thread(() -> {
+            Typeface tf = load(app);
+            main.post(() -> onLoaded(tf));
+        }, "font-loader");
+        t.setPriority(Thread.NORM_PRIORITY - 1);
+        t.start();
+    }
+
+    /**
+     * Sets the card typeface on {@code view}, now or once it has loaded.
+     */
+    @MainThread
+    public static void apply(@NonNull TextView view) {
+        Typeface tf = cards;
+        if (tf != null) {
+            setKeepingStyle(view, tf);
+            return;
+        }
+        if (failed) return;
+        PENDING.add(new WeakReference<>(view));
+        preload(view.getContext());
+    }
+
+    @Nullable
+    private static Typeface load(Context app) {
+        long t = PerfTrace.begin("AppFonts.load");
+        try {
+            return ResourcesCompat.getFont(app, R.font.noto_sans_kr);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Card font not loaded; using the system font", e);
+            return null;
+        } finally {
+            PerfTrace.end(t);
+        }
+    }
+
+    @MainThread
+    private static void onLoaded(@Nullable Typeface tf) {
+        synchronized (LOCK) {
+            cards = tf;
+            failed = tf == null;
+            loading = false;
+        }
+        if (tf != null) {
+            for (WeakReference<TextView> ref : PENDING) {
+                TextView view = ref.get();
+                if (view != null) setKeepingStyle(view, tf);
+            }
+        }
+        PENDING.clear();
+    }
+
+    private static void setKeepingStyle(TextView view, Typeface tf) {
+        Typeface current = view.getTypeface();
+        view.setTypeface(tf, current != null ? current.getStyle() : Typeface.NORMAL);
+    }
+}
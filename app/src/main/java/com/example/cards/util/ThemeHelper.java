@@ -5,6 +5,8 @@ import android.content.SharedPreferences;
 
 import androidx.appcompat.app.AppCompatDelegate;
 
+import com.example.cards.diag.PerfTrace;
+
 /**
  * ThemeHelper
  *
@@ -32,15 +34,21 @@ public class ThemeHelper {
      * @param context activity or application context
      */
     public static void applyThemeFromPrefs(Context context) {
-        SharedPreferences prefs =
-                context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        long t = PerfTrace.begin("ThemeHelper.applyThemeFromPrefs");
+        try {
+            // The first call in a process loads the prefs file from disk.
+            SharedPreferences prefs =
+                    context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
 
-        String mode = prefs.getString(KEY_THEME, "light");
+            String mode = prefs.getString(KEY_THEME, "light");
 
-        if ("dark".equals(mode)) {
-            AppCompatDelegate.setDefaultNightMode(AppCompatDelegate.MODE_NIGHT_YES);
-        } else {
-            AppCompatDelegate.setDefaultNightMode(AppCompatDelegate.MODE_NIGHT_NO);
+            if ("dark".equals(mode)) {
+                AppCompatDelegate.setDefaultNightMode(AppCompatDelegate.MODE_NIGHT_YES);
+            } else {
+                AppCompatDelegate.setDefaultNightMode(AppCompatDelegate.MODE_NIGHT_NO);
+            }
+        } finally {
+            PerfTrace.end(t);
         }
     }
 
@@ -0,0 +1,84 @@
+package com.example.cards.data.catalog;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+public class DeckCatalogTest extends TestCase {
+
+    private static byte[] catalog(int magic) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(magic);
+            out.writeShort(1);
+            out.writeShort(2);
+
+            out.writeInt(1);
+            out.writeByte(1);
+            out.writeUTF("Words Level 1, Part 1");
+            out.writeUTF("for beginners");
+            out.writeUTF("Basic vocabulary of level 1급");
+            out.writeUTF("db/eng/cards_deck_1.db");
+            out.writeInt(500);
+            out.writeInt(0xCAFEBABE);
+            out.writeByte(2);
+            out.writeUTF("eng");
+            out.writeInt(500);
+            out.writeUTF("rus");
+            out.writeInt(420);
+
+            out.writeInt(2);
+            out.writeByte(1);
+            out.writeUTF("Words Level 1, Part 2");
+            out.writeUTF("for beginners");
+            out.writeUTF("");
+            out.writeUTF("db/eng/cards_deck_2.db");
+            out.writeInt(300);
+            out.writeInt(7);
+            out.writeByte(1);
+            out.writeUTF("eng");
+            out.writeInt(300);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<DeckCatalog.Entry> read(byte[] b) throws IOException {
+        return DeckCatalog.read(new DataInputStream(new ByteArrayInputStream(b)));
+    }
+
+    public void testReadsEntries() throws IOException {
+        List<DeckCatalog.Entry> entries = read(catalog(0x46434354));
+        assertEquals(2, entries.size());
+
+        DeckCatalog.Entry first = entries.get(0);
+        assertEquals(1L, first.deckId);
+        assertEquals(1, first.level);
+        assertEquals("Basic vocabulary of level 1급", first.description);
+        assertEquals("db/eng/cards_deck_1.db", first.assetPath);
+        assertEquals(500, first.cards);
+        // Unsigned CRC-32.
+        assertEquals(0xCAFEBABEL, first.checksum);
+        assertEquals(Arrays.asList("eng", "rus"), Arrays.asList(first.languages.keySet().toArray()));
+        assertTrue(first.isComplete("eng"));
+        assertFalse(first.isComplete("rus"));
+
+        DeckCatalog.Entry second = entries.get(1);
+        assertEquals(2L, second.deckId);
+        assertFalse(second.isComplete("rus"));
+    }
+
+    public void testRejectsBadMagic() {
+        try {
+            read(catalog(0x46434453));
+            fail("Expected IOException");
+        } catch (IOException expected) {
+            // ok
+        }
+    }
+}
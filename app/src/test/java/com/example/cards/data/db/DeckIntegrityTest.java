@@ -0,0 +1,75 @@
+package com.example.cards.data.db;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class DeckIntegrityTest extends TestCase {
+
+    private static final int PAGE = 4096;
+
+    private File file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = File.createTempFile("deck", ".db");
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    public void testCompleteFile() throws IOException {
+        write(header(3, true), 3 * PAGE);
+        assertTrue(DeckIntegrity.looksComplete(file));
+    }
+
+    public void testInterruptedCopy() throws IOException {
+        // Whole pages, but fewer than the header records.
+        write(header(3, true), 2 * PAGE);
+        assertFalse(DeckIntegrity.looksComplete(file));
+
+        // Cut inside a page.
+        write(header(3, true), 3 * PAGE - 10);
+        assertFalse(DeckIntegrity.looksComplete(file));
+
+        write(new byte[0], 0);
+        assertFalse(DeckIntegrity.looksComplete(file));
+    }
+
+    public void testStalePageCountIsIgnored() throws IOException {
+        // Written by an old SQLite: the page count may not be trusted.
+        write(header(3, false), PAGE);
+        assertTrue(DeckIntegrity.looksComplete(file));
+    }
+
+    public void testNotSqlite() throws IOException {
+        byte[] h = header(1, true);
+        h[0] = 'X';
+        write(h, PAGE);
+        assertFalse(DeckIntegrity.looksComplete(file));
+    }
+
+    private static byte[] header(int pages, boolean pageCountValid) {
+        ByteBuffer b = ByteBuffer.allocate(100);
+        b.put("SQLite format 3\0".getBytes(StandardCharsets.US_ASCII));
+        b.putShort(16, (short) PAGE);
+        b.putInt(24, 7);                          // change counter
+        b.putInt(28, pages);                      // size in pages
+        b.putInt(92, pageCountValid ? 7 : 6);     // version-valid-for
+        return b.array();
+    }
+
+    private void write(byte[] header, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        System.arraycopy(header, 0, bytes, 0, Math.min(header.length, length));
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.cards.data.history;
+
+import com.example.cards.data.model.CardDirection;
+import com.example.cards.data.model.ReviewLog;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class ReviewArchiveTest extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = File.createTempFile("archive", ".rla");
+        assertTrue(file.delete());
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    public void testRoundTripAcrossSegments() throws IOException {
+        ReviewArchive archive = new ReviewArchive(file);
+        List<ReviewLog> a = rows(1, 700, 1);
+        List<ReviewLog> b = rows(900, 300, 2);
+        archive.append(a, 1_000L);
+        archive.append(b, 2_000L);
+
+        List<ReviewArchive.Segment> segments = archive.segments();
+        assertEquals(2, segments.size());
+        assertEquals(1, segments.get(0).minId);
+        assertEquals(a.get(a.size() - 1).id, segments.get(0).maxId);
+        assertEquals(2_000L, segments.get(1).before);
+
+        List<ReviewLog> all = new ArrayList<>();
+        archive.forEach(all::add);
+        List<ReviewLog> expected = new ArrayList<>(a);
+        expected.addAll(b);
+        assertEquals(expected.size(), all.size());
+        for (int i = 0; i < expected.size(); i++) assertSame(expected.get(i), all.get(i));
+    }
+
+    public void testTornTailIsTruncated() throws IOException {
+        ReviewArchive archive = new ReviewArchive(file);
+        archive.append(rows(1, 50, 3), 1_000L);
+        long intact = file.length();
+        archive.append(rows(51, 50, 4), 1_000L);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() - 7);
+        }
+        assertEquals(1, archive.segments().size());
+        assertEquals(intact, file.length());
+
+        // Appending after the cut starts a clean segment.
+        archive.append(rows(51, 10, 5), 1_000L);
+        assertEquals(2, archive.segments().size());
+    }
+
+    public void testVersion1SegmentsReadAsForward() throws IOException {
+        List<ReviewLog> rows = rows(1, 40, 6);
+        byte[] v2 = ReviewArchive.encode(rows);
+        // Version 1 had the same columns minus the trailing direction bytes.
+        byte[] v1 = Arrays.copyOf(v2, v2.length - rows.size());
+
+        List<ReviewLog> read = ReviewArchive.decode(v1, rows.size(), 1);
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(rows.get(i).cardId, read.get(i).cardId);
+            assertEquals(CardDirection.FORWARD, read.get(i).direction);
+        }
+    }
+
+    private static void assertSame(ReviewLog e, ReviewLog a) {
+        assertEquals(e.id, a.id);
+        assertEquals(e.cardId, a.cardId);
+        assertEquals(e.reviewedAt, a.reviewedAt);
+        assertEquals(e.grade, a.grade);
+        assertEquals(e.resultIntervalDays, a.resultIntervalDays);
+        assertEquals(Double.doubleToLongBits(e.resultEase), Double.doubleToLongBits(a.resultEase));
+        assertEquals(e.resultStep, a.resultStep);
+        assertEquals(e.direction, a.direction);
+    }
+
+    private static List<ReviewLog> rows(long firstId, int n, long seed) {
+        Random rnd = new Random(seed);
+        List<ReviewLog> out = new ArrayList<>(n);
+        long at = 1_700_000_000_000L;
+        for (int i = 0; i < n; i++) {
+            ReviewLog r = new ReviewLog();
+            r.id = firstId + i + (i > n / 2 ? 3 : 0); // a gap in the ids
+            r.cardId = 1 + rnd.nextInt(400);
+            at += rnd.nextInt(60_000);
+            r.reviewedAt = at;
+            r.grade = 3 + rnd.nextInt(3);
+            r.resultIntervalDays = rnd.nextInt(200);
+            r.resultEase = rnd.nextBoolean() ? (float) (1.3 + rnd.nextDouble() * 1.5) : rnd.nextDouble() * 3;
+            r.resultStep = rnd.nextInt(10);
+            r.direction = rnd.nextInt(CardDirection.COUNT);
+            out.add(r);
+        }
+        return out;
+    }
+}
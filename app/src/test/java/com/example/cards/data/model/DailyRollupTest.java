@@ -0,0 +1,43 @@
+package com.example.cards.data.model;
+
+import junit.framework.TestCase;
+
+import java.util.TimeZone;
+
+public class DailyRollupTest extends TestCase {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final TimeZone SEOUL = TimeZone.getTimeZone("Asia/Seoul");
+
+    // 2024-10-04T23:30:00Z: a Friday evening in UTC, Saturday morning in Seoul.
+    private static final long AT = 1_728_084_600_000L;
+
+    public void testDayAndHourFollowTheTimeZone() {
+        assertEquals(20_000, DailyRollup.dayOf(AT, UTC));
+        assertEquals(23, DailyRollup.hourOf(AT, UTC));
+        assertEquals(20_001, DailyRollup.dayOf(AT, SEOUL));
+        assertEquals(8, DailyRollup.hourOf(AT, SEOUL));
+
+        // Before the epoch the day still starts at local midnight.
+        assertEquals(-1, DailyRollup.dayOf(-1L, UTC));
+        assertEquals(23, DailyRollup.hourOf(-1L, UTC));
+    }
+
+    public void testBuckets() {
+        assertEquals(DailyRollup.BUCKET_NEW, DailyRollup.bucketOf((ReviewState) null));
+
+        ReviewState seeded = new ReviewState();
+        seeded.intervalDays = 30;
+        assertEquals(DailyRollup.BUCKET_NEW, DailyRollup.bucketOf(seeded));
+
+        seeded.lastGrade = 4;
+        assertEquals(DailyRollup.BUCKET_MONTHS, DailyRollup.bucketOf(seeded));
+
+        assertEquals(DailyRollup.BUCKET_LEARNING, DailyRollup.bucketOf(0));
+        assertEquals(DailyRollup.BUCKET_DAYS, DailyRollup.bucketOf(6));
+        assertEquals(DailyRollup.BUCKET_WEEKS, DailyRollup.bucketOf(7));
+        assertEquals(DailyRollup.BUCKET_WEEKS, DailyRollup.bucketOf(20));
+        assertEquals(DailyRollup.BUCKET_MONTHS, DailyRollup.bucketOf(21));
+        assertEquals(DailyRollup.BUCKET_LONG, DailyRollup.bucketOf(90));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.cards.data.quiz;
+
+import com.example.cards.data.model.Card;
+import com.example.cards.data.model.CardDirection;
+import com.example.cards.data.model.StudyCard;
+import com.example.cards.domain.srs.QuizGrades;
+
+import junit.framework.TestCase;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class DistractorIndexTest extends TestCase {
+
+    private static final String[] FRONTS = {
+            "학교", "학생", "학년", "선생님", "사과", "사람", "사랑", "바다", "바람", "하늘",
+            "우유", "우산", "의자", "책상", "공부", "공원", "친구", "시간", "시계", "음식" };
+    private static final String[] BACKS = {
+            "school", "student", "school year", "teacher", "apple", "person", "love", "sea", "wind", "sky",
+            "milk", "umbrella", "chair", "desk", "study", "park", "friend", "time", "clock", "food" };
+
+    private static long[] ids(int n) {
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++) ids[i] = 10 + i;
+        return ids;
+    }
+
+    private static StudyCard card(int i, int direction) {
+        Card c = new Card();
+        c.id = 10 + i;
+        c.front = FRONTS[i];
+        c.back = BACKS[i];
+        return new StudyCard(c, direction);
+    }
+
+    public void testNeighborsShareSyllablesFirst() {
+        int[] neighbors = DistractorIndex.buildNeighbors(FRONTS, BACKS);
+        // 학교 → 학생 / 학년 before anything unrelated.
+        Set<Integer> firstTwo = new HashSet<>();
+        firstTwo.add(neighbors[0]);
+        firstTwo.add(neighbors[1]);
+        assertTrue(firstTwo.contains(1));
+        assertTrue(firstTwo.contains(2));
+        // Every card gets a full row of other cards.
+        for (int i = 0; i < FRONTS.length; i++) {
+            for (int k = 0; k < DistractorIndex.NEIGHBORS; k++) {
+                int j = neighbors[i * DistractorIndex.NEIGHBORS + k];
+                assertTrue(j >= 0 && j != i);
+            }
+        }
+    }
+
+    public void testQuestionHasDistinctChoicesWithTheAnswer() {
+        DistractorIndex index = DistractorIndex.of(ids(FRONTS.length), FRONTS, BACKS);
+        Random rnd = new Random(1);
+        for (int direction = 0; direction < CardDirection.COUNT; direction++) {
+            for (int i = 0; i < FRONTS.length; i++) {
+                StudyCard c = card(i, direction);
+                DistractorIndex.Question q = index.question(c, rnd);
+                assertNotNull(q);
+                assertEquals(DistractorIndex.CHOICES, q.choices.length);
+                assertEquals(c.getAnswer(), q.choices[q.correct]);
+                Set<String> distinct = new HashSet<>();
+                for (String s : q.choices) distinct.add(s);
+                assertEquals(DistractorIndex.CHOICES, distinct.size());
+            }
+        }
+    }
+
+    public void testSameAnswerIsNeverADistractor() {
+        String[] fronts = { "눈", "눈물", "눈사람", "눈썹", "코" };
+        String[] backs = { "eye", "tears", "snowman", "Eye ", "nose" };
+        DistractorIndex index = DistractorIndex.of(ids(fronts.length), fronts, backs);
+        Card c = new Card();
+        c.id = 10;
+        c.front = fronts[0];
+        c.back = backs[0];
+        DistractorIndex.Question q = index.question(new StudyCard(c, CardDirection.FORWARD), new Random(3));
+        assertNotNull(q);
+        for (int i = 0; i < q.choices.length; i++) {
+            if (i != q.correct) assertFalse("eye".equalsIgnoreCase(q.choices[i].trim()));
+        }
+    }
+
+    public void testTooFewAnswersGivesNoQuestion() {
+        String[] fronts = { "가", "나", "다" };
+        String[] backs = { "a", "b", "c" };
+        DistractorIndex index = DistractorIndex.of(ids(3), fronts, backs);
+        Card c = new Card();
+        c.id = 10;
+        c.front = "가";
+        c.back = "a";
+        assertNull(index.question(new StudyCard(c, CardDirection.FORWARD), new Random(5)));
+    }
+
+    public void testQuizGrades() {
+        assertEquals(5, QuizGrades.grade(true, 1_500));
+        assertEquals(4, QuizGrades.grade(true, 6_000));
+        assertEquals(3, QuizGrades.grade(true, 30_000));
+        assertEquals(QuizGrades.WRONG, QuizGrades.grade(false, 500));
+    }
+}
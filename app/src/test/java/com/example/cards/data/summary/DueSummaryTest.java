@@ -0,0 +1,53 @@
+package com.example.cards.data.summary;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+public class DueSummaryTest extends TestCase {
+
+    private static final long HOUR = 3_600_000L;
+    private static final long T0 = 1_728_084_600_000L;
+
+    public void testDueCountAdvancesByElapsedHours() {
+        int[] upcoming = new int[DueSummary.HOURS];
+        upcoming[0] = 2;
+        upcoming[1] = 3;
+        upcoming[23] = 7;
+        DueSummary.Entry e = new DueSummary.Entry(1, T0, 5, 0, 100, T0 + 60_000, upcoming);
+
+        assertEquals(5, e.dueAt(T0));
+        // The first hour's cards only count once the whole hour has passed.
+        assertEquals(5, e.dueAt(T0 + HOUR - 1));
+        assertEquals(7, e.dueAt(T0 + HOUR));
+        assertEquals(10, e.dueAt(T0 + 2 * HOUR));
+        assertEquals(17, e.dueAt(T0 + 48 * HOUR));
+    }
+
+    public void testRoundTrip() throws IOException {
+        int[] upcoming = new int[DueSummary.HOURS];
+        upcoming[4] = 9;
+        List<DueSummary.Entry> in = Arrays.asList(
+                new DueSummary.Entry(1, T0, 5, 10, 100, T0 + HOUR, upcoming),
+                new DueSummary.Entry(27, T0 + 1, 0, 0, 50, 0, new int[DueSummary.HOURS]));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DueSummary.write(new DataOutputStream(bytes), in);
+        List<DueSummary.Entry> out = DueSummary.read(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(2, out.size());
+        assertEquals(1, out.get(0).deckId);
+        assertEquals(10, out.get(0).learned);
+        assertEquals(T0 + HOUR, out.get(0).nextDueAt);
+        assertEquals(9, out.get(0).upcoming[4]);
+        assertEquals(27, out.get(1).deckId);
+        assertEquals(50, out.get(1).total);
+    }
+}
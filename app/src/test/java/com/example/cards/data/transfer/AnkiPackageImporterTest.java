@@ -0,0 +1,24 @@
+package com.example.cards.data.transfer;
+
+import junit.framework.TestCase;
+
+public class AnkiPackageImporterTest extends TestCase {
+
+    public void testPlainTextStripsMarkup() {
+        assertEquals("dog", AnkiPackageImporter.plainText("<b>dog</b>[sound:dog.mp3]"));
+        assertEquals("a dog barks", AnkiPackageImporter.plainText("a<br>dog<div>barks</div>"));
+        assertEquals("x", AnkiPackageImporter.plainText("<style>.card { color: red }</style>x"));
+    }
+
+    public void testPlainTextDecodesEntities() {
+        assertEquals("Tom & Jerry <3", AnkiPackageImporter.plainText("Tom&nbsp;&amp;&nbsp;Jerry &lt;3"));
+        assertEquals("café é", AnkiPackageImporter.plainText("caf&#233; &#xE9;"));
+        assertEquals("&unknown;", AnkiPackageImporter.plainText("&unknown;"));
+    }
+
+    public void testIsPackage() {
+        assertTrue(AnkiPackageImporter.isPackage("Korean.APKG"));
+        assertTrue(AnkiPackageImporter.isPackage("collection.colpkg"));
+        assertFalse(AnkiPackageImporter.isPackage("words.csv"));
+    }
+}
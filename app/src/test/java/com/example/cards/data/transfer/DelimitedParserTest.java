@@ -0,0 +1,58 @@
+package com.example.cards.data.transfer;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class DelimitedParserTest extends TestCase {
+
+    private static List<List<String>> parse(String text, char delimiter) throws IOException {
+        DelimitedParser p = new DelimitedParser(new StringReader(text), delimiter);
+        List<List<String>> out = new ArrayList<>();
+        List<String> record;
+        while ((record = p.next()) != null) out.add(record);
+        return out;
+    }
+
+    public void testSplitsRecordsAndFields() throws IOException {
+        List<List<String>> r = parse("\uFEFFapple,яблоко,food\r\ndog,собака\rcat,кошка\n", ',');
+        assertEquals(3, r.size());
+        assertEquals(Arrays.asList("apple", "яблоко", "food"), r.get(0));
+        assertEquals(Arrays.asList("dog", "собака"), r.get(1));
+        assertEquals(Arrays.asList("cat", "кошка"), r.get(2));
+    }
+
+    public void testQuotedFields() throws IOException {
+        List<List<String>> r = parse("\"a, b\",\"say \"\"hi\"\"\"\n\"two\nlines\",x", ',');
+        assertEquals(2, r.size());
+        assertEquals(Arrays.asList("a, b", "say \"hi\""), r.get(0));
+        assertEquals(Arrays.asList("two\nlines", "x"), r.get(1));
+    }
+
+    public void testTabsAndEmptyFields() throws IOException {
+        List<List<String>> r = parse("front\tback\t\n\n", '\t');
+        assertEquals(2, r.size());
+        assertEquals(Arrays.asList("front", "back", ""), r.get(0));
+        assertEquals(Arrays.asList(""), r.get(1));
+    }
+
+    public void testUnterminatedQuoteFails() {
+        try {
+            parse("ok,fine\n\"broken,field\n", ',');
+            fail("Expected IOException");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("line 2"));
+        }
+    }
+
+    public void testSniff() {
+        assertEquals('\t', DelimitedParser.sniff("a\tb,c"));
+        assertEquals(';', DelimitedParser.sniff("a;b"));
+        assertEquals(',', DelimitedParser.sniff("a;b,c"));
+        assertEquals(',', DelimitedParser.sniff("single"));
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.cards.diag;
+
+import junit.framework.TestCase;
+
+public class LatencyHistogramTest extends TestCase {
+
+    public void testBucketsAreContiguous() {
+        for (int i = 1; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long prevEnd = LatencyHistogram.lowerBound(i - 1) + LatencyHistogram.bucketWidth(i - 1);
+            assertEquals(prevEnd, LatencyHistogram.lowerBound(i));
+            assertEquals(i, LatencyHistogram.indexOf(LatencyHistogram.lowerBound(i)));
+        }
+    }
+
+    public void testPercentilesWithinRelativeError() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (long v = 1; v <= 10_000; v++) h.record(v);
+
+        assertEquals(10_000, h.count());
+        assertEquals(10_000, h.maxMicros());
+        assertEquals(5_000.5, h.meanMicros(), 0.001);
+
+        double tolerance = 1.0 / LatencyHistogram.SUB_BUCKETS;
+        assertEquals(5_000, h.percentile(0.50), 5_000 * tolerance);
+        assertEquals(9_900, h.percentile(0.99), 9_900 * tolerance);
+        assertEquals(10_000, h.percentile(1.0), 10_000 * tolerance);
+    }
+
+    public void testEmptyAndClamped() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.percentile(0.5));
+
+        h.record(-5);
+        h.record(Long.MAX_VALUE);
+        assertEquals(2, h.count());
+        assertEquals(0, h.percentile(0.5));
+        assertEquals(Long.MAX_VALUE, h.maxMicros());
+    }
+}
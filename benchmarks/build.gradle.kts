@@ -0,0 +1,48 @@
+plugins {
+    java
+}
+
+// JVM benchmarks of the app's DAO SQL on synthetic deck databases (JMH +
+// JDBC SQLite). Not part of the app build; run explicitly:
+//   ./gradlew :benchmarks:jmh [-Pjmh.args="<JMH options>"]
+
+val jmhVersion = "1.37"
+// Same driver as the deck compiler in buildSrc.
+val sqliteJdbcVersion = "3.45.1.0"
+
+dependencies {
+    implementation("org.openjdk.jmh:jmh-core:$jmhVersion")
+    annotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:$jmhVersion")
+    implementation("org.xerial:sqlite-jdbc:$sqliteJdbcVersion")
+
+    testImplementation("junit:junit:4.13.2")
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the DAO benchmarks; results in build/reports/jmh"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+
+    val appMain = rootProject.file("app/src/main")
+    val reportDir = layout.buildDirectory.dir("reports/jmh").get().asFile
+    systemProperty("bench.daoDir", File(appMain, "java/com/example/cards/data/db").path)
+    systemProperty("bench.modelDir", File(appMain, "java/com/example/cards/data/model").path)
+    systemProperty("bench.deckSql", File(appMain, "assets/db/deck1.sql").path)
+    // Generated datasets are large (5M review_log rows ~ 300 MB) and reused across runs.
+    systemProperty("bench.dataDir", layout.buildDirectory.dir("bench-data").get().asFile.path)
+    systemProperty("bench.reportDir", reportDir.path)
+
+    doFirst { reportDir.mkdirs() }
+    args = listOf("-rf", "json", "-rff", File(reportDir, "results.json").path) +
+            (providers.gradleProperty("jmh.args").orNull?.split(" ")?.filter { it.isNotBlank() } ?: emptyList())
+}
@@ -0,0 +1,368 @@
+package com.example.cards.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sqlite.JDBC;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DaoBenchmark
+ *
+ * JMH suite running the app's DAO SQL ({@link DaoSql}) through the JDBC
+ * SQLite driver against {@link SyntheticDataset} databases.
+ *
+ * Usage:
+ * <pre>
+ *   ./gradlew :benchmarks:jmh
+ *   ./gradlew :benchmarks:jmh -Pjmh.args="-p cards=50000 -p logsPerCard=100 getSelection"
+ * </pre>
+ *
+ * Behavior:
+ * - Sample-time mode: JMH reports p50 / p90 / p99 / p99.9 / max latency per
+ *   query and dataset.
+ * - Each trial works on a fresh copy of the cached dataset, opened the way
+ *   Room opens it on a device (WAL, synchronous=NORMAL, foreign keys on),
+ *   so the writes of {@link #saveStateAndLog} do not leak into other runs.
+ * - At the start of each trial the {@code EXPLAIN QUERY PLAN} of every
+ *   query is printed and written to {@code plans-<dataset>.txt} in the
+ *   report directory.
+ *
+ * System properties (set by the Gradle task):
+ * {@code bench.daoDir} (DAO sources), {@code bench.modelDir} (entity sources,
+ * for the constants the SQL references), {@code bench.deckSql} (schema
+ * script), {@code bench.dataDir} (dataset cache), {@code bench.reportDir}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoBenchmark {
+
+    // Limits used by the app's call sites.
+    private static final int SELECTION_LIMIT = 800;
+    private static final int DUE_LIMIT = 50;
+    // CardDirection.FORWARD: the datasets hold forward states only.
+    private static final int FORWARD = 0;
+
+    @Param({"1000", "50000"})
+    public int cards;
+
+    @Param({"10", "100"})
+    public int logsPerCard;
+
+    @Param({"ZIPF"})
+    public SyntheticDataset.History history;
+
+    private File db;
+    private Connection c;
+
+    private Bound getSelection;
+    private Bound getWordsWithStatsAll;
+    private Bound searchWords;
+    private Bound learnedPercent;
+    private Bound getDueCards;
+    private PreparedStatement upsertState;
+    private PreparedStatement insertLog;
+    private DaoSql.Query getState;
+    private DaoSql.Query insertRollupRow;
+    private DaoSql.Query addToRollup;
+    private PreparedStatement getStatePs;
+    private PreparedStatement insertRollupRowPs;
+    private PreparedStatement addToRollupPs;
+
+    // Search terms (power-of-two count), used round-robin.
+    private String[] terms;
+    private int next;
+
+    /**
+     * A DAO query prepared once, bound by Room parameter name.
+     */
+    private static final class Bound {
+        final DaoSql.Query query;
+        final PreparedStatement ps;
+        final int limit;
+
+        Bound(Connection c, DaoSql.Query query, int limit) throws SQLException {
+            this.query = query;
+            this.ps = c.prepareStatement(query.sql);
+            this.limit = limit;
+        }
+
+        ResultSet run(String q) throws SQLException {
+            bind(ps, q);
+            return ps.executeQuery();
+        }
+
+        /**
+         * Binds the query's parameters by their Room names.
+         */
+        void bind(PreparedStatement target, String q) throws SQLException {
+            for (int i = 0; i < query.params.size(); i++) {
+                String name = query.params.get(i);
+                Object value;
+                switch (name) {
+                    case "deckId":    value = SyntheticDataset.DECK_ID; break;
+                    case "direction": value = FORWARD; break;
+                    case "now":       value = SyntheticDataset.NOW; break;
+                    case "limit":     value = limit; break;
+                    case "q":         value = q; break;
+                    default:
+                        throw new IllegalStateException(query.method + ": no value for :" + name);
+                }
+                target.setObject(i + 1, value);
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void open() throws IOException, SQLException {
+        File dataDir = new File(property("bench.dataDir"));
+        File cached = SyntheticDataset.get(dataDir, new File(property("bench.deckSql")),
+                cards, logsPerCard, history);
+        db = new File(dataDir, "work-" + cached.getName());
+        Files.copy(cached.toPath(), db.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        c = new JDBC().connect("jdbc:sqlite:" + db.getAbsolutePath(), new Properties());
+        try (Statement st = c.createStatement()) {
+            st.execute("PRAGMA journal_mode = WAL");
+            st.execute("PRAGMA synchronous = NORMAL");
+            st.execute("PRAGMA foreign_keys = ON");
+        }
+
+        File daoDir = new File(property("bench.daoDir"));
+        // Constants the SQL concatenates in, e.g. CardDirection.FORWARD.
+        Map<String, String> constants = new HashMap<>();
+        File[] model = new File(property("bench.modelDir")).listFiles((dir, name) -> name.endsWith(".java"));
+        if (model == null) throw new IOException("Cannot list " + property("bench.modelDir"));
+        for (File f : model) constants.putAll(DaoSql.constants(f));
+        Map<String, DaoSql.Query> cardDao = DaoSql.load(new File(daoDir, "CardDao.java"), constants);
+        Map<String, DaoSql.Query> reviewDao = DaoSql.load(new File(daoDir, "ReviewDao.java"), constants);
+        getSelection = new Bound(c, require(cardDao, "getSelection"), SELECTION_LIMIT);
+        getWordsWithStatsAll = new Bound(c, require(cardDao, "getWordsWithStatsAll"), 0);
+        searchWords = new Bound(c, require(cardDao, "searchWords"), 0);
+        learnedPercent = new Bound(c, require(cardDao, "learnedPercent"), 0);
+        getDueCards = new Bound(c, require(reviewDao, "getDueCards"), DUE_LIMIT);
+        upsertState = c.prepareStatement(DaoSql.UPSERT_STATE);
+        insertLog = c.prepareStatement(DaoSql.INSERT_LOG);
+        getState = require(reviewDao, "getState");
+        insertRollupRow = require(reviewDao, "insertRollupRow");
+        addToRollup = require(reviewDao, "addToRollup");
+        getStatePs = c.prepareStatement(getState.sql);
+        insertRollupRowPs = c.prepareStatement(insertRollupRow.sql);
+        addToRollupPs = c.prepareStatement(addToRollup.sql);
+
+        // First syllables of 64 headwords spread evenly over the deck.
+        terms = new String[64];
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT substr(front, 1, 1) FROM cards WHERE id % ? = 0 ORDER BY id LIMIT 64")) {
+            ps.setInt(1, Math.max(1, cards / terms.length));
+            try (ResultSet rs = ps.executeQuery()) {
+                int n = 0;
+                while (rs.next()) terms[n++] = rs.getString(1);
+                // Tiny datasets: repeat what there is.
+                for (int i = n; i < terms.length; i++) terms[i] = n == 0 ? "a" : terms[i % n];
+            }
+        }
+
+        writePlans();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws SQLException, IOException {
+        c.close();
+        Files.deleteIfExists(db.toPath());
+        Files.deleteIfExists(new File(db.getPath() + "-wal").toPath());
+        Files.deleteIfExists(new File(db.getPath() + "-shm").toPath());
+    }
+
+    // -------------------------------------------------------------------------
+    // Benchmarks
+    // -------------------------------------------------------------------------
+
+    @Benchmark
+    public void getSelection(Blackhole bh) throws SQLException {
+        consume(getSelection.run(null), bh);
+    }
+
+    @Benchmark
+    public void getWordsWithStatsAll(Blackhole bh) throws SQLException {
+        consume(getWordsWithStatsAll.run(null), bh);
+    }
+
+    @Benchmark
+    public void searchWords(Blackhole bh) throws SQLException {
+        consume(searchWords.run(terms[next++ & (terms.length - 1)]), bh);
+    }
+
+    @Benchmark
+    public void learnedPercent(Blackhole bh) throws SQLException {
+        consume(learnedPercent.run(null), bh);
+    }
+
+    @Benchmark
+    public void getDueCards(Blackhole bh) throws SQLException {
+        consume(getDueCards.run(null), bh);
+    }
+
+    /**
+     * One grade: read of the previous state, REPLACE of the card's
+     * review_state, a review_log insert and the daily_rollup update,
+     * committed in one transaction as ReviewDao.saveStateAndLog does.
+     */
+    @Benchmark
+    public void saveStateAndLog() throws SQLException {
+        long cardId = 1 + (next++ % cards);
+        long now = SyntheticDataset.NOW + next;
+        int grade = 4;
+
+        c.setAutoCommit(false);
+        try {
+            int bucket;
+            bindGrade(getStatePs, getState, cardId, 0, 0, 0, grade);
+            try (ResultSet rs = getStatePs.executeQuery()) {
+                bucket = rs.next() ? bucketOf(rs) : 0;
+            }
+
+            // id = cardId: every card's state row was inserted in card order.
+            upsertState.setLong(1, cardId);
+            upsertState.setLong(2, cardId);
+            upsertState.setInt(3, FORWARD);
+            upsertState.setInt(4, 3);
+            upsertState.setDouble(5, 2.5);
+            upsertState.setInt(6, 2);
+            upsertState.setLong(7, now + 3 * 86_400_000L);
+            upsertState.setInt(8, 4);
+            upsertState.executeUpdate();
+
+            insertLog.setLong(1, 0);
+            insertLog.setLong(2, cardId);
+            insertLog.setInt(3, FORWARD);
+            insertLog.setLong(4, now);
+            insertLog.setInt(5, 4);
+            insertLog.setInt(6, 3);
+            insertLog.setDouble(7, 2.5);
+            insertLog.setInt(8, 2);
+            insertLog.setLong(9, now);
+            insertLog.executeUpdate();
+
+            // UTC day and hour; the app uses the local time zone.
+            int day = (int) (now / 86_400_000L);
+            int hour = (int) (now / 3_600_000L % 24);
+            bindGrade(insertRollupRowPs, insertRollupRow, cardId, day, hour, bucket, grade);
+            insertRollupRowPs.executeUpdate();
+            bindGrade(addToRollupPs, addToRollup, cardId, day, hour, bucket, grade);
+            addToRollupPs.executeUpdate();
+            c.commit();
+        } finally {
+            c.setAutoCommit(true);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private static void consume(ResultSet rs, Blackhole bh) throws SQLException {
+        try (ResultSet r = rs) {
+            int columns = r.getMetaData().getColumnCount();
+            while (r.next()) {
+                for (int i = 1; i <= columns; i++) bh.consume(r.getObject(i));
+            }
+        }
+    }
+
+    private void writePlans() throws SQLException, IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "# cards=%d logsPerCard=%d history=%s%n",
+                cards, logsPerCard, history));
+        for (Bound b : new Bound[] { getSelection, getWordsWithStatsAll, searchWords,
+                learnedPercent, getDueCards }) {
+            sb.append("\n").append(b.query.method).append('\n');
+            try (PreparedStatement ps = c.prepareStatement("EXPLAIN QUERY PLAN " + b.query.sql)) {
+                b.bind(ps, terms[0]);
+                try (ResultSet rs = ps.executeQuery()) {
+                    // Columns: id, parent, notused, detail.
+                    while (rs.next()) sb.append("  ").append(rs.getString(4)).append('\n');
+                }
+            }
+        }
+        System.out.println(sb);
+
+        File reportDir = new File(property("bench.reportDir"));
+        if (!reportDir.exists() && !reportDir.mkdirs()) throw new IOException("Cannot create " + reportDir);
+        File out = new File(reportDir, String.format(Locale.US, "plans-c%d-l%d-%s.txt",
+                cards, logsPerCard, history.name().toLowerCase(Locale.US)));
+        Files.write(out.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Binds a grade-path statement's parameters by their Room names.
+     */
+    private static void bindGrade(PreparedStatement ps, DaoSql.Query q, long cardId,
+                                  int day, int hour, int bucket, int grade) throws SQLException {
+        for (int i = 0; i < q.params.size(); i++) {
+            String name = q.params.get(i);
+            switch (name) {
+                case "cardId":    ps.setLong(i + 1, cardId); break;
+                case "direction": ps.setInt(i + 1, FORWARD); break;
+                case "day":       ps.setInt(i + 1, day); break;
+                case "hour":      ps.setInt(i + 1, hour); break;
+                case "bucket":    ps.setInt(i + 1, bucket); break;
+                case "grade":     ps.setInt(i + 1, grade); break;
+                default:
+                    throw new IllegalStateException(q.method + ": no value for :" + name);
+            }
+        }
+    }
+
+    /**
+     * DailyRollup.bucketOf for a review_state row.
+     */
+    private static int bucketOf(ResultSet state) throws SQLException {
+        state.getInt("lastGrade");
+        if (state.wasNull()) return 0;
+        int interval = state.getInt("intervalDays");
+        return interval < 1 ? 1 : interval < 7 ? 2 : interval < 21 ? 3 : interval < 90 ? 4 : 5;
+    }
+
+    private static DaoSql.Query require(Map<String, DaoSql.Query> dao, String method) {
+        DaoSql.Query q = dao.get(method);
+        if (q == null) throw new IllegalStateException("No @Query method " + method);
+        return q;
+    }
+
+    private static String property(String key) {
+        String v = System.getProperty(key);
+        if (v == null) throw new IllegalStateException("System property " + key + " is not set");
+        return v;
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.cards.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * DaoSql
+ *
+ * Reads the SQL of the app's Room DAOs straight from their Java sources, so
+ * the benchmarks always run exactly the statements the app runs.
+ *
+ * Behavior:
+ * - Every {@code @Query(...)} annotation is read: plain string literals
+ *   joined with {@code +} and text blocks, with Java comments in between
+ *   skipped, mapped to the name of the method it annotates.
+ * - Numeric constants concatenated into the SQL (e.g.
+ *   {@code CardDirection.FORWARD}) are inlined from the classes passed as
+ *   {@link #constants}; an unknown name fails the load instead of leaving a
+ *   hole in the statement.
+ * - Room's {@code :name} parameters are rewritten to JDBC {@code ?}
+ *   placeholders; {@link Query#params} lists the names in bind order.
+ * - {@code @Insert} methods have no SQL in the source; the statements Room
+ *   generates for them are provided as constants.
+ */
+public final class DaoSql {
+
+    /** Room's statement for {@code ReviewDao.upsertStateEntity} (REPLACE). */
+    public static final String UPSERT_STATE =
+            "INSERT OR REPLACE INTO `review_state` "
+                    + "(`id`,`cardId`,`direction`,`intervalDays`,`ease`,`step`,`dueAt`,`lastGrade`) "
+                    + "VALUES (nullif(?, 0),?,?,?,?,?,?,?)";
+
+    /** Room's statement for {@code ReviewDao.insertLog}. */
+    public static final String INSERT_LOG =
+            "INSERT OR ABORT INTO `review_log` "
+                    + "(`id`,`cardId`,`direction`,`reviewedAt`,`grade`,`resultIntervalDays`,`resultEase`,"
+                    + "`resultStep`,`ts`) "
+                    + "VALUES (nullif(?, 0),?,?,?,?,?,?,?,?)";
+
+    private static final Pattern METHOD = Pattern.compile("(\\w+)\\s*\\([^)]*\\)\\s*;");
+    private static final Pattern CONSTANT = Pattern.compile(
+            "static\\s+final\\s+(?:int|long)\\s+(\\w+)\\s*=\\s*(-?[0-9_]+)[lL]?\\s*;");
+
+    /**
+     * One {@code @Query} method.
+     */
+    public static final class Query {
+        public final String method;
+        /** SQL with JDBC placeholders. */
+        public final String sql;
+        /** Room parameter names, in placeholder order. */
+        public final List<String> params;
+
+        Query(String method, String sql, List<String> params) {
+            this.method = method;
+            this.sql = sql;
+            this.params = Collections.unmodifiableList(params);
+        }
+    }
+
+    private DaoSql() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Reads all {@code @Query} methods of a DAO source file, by method name.
+     *
+     * @param constants values of the constants the SQL may reference, by
+     *                  {@code Class.NAME} ({@link #constants})
+     */
+    public static Map<String, Query> load(File daoSource, Map<String, String> constants)
+            throws IOException {
+        return parse(read(daoSource), constants);
+    }
+
+    /**
+     * Reads the {@code static final int} and {@code long} constants of a
+     * Java source file, keyed {@code Class.NAME} after the file name.
+     */
+    public static Map<String, String> constants(File javaSource) throws IOException {
+        String cls = javaSource.getName().replaceFirst("\\.java$", "");
+        Map<String, String> out = new LinkedHashMap<>();
+        Matcher m = CONSTANT.matcher(read(javaSource));
+        while (m.find()) out.put(cls + "." + m.group(1), m.group(2).replace("_", ""));
+        return out;
+    }
+
+    private static String read(File f) throws IOException {
+        return new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+    }
+
+    static Map<String, Query> parse(String source) {
+        return parse(source, Collections.emptyMap());
+    }
+
+    static Map<String, Query> parse(String source, Map<String, String> constants) {
+        Map<String, Query> out = new LinkedHashMap<>();
+        int from = 0;
+        while (true) {
+            int at = source.indexOf("@Query(", from);
+            if (at < 0) break;
+
+            StringBuilder sql = new StringBuilder();
+            int end = readLiterals(source, at + "@Query(".length(), sql, constants);
+
+            // The annotated method is the next abstract declaration "name(...);".
+            Matcher m = METHOD.matcher(source);
+            if (m.find(end)) {
+                List<String> params = new ArrayList<>();
+                String jdbc = toJdbc(sql.toString(), params);
+                out.put(m.group(1), new Query(m.group(1), jdbc, params));
+            }
+            from = end;
+        }
+        return out;
+    }
+
+    /**
+     * Appends the value of the string expression starting at {@code i} and
+     * returns the index just past the closing parenthesis.
+     */
+    private static int readLiterals(String s, int i, StringBuilder out,
+                                    Map<String, String> constants) {
+        int n = s.length();
+        while (i < n) {
+            char ch = s.charAt(i);
+            if (s.startsWith("\"\"\"", i)) {
+                int close = s.indexOf("\"\"\"", i + 3);
+                // Content starts after the line break that follows the opening quotes.
+                int body = s.indexOf('\n', i) + 1;
+                out.append(s.substring(body, close).stripIndent().translateEscapes());
+                i = close + 3;
+            } else if (ch == '"') {
+                int j = i + 1;
+                while (s.charAt(j) != '"') j += s.charAt(j) == '\\' ? 2 : 1;
+                out.append(s.substring(i + 1, j).translateEscapes());
+                i = j + 1;
+            } else if (s.startsWith("//", i)) {
+                int nl = s.indexOf('\n', i);
+                i = nl < 0 ? n : nl + 1;
+            } else if (s.startsWith("/*", i)) {
+                i = s.indexOf("*/", i + 2) + 2;
+            } else if (Character.isJavaIdentifierStart(ch)) {
+                int j = i + 1;
+                while (j < n && (Character.isJavaIdentifierPart(s.charAt(j)) || s.charAt(j) == '.')) {
+                    j++;
+                }
+                String name = s.substring(i, j);
+                String value = constants.get(name);
+                if (value == null) {
+                    throw new IllegalArgumentException("Unknown constant " + name + " in @Query");
+                }
+                out.append(value);
+                i = j;
+            } else if (ch == ')') {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Replaces {@code :name} parameters outside SQL string literals by
+     * {@code ?} and collects the names.
+     */
+    static String toJdbc(String sql, List<String> params) {
+        StringBuilder out = new StringBuilder(sql.length());
+        boolean quoted = false;
+        int n = sql.length();
+        for (int i = 0; i < n; i++) {
+            char ch = sql.charAt(i);
+            if (ch == '\'') quoted = !quoted;
+            if (!quoted && ch == ':' && i + 1 < n && Character.isJavaIdentifierStart(sql.charAt(i + 1))) {
+                int j = i + 1;
+                while (j < n && Character.isJavaIdentifierPart(sql.charAt(j))) j++;
+                params.add(sql.substring(i + 1, j));
+                out.append('?');
+                i = j - 1;
+            } else {
+                out.append(ch);
+            }
+        }
+        return out.toString();
+    }
+}
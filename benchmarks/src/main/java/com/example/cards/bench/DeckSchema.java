@@ -0,0 +1,122 @@
+package com.example.cards.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * DeckSchema
+ *
+ * The deck database schema as the app sees it: the {@code CREATE TABLE} and
+ * {@code CREATE INDEX} statements of a {@code deckN.sql} script, without its
+ * data, plus the tables, columns and indexes the app's migrations add on
+ * first open.
+ */
+public final class DeckSchema {
+
+    /** Room schema version of the script plus {@link #MIGRATED}. */
+    public static final int VERSION = 6;
+
+    // Schema changes of AppDatabase.MIGRATIONS on top of the shipped schema,
+    // in migration order. Bump VERSION with them: cached datasets are keyed
+    // by it.
+    static final String[] MIGRATED = {
+            "CREATE TABLE IF NOT EXISTS review_log_monthly ("
+                    + "cardId INTEGER NOT NULL, "
+                    + "month INTEGER NOT NULL, "
+                    + "reviews INTEGER NOT NULL, "
+                    + "lapses INTEGER NOT NULL, "
+                    + "gradeSum INTEGER NOT NULL, "
+                    + "firstReviewedAt INTEGER NOT NULL, "
+                    + "lastReviewedAt INTEGER NOT NULL, "
+                    + "PRIMARY KEY(cardId, month))",
+            "CREATE TABLE IF NOT EXISTS daily_rollup ("
+                    + "day INTEGER NOT NULL, "
+                    + "hour INTEGER NOT NULL, "
+                    + "bucket INTEGER NOT NULL, "
+                    + "reviews INTEGER NOT NULL, "
+                    + "lapses INTEGER NOT NULL, "
+                    + "grade0 INTEGER NOT NULL, "
+                    + "grade1 INTEGER NOT NULL, "
+                    + "grade2 INTEGER NOT NULL, "
+                    + "grade3 INTEGER NOT NULL, "
+                    + "grade4 INTEGER NOT NULL, "
+                    + "grade5 INTEGER NOT NULL, "
+                    + "PRIMARY KEY(day, hour, bucket))",
+            "ALTER TABLE cards ADD COLUMN tags TEXT",
+            "ALTER TABLE review_state ADD COLUMN direction INTEGER NOT NULL DEFAULT 0",
+            "DROP INDEX IF EXISTS index_review_state_cardId",
+            "CREATE UNIQUE INDEX IF NOT EXISTS index_review_state_cardId_direction "
+                    + "ON review_state (cardId, direction)",
+            "ALTER TABLE review_log ADD COLUMN direction INTEGER NOT NULL DEFAULT 0"
+    };
+
+    private DeckSchema() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Returns the CREATE statements of a deck script, in script order,
+     * followed by the statements of the app's migrations.
+     */
+    public static List<String> load(File deckSql) throws IOException {
+        String script = new String(Files.readAllBytes(deckSql.toPath()), StandardCharsets.UTF_8);
+        if (script.startsWith("\uFEFF")) script = script.substring(1);
+        List<String> out = new ArrayList<>();
+        for (String sql : split(script)) {
+            if (sql.toUpperCase(Locale.US).startsWith("CREATE")) out.add(sql);
+        }
+        if (out.isEmpty()) throw new IOException("No CREATE statements in " + deckSql);
+        out.addAll(Arrays.asList(MIGRATED));
+        return out;
+    }
+
+    /**
+     * Splits a script on top-level semicolons, skipping quoted text and
+     * comments (same rules as the build's deck compiler).
+     */
+    static List<String> split(String script) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        int n = script.length();
+        for (int i = 0; i < n; i++) {
+            char ch = script.charAt(i);
+            if (ch == '\'' || ch == '"') {
+                // A doubled quote inside the literal is an escaped quote.
+                int j = i + 1;
+                while (j < n) {
+                    if (script.charAt(j) == ch) {
+                        if (j + 1 < n && script.charAt(j + 1) == ch) {
+                            j += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    j++;
+                }
+                cur.append(script, i, Math.min(j + 1, n));
+                i = j;
+            } else if (script.startsWith("--", i)) {
+                int nl = script.indexOf('\n', i);
+                i = (nl < 0 ? n : nl) - 1;
+            } else if (script.startsWith("/*", i)) {
+                int close = script.indexOf("*/", i + 2);
+                i = (close < 0 ? n : close + 2) - 1;
+            } else if (ch == ';') {
+                String s = cur.toString().trim();
+                if (!s.isEmpty()) out.add(s);
+                cur.setLength(0);
+            } else {
+                cur.append(ch);
+            }
+        }
+        String s = cur.toString().trim();
+        if (!s.isEmpty()) out.add(s);
+        return out;
+    }
+}
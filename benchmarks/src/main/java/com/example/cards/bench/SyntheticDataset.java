@@ -0,0 +1,214 @@
+package com.example.cards.bench;
+
+import org.sqlite.JDBC;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * SyntheticDataset
+ *
+ * Generates deck databases with the real schema and a configurable amount
+ * and shape of review history, e.g. 50k cards with 5M review_log rows.
+ *
+ * Behavior:
+ * - Schema comes from a {@code deckN.sql} script ({@link DeckSchema}).
+ * - All cards belong to deck {@link #DECK_ID}; about 2% are excluded. Every
+ *   card has a review_state row, as after StudyActivity seeded the deck.
+ *   States and reviews are all forward (direction 0), as in a deck studied
+ *   before reverse study was turned on.
+ * - {@code logsPerCard * cards} review_log rows are spread over the year
+ *   before {@link #NOW}, in time order. {@link History} decides which cards
+ *   they hit; the last review of a card determines its state.
+ * - About 20% of the reviewed cards are marked learned in learned_state.
+ * - Generation is seeded, so equal parameters give equal data. Files are
+ *   cached by parameters and {@link DeckSchema#VERSION} and built in a temp
+ *   file that is renamed into place only when complete.
+ */
+public final class SyntheticDataset {
+
+    /** Deck id of all generated cards. */
+    public static final long DECK_ID = 1L;
+
+    /** "Current time" of every dataset: 2025-01-01T00:00:00Z. */
+    public static final long NOW = 1_735_689_600_000L;
+
+    private static final long DAY = 86_400_000L;
+    private static final long YEAR = 365L * DAY;
+    private static final int BATCH = 10_000;
+
+    /**
+     * How review_log rows are distributed over cards.
+     */
+    public enum History {
+        /** Every card is equally likely to be reviewed. */
+        UNIFORM,
+        /** Zipf (s = 1.1) over cards: a few hard cards get most reviews. */
+        ZIPF
+    }
+
+    private SyntheticDataset() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Returns the dataset for the given parameters, generating it first if
+     * it is not cached in {@code dir} yet.
+     */
+    public static File get(File dir, File deckSql, int cards, int logsPerCard, History history)
+            throws IOException, SQLException {
+        File file = new File(dir, String.format(Locale.US, "synthetic-v%d-c%d-l%d-%s.db",
+                DeckSchema.VERSION, cards, logsPerCard, history.name().toLowerCase(Locale.US)));
+        if (file.exists()) return file;
+
+        if (!dir.exists() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        File tmp = new File(dir, file.getName() + ".tmp");
+        Files.deleteIfExists(tmp.toPath());
+
+        long start = System.nanoTime();
+        try (Connection c = new JDBC().connect("jdbc:sqlite:" + tmp.getAbsolutePath(), new Properties())) {
+            try (Statement st = c.createStatement()) {
+                for (String ddl : DeckSchema.load(deckSql)) st.execute(ddl);
+            }
+            c.setAutoCommit(false);
+            generate(c, cards, (long) cards * logsPerCard, history, new Random(cards * 31L + logsPerCard));
+            c.commit();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        System.out.printf(Locale.US, "generated %s (%d MB) in %.1f s%n", file.getName(),
+                file.length() >> 20, (System.nanoTime() - start) / 1e9);
+        return file;
+    }
+
+    private static void generate(Connection c, int cards, long logs, History history, Random rnd)
+            throws SQLException {
+        // 1) Cards.
+        try (PreparedStatement ps = c.prepareStatement(
+                "INSERT INTO cards(id, deckId, front, back, createdAt, excluded, learned) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, 0)")) {
+            for (int id = 1; id <= cards; id++) {
+                ps.setLong(1, id);
+                ps.setLong(2, DECK_ID);
+                ps.setString(3, headword(rnd));
+                ps.setString(4, "meaning " + id);
+                ps.setLong(5, NOW - YEAR);
+                ps.setInt(6, rnd.nextInt(50) == 0 ? 1 : 0);
+                ps.addBatch();
+                if (id % BATCH == 0) ps.executeBatch();
+            }
+            ps.executeBatch();
+        }
+
+        // 2) Review log, in time order; remember each card's last review.
+        int[] reviews = new int[cards + 1];
+        int[] lastGrade = new int[cards + 1];
+        long[] lastAt = new long[cards + 1];
+        double[] zipf = history == History.ZIPF ? zipfCumulative(cards, 1.1) : null;
+        try (PreparedStatement ps = c.prepareStatement(
+                "INSERT INTO review_log(cardId, reviewedAt, grade, resultIntervalDays, "
+                        + "resultEase, resultStep, ts) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (long i = 0; i < logs; i++) {
+                int card = zipf != null ? sample(zipf, rnd) : 1 + rnd.nextInt(cards);
+                long at = NOW - YEAR + (long) ((double) i / logs * YEAR);
+                int grade = rnd.nextInt(6);
+                int step = ++reviews[card];
+                lastGrade[card] = grade;
+                lastAt[card] = at;
+
+                ps.setLong(1, card);
+                ps.setLong(2, at);
+                ps.setInt(3, grade);
+                ps.setInt(4, intervalDays(grade, step));
+                ps.setDouble(5, ease(grade));
+                ps.setInt(6, step);
+                ps.setLong(7, at);
+                ps.addBatch();
+                if ((i + 1) % BATCH == 0) ps.executeBatch();
+            }
+            ps.executeBatch();
+        }
+
+        // 3) Review state for every card; learned_state for some reviewed ones.
+        try (PreparedStatement state = c.prepareStatement(
+                "INSERT INTO review_state(cardId, intervalDays, ease, step, dueAt, lastGrade) "
+                        + "VALUES (?, ?, ?, ?, ?, ?)");
+             PreparedStatement learned = c.prepareStatement(
+                     "INSERT INTO learned_state(cardId, learned) VALUES (?, 1)")) {
+            for (int id = 1; id <= cards; id++) {
+                state.setLong(1, id);
+                if (reviews[id] == 0) {
+                    state.setInt(2, 0);
+                    state.setDouble(3, 2.5);
+                    state.setInt(4, 0);
+                    state.setLong(5, NOW - YEAR);
+                    state.setNull(6, Types.INTEGER);
+                } else {
+                    int days = intervalDays(lastGrade[id], reviews[id]);
+                    state.setInt(2, days);
+                    state.setDouble(3, ease(lastGrade[id]));
+                    state.setInt(4, reviews[id]);
+                    state.setLong(5, lastAt[id] + days * DAY);
+                    state.setInt(6, lastGrade[id]);
+                    if (rnd.nextInt(5) == 0) {
+                        learned.setLong(1, id);
+                        learned.addBatch();
+                    }
+                }
+                state.addBatch();
+                if (id % BATCH == 0) {
+                    state.executeBatch();
+                    learned.executeBatch();
+                }
+            }
+            state.executeBatch();
+            learned.executeBatch();
+        }
+    }
+
+    /** Two to four random Hangul syllables. */
+    private static String headword(Random rnd) {
+        int len = 2 + rnd.nextInt(3);
+        StringBuilder sb = new StringBuilder(len);
+        for (int i = 0; i < len; i++) sb.append((char) (0xAC00 + rnd.nextInt(11_172)));
+        return sb.toString();
+    }
+
+    private static int intervalDays(int grade, int step) {
+        return grade < 3 ? 1 : Math.min(365, 1 << Math.min(step, 8));
+    }
+
+    private static double ease(int grade) {
+        return Math.max(1.3, 2.5 + 0.1 - (5 - grade) * (0.08 + (5 - grade) * 0.02));
+    }
+
+    private static double[] zipfCumulative(int n, double s) {
+        double[] cum = new double[n];
+        double sum = 0;
+        for (int k = 1; k <= n; k++) {
+            sum += 1.0 / Math.pow(k, s);
+            cum[k - 1] = sum;
+        }
+        for (int k = 0; k < n; k++) cum[k] /= sum;
+        return cum;
+    }
+
+    /** Card id 1..n for a Zipf rank; ranks are scattered over ids. */
+    private static int sample(double[] cum, Random rnd) {
+        int rank = Arrays.binarySearch(cum, rnd.nextDouble());
+        if (rank < 0) rank = -rank - 1;
+        int n = cum.length;
+        // Multiplicative scatter (7919 is prime) so the hard cards are not all at the start.
+        return (int) ((rank * 7_919L) % n) + 1;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.cards.bench;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class DaoSqlTest extends TestCase {
+
+    public void testConcatenatedLiteralsWithComments() {
+        String src = ""
+                + "    @Query(\n"
+                + "            \"SELECT c.id \" +\n"
+                + "                    \"FROM cards c \" +   // trailing comment\n"
+                + "                    \"WHERE c.deckId = :deckId AND c.front LIKE '%' || :q || '%' \" +\n"
+                + "                    \"LIMIT :limit\"\n"
+                + "    )\n"
+                + "    List<Long> find(long deckId, String q, int limit);\n";
+
+        DaoSql.Query q = DaoSql.parse(src).get("find");
+        assertNotNull(q);
+        assertEquals("SELECT c.id FROM cards c WHERE c.deckId = ? AND c.front LIKE '%' || ? || '%' LIMIT ?",
+                q.sql);
+        assertEquals(Arrays.asList("deckId", "q", "limit"), q.params);
+    }
+
+    public void testTextBlock() {
+        String src = ""
+                + "    @Query(\"\"\"\n"
+                + "           SELECT COUNT(*) FROM cards\n"
+                + "           WHERE deckId = :deckId\n"
+                + "           \"\"\")\n"
+                + "    int count(long deckId);\n"
+                + "\n"
+                + "    @Query(\"SELECT 1\")\n"
+                + "    int one();\n";
+
+        Map<String, DaoSql.Query> all = DaoSql.parse(src);
+        assertEquals(2, all.size());
+        assertEquals("SELECT COUNT(*) FROM cards\nWHERE deckId = ?\n", all.get("count").sql);
+        assertEquals("SELECT 1", all.get("one").sql);
+        assertTrue(all.get("one").params.isEmpty());
+    }
+
+    public void testConstantsAreInlined() {
+        String src = ""
+                + "    @Query(\"SELECT * FROM review_state rs \" +\n"
+                + "            \"WHERE rs.direction = \" + CardDirection.FORWARD + \" AND rs.cardId = :cardId\")\n"
+                + "    ReviewState forward(long cardId);\n";
+
+        DaoSql.Query q = DaoSql.parse(src, Map.of("CardDirection.FORWARD", "0")).get("forward");
+        assertEquals("SELECT * FROM review_state rs WHERE rs.direction = 0 AND rs.cardId = ?", q.sql);
+        assertEquals(Arrays.asList("cardId"), q.params);
+
+        try {
+            DaoSql.parse(src);
+            fail("unknown constant was dropped");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("CardDirection.FORWARD"));
+        }
+    }
+
+    public void testColonInsideStringLiteralIsNotAParameter() {
+        List<String> params = new ArrayList<>();
+        assertEquals("SELECT ':x' WHERE a = ?", DaoSql.toJdbc("SELECT ':x' WHERE a = :a", params));
+        assertEquals(Arrays.asList("a"), params);
+    }
+}
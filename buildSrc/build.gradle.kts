@@ -0,0 +1,25 @@
+plugins {
+    java
+}
+
+repositories {
+    mavenCentral()
+}
+
+// The SQLite version is pinned through the driver: the same driver always
+// produces byte-identical deck databases.
+val sqliteJdbcVersion = "3.45.1.0"
+
+dependencies {
+    implementation(gradleApi())
+    implementation("org.xerial:sqlite-jdbc:$sqliteJdbcVersion")
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
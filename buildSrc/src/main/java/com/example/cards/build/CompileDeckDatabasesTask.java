@@ -0,0 +1,59 @@
+package com.example.cards.build;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputFiles;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CompileDeckDatabasesTask
+ *
+ * Compiles every {@code deckN.sql} in {@link #getSqlFiles()} into the
+ * {@code cards_deck_N.db} and {@code cards_deck_N.bin} assets next to it,
+ * using {@link DeckDatabaseCompiler}.
+ * Fails the build if any deck does not verify.
+ */
+public abstract class CompileDeckDatabasesTask extends DefaultTask {
+
+    /** The deck scripts to compile. */
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract ConfigurableFileCollection getSqlFiles();
+
+    /** Value written into {@code cards.createdAt} instead of "now". */
+    @Input
+    public abstract Property<Long> getCreatedAtMillis();
+
+    @OutputFiles
+    public List<File> getDatabases() {
+        List<File> out = new ArrayList<>();
+        for (File sql : getSqlFiles().getFiles()) {
+            File db = DeckDatabaseCompiler.databaseFor(sql);
+            out.add(db);
+            out.add(DeckContentWriter.contentFor(db));
+        }
+        return out;
+    }
+
+    @TaskAction
+    public void compile() {
+        DeckDatabaseCompiler compiler = new DeckDatabaseCompiler(getCreatedAtMillis().get());
+        for (File sql : getSqlFiles().getFiles()) {
+            try {
+                getLogger().lifecycle(compiler.compile(sql).toString());
+            } catch (Exception e) {
+                throw new GradleException("Failed to compile " + sql + ": " + e.getMessage(), e);
+            }
+        }
+    }
+}
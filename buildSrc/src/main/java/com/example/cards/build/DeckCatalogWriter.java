@@ -0,0 +1,153 @@
+package com.example.cards.build;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * DeckCatalogWriter
+ *
+ * Writes {@code assets/db/catalog.bin}, the index of all decks that the app
+ * loads once at startup ({@code com.example.cards.data.catalog.DeckCatalog}),
+ * from the hand-edited {@code decks/catalog.tsv} and the compiled deck assets.
+ *
+ * Layout (big-endian, {@link java.io.DataOutputStream}):
+ * <pre>
+ *   "FCCT"                 magic
+ *   u16 version            = {@link #VERSION}
+ *   u16 count
+ *   count x {
+ *     u32  deckId
+ *     u8   level
+ *     UTF  title, subtitle, description
+ *     UTF  assetPath       base pack database, e.g. "db/eng/cards_deck_1.db"
+ *     u32  cards           cards in the base pack
+ *     u32  checksum        CRC-32 of the database asset
+ *     u8   languages
+ *     languages x { UTF lang, u32 cards }   packs with a content asset
+ *   }
+ * </pre>
+ * The base pack comes first in the language list.
+ */
+public final class DeckCatalogWriter {
+
+    public static final int VERSION = 1;
+    static final int MAGIC = ('F' << 24) | ('C' << 16) | ('C' << 8) | 'T';
+
+    /** Language packs, base pack first (see {@code LanguagePacks}). */
+    static final String[] LANGUAGES = { "eng", "rus" };
+
+    private DeckCatalogWriter() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Returns the catalog asset inside an {@code assets/db} directory.
+     */
+    public static File catalogIn(File assetsDb) {
+        return new File(assetsDb, "catalog.bin");
+    }
+
+    /**
+     * Writes the catalog for every row of {@code source}.
+     *
+     * @param source   the catalog.tsv
+     * @param assetsDb the {@code assets/db} directory holding the language packs
+     * @return number of decks written
+     */
+    public static int write(File source, File assetsDb) throws IOException {
+        List<String[]> rows = readRows(source);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(rows.size());
+            for (String[] row : rows) {
+                long deckId = Long.parseLong(row[0]);
+                String base = LANGUAGES[0];
+                String dbName = "cards_deck_" + deckId + ".db";
+                File db = new File(new File(assetsDb, base), dbName);
+                if (!db.isFile()) throw new IOException("Missing " + db);
+
+                List<String> langs = new ArrayList<>();
+                List<Integer> counts = new ArrayList<>();
+                for (String lang : LANGUAGES) {
+                    File content = DeckContentWriter.contentFor(new File(new File(assetsDb, lang), dbName));
+                    if (!content.isFile()) continue;
+                    langs.add(lang);
+                    counts.add(cardsIn(content));
+                }
+                if (langs.isEmpty() || !langs.get(0).equals(base)) {
+                    throw new IOException("Missing " + base + " content for deck " + deckId);
+                }
+
+                out.writeInt((int) deckId);
+                out.writeByte(Integer.parseInt(row[1]));
+                out.writeUTF(row[2]);
+                out.writeUTF(row[3]);
+                out.writeUTF(row[4]);
+                out.writeUTF("db/" + base + "/" + dbName);
+                out.writeInt(counts.get(0));
+                out.writeInt((int) crc32(db));
+                out.writeByte(langs.size());
+                for (int i = 0; i < langs.size(); i++) {
+                    out.writeUTF(langs.get(i));
+                    out.writeInt(counts.get(i));
+                }
+            }
+        }
+
+        File target = catalogIn(assetsDb);
+        File tmp = new File(target.getParentFile(), target.getName() + ".tmp");
+        Files.write(tmp.toPath(), bytes.toByteArray());
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return rows.size();
+    }
+
+    // Non-comment rows after the header line, five tab-separated columns each.
+    private static List<String[]> readRows(File source) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        boolean header = true;
+        for (String line : Files.readAllLines(source.toPath(), StandardCharsets.UTF_8)) {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            if (header) {
+                header = false;
+                continue;
+            }
+            String[] cols = line.split("\t", -1);
+            if (cols.length != 5) {
+                throw new IOException(source.getName() + ": expected 5 columns: " + line);
+            }
+            rows.add(cols);
+        }
+        return rows;
+    }
+
+    // Card count from a content asset header (u32 little-endian at 12).
+    private static int cardsIn(File content) throws IOException {
+        try (RandomAccessFile f = new RandomAccessFile(content, "r")) {
+            f.seek(12);
+            return Integer.reverseBytes(f.readInt());
+        }
+    }
+
+    private static long crc32(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int r;
+            while ((r = in.read(buf)) > 0) crc.update(buf, 0, r);
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.cards.build;
+
+import org.sqlite.JDBC;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * DeckContentWriter
+ *
+ * Writes the read-only word content of a compiled deck database into the
+ * binary {@code cards_deck_N.bin} asset that the app memory-maps
+ * ({@code com.example.cards.data.content.DeckContent}).
+ *
+ * Layout (little-endian):
+ * <pre>
+ *   header (40 bytes)
+ *     0  "FCDK"             magic
+ *     4  u16 version        = {@link #VERSION}
+ *     6  u16 flags          = 0
+ *     8  u32 deckId
+ *    12  u32 count          number of cards
+ *    16  u32 idsOffset      u32[count]   card ids, ascending
+ *    20  u32 frontIndex     u32[count+1] offsets into the front pool
+ *    24  u32 backIndex      u32[count+1] offsets into the back pool
+ *    28  u32 frontPool      UTF-8 bytes, entries back to back
+ *    32  u32 backPool       UTF-8 bytes
+ *    36  u32 fileLength
+ * </pre>
+ * Entry i spans {@code pool[index[i] .. index[i+1])}.
+ */
+public final class DeckContentWriter {
+
+    public static final int VERSION = 1;
+    static final int HEADER_SIZE = 40;
+
+    private DeckContentWriter() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Returns the content asset next to a deck database:
+     * {@code cards_deck_N.db} → {@code cards_deck_N.bin}.
+     */
+    public static File contentFor(File database) {
+        String name = database.getName().replaceFirst("\\.db$", ".bin");
+        return new File(database.getParentFile(), name);
+    }
+
+    /**
+     * Reads {@code cards} of the given database in id order and writes the
+     * content file next to it.
+     *
+     * @return the written file
+     */
+    public static File write(File database, long deckId) throws IOException, SQLException {
+        List<Long> ids = new ArrayList<>();
+        ByteArrayOutputStream fronts = new ByteArrayOutputStream();
+        ByteArrayOutputStream backs = new ByteArrayOutputStream();
+        List<Integer> frontEnds = new ArrayList<>();
+        List<Integer> backEnds = new ArrayList<>();
+
+        try (Connection c = new JDBC().connect("jdbc:sqlite:" + database.getAbsolutePath(), new Properties());
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT id, front, back FROM cards ORDER BY id")) {
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+                fronts.write(rs.getString(2).getBytes(StandardCharsets.UTF_8));
+                frontEnds.add(fronts.size());
+                backs.write(rs.getString(3).getBytes(StandardCharsets.UTF_8));
+                backEnds.add(backs.size());
+            }
+        }
+
+        int count = ids.size();
+        int idsOffset = HEADER_SIZE;
+        int frontIndex = idsOffset + 4 * count;
+        int backIndex = frontIndex + 4 * (count + 1);
+        int frontPool = backIndex + 4 * (count + 1);
+        int backPool = frontPool + fronts.size();
+        int length = backPool + backs.size();
+
+        ByteBuffer out = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        out.put(new byte[] { 'F', 'C', 'D', 'K' });
+        out.putShort((short) VERSION);
+        out.putShort((short) 0);
+        out.putInt((int) deckId);
+        out.putInt(count);
+        out.putInt(idsOffset);
+        out.putInt(frontIndex);
+        out.putInt(backIndex);
+        out.putInt(frontPool);
+        out.putInt(backPool);
+        out.putInt(length);
+
+        for (long id : ids) out.putInt((int) id);
+        out.putInt(0);
+        for (int end : frontEnds) out.putInt(end);
+        out.putInt(0);
+        for (int end : backEnds) out.putInt(end);
+        out.put(fronts.toByteArray());
+        out.put(backs.toByteArray());
+
+        File target = contentFor(database);
+        File tmp = new File(target.getParentFile(), target.getName() + ".tmp");
+        Files.write(tmp.toPath(), out.array());
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return target;
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.cards.build;
+
+import org.sqlite.JDBC;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * DeckDatabaseCompiler
+ *
+ * Turns a {@code deckN.sql} script into the prepackaged {@code cards_deck_N.db}
+ * asset. Replaces the hand-run Windows sqlite3 commands.
+ *
+ * Behavior:
+ * - {@code strftime('%s','now')*1000} is replaced by a fixed timestamp, so the
+ *   same script always produces the same bytes (with the pinned driver).
+ * - The database is built in a temp file with a {@link #PAGE_SIZE} page size,
+ *   then {@code ANALYZE}d (so {@code sqlite_stat1} ships with the asset) and
+ *   {@code VACUUM}ed, and only then moved over the old asset. The journal
+ *   mode stays DELETE; Room switches the copy to WAL on first open.
+ * - {@code auto_vacuum} is INCREMENTAL from the start, so on-device
+ *   maintenance can free pages without rewriting the deck with a full
+ *   {@code VACUUM}.
+ * - The result is verified: integrity check, number of {@code cards} rows
+ *   equals the number of tuples inserted by the script, every row belongs to
+ *   deck N, and planner statistics are present.
+ * - Finally the read-only word content is written next to the database as
+ *   {@code cards_deck_N.bin} ({@link DeckContentWriter}), with the same ids.
+ */
+public final class DeckDatabaseCompiler {
+
+    /** 2024-01-01T00:00:00Z; used when SOURCE_DATE_EPOCH is not set. */
+    public static final long DEFAULT_CREATED_AT_MILLIS = 1_704_067_200_000L;
+
+    /**
+     * Android's default SQLite page size. Matching it means the asset is not
+     * rewritten on first open and one page maps to one flash block.
+     */
+    public static final int PAGE_SIZE = 4096;
+
+    // PRAGMA auto_vacuum value of INCREMENTAL.
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private static final Pattern NOW_MILLIS = Pattern.compile(
+            "strftime\\(\\s*'%s'\\s*,\\s*'now'\\s*\\)\\s*\\*\\s*1000",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern INSERT_INTO_CARDS = Pattern.compile(
+            "^\\s*INSERT\\s+(OR\\s+\\w+\\s+)?INTO\\s+\"?cards\"?\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern DECK_SQL = Pattern.compile("deck(\\d+)\\.sql");
+
+    /**
+     * Outcome of one compiled deck.
+     */
+    public static final class Result {
+        public final File database;
+        public final long deckId;
+        public final int cards;
+        public final long bytes;
+        public final long contentBytes;
+
+        Result(File database, long deckId, int cards, long bytes, long contentBytes) {
+            this.database = database;
+            this.deckId = deckId;
+            this.cards = cards;
+            this.bytes = bytes;
+            this.contentBytes = contentBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: deck %d, %d cards, %d bytes (+%d bytes content)",
+                    database.getName(), deckId, cards, bytes, contentBytes);
+        }
+    }
+
+    private final long createdAtMillis;
+
+    public DeckDatabaseCompiler(long createdAtMillis) {
+        this.createdAtMillis = createdAtMillis;
+    }
+
+    /**
+     * Returns the deck id encoded in a {@code deckN.sql} file name, or -1.
+     */
+    public static long deckIdOf(File sqlFile) {
+        Matcher m = DECK_SQL.matcher(sqlFile.getName());
+        return m.matches() ? Long.parseLong(m.group(1)) : -1L;
+    }
+
+    /**
+     * Returns the asset that {@code deckN.sql} compiles into:
+     * {@code cards_deck_N.db} in the same directory.
+     */
+    public static File databaseFor(File sqlFile) {
+        return new File(sqlFile.getParentFile(), "cards_deck_" + deckIdOf(sqlFile) + ".db");
+    }
+
+    /**
+     * Compiles one script into its database asset.
+     *
+     * @throws IllegalStateException if verification fails; the old asset is
+     *                               left untouched in that case
+     */
+    public Result compile(File sqlFile) throws IOException, SQLException {
+        long deckId = deckIdOf(sqlFile);
+        if (deckId < 0) {
+            throw new IllegalArgumentException("Not a deckN.sql file: " + sqlFile);
+        }
+
+        String script = new String(Files.readAllBytes(sqlFile.toPath()), StandardCharsets.UTF_8);
+        if (script.startsWith("\uFEFF")) script = script.substring(1);
+        script = NOW_MILLIS.matcher(script).replaceAll(Long.toString(createdAtMillis));
+
+        List<String> statements = splitStatements(script);
+        int expectedCards = 0;
+        for (String sql : statements) {
+            if (INSERT_INTO_CARDS.matcher(sql).find()) expectedCards += countValueTuples(sql);
+        }
+
+        File target = databaseFor(sqlFile);
+        File tmp = new File(target.getParentFile(), target.getName() + ".tmp");
+        Files.deleteIfExists(tmp.toPath());
+        Files.deleteIfExists(new File(tmp.getPath() + "-journal").toPath());
+
+        try (Connection c = new JDBC().connect("jdbc:sqlite:" + tmp.getAbsolutePath(), new Properties())) {
+            try (Statement st = c.createStatement()) {
+                // Must run before the first table is created.
+                st.execute("PRAGMA page_size = " + PAGE_SIZE);
+                st.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            }
+
+            c.setAutoCommit(false);
+            try (Statement st = c.createStatement()) {
+                for (String sql : statements) st.execute(sql);
+            }
+            c.commit();
+            c.setAutoCommit(true);
+
+            try (Statement st = c.createStatement()) {
+                st.execute("ANALYZE");
+                // The driver's SQLite is built with STAT4, Android's is not:
+                // keep only sqlite_stat1, which is what the device planner reads.
+                st.execute("DROP TABLE IF EXISTS sqlite_stat4");
+                st.execute("VACUUM");
+            }
+
+            verify(c, sqlFile, deckId, expectedCards);
+        } catch (SQLException | RuntimeException e) {
+            Files.deleteIfExists(tmp.toPath());
+            throw e;
+        }
+
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        File content = DeckContentWriter.write(target, deckId);
+        return new Result(target, deckId, expectedCards, target.length(), content.length());
+    }
+
+    private static void verify(Connection c, File sqlFile, long deckId, int expectedCards)
+            throws SQLException {
+        String integrity = queryString(c, "PRAGMA integrity_check");
+        check("ok".equalsIgnoreCase(integrity), sqlFile, "integrity_check: " + integrity);
+
+        int pageSize = (int) queryLong(c, "PRAGMA page_size");
+        check(pageSize == PAGE_SIZE, sqlFile, "page_size is " + pageSize);
+
+        long autoVacuum = queryLong(c, "PRAGMA auto_vacuum");
+        check(autoVacuum == AUTO_VACUUM_INCREMENTAL, sqlFile, "auto_vacuum is " + autoVacuum);
+
+        long cards = queryLong(c, "SELECT COUNT(*) FROM cards");
+        check(cards == expectedCards, sqlFile,
+                "cards has " + cards + " rows, script inserts " + expectedCards);
+        check(cards > 0, sqlFile, "no cards");
+
+        try (PreparedStatement ps = c.prepareStatement("SELECT COUNT(*) FROM cards WHERE deckId <> ?")) {
+            ps.setLong(1, deckId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                long foreign = rs.getLong(1);
+                check(foreign == 0, sqlFile, foreign + " rows do not belong to deck " + deckId);
+            }
+        }
+
+        long stats = queryLong(c, "SELECT COUNT(*) FROM sqlite_stat1 WHERE tbl = 'cards'");
+        check(stats > 0, sqlFile, "ANALYZE produced no statistics for cards");
+    }
+
+    private static void check(boolean ok, File sqlFile, String message) {
+        if (!ok) throw new IllegalStateException(sqlFile + ": " + message);
+    }
+
+    private static long queryLong(Connection c, String sql) throws SQLException {
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+
+    private static String queryString(Connection c, String sql) throws SQLException {
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    /**
+     * Splits a script into statements on top-level semicolons, skipping
+     * quoted text and comments.
+     */
+    static List<String> splitStatements(String script) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        int n = script.length();
+        for (int i = 0; i < n; i++) {
+            char ch = script.charAt(i);
+            if (ch == '\'' || ch == '"') {
+                int end = skipQuoted(script, i);
+                cur.append(script, i, end);
+                i = end - 1;
+            } else if (ch == '-' && i + 1 < n && script.charAt(i + 1) == '-') {
+                int nl = script.indexOf('\n', i);
+                i = (nl < 0 ? n : nl) - 1;
+            } else if (ch == '/' && i + 1 < n && script.charAt(i + 1) == '*') {
+                int close = script.indexOf("*/", i + 2);
+                i = (close < 0 ? n : close + 2) - 1;
+            } else if (ch == ';') {
+                addStatement(out, cur);
+            } else {
+                cur.append(ch);
+            }
+        }
+        addStatement(out, cur);
+        return out;
+    }
+
+    private static void addStatement(List<String> out, StringBuilder cur) {
+        String s = cur.toString().trim();
+        if (!s.isEmpty()) out.add(s);
+        cur.setLength(0);
+    }
+
+    /**
+     * Counts the row tuples of an {@code INSERT ... VALUES (...), (...)}
+     * statement: top-level parenthesized groups after the VALUES keyword.
+     */
+    static int countValueTuples(String insert) {
+        int tuples = 0;
+        int depth = 0;
+        boolean afterValues = false;
+        int n = insert.length();
+        for (int i = 0; i < n; i++) {
+            char ch = insert.charAt(i);
+            if (ch == '\'' || ch == '"') {
+                i = skipQuoted(insert, i) - 1;
+            } else if (ch == '(') {
+                if (depth == 0 && afterValues) tuples++;
+                depth++;
+            } else if (ch == ')') {
+                depth--;
+            } else if (depth == 0 && !afterValues
+                    && insert.regionMatches(true, i, "VALUES", 0, 6)) {
+                afterValues = true;
+                i += 5;
+            }
+        }
+        return tuples;
+    }
+
+    /**
+     * Returns the index just past the quoted literal starting at {@code start};
+     * a doubled quote inside the literal is an escaped quote.
+     */
+    private static int skipQuoted(String s, int start) {
+        char q = s.charAt(start);
+        int i = start + 1;
+        while (i < s.length()) {
+            if (s.charAt(i) == q) {
+                if (i + 1 < s.length() && s.charAt(i + 1) == q) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return s.length();
+    }
+}
@@ -0,0 +1,386 @@
+package com.example.cards.build;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * FontSubsetter
+ *
+ * Glyph-id-preserving subsetter for TrueType (glyf) fonts. Keeps the
+ * outlines of the glyphs needed for a set of code points and empties every
+ * other glyph slot. A variable font comes out as its default instance.
+ *
+ * Because glyph ids do not change, hmtx stays valid byte for byte.
+ * Rewritten tables:
+ * <pre>
+ *   glyf / loca  outlines of kept glyphs (with composite components) only
+ *   cmap         only the kept code points (format 4, plus 12 above the BMP),
+ *                so other characters fall back to the system fonts
+ *   post         version 3 (no glyph names)
+ *   OS/2         first / last character index
+ *   head         loca format and checksum adjustment
+ * </pre>
+ * Dropped tables ({@link #DROPPED}):
+ * - GSUB, GPOS, GDEF: substitutions could lead to emptied glyphs, and the
+ *   deck text (precomposed Hangul, Latin, Cyrillic) needs no shaping; the
+ *   kerning of a few hundred glyphs is not worth these tables, which cover
+ *   the whole font (240 KB of GPOS for Noto Sans KR).
+ * - Variation tables: the app never sets font axes, so only the default
+ *   outlines in glyf are ever drawn.
+ */
+public final class FontSubsetter {
+
+    private static final int TRUETYPE = 0x00010000;
+
+    // Composite glyph flags.
+    private static final int ARG_1_AND_2_ARE_WORDS = 0x0001;
+    private static final int WE_HAVE_A_SCALE = 0x0008;
+    private static final int MORE_COMPONENTS = 0x0020;
+    private static final int WE_HAVE_AN_X_AND_Y_SCALE = 0x0040;
+    private static final int WE_HAVE_A_TWO_BY_TWO = 0x0080;
+
+    private static final Set<String> DROPPED = Set.of(
+            "GSUB", "GPOS", "GDEF", "DSIG",
+            "fvar", "avar", "STAT", "gvar", "cvar", "HVAR", "VVAR", "MVAR");
+
+    /** What a subset run kept. */
+    public static final class Result {
+        public final byte[] font;
+        public final int codePoints;
+        public final int glyphs;
+        public final int totalGlyphs;
+
+        Result(byte[] font, int codePoints, int glyphs, int totalGlyphs) {
+            this.font = font;
+            this.codePoints = codePoints;
+            this.glyphs = glyphs;
+            this.totalGlyphs = totalGlyphs;
+        }
+    }
+
+    private FontSubsetter() {
+        // Utility class; no instances.
+    }
+
+    /**
+     * Subsets {@code font} to the given code points; code points the font
+     * does not map are ignored.
+     */
+    public static Result subset(byte[] font, Set<Integer> codePoints) throws IOException {
+        Map<String, ByteBuffer> tables = readTables(font);
+        for (String required : new String[] { "head", "maxp", "cmap", "loca", "glyf" }) {
+            if (!tables.containsKey(required)) throw new IOException("Missing table " + required);
+        }
+        int numGlyphs = tables.get("maxp").getShort(4) & 0xFFFF;
+        boolean longLoca = tables.get("head").getShort(50) != 0;
+        int[] loca = readLoca(tables.get("loca"), numGlyphs, longLoca);
+        ByteBuffer glyf = tables.get("glyf");
+
+        // 1) Code points → glyphs, then composite components.
+        TreeMap<Integer, Integer> cmap = new TreeMap<>();
+        for (Map.Entry<Integer, Integer> e : readCmap(tables.get("cmap")).entrySet()) {
+            if (codePoints.contains(e.getKey()) && e.getValue() != 0) cmap.put(e.getKey(), e.getValue());
+        }
+        boolean[] keep = new boolean[numGlyphs];
+        Deque<Integer> todo = new ArrayDeque<>(cmap.values());
+        todo.push(0); // .notdef
+        while (!todo.isEmpty()) {
+            int g = todo.pop();
+            if (g >= numGlyphs || keep[g]) continue;
+            keep[g] = true;
+            todo.addAll(components(glyf, loca[g], loca[g + 1]));
+        }
+        int kept = 0;
+        for (boolean k : keep) if (k) kept++;
+
+        // 2) Rewrite the glyph-indexed tables.
+        Map<String, byte[]> out = new TreeMap<>();
+        for (Map.Entry<String, ByteBuffer> e : tables.entrySet()) {
+            if (!DROPPED.contains(e.getKey())) out.put(e.getKey(), bytes(e.getValue()));
+        }
+        boolean shortLoca = writeGlyf(glyf, loca, keep, out);
+        byte[] head = out.get("head");
+        ByteBuffer.wrap(head).putShort(50, (short) (shortLoca ? 0 : 1));
+        ByteBuffer.wrap(head).putInt(8, 0); // checkSumAdjustment, set below
+        out.put("cmap", writeCmap(cmap));
+        if (tables.containsKey("post")) out.put("post", writePost(tables.get("post")));
+        if (tables.containsKey("OS/2") && !cmap.isEmpty()) {
+            ByteBuffer os2 = ByteBuffer.wrap(out.get("OS/2"));
+            os2.putShort(64, (short) Math.min(0xFFFF, cmap.firstKey()));
+            os2.putShort(66, (short) Math.min(0xFFFF, cmap.lastKey()));
+        }
+
+        byte[] result = writeFont(out);
+        return new Result(result, cmap.size(), kept, numGlyphs);
+    }
+
+    // -------------------------------------------------------------------------
+    // Reading
+    // -------------------------------------------------------------------------
+
+    private static Map<String, ByteBuffer> readTables(byte[] font) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(font);
+        if (b.getInt(0) != TRUETYPE) throw new IOException("Not a TrueType font");
+        int n = b.getShort(4) & 0xFFFF;
+        Map<String, ByteBuffer> tables = new TreeMap<>();
+        for (int i = 0; i < n; i++) {
+            int rec = 12 + 16 * i;
+            String tag = new String(font, rec, 4, StandardCharsets.US_ASCII);
+            int offset = b.getInt(rec + 8);
+            int length = b.getInt(rec + 12);
+            tables.put(tag, ByteBuffer.wrap(font, offset, length).slice());
+        }
+        return tables;
+    }
+
+    private static int[] readLoca(ByteBuffer loca, int numGlyphs, boolean longLoca) {
+        int[] out = new int[numGlyphs + 1];
+        for (int i = 0; i <= numGlyphs; i++) {
+            out[i] = longLoca ? loca.getInt(4 * i) : 2 * (loca.getShort(2 * i) & 0xFFFF);
+        }
+        return out;
+    }
+
+    /**
+     * Unicode → glyph mapping from the best Windows / Unicode subtable.
+     */
+    static Map<Integer, Integer> readCmap(ByteBuffer cmap) throws IOException {
+        int n = cmap.getShort(2) & 0xFFFF;
+        int best = -1;
+        int bestRank = 0;
+        for (int i = 0; i < n; i++) {
+            int rec = 4 + 8 * i;
+            int platform = cmap.getShort(rec) & 0xFFFF;
+            int encoding = cmap.getShort(rec + 2) & 0xFFFF;
+            int offset = cmap.getInt(rec + 4);
+            int format = cmap.getShort(offset) & 0xFFFF;
+            int rank = format == 12 && (platform == 3 && encoding == 10 || platform == 0) ? 2
+                    : format == 4 && (platform == 3 && encoding == 1 || platform == 0) ? 1 : 0;
+            if (rank > bestRank) {
+                bestRank = rank;
+                best = offset;
+            }
+        }
+        if (best < 0) throw new IOException("No Unicode cmap");
+
+        Map<Integer, Integer> out = new TreeMap<>();
+        if (bestRank == 2) {
+            int groups = cmap.getInt(best + 12);
+            for (int i = 0; i < groups; i++) {
+                int g = best + 16 + 12 * i;
+                int start = cmap.getInt(g);
+                int end = cmap.getInt(g + 4);
+                int glyph = cmap.getInt(g + 8);
+                for (int c = start; c <= end; c++) out.put(c, glyph + (c - start));
+            }
+        } else {
+            int segs = (cmap.getShort(best + 6) & 0xFFFF) / 2;
+            int ends = best + 14;
+            int starts = ends + 2 * segs + 2;
+            int deltas = starts + 2 * segs;
+            int ranges = deltas + 2 * segs;
+            for (int s = 0; s < segs; s++) {
+                int end = cmap.getShort(ends + 2 * s) & 0xFFFF;
+                int start = cmap.getShort(starts + 2 * s) & 0xFFFF;
+                int delta = cmap.getShort(deltas + 2 * s);
+                int rangeOffset = cmap.getShort(ranges + 2 * s) & 0xFFFF;
+                for (int c = start; c <= end && c != 0xFFFF; c++) {
+                    int glyph;
+                    if (rangeOffset == 0) {
+                        glyph = (c + delta) & 0xFFFF;
+                    } else {
+                        int at = ranges + 2 * s + rangeOffset + 2 * (c - start);
+                        glyph = cmap.getShort(at) & 0xFFFF;
+                        if (glyph != 0) glyph = (glyph + delta) & 0xFFFF;
+                    }
+                    out.put(c, glyph);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Glyph ids referenced by a composite glyph; empty for simple glyphs.
+     */
+    private static Set<Integer> components(ByteBuffer glyf, int start, int end) {
+        Set<Integer> out = new TreeSet<>();
+        if (end - start < 10 || glyf.getShort(start) >= 0) return out;
+        int p = start + 10;
+        int flags;
+        do {
+            flags = glyf.getShort(p) & 0xFFFF;
+            out.add(glyf.getShort(p + 2) & 0xFFFF);
+            p += 4 + ((flags & ARG_1_AND_2_ARE_WORDS) != 0 ? 4 : 2);
+            if ((flags & WE_HAVE_A_SCALE) != 0) p += 2;
+            else if ((flags & WE_HAVE_AN_X_AND_Y_SCALE) != 0) p += 4;
+            else if ((flags & WE_HAVE_A_TWO_BY_TWO) != 0) p += 8;
+        } while ((flags & MORE_COMPONENTS) != 0);
+        return out;
+    }
+
+    // -------------------------------------------------------------------------
+    // Writing
+    // -------------------------------------------------------------------------
+
+    /**
+     * Writes glyf and loca into {@code out}.
+     *
+     * @return whether the short loca format was used
+     */
+    private static boolean writeGlyf(ByteBuffer glyf, int[] loca, boolean[] keep, Map<String, byte[]> out) {
+        int numGlyphs = keep.length;
+        int[] offsets = new int[numGlyphs + 1];
+        int size = 0;
+        for (int g = 0; g < numGlyphs; g++) {
+            offsets[g] = size;
+            if (keep[g]) size += pad4(loca[g + 1] - loca[g]);
+        }
+        offsets[numGlyphs] = size;
+
+        ByteBuffer data = ByteBuffer.allocate(size);
+        for (int g = 0; g < numGlyphs; g++) {
+            if (!keep[g]) continue;
+            data.position(offsets[g]);
+            data.put(glyf.duplicate().position(loca[g]).limit(loca[g + 1]));
+        }
+
+        // Offsets are multiples of 4, so halves fit 16 bits up to 128 KiB.
+        boolean shortLoca = size / 2 <= 0xFFFF;
+        ByteBuffer index = ByteBuffer.allocate((numGlyphs + 1) * (shortLoca ? 2 : 4));
+        for (int o : offsets) {
+            if (shortLoca) index.putShort((short) (o / 2));
+            else index.putInt(o);
+        }
+        out.put("glyf", data.array());
+        out.put("loca", index.array());
+        return shortLoca;
+    }
+
+    /**
+     * cmap with a (3,1) format 4 subtable, plus (3,10) format 12 when a
+     * code point lies above the BMP.
+     */
+    static byte[] writeCmap(TreeMap<Integer, Integer> cmap) {
+        // Runs of consecutive code points mapped to consecutive glyphs.
+        TreeMap<Integer, int[]> runs = new TreeMap<>(); // start → {end, glyph}
+        int[] run = null;
+        for (Map.Entry<Integer, Integer> e : cmap.entrySet()) {
+            int c = e.getKey();
+            int g = e.getValue();
+            if (run != null && c == run[1] + 1 && g == run[2] + (c - run[0])) {
+                run[1] = c;
+            } else {
+                run = new int[] { c, c, g };
+                runs.put(c, run);
+            }
+        }
+
+        // Format 4: BMP runs, split at 0xFFFF, then the terminating segment.
+        List<int[]> bmp = new ArrayList<>();
+        for (int[] r : runs.values()) {
+            if (r[0] > 0xFFFE) continue;
+            bmp.add(new int[] { r[0], Math.min(r[1], 0xFFFE), r[2] });
+        }
+        bmp.add(new int[] { 0xFFFF, 0xFFFF, 1 });
+        int segs = bmp.size();
+        int f4Length = 16 + 8 * segs;
+        ByteBuffer f4 = ByteBuffer.allocate(f4Length);
+        int searchRange = 2 * Integer.highestOneBit(segs);
+        f4.putShort((short) 4).putShort((short) f4Length).putShort((short) 0)
+                .putShort((short) (2 * segs)).putShort((short) searchRange)
+                .putShort((short) Integer.numberOfTrailingZeros(searchRange / 2))
+                .putShort((short) (2 * segs - searchRange));
+        for (int[] s : bmp) f4.putShort((short) s[1]);
+        f4.putShort((short) 0);
+        for (int[] s : bmp) f4.putShort((short) s[0]);
+        for (int[] s : bmp) f4.putShort((short) (s[2] - s[0]));
+        for (int i = 0; i < segs; i++) f4.putShort((short) 0);
+
+        boolean supplementary = !cmap.isEmpty() && cmap.lastKey() > 0xFFFF;
+        ByteBuffer f12 = null;
+        if (supplementary) {
+            f12 = ByteBuffer.allocate(16 + 12 * runs.size());
+            f12.putShort((short) 12).putShort((short) 0).putInt(f12.capacity()).putInt(0).putInt(runs.size());
+            for (int[] r : runs.values()) f12.putInt(r[0]).putInt(r[1]).putInt(r[2]);
+        }
+
+        int records = supplementary ? 2 : 1;
+        int header = 4 + 8 * records;
+        ByteBuffer out = ByteBuffer.allocate(header + f4Length + (f12 == null ? 0 : f12.capacity()));
+        out.putShort((short) 0).putShort((short) records);
+        out.putShort((short) 3).putShort((short) 1).putInt(header);
+        if (f12 != null) out.putShort((short) 3).putShort((short) 10).putInt(header + f4Length);
+        out.put(f4.array());
+        if (f12 != null) out.put(f12.array());
+        return out.array();
+    }
+
+    private static byte[] writePost(ByteBuffer post) {
+        byte[] out = new byte[32];
+        post.duplicate().get(out);
+        ByteBuffer.wrap(out).putInt(0, 0x00030000);
+        return out;
+    }
+
+    private static byte[] writeFont(Map<String, byte[]> tables) {
+        int n = tables.size();
+        int size = 12 + 16 * n;
+        for (byte[] t : tables.values()) size += pad4(t.length);
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        int searchRange = 16 * Integer.highestOneBit(n);
+        out.putInt(TRUETYPE).putShort((short) n).putShort((short) searchRange)
+                .putShort((short) Integer.numberOfTrailingZeros(searchRange / 16))
+                .putShort((short) (16 * n - searchRange));
+        int offset = 12 + 16 * n;
+        int headOffset = 0;
+        for (Map.Entry<String, byte[]> e : tables.entrySet()) { // TreeMap: tags ascending
+            byte[] t = e.getValue();
+            if (e.getKey().equals("head")) headOffset = offset;
+            out.put(e.getKey().getBytes(StandardCharsets.US_ASCII));
+            out.putInt((int) checksum(t, 0, t.length));
+            out.putInt(offset);
+            out.putInt(t.length);
+            int at = out.position();
+            out.position(offset);
+            out.put(t);
+            out.position(at);
+            offset += pad4(t.length);
+        }
+        byte[] font = out.array();
+        ByteBuffer.wrap(font).putInt(headOffset + 8, (int) (0xB1B0AFBAL - checksum(font, 0, font.length)));
+        return font;
+    }
+
+    private static long checksum(byte[] b, int from, int length) {
+        long sum = 0;
+        for (int i = 0; i < length; i += 4) {
+            long word = 0;
+            for (int j = 0; j < 4; j++) {
+                word = (word << 8) | (i + j < length ? b[from + i + j] & 0xFF : 0);
+            }
+            sum = (sum + word) & 0xFFFFFFFFL;
+        }
+        return sum;
+    }
+
+    private static byte[] bytes(ByteBuffer b) {
+        byte[] out = new byte[b.remaining()];
+        b.duplicate().get(out);
+        return out;
+    }
+
+    private static int pad4(int n) {
+        return (n + 3) & ~3;
+    }
+}
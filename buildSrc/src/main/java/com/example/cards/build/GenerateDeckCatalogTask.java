@@ -0,0 +1,58 @@
+package com.example.cards.build;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * GenerateDeckCatalogTask
+ *
+ * Writes {@code catalog.bin} into {@link #getAssetsDb()} from
+ * {@link #getSource()} and the compiled deck assets, using
+ * {@link DeckCatalogWriter}.
+ */
+public abstract class GenerateDeckCatalogTask extends DefaultTask {
+
+    /** The hand-edited catalog.tsv. */
+    @InputFile
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract RegularFileProperty getSource();
+
+    /** The {@code assets/db} directory with the language packs. */
+    @Internal
+    public abstract DirectoryProperty getAssetsDb();
+
+    /** Compiled databases and content assets the catalog describes. */
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract ConfigurableFileCollection getDeckAssets();
+
+    @OutputFile
+    public File getCatalog() {
+        return DeckCatalogWriter.catalogIn(getAssetsDb().get().getAsFile());
+    }
+
+    @TaskAction
+    public void generate() {
+        File source = getSource().get().getAsFile();
+        try {
+            int decks = DeckCatalogWriter.write(source, getAssetsDb().get().getAsFile());
+            getLogger().lifecycle(getCatalog().getName() + ": " + decks + " decks");
+        } catch (IOException | RuntimeException e) {
+            throw new GradleException("Failed to write the deck catalog from " + source + ": "
+                    + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.cards.build;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * SubsetFontTask
+ *
+ * Writes {@link #getOutputFont()}: {@link #getSourceFont()} reduced by
+ * {@link FontSubsetter} to the characters of {@link #getTextFiles()} (deck
+ * scripts, UI strings) plus printable ASCII for text set in code.
+ * Characters missing from the subset still render, from the system fonts.
+ */
+public abstract class SubsetFontTask extends DefaultTask {
+
+    /** Full font; kept outside res/ so it is not packaged. */
+    @InputFile
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract RegularFileProperty getSourceFont();
+
+    /** UTF-8 files whose characters the subset must cover. */
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract ConfigurableFileCollection getTextFiles();
+
+    @OutputFile
+    public abstract RegularFileProperty getOutputFont();
+
+    @TaskAction
+    public void subset() {
+        File source = getSourceFont().get().getAsFile();
+        File target = getOutputFont().get().getAsFile();
+        try {
+            Set<Integer> codePoints = new HashSet<>();
+            for (int c = 0x20; c < 0x7F; c++) codePoints.add(c);
+            for (File f : getTextFiles().getFiles()) {
+                new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8)
+                        .codePoints().forEach(codePoints::add);
+            }
+
+            FontSubsetter.Result r = FontSubsetter.subset(Files.readAllBytes(source.toPath()), codePoints);
+
+            File tmp = new File(target.getParentFile(), target.getName() + ".tmp");
+            Files.write(tmp.toPath(), r.font);
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            getLogger().lifecycle(String.format("%s: %d code points, %d of %d glyphs, %d -> %d bytes",
+                    target.getName(), r.codePoints, r.glyphs, r.totalGlyphs,
+                    source.length(), r.font.length));
+        } catch (IOException e) {
+            throw new GradleException("Failed to subset " + source + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -20,3 +20,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "Flashcard"
 include(":app")
+include(":benchmarks")